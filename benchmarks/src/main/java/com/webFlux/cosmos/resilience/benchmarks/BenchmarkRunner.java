@@ -0,0 +1,29 @@
+package com.webFlux.cosmos.resilience.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the suites with the gc profiler, so allocation rate is reported next to time, and writes
+ * {@code jmh-result.json} for comparison against a baseline run. Usual JMH arguments apply, e.g.
+ * <pre>
+ * mvn -B install -DskipTests && (cd benchmarks && mvn -B package)
+ * java -jar benchmarks/target/benchmarks.jar BookRepository -p errorRate=0 -p latencyMicros=0,200
+ * </pre>
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        new Runner(new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result("jmh-result.json")
+                .build()).run();
+    }
+}
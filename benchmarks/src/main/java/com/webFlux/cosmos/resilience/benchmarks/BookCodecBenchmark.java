@@ -0,0 +1,91 @@
+package com.webFlux.cosmos.resilience.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.webFlux.cosmos.resilience.codec.BookCodec;
+import com.webFlux.cosmos.resilience.model.Book;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@link BookCodec} encoding against the JSON the HTTP layer and the journal used before it, over
+ * {@link #BOOKS} distinct books. Encode runs also report the average encoded size as {@code bytesPerBook}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BookCodecBenchmark {
+
+    private static final int BOOKS = 1_000;
+
+    @Param({"binary", "json"})
+    public String codec;
+
+    private ObjectWriter bookWriter;
+    private ObjectReader bookReader;
+    private Book[] books;
+    private byte[][] encoded;
+    private double averageBytes;
+    private int next;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class EncodedSize {
+        public double bytesPerBook;
+    }
+
+    @Setup
+    public void setUp() throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        bookWriter = mapper.writerFor(Book.class);
+        bookReader = mapper.readerFor(Book.class);
+        books = new Book[BOOKS];
+        encoded = new byte[BOOKS][];
+        long bytes = 0;
+        for (int i = 0; i < BOOKS; i++) {
+            books[i] = InMemoryBackend.book(i);
+            encoded[i] = encode(books[i]);
+            bytes += encoded[i].length;
+        }
+        averageBytes = (double) bytes / BOOKS;
+    }
+
+    @Benchmark
+    public byte[] encode(EncodedSize size) throws IOException {
+        size.bytesPerBook = averageBytes;
+        return encode(books[nextIndex()]);
+    }
+
+    @Benchmark
+    public Book decode() throws IOException {
+        byte[] book = encoded[nextIndex()];
+        return "binary".equals(codec) ? BookCodec.decode(book) : bookReader.readValue(book);
+    }
+
+    private byte[] encode(Book book) throws IOException {
+        return "binary".equals(codec) ? BookCodec.encode(book) : bookWriter.writeValueAsBytes(book);
+    }
+
+    private int nextIndex() {
+        int index = next;
+        next = index + 1 == BOOKS ? 0 : index + 1;
+        return index;
+    }
+}
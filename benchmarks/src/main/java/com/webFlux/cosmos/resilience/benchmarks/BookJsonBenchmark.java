@@ -0,0 +1,78 @@
+package com.webFlux.cosmos.resilience.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.webFlux.cosmos.resilience.model.Book;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson (de)serialization of a single {@link Book} and of a 100-book page, as done on every response.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BookJsonBenchmark {
+
+    private ObjectWriter bookWriter;
+    private ObjectReader bookReader;
+    private ObjectWriter pageWriter;
+    private ObjectReader pageReader;
+    private Book book;
+    private List<Book> page;
+    private byte[] bookJson;
+    private byte[] pageJson;
+
+    @Setup
+    public void setUp() throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        bookWriter = mapper.writerFor(Book.class);
+        bookReader = mapper.readerFor(Book.class);
+        pageWriter = mapper.writerFor(mapper.getTypeFactory().constructCollectionType(List.class, Book.class));
+        pageReader = mapper.readerFor(mapper.getTypeFactory().constructCollectionType(List.class, Book.class));
+        book = InMemoryBackend.book(1);
+        page = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            page.add(InMemoryBackend.book(i));
+        }
+        bookJson = bookWriter.writeValueAsBytes(book);
+        pageJson = pageWriter.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public byte[] serializeBook() throws IOException {
+        return bookWriter.writeValueAsBytes(book);
+    }
+
+    @Benchmark
+    public Book deserializeBook() throws IOException {
+        return bookReader.readValue(bookJson);
+    }
+
+    @Benchmark
+    public byte[] serializePage() throws IOException {
+        return pageWriter.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public List<Book> deserializePage() throws IOException {
+        return pageReader.readValue(pageJson);
+    }
+}
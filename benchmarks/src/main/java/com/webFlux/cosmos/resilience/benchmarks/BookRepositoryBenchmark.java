@@ -0,0 +1,62 @@
+package com.webFlux.cosmos.resilience.benchmarks;
+
+import com.webFlux.cosmos.resilience.model.Book;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@code BookRepository} pipelines end to end: response mapping, latency recording and diagnostics
+ * capture, over the in-memory container. Injected failures are swallowed so they are measured, not thrown.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BookRepositoryBenchmark {
+
+    @Benchmark
+    public Book pointRead(InMemoryBackend backend) {
+        Book book = InMemoryBackend.randomBook();
+        return backend.repository
+                .finByIdAndCategory(book.getId(), book.getCategory())
+                .onErrorResume(error -> Mono.empty())
+                .block();
+    }
+
+    @Benchmark
+    public List<Book> categoryQuery(InMemoryBackend backend) {
+        return backend.repository
+                .findByCategory(InMemoryBackend.CATEGORIES[ThreadLocalRandom.current().nextInt(InMemoryBackend.CATEGORIES.length)])
+                .collectList()
+                .onErrorResume(error -> Mono.empty())
+                .block();
+    }
+
+    @Benchmark
+    public List<Book> isbnQuery(InMemoryBackend backend) {
+        return backend.repository
+                .findByIsbn(InMemoryBackend.randomBook().getIsbn())
+                .collectList()
+                .onErrorResume(error -> Mono.empty())
+                .block();
+    }
+
+    @Benchmark
+    public Book upsert(InMemoryBackend backend) {
+        return backend.repository
+                .upsertBook(InMemoryBackend.randomBook())
+                .onErrorResume(error -> Mono.empty())
+                .block();
+    }
+}
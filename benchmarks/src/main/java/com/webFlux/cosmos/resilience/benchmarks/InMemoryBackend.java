@@ -0,0 +1,57 @@
+package com.webFlux.cosmos.resilience.benchmarks;
+
+import com.azure.cosmos.BridgeInternal;
+import com.webFlux.cosmos.resilience.cache.BookCache;
+import com.webFlux.cosmos.resilience.cosmos.InMemoryCosmosContainer;
+import com.webFlux.cosmos.resilience.model.Book;
+import com.webFlux.cosmos.resilience.model.BookRepository;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A {@link BookRepository} over the in-memory container stand-in, seeded with {@link #BOOKS} books spread
+ * over {@link #CATEGORIES} categories. Every container call waits {@code latencyMicros} and fails with a
+ * 503 at {@code errorRate}.
+ */
+@State(Scope.Benchmark)
+public class InMemoryBackend {
+
+    public static final int BOOKS = 1_000;
+    public static final String[] CATEGORIES = {"Databases", "Programming Languages", "Cloud", "Networking"};
+
+    @Param({"0"})
+    public long latencyMicros;
+
+    @Param({"0", "0.01"})
+    public double errorRate;
+
+    public InMemoryCosmosContainer container;
+    public BookRepository repository;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        container = new InMemoryCosmosContainer()
+                .withLatency(Duration.ofNanos(latencyMicros * 1_000))
+                .withFault(() -> ThreadLocalRandom.current().nextDouble() < errorRate ? BridgeInternal.createCosmosException(503) : null);
+        for (int i = 0; i < BOOKS; i++) {
+            container.seed(book(i));
+        }
+        repository = container.repository(new BookCache(false, 0, 0));
+    }
+
+    public static Book book(int i) {
+        return new Book(String.valueOf(i), CATEGORIES[i % CATEGORIES.length], String.valueOf(90_000 + i % 250), "Title " + i,
+                "Author " + i % 50, "Description of book " + i, new BigDecimal("47.99"), new BigDecimal("42.50"), "image" + i + ".jpg");
+    }
+
+    public static Book randomBook() {
+        return book(ThreadLocalRandom.current().nextInt(BOOKS));
+    }
+}
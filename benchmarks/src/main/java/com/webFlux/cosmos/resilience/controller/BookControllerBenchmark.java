@@ -0,0 +1,73 @@
+package com.webFlux.cosmos.resilience.controller;
+
+import com.webFlux.cosmos.resilience.benchmarks.InMemoryBackend;
+import com.webFlux.cosmos.resilience.metrics.LatencyRecorder;
+import com.webFlux.cosmos.resilience.model.Book;
+import com.webFlux.cosmos.resilience.util.CircuitBreakers;
+import com.webFlux.cosmos.resilience.util.Deadlines;
+import com.webFlux.cosmos.resilience.util.RetryEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.env.MockEnvironment;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@link BookController} handler chains (timeout, circuit breaker, retries and error mapping) on top of
+ * the repository. Lives in the controller package because the handlers are package-private.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BookControllerBenchmark {
+
+    private BookController controller;
+
+    @Setup
+    public void setUp(InMemoryBackend backend) {
+        MockEnvironment environment = new MockEnvironment();
+        controller = new BookController(backend.repository, null, new RetryEngine(3, 10, 1_000, 50, 5, 0.1),
+                new CircuitBreakers(environment), new Deadlines(environment, new LatencyRecorder(environment)), 100);
+    }
+
+    @Benchmark
+    public Book bookByIdAndCategory() {
+        Book book = InMemoryBackend.randomBook();
+        return controller
+                .bookByIDAndCategory(book.getCategory(), book.getId(), null)
+                .map(ResponseEntity::getBody)
+                .onErrorResume(error -> Mono.empty())
+                .block();
+    }
+
+    @Benchmark
+    public List<Book> bookByCategory() {
+        return controller
+                .bookByCategory(InMemoryBackend.CATEGORIES[0])
+                .collectList()
+                .onErrorResume(error -> Mono.empty())
+                .block();
+    }
+
+    @Benchmark
+    public Book createExisting() {
+        return controller
+                .createBook(InMemoryBackend.randomBook())
+                .onErrorResume(error -> Mono.empty())
+                .block();
+    }
+}
@@ -2,9 +2,11 @@ package com.webFlux.cosmos.resilience;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
 import org.springframework.web.reactive.function.client.WebClient;
 
 @SpringBootApplication
+@ConfigurationPropertiesScan
 public class WebFluxCosmosApplication {
 
 	public static void main(String[] args) {
@@ -0,0 +1,214 @@
+package com.webFlux.cosmos.resilience.cache;
+
+import com.webFlux.cosmos.resilience.codec.BookCodec;
+import com.webFlux.cosmos.resilience.model.Book;
+import com.webFlux.cosmos.resilience.model.BookKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Bounded read-through cache for point reads keyed by (id, category).
+ * Entries are evicted in insertion order once the cache is full or their TTL has elapsed,
+ * and concurrent misses for the same key share a single load. With {@code cache.book.compact} entries
+ * hold the {@link BookCodec} encoding instead of the book, trading a decode per hit for a smaller heap
+ * and a fresh copy for every reader.
+ */
+@Component
+public class BookCache {
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final boolean enabled;
+    private final int maxSize;
+    private final long ttlNanos;
+    private final boolean compact;
+
+    private final ConcurrentHashMap<BookKey, Entry> entries = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Entry> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final ConcurrentHashMap<BookKey, Mono<Book>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    @Autowired
+    public BookCache(@Value("${cache.book.enabled:true}") final boolean enabled,
+                     @Value("${cache.book.maxSize:10000}") final int maxSize,
+                     @Value("${cache.book.ttlMs:30000}") final long ttlMs,
+                     @Value("${cache.book.compact:false}") final boolean compact) {
+        this.enabled = enabled;
+        this.maxSize = maxSize;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMs);
+        this.compact = compact;
+        logger.info("Book cache enabled={} maxSize={} ttl={} ms compact={}", enabled, maxSize, ttlMs, compact);
+    }
+
+    public BookCache(boolean enabled, int maxSize, long ttlMs) {
+        this(enabled, maxSize, ttlMs, false);
+    }
+
+    public Mono<Book> get(BookKey key, Function<BookKey, Mono<Book>> loader) {
+        if (!enabled) {
+            return loader.apply(key);
+        }
+        return Mono.defer(() -> {
+            Book cached = getIfPresent(key);
+            if (cached != null) {
+                hits.increment();
+                return Mono.just(cached);
+            }
+            misses.increment();
+            return inFlight.computeIfAbsent(key, k -> load(k, loader));
+        });
+    }
+
+    public Book getIfPresent(BookKey key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.isExpired(System.nanoTime())) {
+            if (entries.remove(key, entry)) {
+                expirations.increment();
+            }
+            return null;
+        }
+        return entry.book();
+    }
+
+    public void put(Book book) {
+        if (!enabled) {
+            return;
+        }
+        BookKey key = BookKey.of(book);
+        inFlight.remove(key);
+        insert(key, book);
+    }
+
+    public void invalidate(BookKey key) {
+        if (!enabled) {
+            return;
+        }
+        inFlight.remove(key);
+        if (entries.remove(key) != null) {
+            invalidations.increment();
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("size", entries.mappingCount());
+        stats.put("maxSize", maxSize);
+        stats.put("compact", compact);
+        stats.put("hits", hits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("loads", loads.sum());
+        stats.put("inFlight", inFlight.mappingCount());
+        stats.put("evictions", evictions.sum());
+        stats.put("expirations", expirations.sum());
+        stats.put("invalidations", invalidations.sum());
+        return stats;
+    }
+
+    private Mono<Book> load(BookKey key, Function<BookKey, Mono<Book>> loader) {
+        AtomicReference<Mono<Book>> shared = new AtomicReference<>();
+        Mono<Book> load = loader
+                .apply(key)
+                .doOnSubscribe(subscription -> loads.increment())
+                // a write to the key since this load started has taken it out of flight, and refreshed or
+                // invalidated the key itself; checking under the in-flight entry keeps a write from slipping in between
+                .doOnNext(book -> inFlight.computeIfPresent(key, (k, current) -> {
+                    if (current != shared.get()) {
+                        return current;
+                    }
+                    insertIfAbsentOrExpired(k, book);
+                    return null;
+                }))
+                // a write may have replaced this load with a newer one, which stays in flight
+                .doFinally(signal -> inFlight.remove(key, shared.get()))
+                .cache();
+        shared.set(load);
+        return load;
+    }
+
+    private void insert(BookKey key, Book book) {
+        Entry entry = entry(key, book, System.nanoTime() + ttlNanos);
+        entries.put(key, entry);
+        insertionOrder.offer(entry);
+        cleanUp();
+    }
+
+    private void insertIfAbsentOrExpired(BookKey key, Book book) {
+        long now = System.nanoTime();
+        Entry entry = entry(key, book, now + ttlNanos);
+        Entry current = entries.compute(key, (k, existing) -> existing == null || existing.isExpired(now) ? entry : existing);
+        if (current == entry) {
+            insertionOrder.offer(entry);
+            cleanUp();
+        }
+    }
+
+    private Entry entry(BookKey key, Book book, long expiresAtNanos) {
+        return compact ? new Entry(key, null, BookCodec.encode(book), expiresAtNanos) : new Entry(key, book, null, expiresAtNanos);
+    }
+
+    private void cleanUp() {
+        long now = System.nanoTime();
+        Entry head;
+        while ((head = insertionOrder.peek()) != null) {
+            boolean live = entries.get(head.key) == head;
+            if (live && !head.isExpired(now) && entries.mappingCount() <= maxSize) {
+                return;
+            }
+            if (!insertionOrder.remove(head)) {
+                continue;
+            }
+            if (live && entries.remove(head.key, head)) {
+                if (head.isExpired(now)) {
+                    expirations.increment();
+                } else {
+                    evictions.increment();
+                }
+            }
+        }
+    }
+
+    private static final class Entry {
+        private final BookKey key;
+        private final Book book;
+        private final byte[] encoded;
+        private final long expiresAtNanos;
+
+        private Entry(BookKey key, Book book, byte[] encoded, long expiresAtNanos) {
+            this.key = key;
+            this.book = book;
+            this.encoded = encoded;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+
+        private Book book() {
+            return book != null ? book : BookCodec.decode(encoded);
+        }
+
+        private boolean isExpired(long now) {
+            return now - expiresAtNanos >= 0;
+        }
+    }
+}
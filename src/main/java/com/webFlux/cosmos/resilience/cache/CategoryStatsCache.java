@@ -0,0 +1,144 @@
+package com.webFlux.cosmos.resilience.cache;
+
+import com.webFlux.cosmos.resilience.model.CategoryStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Caches the aggregates of each category and the list of categories. A write through this service
+ * invalidates its category, and the list when the category is new; writes that bypass it, such as
+ * another instance's, show up once the entry is older than {@code cache.stats.ttlMs}.
+ */
+@Component
+public class CategoryStatsCache {
+
+    private final boolean enabled;
+    private final long ttlNanos;
+
+    private final ConcurrentHashMap<String, Entry<CategoryStats>> byCategory = new ConcurrentHashMap<>();
+    // bumped by every invalidation of the category, so a load that raced with a write to it is not cached
+    private final ConcurrentHashMap<String, AtomicLong> writeStamps = new ConcurrentHashMap<>();
+    private volatile Entry<List<String>> categories;
+    // the categories of the last list loaded, cached or not; only a write to another one changes the list
+    private volatile Set<String> knownCategories = Set.of();
+    private long listStamp;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public CategoryStatsCache(@Value("${cache.stats.enabled:true}") final boolean enabled,
+                              @Value("${cache.stats.ttlMs:60000}") final long ttlMs) {
+        this.enabled = enabled;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMs);
+    }
+
+    public Mono<CategoryStats> get(String category, Function<String, Mono<CategoryStats>> loader) {
+        if (!enabled) {
+            return loader.apply(category);
+        }
+        return Mono.defer(() -> {
+            Entry<CategoryStats> entry = byCategory.get(category);
+            if (entry != null && !entry.isExpired(System.nanoTime())) {
+                hits.increment();
+                return Mono.just(entry.value);
+            }
+            misses.increment();
+            AtomicLong stamp = writeStamp(category);
+            long seen = stamp.get();
+            // an invalidation bumps the stamp before it removes the entry, so it never misses one put here
+            return loader
+                    .apply(category)
+                    .doOnNext(stats -> byCategory.compute(category, (k, current) ->
+                            stamp.get() == seen ? new Entry<>(stats, System.nanoTime() + ttlNanos) : current));
+        });
+    }
+
+    public Flux<String> categories(Supplier<Flux<String>> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+        return Flux.defer(() -> {
+            Entry<List<String>> entry = categories;
+            if (entry != null && !entry.isExpired(System.nanoTime())) {
+                hits.increment();
+                return Flux.fromIterable(entry.value);
+            }
+            misses.increment();
+            long seen;
+            synchronized (this) {
+                seen = listStamp;
+            }
+            return loader
+                    .get()
+                    .collectList()
+                    .doOnNext(list -> {
+                        synchronized (this) {
+                            knownCategories = new HashSet<>(list);
+                            if (listStamp == seen) {
+                                categories = new Entry<>(list, System.nanoTime() + ttlNanos);
+                            }
+                        }
+                    })
+                    .flatMapIterable(list -> list);
+        });
+    }
+
+    public void invalidate(String category) {
+        if (!enabled) {
+            return;
+        }
+        writeStamp(category).incrementAndGet();
+        if (byCategory.remove(category) != null) {
+            invalidations.increment();
+        }
+        if (!knownCategories.contains(category)) {
+            synchronized (this) {
+                listStamp++;
+                categories = null;
+            }
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("categories", byCategory.mappingCount());
+        stats.put("hits", hits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("invalidations", invalidations.sum());
+        return stats;
+    }
+
+    private AtomicLong writeStamp(String category) {
+        return writeStamps.computeIfAbsent(category, k -> new AtomicLong());
+    }
+
+    private static final class Entry<T> {
+        private final T value;
+        private final long expiresAtNanos;
+
+        private Entry(T value, long expiresAtNanos) {
+            this.value = value;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+
+        private boolean isExpired(long now) {
+            return now - expiresAtNanos >= 0;
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package com.webFlux.cosmos.resilience.codec;
+
+import com.webFlux.cosmos.resilience.model.Book;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compact binary form of a {@link Book} for the local cache, the write-behind journal and internal
+ * clients that ask for {@link #MEDIA_TYPE}. A book is a version byte, a bit set of the fields present
+ * and then those fields in declaration order: strings as a varint byte length and UTF-8, prices as a
+ * zigzag varint scale and a zigzag varint unscaled value, falling back to the decimal string for the
+ * rare price whose unscaled value does not fit a long. The etag travels with the book. Decoded
+ * categories are interned, so cached books share one string per category.
+ * Framed books carry a varint length prefix so they can be concatenated into a stream.
+ */
+public final class BookCodec {
+
+    public static final String MEDIA_TYPE = "application/x-book";
+
+    private static final byte VERSION = 1;
+    private static final int MAX_INTERNED_CATEGORIES = 1024;
+    private static final ConcurrentHashMap<String, String> CATEGORIES = new ConcurrentHashMap<>();
+
+    private static final int ID = 0;
+    private static final int CATEGORY = 1;
+    private static final int ISBN = 2;
+    private static final int TITLE = 3;
+    private static final int AUTHOR = 4;
+    private static final int DESCRIPTION = 5;
+    private static final int PRICE = 6;
+    private static final int DISCOUNTED_PRICE = 7;
+    private static final int IMAGE = 8;
+    private static final int ETAG = 9;
+
+    private BookCodec() {
+    }
+
+    public static byte[] encode(Book book) {
+        Output out = new Output(128);
+        write(out, book);
+        return out.toByteArray();
+    }
+
+    public static Book decode(byte[] bytes) {
+        return read(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Encodes the book behind a varint length prefix, ready to be appended to a stream of framed books.
+     */
+    public static byte[] frame(Book book) {
+        byte[] encoded = encode(book);
+        Output out = new Output(encoded.length + 2);
+        out.writeVarInt(encoded.length);
+        out.write(encoded);
+        return out.toByteArray();
+    }
+
+    /**
+     * Decodes the framed books in the buffer, stopping at a frame cut short, which is left unread.
+     */
+    public static List<Book> unframe(ByteBuffer buffer) {
+        List<Book> books = new ArrayList<>();
+        while (buffer.hasRemaining()) {
+            int start = buffer.position();
+            try {
+                int length = readVarInt(buffer);
+                if (length > buffer.remaining()) {
+                    buffer.position(start);
+                    break;
+                }
+                ByteBuffer encoded = buffer.slice();
+                encoded.limit(length);
+                books.add(read(encoded));
+                buffer.position(buffer.position() + length);
+            } catch (BufferUnderflowException e) {
+                buffer.position(start);
+                break;
+            }
+        }
+        return books;
+    }
+
+    private static void write(Output out, Book book) {
+        Object[] fields = {book.getId(), book.getCategory(), book.getIsbn(), book.getTitle(), book.getAuthor(),
+                book.getDescription(), book.getPrice(), book.getDiscountedPrice(), book.getImage(), book.getEtag()};
+        int present = 0;
+        for (int i = 0; i < fields.length; i++) {
+            if (fields[i] != null) {
+                present |= 1 << i;
+            }
+        }
+        out.writeByte(VERSION);
+        out.writeVarInt(present);
+        for (Object field : fields) {
+            if (field instanceof BigDecimal) {
+                writeDecimal(out, (BigDecimal) field);
+            } else if (field != null) {
+                writeString(out, (String) field);
+            }
+        }
+    }
+
+    private static Book read(ByteBuffer in) {
+        byte version = in.get();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported book encoding version " + version);
+        }
+        int present = readVarInt(in);
+        Book book = new Book();
+        for (int field = ID; field <= ETAG; field++) {
+            if ((present & (1 << field)) == 0) {
+                continue;
+            }
+            switch (field) {
+                case ID:
+                    book.setId(readString(in));
+                    break;
+                case CATEGORY:
+                    book.setCategory(intern(readString(in)));
+                    break;
+                case ISBN:
+                    book.setIsbn(readString(in));
+                    break;
+                case TITLE:
+                    book.setTitle(readString(in));
+                    break;
+                case AUTHOR:
+                    book.setAuthor(readString(in));
+                    break;
+                case DESCRIPTION:
+                    book.setDescription(readString(in));
+                    break;
+                case PRICE:
+                    book.setPrice(readDecimal(in));
+                    break;
+                case DISCOUNTED_PRICE:
+                    book.setDiscountedPrice(readDecimal(in));
+                    break;
+                case IMAGE:
+                    book.setImage(readString(in));
+                    break;
+                default:
+                    book.setEtag(readString(in));
+            }
+        }
+        return book;
+    }
+
+    // the low bit of the scale marks a price written as its decimal string
+    private static void writeDecimal(Output out, BigDecimal value) {
+        BigInteger unscaled = value.unscaledValue();
+        if (unscaled.bitLength() < Long.SIZE) {
+            out.writeVarLong(zigzag(value.scale()) << 1);
+            out.writeVarLong(zigzag(unscaled.longValue()));
+        } else {
+            out.writeVarLong((zigzag(value.scale()) << 1) | 1);
+            writeString(out, unscaled.toString());
+        }
+    }
+
+    private static BigDecimal readDecimal(ByteBuffer in) {
+        long header = readVarLong(in);
+        int scale = (int) unzigzag(header >>> 1);
+        if ((header & 1) == 0) {
+            return BigDecimal.valueOf(unzigzag(readVarLong(in)), scale);
+        }
+        return new BigDecimal(new BigInteger(readString(in)), scale);
+    }
+
+    private static void writeString(Output out, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeVarInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = readVarInt(in);
+        if (length > in.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        String value;
+        if (in.hasArray()) {
+            value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+            in.position(in.position() + length);
+        } else {
+            byte[] bytes = new byte[length];
+            in.get(bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return value;
+    }
+
+    private static String intern(String category) {
+        String interned = CATEGORIES.get(category);
+        if (interned != null) {
+            return interned;
+        }
+        if (CATEGORIES.size() >= MAX_INTERNED_CATEGORIES) {
+            return category;
+        }
+        interned = CATEGORIES.putIfAbsent(category, category);
+        return interned == null ? category : interned;
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static int readVarInt(ByteBuffer in) {
+        long value = readVarLong(in);
+        if (value < 0 || value > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Malformed book encoding");
+        }
+        return (int) value;
+    }
+
+    private static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            byte next = in.get();
+            value |= (long) (next & 0x7f) << shift;
+            if (next >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed book encoding");
+    }
+
+    private static final class Output {
+        private byte[] bytes;
+        private int size;
+
+        private Output(int capacity) {
+            bytes = new byte[capacity];
+        }
+
+        private void writeByte(int value) {
+            ensure(1);
+            bytes[size++] = (byte) value;
+        }
+
+        private void writeVarInt(int value) {
+            writeVarLong(value & 0xffffffffL);
+        }
+
+        private void writeVarLong(long value) {
+            ensure(10);
+            while ((value & ~0x7fL) != 0) {
+                bytes[size++] = (byte) ((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        private void write(byte[] value) {
+            ensure(value.length);
+            System.arraycopy(value, 0, bytes, size, value.length);
+            size += value.length;
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+            }
+        }
+
+        private byte[] toByteArray() {
+            return size == bytes.length ? bytes : Arrays.copyOf(bytes, size);
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package com.webFlux.cosmos.resilience.controller;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.BAD_REQUEST, reason="some reason")
+public class BadRequestException extends RuntimeException {
+}
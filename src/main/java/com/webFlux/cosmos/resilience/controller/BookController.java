@@ -1,67 +1,169 @@
 package com.webFlux.cosmos.resilience.controller;
 
-import com.azure.cosmos.CosmosException;
+import com.webFlux.cosmos.resilience.codec.BookCodec;
+import com.webFlux.cosmos.resilience.cosmos.BulkIngestService;
+import com.webFlux.cosmos.resilience.metrics.BookOperation;
 import com.webFlux.cosmos.resilience.model.Book;
+import com.webFlux.cosmos.resilience.model.BookField;
+import com.webFlux.cosmos.resilience.model.BookPage;
+import com.webFlux.cosmos.resilience.model.BookProjection;
 import com.webFlux.cosmos.resilience.model.BookRepository;
-import com.webFlux.cosmos.resilience.util.RetryConfig;
+import com.webFlux.cosmos.resilience.model.BookStats;
+import com.webFlux.cosmos.resilience.model.BulkItemResult;
+import com.webFlux.cosmos.resilience.model.PricePatch;
+import com.webFlux.cosmos.resilience.store.BookStoreException;
+import com.webFlux.cosmos.resilience.util.CircuitBreakers;
+import com.webFlux.cosmos.resilience.util.ContinuationTokens;
+import com.webFlux.cosmos.resilience.util.Deadlines;
+import com.webFlux.cosmos.resilience.util.RetryEngine;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.util.retry.Retry;
 
 import java.math.BigDecimal;
-import java.time.Duration;
+import java.util.Set;
 import java.util.concurrent.TimeoutException;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.IntFunction;
 
 @RestController
 public class BookController {
     private static final Logger logger = LoggerFactory.getLogger(BookController.class);
     private BookRepository bookRepository;
+    private BulkIngestService bulkIngestService;
+    private RetryEngine retryEngine;
+    private CircuitBreakers circuitBreakers;
+    private Deadlines deadlines;
+    private int maxPageSize;
 
     @Autowired
-    public BookController(BookRepository bookRepository) {
+    public BookController(BookRepository bookRepository, BulkIngestService bulkIngestService, RetryEngine retryEngine,
+                          CircuitBreakers circuitBreakers, Deadlines deadlines,
+                          @Value("${pagination.maxPageSize:100}") final int maxPageSize) {
         this.bookRepository = bookRepository;
+        this.bulkIngestService = bulkIngestService;
+        this.retryEngine = retryEngine;
+        this.circuitBreakers = circuitBreakers;
+        this.deadlines = deadlines;
+        this.maxPageSize = maxPageSize;
     }
 
+    /**
+     * Answers 304 without a body when the book is still at the version named by {@code If-None-Match}.
+     */
     @RequestMapping(value = "/books/{id}/category/{category}", method = RequestMethod.GET)
-    Mono<Book> bookByIDAndCategory(@PathVariable String category, @PathVariable String id) {
-        return bookRepository
-                .finByIdAndCategory(id, category)
-                .timeout(Duration.ofMillis(200))
-                .retryWhen(RetryConfig.failFastRetryConfig(logger,3))
-                .retryWhen(RetryConfig.requestTimeOutRetryConfig(logger,3))
-                .retryWhen(RetryConfig.serviceUnavailableRetryConfig(logger,3))
-                .retryWhen(RetryConfig.operationFailedRetryConfig(logger,3))
+    Mono<ResponseEntity<Book>> bookByIDAndCategory(@PathVariable String category, @PathVariable String id,
+                                                   @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        String etag = etag(ifNoneMatch);
+        Mono<Book> read = etag == null ? bookRepository.finByIdAndCategory(id, category) : bookRepository.findIfChanged(id, category, etag);
+        return read
+                .map(BookController::withEtag)
+                .defaultIfEmpty(ResponseEntity
+                        .status(HttpStatus.NOT_MODIFIED)
+                        .eTag(etag)
+                        .build())
+                .transform(deadlines.attemptMono(BookOperation.POINT_READ))
+                .transform(circuitBreakers.mono(BookOperation.POINT_READ))
+                .retryWhen(retryEngine.retry(BookOperation.POINT_READ))
+                .transform(deadlines.mono(BookOperation.POINT_READ))
                 .doOnError(error -> logger.info("Error encountered ", error))
-                .onErrorMap(error -> error instanceof CosmosException && ((CosmosException) error).getStatusCode() == 404, error -> new NotFoundException())
+                .onErrorMap(error -> hasStatus(error, 404), error -> new NotFoundException())
                 .onErrorMap(error -> new ServiceException());
     }
 
+    /**
+     * The book as {@link BookCodec} bytes, for internal clients that ask for them.
+     */
+    @RequestMapping(value = "/books/{id}/category/{category}", method = RequestMethod.GET, produces = BookCodec.MEDIA_TYPE)
+    Mono<ResponseEntity<byte[]>> encodedBookByIDAndCategory(@PathVariable String category, @PathVariable String id,
+                                                          @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return bookByIDAndCategory(category, id, ifNoneMatch).map(BookController::encoded);
+    }
+
     @RequestMapping(value = "books/category/{category}", method = RequestMethod.GET)
     Flux<Book> bookByCategory(@PathVariable String category) {
         return bookRepository
                 .findByCategory(category)
-                .timeout(Duration.ofMillis(3000))
-                .retryWhen(RetryConfig.failFastRetryConfig(logger,3))
-                .retryWhen(RetryConfig.requestTimeOutRetryConfig(logger,3))
-                .retryWhen(RetryConfig.serviceUnavailableRetryConfig(logger,3))
-                .retryWhen(RetryConfig.operationFailedRetryConfig(logger,3))
+                .transform(deadlines.attemptFlux(BookOperation.CATEGORY_QUERY))
+                .transform(circuitBreakers.flux(BookOperation.CATEGORY_QUERY))
+                .retryWhen(retryEngine.retry(BookOperation.CATEGORY_QUERY))
+                .transform(deadlines.flux(BookOperation.CATEGORY_QUERY))
                 .doOnError(error -> logger.info("Error encountered ", error))
                 .onErrorMap(error -> new ServiceException());
     }
 
+    @RequestMapping(value = "books/category/{category}", method = RequestMethod.GET, params = {"fields", "!pageSize"})
+    Flux<BookProjection> bookByCategory(@PathVariable String category, @RequestParam String fields) {
+        return projected(fields, BookOperation.CATEGORY_QUERY, selected -> bookRepository.findByCategory(category, selected));
+    }
+
+    @RequestMapping(value = "books/category/{category}", method = RequestMethod.GET, params = "pageSize")
+    Mono<BookPage> bookByCategoryPage(@PathVariable String category, @RequestParam int pageSize,
+                                      @RequestParam(required = false) String continuationToken) {
+        return page(pageSize, continuationToken, BookOperation.CATEGORY_QUERY,
+                (size, token) -> bookRepository.findByCategoryPage(category, size, token));
+    }
+
+    @RequestMapping(value = "books/category/{category}", method = RequestMethod.GET,
+            produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    Flux<Book> streamBookByCategory(@PathVariable String category, @RequestParam(defaultValue = "100") int pageSize) {
+        return stream(pageSize, BookOperation.CATEGORY_QUERY, size -> bookRepository.streamByCategory(category, size));
+    }
+
+    @RequestMapping(value = "books/category/{category}", method = RequestMethod.GET, produces = BookCodec.MEDIA_TYPE)
+    Flux<byte[]> encodedStreamBookByCategory(@PathVariable String category, @RequestParam(defaultValue = "100") int pageSize) {
+        return streamBookByCategory(category, pageSize).map(BookCodec::frame);
+    }
+
     @RequestMapping(value = "books/isbn/{isbn}", method = RequestMethod.GET)
     Flux<Book> bookByIsbn(@PathVariable String isbn) {
         return bookRepository
                 .findByIsbn(isbn)
-                .timeout(Duration.ofMillis(5000))
-                .retryWhen(RetryConfig.failFastRetryConfig(logger,3))
-                .retryWhen(RetryConfig.requestTimeOutRetryConfig(logger,3))
-                .retryWhen(RetryConfig.serviceUnavailableRetryConfig(logger,3))
-                .retryWhen(RetryConfig.operationFailedRetryConfig(logger,3))
+                .transform(deadlines.attemptFlux(BookOperation.ISBN_QUERY))
+                .transform(circuitBreakers.flux(BookOperation.ISBN_QUERY))
+                .retryWhen(retryEngine.retry(BookOperation.ISBN_QUERY))
+                .transform(deadlines.flux(BookOperation.ISBN_QUERY))
+                .doOnError(error -> logger.info("Error encountered", error))
+                .onErrorMap(error -> new ServiceException());
+    }
+
+    @RequestMapping(value = "books/isbn/{isbn}", method = RequestMethod.GET, params = "fields")
+    Flux<BookProjection> bookByIsbn(@PathVariable String isbn, @RequestParam String fields) {
+        return projected(fields, BookOperation.ISBN_QUERY, selected -> bookRepository.findByIsbn(isbn, selected));
+    }
+
+    /**
+     * Keyword search over title, author and description; every word has to match, the last one as typed so far.
+     */
+    @RequestMapping(value = "books/search", method = RequestMethod.GET)
+    Flux<Book> search(@RequestParam String q, @RequestParam(defaultValue = "10") int limit) {
+        if (q.isBlank() || limit < 1 || limit > maxPageSize) {
+            return Flux.error(new BadRequestException());
+        }
+        return bookRepository
+                .search(q, limit)
+                .transform(deadlines.attemptFlux(BookOperation.READ_MANY))
+                .transform(circuitBreakers.flux(BookOperation.READ_MANY))
+                .retryWhen(retryEngine.retry(BookOperation.READ_MANY))
+                .transform(deadlines.flux(BookOperation.READ_MANY))
+                .doOnError(error -> logger.info("Error encountered", error))
+                .onErrorMap(error -> new ServiceException());
+    }
+
+    @RequestMapping(value = "books/isbn/index/rebuild", method = RequestMethod.POST)
+    Mono<Long> rebuildIsbnIndex() {
+        return bookRepository
+                .rebuildIsbnIndex()
                 .doOnError(error -> logger.info("Error encountered", error))
                 .onErrorMap(error -> new ServiceException());
     }
@@ -70,32 +172,210 @@ public class BookController {
     Flux<Book> books() {
         return bookRepository
                 .findAll()
-                .timeout(Duration.ofMillis(500))
-                .retryWhen(RetryConfig.failFastRetryConfig(logger,3))
-                .retryWhen(RetryConfig.requestTimeOutRetryConfig(logger,3))
-                .retryWhen(RetryConfig.serviceUnavailableRetryConfig(logger,3))
-                .retryWhen(RetryConfig.operationFailedRetryConfig(logger,3))
+                .transform(deadlines.attemptFlux(BookOperation.SCAN))
+                .transform(circuitBreakers.flux(BookOperation.SCAN))
+                .retryWhen(retryEngine.retry(BookOperation.SCAN))
+                .transform(deadlines.flux(BookOperation.SCAN))
                 .doOnError(error -> logger.info("Error encountered", error))
                 .onErrorMap(error -> new ServiceException());
     }
 
+    @RequestMapping(value = "books", method = RequestMethod.GET, params = {"fields", "!pageSize"})
+    Flux<BookProjection> books(@RequestParam String fields) {
+        return projected(fields, BookOperation.SCAN, bookRepository::findAll);
+    }
+
+    @RequestMapping(value = "books", method = RequestMethod.GET, params = "pageSize")
+    Mono<BookPage> booksPage(@RequestParam int pageSize, @RequestParam(required = false) String continuationToken) {
+        return page(pageSize, continuationToken, BookOperation.SCAN, bookRepository::findAllPage);
+    }
+
+
+    @RequestMapping(value = "books", method = RequestMethod.GET,
+            produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    Flux<Book> streamBooks(@RequestParam(defaultValue = "100") int pageSize) {
+        return stream(pageSize, BookOperation.SCAN, bookRepository::streamAll);
+    }
+
+    @RequestMapping(value = "books", method = RequestMethod.GET, produces = BookCodec.MEDIA_TYPE)
+    Flux<byte[]> encodedStreamBooks(@RequestParam(defaultValue = "100") int pageSize) {
+        return streamBooks(pageSize).map(BookCodec::frame);
+    }
+
+    @RequestMapping(value = "books/stats", method = RequestMethod.GET)
+    Mono<BookStats> bookStats() {
+        return bookRepository
+                .stats()
+                .transform(deadlines.attemptMono(BookOperation.STATS))
+                .transform(circuitBreakers.mono(BookOperation.STATS))
+                .retryWhen(retryEngine.retry(BookOperation.STATS))
+                .transform(deadlines.mono(BookOperation.STATS))
+                .doOnError(error -> logger.info("Error encountered", error))
+                .onErrorMap(error -> new ServiceException());
+    }
 
     @RequestMapping(value = "books", method = RequestMethod.POST)
     Mono<Book> createBook(@RequestBody Book book) {
         return bookRepository
                 .create(book)
-                .timeout(Duration.ofMillis(100))
-                .retryWhen(RetryConfig.failFastRetryConfig(logger,3))
-                .retryWhen(RetryConfig.tooManyConcurrentWritesRetryConfig(logger,3))
-                .retryWhen(RetryConfig.requestTimeOutRetryConfig(logger,3))
-                .retryWhen(RetryConfig.serviceUnavailableRetryConfig(logger,3))
-                .retryWhen(RetryConfig.operationFailedRetryConfig(logger,3))
+                .transform(deadlines.attemptMono(BookOperation.CREATE))
+                .transform(circuitBreakers.mono(BookOperation.CREATE))
+                .retryWhen(retryEngine.retry(BookOperation.CREATE))
+                .transform(deadlines.mono(BookOperation.CREATE))
                 .doOnError(error -> logger.info("Error encountered", error))
-                .onErrorReturn(error -> error instanceof CosmosException && ((CosmosException) error).getStatusCode() == 409, book)
-                .onErrorMap(error -> error instanceof CosmosException && ((CosmosException) error).getStatusCode() != 409, error -> new ServiceException());
+                .onErrorReturn(error -> hasStatus(error, 409), book)
+                .onErrorMap(error -> new ServiceException());
     }
 
+    /**
+     * Upserts the book, or with {@code If-Match} replaces it only while it is still at that version.
+     */
+    @RequestMapping(value = "books", method = RequestMethod.PUT)
+    Mono<ResponseEntity<Book>> upsertBook(@RequestBody Book book, @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        BookOperation operation = ifMatch == null ? BookOperation.UPSERT : BookOperation.REPLACE;
+        Mono<Book> write = ifMatch == null ? bookRepository.upsertBook(book) : bookRepository.replaceBook(book, etag(ifMatch));
+        return write
+                .map(BookController::withEtag)
+                .transform(deadlines.attemptMono(operation))
+                .transform(circuitBreakers.mono(operation))
+                .retryWhen(retryEngine.retry(operation))
+                .transform(deadlines.mono(operation))
+                .doOnError(error -> logger.info("Error encountered", error))
+                .onErrorMap(error -> hasStatus(error, 404), error -> new NotFoundException())
+                .onErrorMap(error -> hasStatus(error, 412), error -> new PreconditionFailedException())
+                .onErrorMap(error -> !(error instanceof NotFoundException || error instanceof PreconditionFailedException), error -> new ServiceException());
+    }
 
+    @RequestMapping(value = "/books/{id}/category/{category}", method = RequestMethod.PATCH)
+    Mono<ResponseEntity<Book>> patchBook(@PathVariable String category, @PathVariable String id, @RequestBody PricePatch patch,
+                                         @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        if (!patch.isValid()) {
+            return Mono.error(new BadRequestException());
+        }
+        return bookRepository
+                .patchPrices(id, category, patch, etag(ifMatch))
+                .map(BookController::withEtag)
+                .transform(deadlines.attemptMono(BookOperation.PATCH))
+                .transform(circuitBreakers.mono(BookOperation.PATCH))
+                .retryWhen(retryEngine.retry(BookOperation.PATCH))
+                .transform(deadlines.mono(BookOperation.PATCH))
+                .doOnError(error -> logger.info("Error encountered", error))
+                .onErrorMap(error -> hasStatus(error, 404), error -> new NotFoundException())
+                .onErrorMap(error -> hasStatus(error, 412), error -> new PreconditionFailedException())
+                .onErrorMap(error -> !(error instanceof NotFoundException || error instanceof PreconditionFailedException), error -> new ServiceException());
+    }
+
+    /**
+     * Reprices books of one category in a single bulk write, answering with one result per book.
+     */
+    @RequestMapping(value = "books/category/{category}", method = RequestMethod.PATCH, consumes = MediaType.APPLICATION_NDJSON_VALUE,
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    Flux<BulkItemResult> patchBooks(@PathVariable String category, @RequestBody Flux<PricePatch> patches) {
+        return patches
+                .collectList()
+                .flatMapMany(list -> {
+                    if (list.isEmpty() || list.stream().anyMatch(patch -> patch.getId() == null || !patch.isValid())) {
+                        return Flux.error(new BadRequestException());
+                    }
+                    return bookRepository
+                            .bulkPatchPrices(category, list)
+                            .transform(circuitBreakers.flux(BookOperation.BULK_PATCH))
+                            .transform(deadlines.flux(BookOperation.BULK_PATCH))
+                            .doOnError(error -> logger.info("Error encountered", error))
+                            .onErrorMap(error -> new ServiceException());
+                });
+    }
+
+    @RequestMapping(value = "books/batch", method = RequestMethod.POST, consumes = MediaType.APPLICATION_NDJSON_VALUE,
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    Flux<BulkItemResult> createBooks(@RequestBody Flux<Book> books) {
+        return bulkIngestService
+                .ingest(books)
+                .doOnError(error -> logger.info("Error encountered", error))
+                .onErrorMap(error -> new ServiceException());
+    }
+
+    private static ResponseEntity<Book> withEtag(Book book) {
+        return book.getEtag() == null ? ResponseEntity.ok(book) : ResponseEntity
+                .ok()
+                .eTag(book.getEtag())
+                .body(book);
+    }
 
+    private static ResponseEntity<byte[]> encoded(ResponseEntity<Book> response) {
+        return ResponseEntity
+                .status(response.getStatusCode())
+                .headers(response.getHeaders())
+                .body(response.getBody() == null ? null : BookCodec.encode(response.getBody()));
+    }
+
+    /**
+     * Returns the etag named by a conditional header, or null for none or {@code *}, which any version matches.
+     */
+    private static String etag(String header) {
+        if (header == null || header.trim().equals("*")) {
+            return null;
+        }
+        String etag = header.trim();
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+
+    private static boolean hasStatus(Throwable error, int statusCode) {
+        return BookStoreException.statusCode(error) == statusCode;
+    }
+
+    private Mono<BookPage> page(int pageSize, String continuationToken, BookOperation operation,
+                                BiFunction<Integer, String, Mono<BookPage>> query) {
+        if (pageSize < 1 || pageSize > maxPageSize) {
+            return Mono.error(new BadRequestException());
+        }
+        String token;
+        try {
+            token = ContinuationTokens.decode(continuationToken);
+        } catch (IllegalArgumentException e) {
+            return Mono.error(new BadRequestException());
+        }
+        return query
+                .apply(pageSize, token)
+                .transform(deadlines.attemptMono(operation))
+                .transform(circuitBreakers.mono(operation))
+                .retryWhen(retryEngine.retry(operation))
+                .transform(deadlines.mono(operation))
+                .map(page -> new BookPage(page.getItems(), ContinuationTokens.encode(page.getContinuationToken())))
+                .doOnError(error -> logger.info("Error encountered", error))
+                .onErrorMap(error -> hasStatus(error, 400), error -> new BadRequestException())
+                .onErrorMap(error -> !(error instanceof BadRequestException), error -> new ServiceException());
+    }
+
+    private Flux<BookProjection> projected(String fields, BookOperation operation,
+                                           Function<Set<BookField>, Flux<BookProjection>> query) {
+        Set<BookField> selected;
+        try {
+            selected = BookField.parse(fields);
+        } catch (IllegalArgumentException e) {
+            return Flux.error(new BadRequestException());
+        }
+        return query
+                .apply(selected)
+                .transform(deadlines.attemptFlux(operation))
+                .transform(circuitBreakers.flux(operation))
+                .retryWhen(retryEngine.retry(operation))
+                .transform(deadlines.flux(operation))
+                .doOnError(error -> logger.info("Error encountered", error))
+                .onErrorMap(error -> new ServiceException());
+    }
+
+    private Flux<Book> stream(int pageSize, BookOperation operation, IntFunction<Flux<Book>> query) {
+        if (pageSize < 1 || pageSize > maxPageSize) {
+            return Flux.error(new BadRequestException());
+        }
+        // books are already on the wire, so a streamed response is never retried nor given a deadline; the timeout bounds the wait for the next page
+        return query
+                .apply(pageSize)
+                .timeout(deadlines.getStreamPageTimeout())
+                .transform(circuitBreakers.flux(operation))
+                .doOnError(error -> logger.info("Error encountered", error))
+                .onErrorMap(error -> new ServiceException());
+    }
 
 }
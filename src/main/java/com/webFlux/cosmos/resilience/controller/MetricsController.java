@@ -0,0 +1,145 @@
+package com.webFlux.cosmos.resilience.controller;
+
+import com.webFlux.cosmos.resilience.cache.BookCache;
+import com.webFlux.cosmos.resilience.cache.CategoryStatsCache;
+import com.webFlux.cosmos.resilience.cosmos.CosmosConnectionProperties;
+import com.webFlux.cosmos.resilience.cosmos.CosmosReadiness;
+import com.webFlux.cosmos.resilience.index.IsbnIndex;
+import com.webFlux.cosmos.resilience.index.SearchIndex;
+import com.webFlux.cosmos.resilience.metrics.LatencyRecorder;
+import com.webFlux.cosmos.resilience.store.WriteBehindBuffer;
+import com.webFlux.cosmos.resilience.util.AdmissionController;
+import com.webFlux.cosmos.resilience.util.CircuitBreakers;
+import com.webFlux.cosmos.resilience.util.Deadlines;
+import com.webFlux.cosmos.resilience.util.HedgedReads;
+import com.webFlux.cosmos.resilience.util.ReadCoalescer;
+import com.webFlux.cosmos.resilience.util.RetryEngine;
+import com.webFlux.cosmos.resilience.view.MaterializedBookView;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+
+@RestController
+public class MetricsController {
+    private final BookCache bookCache;
+    private final LatencyRecorder latencyRecorder;
+    private final IsbnIndex isbnIndex;
+    private final MaterializedBookView bookView;
+    private final HedgedReads hedgedReads;
+    private final RetryEngine retryEngine;
+    private final CircuitBreakers circuitBreakers;
+    private final CosmosReadiness cosmosReadiness;
+    private final ReadCoalescer readCoalescer;
+    private final CategoryStatsCache categoryStatsCache;
+    private final WriteBehindBuffer writeBehindBuffer;
+    private final SearchIndex searchIndex;
+    private final Deadlines deadlines;
+    private final AdmissionController admissionController;
+    private final CosmosConnectionProperties cosmosConnection;
+
+    @Autowired
+    public MetricsController(BookCache bookCache, LatencyRecorder latencyRecorder, IsbnIndex isbnIndex, MaterializedBookView bookView,
+                             HedgedReads hedgedReads, RetryEngine retryEngine, CircuitBreakers circuitBreakers,
+                             CosmosReadiness cosmosReadiness, ReadCoalescer readCoalescer, CategoryStatsCache categoryStatsCache,
+                             WriteBehindBuffer writeBehindBuffer, SearchIndex searchIndex, Deadlines deadlines,
+                             AdmissionController admissionController, CosmosConnectionProperties cosmosConnection) {
+        this.bookCache = bookCache;
+        this.latencyRecorder = latencyRecorder;
+        this.isbnIndex = isbnIndex;
+        this.bookView = bookView;
+        this.hedgedReads = hedgedReads;
+        this.retryEngine = retryEngine;
+        this.circuitBreakers = circuitBreakers;
+        this.cosmosReadiness = cosmosReadiness;
+        this.readCoalescer = readCoalescer;
+        this.categoryStatsCache = categoryStatsCache;
+        this.writeBehindBuffer = writeBehindBuffer;
+        this.searchIndex = searchIndex;
+        this.deadlines = deadlines;
+        this.admissionController = admissionController;
+        this.cosmosConnection = cosmosConnection;
+    }
+
+    @RequestMapping(value = "metrics/cache", method = RequestMethod.GET)
+    Mono<Map<String, Object>> cacheStats() {
+        return Mono.fromSupplier(bookCache::stats);
+    }
+
+    @RequestMapping(value = "metrics/cosmos-connection", method = RequestMethod.GET)
+    Mono<Map<String, Object>> cosmosConnection() {
+        return Mono.fromSupplier(cosmosConnection::report);
+    }
+
+    @RequestMapping(value = "metrics/admission", method = RequestMethod.GET)
+    Mono<Map<String, Object>> admission() {
+        return Mono.fromSupplier(admissionController::stats);
+    }
+
+    @RequestMapping(value = "metrics/deadlines", method = RequestMethod.GET)
+    Mono<Map<String, Object>> deadlines() {
+        return Mono.fromSupplier(deadlines::stats);
+    }
+
+    @RequestMapping(value = "metrics/latency", method = RequestMethod.GET)
+    Mono<Map<String, Object>> latency() {
+        return Mono.fromSupplier(latencyRecorder::snapshot);
+    }
+
+    @RequestMapping(value = "metrics/isbn-index", method = RequestMethod.GET)
+    Mono<Map<String, Object>> isbnIndex() {
+        return Mono.fromSupplier(isbnIndex::stats);
+    }
+
+    @RequestMapping(value = "metrics/search-index", method = RequestMethod.GET)
+    Mono<Map<String, Object>> searchIndex() {
+        return Mono.fromSupplier(searchIndex::stats);
+    }
+
+    @RequestMapping(value = "metrics/view", method = RequestMethod.GET)
+    Mono<Map<String, Object>> view() {
+        return Mono.fromSupplier(bookView::stats);
+    }
+
+    @RequestMapping(value = "metrics/hedge", method = RequestMethod.GET)
+    Mono<Map<String, Object>> hedge() {
+        return Mono.fromSupplier(hedgedReads::stats);
+    }
+
+    @RequestMapping(value = "metrics/retry", method = RequestMethod.GET)
+    Mono<Map<String, Object>> retry() {
+        return Mono.fromSupplier(retryEngine::stats);
+    }
+
+    @RequestMapping(value = "metrics/breakers", method = RequestMethod.GET)
+    Mono<Map<String, Object>> breakers() {
+        return Mono.fromSupplier(circuitBreakers::stats);
+    }
+
+    @RequestMapping(value = "metrics/stats-cache", method = RequestMethod.GET)
+    Mono<Map<String, Object>> statsCache() {
+        return Mono.fromSupplier(categoryStatsCache::stats);
+    }
+
+    @RequestMapping(value = "metrics/coalescing", method = RequestMethod.GET)
+    Mono<Map<String, Object>> coalescing() {
+        return Mono.fromSupplier(readCoalescer::stats);
+    }
+
+    @RequestMapping(value = "metrics/write-behind", method = RequestMethod.GET)
+    Mono<Map<String, Object>> writeBehind() {
+        return Mono.fromSupplier(writeBehindBuffer::stats);
+    }
+
+    @RequestMapping(value = "ready", method = RequestMethod.GET)
+    Mono<ResponseEntity<Map<String, Object>>> ready() {
+        return Mono.fromSupplier(() -> ResponseEntity
+                .status(cosmosReadiness.isReady() ? HttpStatus.OK : HttpStatus.SERVICE_UNAVAILABLE)
+                .body(cosmosReadiness.stats()));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,37 @@
+package com.webFlux.cosmos.resilience.controller;
+
+import com.webFlux.cosmos.resilience.util.Deadlines;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/**
+ * Hands the budget a client asked for in the {@code deadline.clientHeader} header to {@link Deadlines}
+ * through the Reactor context of the request.
+ */
+@Component
+public class RequestTimeoutFilter implements WebFilter {
+
+    private final Deadlines deadlines;
+
+    @Autowired
+    public RequestTimeoutFilter(Deadlines deadlines) {
+        this.deadlines = deadlines;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        Duration budget = deadlines.clientBudget(exchange.getRequest().getHeaders().getFirst(deadlines.getClientHeader()));
+        if (budget == null) {
+            return chain.filter(exchange);
+        }
+        return chain
+                .filter(exchange)
+                .contextWrite(context -> context.put(Deadlines.CLIENT_BUDGET, budget));
+    }
+}
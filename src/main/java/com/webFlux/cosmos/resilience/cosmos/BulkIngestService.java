@@ -0,0 +1,90 @@
+package com.webFlux.cosmos.resilience.cosmos;
+
+import com.webFlux.cosmos.resilience.model.Book;
+import com.webFlux.cosmos.resilience.model.BookRepository;
+import com.webFlux.cosmos.resilience.model.BulkItemResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Streams books into the container through the Cosmos bulk executor.
+ * Incoming books are buffered into windows, grouped by partition key (category) and sent as
+ * per-partition batches with bounded concurrency. Batches are admitted against the request unit budget
+ * by the {@link com.webFlux.cosmos.resilience.util.AdmissionController} as bulk writes; here a 429 only
+ * pushes the next batch out by its retry-after.
+ */
+@Service
+public class BulkIngestService {
+
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+    private final BookRepository bookRepository;
+    private final int batchSize;
+    private final int maxConcurrency;
+    private final AtomicLong nextBatchAtNanos = new AtomicLong(System.nanoTime());
+
+    @Autowired
+    public BulkIngestService(BookRepository bookRepository,
+                             @Value("${bulk.batchSize:100}") final int batchSize,
+                             @Value("${bulk.maxConcurrency:4}") final int maxConcurrency) {
+        this.bookRepository = bookRepository;
+        this.batchSize = batchSize;
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    public Flux<BulkItemResult> ingest(Flux<Book> books) {
+        return books
+                .buffer(batchSize * maxConcurrency)
+                .concatMap(window -> Flux
+                        .fromIterable(partitionBatches(window))
+                        .flatMap(this::execute, maxConcurrency), 1);
+    }
+
+    private Flux<BulkItemResult> execute(List<Book> batch) {
+        return Mono
+                .defer(() -> {
+                    long waitNanos = nextBatchAtNanos.get() - System.nanoTime();
+                    return waitNanos > 0 ? Mono.delay(Duration.ofNanos(waitNanos)).then() : Mono.<Void>empty();
+                })
+                .thenMany(bookRepository.bulkUpsert(batch))
+                .doOnNext(this::backOff);
+    }
+
+    private void backOff(BulkItemResult result) {
+        if (result.getStatusCode() == TOO_MANY_REQUESTS) {
+            long retryAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(result.getRetryAfterMs());
+            nextBatchAtNanos.accumulateAndGet(retryAt, Math::max);
+            logger.info("Bulk ingest throttled for book {}, backing off {} ms", result.getId(), result.getRetryAfterMs());
+        }
+    }
+
+    private List<List<Book>> partitionBatches(List<Book> window) {
+        Map<String, List<Book>> byCategory = new LinkedHashMap<>();
+        for (Book book : window) {
+            byCategory
+                    .computeIfAbsent(book.getCategory(), category -> new ArrayList<>())
+                    .add(book);
+        }
+        List<List<Book>> batches = new ArrayList<>();
+        for (List<Book> partition : byCategory.values()) {
+            for (int from = 0; from < partition.size(); from += batchSize) {
+                batches.add(partition.subList(from, Math.min(from + batchSize, partition.size())));
+            }
+        }
+        return batches;
+    }
+}
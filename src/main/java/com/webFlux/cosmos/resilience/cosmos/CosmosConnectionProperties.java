@@ -0,0 +1,341 @@
+package com.webFlux.cosmos.resilience.cosmos;
+
+import com.azure.cosmos.ConsistencyLevel;
+import com.azure.cosmos.DirectConnectionConfig;
+import com.azure.cosmos.GatewayConnectionConfig;
+import com.azure.cosmos.ThrottlingRetryOptions;
+import com.azure.cosmos.models.ThroughputProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The {@code cosmos.*} settings of the connection layer: direct or gateway mode, the transport of
+ * each, how often the SDK itself retries throttled requests, the consistency level and the
+ * throughput the container is created with. The defaults are those of the SDK, with 400 RU/s of
+ * manual throughput; the {@code latency} and {@code throughput} profiles tune them either way.
+ * {@link #errors()} lists settings Cosmos would reject and {@link #warnings()} those that are
+ * allowed but likely to hurt; both are reported when {@link CosmosDB} starts.
+ */
+@ConfigurationProperties("cosmos")
+public class CosmosConnectionProperties {
+
+    public enum ConnectionMode {
+        DIRECT, GATEWAY
+    }
+
+    public enum ThroughputMode {
+        MANUAL, AUTOSCALE
+    }
+
+    private ConnectionMode connectionMode = ConnectionMode.DIRECT;
+    private ConsistencyLevel consistencyLevel = ConsistencyLevel.SESSION;
+    private final Direct direct = new Direct();
+    private final Gateway gateway = new Gateway();
+    private final Throttling throttling = new Throttling();
+    private final Throughput throughput = new Throughput();
+
+    public ConnectionMode getConnectionMode() {
+        return connectionMode;
+    }
+
+    public void setConnectionMode(ConnectionMode connectionMode) {
+        this.connectionMode = connectionMode;
+    }
+
+    public ConsistencyLevel getConsistencyLevel() {
+        return consistencyLevel;
+    }
+
+    public void setConsistencyLevel(ConsistencyLevel consistencyLevel) {
+        this.consistencyLevel = consistencyLevel;
+    }
+
+    public Direct getDirect() {
+        return direct;
+    }
+
+    public Gateway getGateway() {
+        return gateway;
+    }
+
+    public Throttling getThrottling() {
+        return throttling;
+    }
+
+    public Throughput getThroughput() {
+        return throughput;
+    }
+
+    public DirectConnectionConfig directConnectionConfig() {
+        DirectConnectionConfig config = new DirectConnectionConfig();
+        config.setConnectionEndpointRediscoveryEnabled(direct.endpointRediscoveryEnabled);
+        config.setMaxConnectionsPerEndpoint(direct.maxConnectionsPerEndpoint);
+        config.setMaxRequestsPerConnection(direct.maxRequestsPerConnection);
+        config.setConnectTimeout(Duration.ofMillis(direct.connectTimeoutMs));
+        config.setNetworkRequestTimeout(Duration.ofMillis(direct.networkRequestTimeoutMs));
+        config.setIdleConnectionTimeout(Duration.ofMillis(direct.idleConnectionTimeoutMs));
+        config.setIdleEndpointTimeout(Duration.ofMillis(direct.idleEndpointTimeoutMs));
+        return config;
+    }
+
+    /**
+     * Settings of the gateway connection, which in direct mode still carries the metadata requests.
+     */
+    public GatewayConnectionConfig gatewayConnectionConfig() {
+        GatewayConnectionConfig config = new GatewayConnectionConfig();
+        config.setMaxConnectionPoolSize(gateway.maxConnectionPoolSize);
+        config.setIdleConnectionTimeout(Duration.ofMillis(gateway.idleConnectionTimeoutMs));
+        return config;
+    }
+
+    public ThrottlingRetryOptions throttlingRetryOptions() {
+        ThrottlingRetryOptions options = new ThrottlingRetryOptions();
+        options.setMaxRetryAttemptsOnThrottledRequests(throttling.maxRetryAttempts);
+        options.setMaxRetryWaitTime(Duration.ofMillis(throttling.maxRetryWaitMs));
+        return options;
+    }
+
+    public ThroughputProperties throughputProperties() {
+        return throughput.mode == ThroughputMode.AUTOSCALE
+                ? ThroughputProperties.createAutoscaledThroughput(throughput.ruPerSecond)
+                : ThroughputProperties.createManualThroughput(throughput.ruPerSecond);
+    }
+
+    /**
+     * Settings Cosmos or the SDK would refuse, empty when the configuration is usable.
+     */
+    public List<String> errors() {
+        List<String> errors = new ArrayList<>();
+        if (throughput.mode == ThroughputMode.AUTOSCALE && (throughput.ruPerSecond < 1_000 || throughput.ruPerSecond % 1_000 != 0)) {
+            errors.add("cosmos.throughput.ruPerSecond must be a multiple of 1000 of at least 1000 with autoscale, was " + throughput.ruPerSecond);
+        }
+        if (throughput.mode == ThroughputMode.MANUAL && (throughput.ruPerSecond < 400 || throughput.ruPerSecond % 100 != 0)) {
+            errors.add("cosmos.throughput.ruPerSecond must be a multiple of 100 of at least 400 with manual throughput, was "
+                    + throughput.ruPerSecond);
+        }
+        if (direct.maxConnectionsPerEndpoint < 1) {
+            errors.add("cosmos.direct.maxConnectionsPerEndpoint must be positive, was " + direct.maxConnectionsPerEndpoint);
+        }
+        if (direct.maxRequestsPerConnection < 1) {
+            errors.add("cosmos.direct.maxRequestsPerConnection must be positive, was " + direct.maxRequestsPerConnection);
+        }
+        if (gateway.maxConnectionPoolSize < 1) {
+            errors.add("cosmos.gateway.maxConnectionPoolSize must be positive, was " + gateway.maxConnectionPoolSize);
+        }
+        if (throttling.maxRetryAttempts < 0 || throttling.maxRetryWaitMs < 0) {
+            errors.add("cosmos.throttling.maxRetryAttempts and maxRetryWaitMs must not be negative");
+        }
+        if (direct.connectTimeoutMs <= 0 || direct.networkRequestTimeoutMs <= 0 || direct.idleConnectionTimeoutMs < 0
+                || direct.idleEndpointTimeoutMs <= 0 || gateway.idleConnectionTimeoutMs <= 0) {
+            errors.add("cosmos.direct and cosmos.gateway timeouts must be positive, idleConnectionTimeoutMs may be 0 to keep connections open");
+        }
+        return errors;
+    }
+
+    /**
+     * Settings that work but are likely to cost latency or request units.
+     */
+    public List<String> warnings() {
+        List<String> warnings = new ArrayList<>();
+        if (connectionMode == ConnectionMode.GATEWAY) {
+            warnings.add("gateway mode adds a hop through the gateway to every request, cosmos.direct.* is ignored");
+        }
+        if (consistencyLevel == ConsistencyLevel.STRONG || consistencyLevel == ConsistencyLevel.BOUNDED_STALENESS) {
+            warnings.add(consistencyLevel + " reads are served by two replicas and cost twice the request units");
+        }
+        if (direct.networkRequestTimeoutMs < 5_000 || direct.networkRequestTimeoutMs > 10_000) {
+            warnings.add("cosmos.direct.networkRequestTimeoutMs outside the 5000..10000 ms the SDK supports, was " + direct.networkRequestTimeoutMs);
+        }
+        if (direct.idleConnectionTimeoutMs > 0 && direct.idleConnectionTimeoutMs < 60_000) {
+            warnings.add("cosmos.direct.idleConnectionTimeoutMs below a minute closes connections between bursts, was "
+                    + direct.idleConnectionTimeoutMs);
+        }
+        if (throttling.maxRetryWaitMs > 0 && throttling.maxRetryAttempts == 0) {
+            warnings.add("cosmos.throttling.maxRetryWaitMs has no effect with maxRetryAttempts=0");
+        }
+        return warnings;
+    }
+
+    /**
+     * The effective settings with the warnings about them.
+     */
+    public Map<String, Object> report() {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("connectionMode", connectionMode);
+        report.put("consistencyLevel", consistencyLevel);
+        if (connectionMode == ConnectionMode.DIRECT) {
+            Map<String, Object> values = new LinkedHashMap<>();
+            values.put("maxConnectionsPerEndpoint", direct.maxConnectionsPerEndpoint);
+            values.put("maxRequestsPerConnection", direct.maxRequestsPerConnection);
+            values.put("connectTimeoutMs", direct.connectTimeoutMs);
+            values.put("networkRequestTimeoutMs", direct.networkRequestTimeoutMs);
+            values.put("idleConnectionTimeoutMs", direct.idleConnectionTimeoutMs);
+            values.put("idleEndpointTimeoutMs", direct.idleEndpointTimeoutMs);
+            values.put("endpointRediscoveryEnabled", direct.endpointRediscoveryEnabled);
+            report.put("direct", values);
+        }
+        Map<String, Object> gatewayValues = new LinkedHashMap<>();
+        gatewayValues.put("maxConnectionPoolSize", gateway.maxConnectionPoolSize);
+        gatewayValues.put("idleConnectionTimeoutMs", gateway.idleConnectionTimeoutMs);
+        report.put("gateway", gatewayValues);
+        Map<String, Object> throttlingValues = new LinkedHashMap<>();
+        throttlingValues.put("maxRetryAttempts", throttling.maxRetryAttempts);
+        throttlingValues.put("maxRetryWaitMs", throttling.maxRetryWaitMs);
+        report.put("throttling", throttlingValues);
+        Map<String, Object> throughputValues = new LinkedHashMap<>();
+        throughputValues.put("mode", throughput.mode);
+        throughputValues.put("ruPerSecond", throughput.ruPerSecond);
+        report.put("throughput", throughputValues);
+        report.put("warnings", warnings());
+        return report;
+    }
+
+    public static class Direct {
+        private int maxConnectionsPerEndpoint = 130;
+        private int maxRequestsPerConnection = 30;
+        private long connectTimeoutMs = 5_000;
+        private long networkRequestTimeoutMs = 5_000;
+        private long idleConnectionTimeoutMs = 0;
+        private long idleEndpointTimeoutMs = 3_600_000;
+        private boolean endpointRediscoveryEnabled = true;
+
+        public int getMaxConnectionsPerEndpoint() {
+            return maxConnectionsPerEndpoint;
+        }
+
+        public void setMaxConnectionsPerEndpoint(int maxConnectionsPerEndpoint) {
+            this.maxConnectionsPerEndpoint = maxConnectionsPerEndpoint;
+        }
+
+        /**
+         * How many requests share one connection before another is opened.
+         */
+        public int getMaxRequestsPerConnection() {
+            return maxRequestsPerConnection;
+        }
+
+        public void setMaxRequestsPerConnection(int maxRequestsPerConnection) {
+            this.maxRequestsPerConnection = maxRequestsPerConnection;
+        }
+
+        public long getConnectTimeoutMs() {
+            return connectTimeoutMs;
+        }
+
+        public void setConnectTimeoutMs(long connectTimeoutMs) {
+            this.connectTimeoutMs = connectTimeoutMs;
+        }
+
+        public long getNetworkRequestTimeoutMs() {
+            return networkRequestTimeoutMs;
+        }
+
+        public void setNetworkRequestTimeoutMs(long networkRequestTimeoutMs) {
+            this.networkRequestTimeoutMs = networkRequestTimeoutMs;
+        }
+
+        /**
+         * How long an idle connection stays open, 0 to keep it open.
+         */
+        public long getIdleConnectionTimeoutMs() {
+            return idleConnectionTimeoutMs;
+        }
+
+        public void setIdleConnectionTimeoutMs(long idleConnectionTimeoutMs) {
+            this.idleConnectionTimeoutMs = idleConnectionTimeoutMs;
+        }
+
+        public long getIdleEndpointTimeoutMs() {
+            return idleEndpointTimeoutMs;
+        }
+
+        public void setIdleEndpointTimeoutMs(long idleEndpointTimeoutMs) {
+            this.idleEndpointTimeoutMs = idleEndpointTimeoutMs;
+        }
+
+        public boolean isEndpointRediscoveryEnabled() {
+            return endpointRediscoveryEnabled;
+        }
+
+        public void setEndpointRediscoveryEnabled(boolean endpointRediscoveryEnabled) {
+            this.endpointRediscoveryEnabled = endpointRediscoveryEnabled;
+        }
+    }
+
+    public static class Gateway {
+        private int maxConnectionPoolSize = 1_000;
+        private long idleConnectionTimeoutMs = 60_000;
+
+        public int getMaxConnectionPoolSize() {
+            return maxConnectionPoolSize;
+        }
+
+        public void setMaxConnectionPoolSize(int maxConnectionPoolSize) {
+            this.maxConnectionPoolSize = maxConnectionPoolSize;
+        }
+
+        public long getIdleConnectionTimeoutMs() {
+            return idleConnectionTimeoutMs;
+        }
+
+        public void setIdleConnectionTimeoutMs(long idleConnectionTimeoutMs) {
+            this.idleConnectionTimeoutMs = idleConnectionTimeoutMs;
+        }
+    }
+
+    /**
+     * Retries of throttled requests inside the SDK, before the {@code retry.*} policy sees the 429.
+     */
+    public static class Throttling {
+        private int maxRetryAttempts = 9;
+        private long maxRetryWaitMs = 30_000;
+
+        public int getMaxRetryAttempts() {
+            return maxRetryAttempts;
+        }
+
+        public void setMaxRetryAttempts(int maxRetryAttempts) {
+            this.maxRetryAttempts = maxRetryAttempts;
+        }
+
+        public long getMaxRetryWaitMs() {
+            return maxRetryWaitMs;
+        }
+
+        public void setMaxRetryWaitMs(long maxRetryWaitMs) {
+            this.maxRetryWaitMs = maxRetryWaitMs;
+        }
+    }
+
+    /**
+     * Throughput a new container is created with; an existing container keeps its own.
+     */
+    public static class Throughput {
+        private ThroughputMode mode = ThroughputMode.MANUAL;
+        private int ruPerSecond = 400;
+
+        public ThroughputMode getMode() {
+            return mode;
+        }
+
+        public void setMode(ThroughputMode mode) {
+            this.mode = mode;
+        }
+
+        /**
+         * The provisioned request units per second, or the maximum autoscale may scale up to.
+         */
+        public int getRuPerSecond() {
+            return ruPerSecond;
+        }
+
+        public void setRuPerSecond(int ruPerSecond) {
+            this.ruPerSecond = ruPerSecond;
+        }
+    }
+}
@@ -2,22 +2,36 @@ package com.webFlux.cosmos.resilience.cosmos;
 
 import com.azure.core.http.ProxyOptions;
 import com.azure.cosmos.*;
+import com.azure.cosmos.models.ChangeFeedProcessorOptions;
 import com.azure.cosmos.models.CosmosContainerProperties;
-import com.azure.cosmos.models.ThroughputProperties;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.webFlux.cosmos.resilience.model.Book;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
 
 import java.math.BigDecimal;
 import java.net.InetSocketAddress;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
+/**
+ * Owns the Cosmos clients. Nothing here blocks: building the client (which reads the database account),
+ * creating the database and container and opening connections all run in the background from construction
+ * on, and callers compose on {@link #getContainer()}, which completes once the data path is warm.
+ * Clients and the container are set up from {@link CosmosConnectionProperties}; settings Cosmos would
+ * reject fail construction and the rest are reported once.
+ */
 @Service
 public class CosmosDB {
 
@@ -28,64 +42,175 @@ public class CosmosDB {
     private String databaseName;
     private String containerName;
     private List<String> locations;
-    private CosmosAsyncClient client;
-    private CosmosAsyncDatabase database;
-    private CosmosAsyncContainer container;
+    private boolean hedgeEnabled;
+    private final CosmosConnectionProperties connection;
+    private final Function<List<String>, CosmosAsyncClient> clientFactory;
+    private final long createdAtNanos = System.nanoTime();
+    private volatile CosmosAsyncClient client;
+    private volatile CosmosAsyncDatabase database;
+    private volatile CosmosAsyncClient hedgeClient;
+    private volatile long warmAfterMs = -1;
+    private final Mono<CosmosAsyncContainer> container;
+    private final Mono<CosmosAsyncContainer> hedgeContainer;
 
+    @Autowired
     public CosmosDB(@Value("${database.endpoint}") final String endpoint, @Value("${database.key}") final String key,
                     @Value("${database.databaseName}") final String databaseName, @Value("${database.containerName.book}") final String containerName,
-                    @Value("#{'${database.locations}'.split(',')}") final List<String> locations) {
+                    @Value("#{'${database.locations}'.split(',')}") final List<String> locations,
+                    @Value("${hedge.enabled:false}") final boolean hedgeEnabled, final CosmosConnectionProperties connection) {
+        this(endpoint, key, databaseName, containerName, locations, hedgeEnabled, connection, null);
+    }
+
+    CosmosDB(String endpoint, String key, String databaseName, String containerName, List<String> locations, boolean hedgeEnabled,
+             CosmosConnectionProperties connection, Function<List<String>, CosmosAsyncClient> clientFactory) {
+        List<String> errors = connection.errors();
+        if (!errors.isEmpty()) {
+            throw new IllegalStateException("Invalid Cosmos connection settings: " + String.join("; ", errors));
+        }
+        logger.info("Cosmos connection settings {}", connection.report());
+        connection.warnings().forEach(warning -> logger.warn("Cosmos connection settings: {}", warning));
         this.endpoint = endpoint;
         this.key = key;
         this.databaseName = databaseName;
         this.containerName = containerName;
         this.locations = locations;
-        cosmosSetup();
+        this.hedgeEnabled = hedgeEnabled;
+        this.connection = connection;
+        this.clientFactory = clientFactory != null ? clientFactory : this::buildClient;
+        this.container = cosmosSetup();
+        this.hedgeContainer = hedgeSetup();
+        container.subscribe(ready -> {
+        }, error -> logger.error("Cosmos setup failed", error));
+        hedgeContainer.subscribe(ready -> {
+        }, error -> logger.error("Cosmos hedge setup failed", error));
     }
 
 
-    private void cosmosSetup() {
+    private Mono<CosmosAsyncContainer> cosmosSetup() {
         CosmosContainerProperties containerProperties = new CosmosContainerProperties(containerName, "/category");
-        buildAndGetClient()
-                .createDatabaseIfNotExists(databaseName)
-                .flatMap(databaseResponse -> {
-
-                    database = client.getDatabase(databaseResponse
-                            .getProperties()
-                            .getId());
-                    return database
-                            .createContainerIfNotExists(containerProperties, ThroughputProperties.createManualThroughput(400));
+        // a retry after the client was built only repeats the calls that failed, not the account read
+        return Mono
+                .defer(() -> client != null ? Mono.just(client) : Mono
+                        .fromCallable(() -> {
+                            client = clientFactory.apply(locations);
+                            return client;
+                        })
+                        .subscribeOn(Schedulers.boundedElastic()))
+                .flatMap(cosmosClient -> cosmosClient
+                        .createDatabaseIfNotExists(databaseName)
+                        .then(Mono.defer(() -> {
+                            database = cosmosClient.getDatabase(databaseName);
+                            return database.createContainerIfNotExists(containerProperties, connection.throughputProperties());
+                        }))
+                        .then(Mono.fromSupplier(() -> database.getContainer(containerName))))
+                .flatMap(this::warmUp)
+                .retryWhen(Retry
+                        .backoff(Long.MAX_VALUE, Duration.ofSeconds(1))
+                        .maxBackoff(Duration.ofSeconds(30))
+                        .doBeforeRetry(retrySignal -> logger.info("{} re-try attempt of the Cosmos setup after the error {} ",
+                                retrySignal.totalRetries() + 1, retrySignal
+                                        .failure()
+                                        .toString())))
+                .doOnNext(ready -> {
+                    warmAfterMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - createdAtNanos);
+                    logger.info("Cosmos data path warm after {} ms", warmAfterMs);
                 })
-                .flatMap(containerResponse -> {
-                    container = database.getContainer(containerResponse
-                            .getProperties()
-                            .getId());
-                    return Mono.empty();
+                .cache();
+    }
+
+
+    /**
+     * Hedged reads go through a second client whose preferred regions are rotated by one, so the
+     * speculative attempt lands in the next region. With a single region it is a plain duplicate.
+     */
+    private Mono<CosmosAsyncContainer> hedgeSetup() {
+        if (!hedgeEnabled || locations.size() < 2) {
+            return container;
+        }
+        List<String> rotated = new ArrayList<>(locations.subList(1, locations.size()));
+        rotated.add(locations.get(0));
+        return container
+                .then(Mono
+                        .fromCallable(() -> {
+                            hedgeClient = clientFactory.apply(rotated);
+                            return hedgeClient
+                                    .getDatabase(databaseName)
+                                    .getContainer(containerName);
+                        })
+                        .subscribeOn(Schedulers.boundedElastic()))
+                .flatMap(this::warmUp)
+                .onErrorResume(error -> {
+                    logger.info("Hedge client could not be built, hedges go to the primary client", error);
+                    return container;
                 })
-                .block();
+                .cache();
+    }
+
+    private Mono<CosmosAsyncContainer> warmUp(CosmosAsyncContainer cosmosAsyncContainer) {
+        if (connection.getConnectionMode() == CosmosConnectionProperties.ConnectionMode.GATEWAY) {
+            return Mono.just(cosmosAsyncContainer);
+        }
+        // opens the direct connections and fills the address and partition caches before the first request needs them
+        return cosmosAsyncContainer
+                .openConnectionsAndInitCaches()
+                .thenReturn(cosmosAsyncContainer);
     }
 
 
-    private CosmosAsyncClient buildAndGetClient() {
-        DirectConnectionConfig directConnectionConfig = new DirectConnectionConfig();
-        directConnectionConfig.setConnectionEndpointRediscoveryEnabled(true);
-        if (client == null) {
-            logger.info(endpoint);
-            client = new CosmosClientBuilder()
-                    .endpoint(endpoint)
-                    .key(key)
-                    .userAgentSuffix("WebFluxCosmos")
-                    .preferredRegions(locations)
-                    .consistencyLevel(ConsistencyLevel.SESSION)
-                    .directMode()
-                    .buildAsyncClient();
-            return client;
+    private CosmosAsyncClient buildClient(List<String> preferredRegions) {
+        logger.info(endpoint);
+        CosmosClientBuilder builder = new CosmosClientBuilder()
+                .endpoint(endpoint)
+                .key(key)
+                .userAgentSuffix(preferredRegions == locations ? "WebFluxCosmos" : "WebFluxCosmos-hedge")
+                .preferredRegions(preferredRegions)
+                .consistencyLevel(connection.getConsistencyLevel())
+                .throttlingRetryOptions(connection.throttlingRetryOptions());
+        if (connection.getConnectionMode() == CosmosConnectionProperties.ConnectionMode.GATEWAY) {
+            builder.gatewayMode(connection.gatewayConnectionConfig());
+        } else {
+            builder.directMode(connection.directConnectionConfig(), connection.gatewayConnectionConfig());
         }
-        return client;
+        return builder.buildAsyncClient();
     }
 
-    public CosmosAsyncContainer getContainer() {
+    public Mono<CosmosAsyncContainer> getContainer() {
         return container;
     }
 
+    public Mono<CosmosAsyncContainer> getHedgeContainer() {
+        return hedgeContainer;
+    }
+
+    public boolean isWarm() {
+        return warmAfterMs >= 0;
+    }
+
+    /**
+     * Milliseconds from construction until the data path was warm, or -1 while it is not.
+     */
+    public long getWarmAfterMs() {
+        return warmAfterMs;
+    }
+
+    public Mono<ChangeFeedProcessor> buildChangeFeedProcessor(String hostName, String leaseContainerName, String leasePrefix,
+                                                              Consumer<List<JsonNode>> handler) {
+        return container.flatMap(feedContainer -> database
+                .createContainerIfNotExists(new CosmosContainerProperties(leaseContainerName, "/id"))
+                .map(containerResponse -> {
+                    ChangeFeedProcessorOptions options = new ChangeFeedProcessorOptions();
+                    options.setLeasePrefix(leasePrefix);
+                    options.setStartFromBeginning(true);
+                    return new ChangeFeedProcessorBuilder()
+                            .hostName(hostName)
+                            .feedContainer(feedContainer)
+                            .leaseContainer(database.getContainer(containerResponse
+                                    .getProperties()
+                                    .getId()))
+                            .options(options)
+                            .handleChanges(handler)
+                            .buildChangeFeedProcessor();
+                }));
+    }
+
 }
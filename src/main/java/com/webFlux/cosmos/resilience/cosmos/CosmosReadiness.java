@@ -0,0 +1,61 @@
+package com.webFlux.cosmos.resilience.cosmos;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Holds the application's readiness back until the Cosmos data path is warm. Spring Boot declares
+ * the application ready as soon as the context has started, which no longer waits for Cosmos, so that
+ * signal is answered with {@link ReadinessState#REFUSING_TRAFFIC} and re-published once the container
+ * has connected and filled its caches. With the in-memory backend there is nothing to wait for.
+ */
+@Component
+public class CosmosReadiness {
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+    private final CosmosDB cosmosDB;
+    private final ApplicationEventPublisher publisher;
+    private final boolean cosmosBackend;
+
+    @Autowired
+    public CosmosReadiness(CosmosDB cosmosDB, ApplicationEventPublisher publisher, @Value("${store.backend:cosmos}") final String backend) {
+        this.cosmosDB = cosmosDB;
+        this.publisher = publisher;
+        this.cosmosBackend = "cosmos".equals(backend);
+    }
+
+    @EventListener
+    public void onReadinessChange(AvailabilityChangeEvent<ReadinessState> event) {
+        if (event.getState() != ReadinessState.ACCEPTING_TRAFFIC || isReady()) {
+            return;
+        }
+        AvailabilityChangeEvent.publish(publisher, this, ReadinessState.REFUSING_TRAFFIC);
+        Mono
+                .defer(cosmosDB::getContainer)
+                .subscribe(container -> AvailabilityChangeEvent.publish(publisher, this, ReadinessState.ACCEPTING_TRAFFIC),
+                        error -> logger.error("Cosmos data path did not warm up, staying out of traffic", error));
+    }
+
+    public boolean isReady() {
+        return !cosmosBackend || cosmosDB.isWarm();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("ready", isReady());
+        stats.put("backend", cosmosBackend ? "cosmos" : "memory");
+        stats.put("warmAfterMs", cosmosDB.getWarmAfterMs());
+        return stats;
+    }
+}
@@ -1,14 +1,15 @@
 package com.webFlux.cosmos.resilience.cosmos;
 
 import com.webFlux.cosmos.resilience.model.Book;
-import com.webFlux.cosmos.resilience.model.BookRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
 import reactor.core.publisher.Flux;
 
-import javax.annotation.PostConstruct;
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.List;
@@ -17,14 +18,24 @@ import java.util.List;
 public class DataLoader {
 
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
-    private final BookRepository bookRepository;
+    private final BulkIngestService bulkIngestService;
+    private final boolean enabled;
 
     @Autowired
-    public DataLoader(BookRepository bookRepository) {
-        this.bookRepository = bookRepository;
+    public DataLoader(BulkIngestService bulkIngestService, @Value("${dataloader.enabled:true}") final boolean enabled) {
+        this.bulkIngestService = bulkIngestService;
+        this.enabled = enabled;
     }
-    @PostConstruct
+
+    /**
+     * Seeds the sample books once the application is up. The ingest waits on the container in the
+     * background, so neither startup nor the first requests wait on it.
+     */
+    @EventListener(ApplicationReadyEvent.class)
     public void loadBookss() {
+        if (!enabled) {
+            return;
+        }
         List<Book> books = new ArrayList<Book>();
         books.add(new Book("1", "Databases", "99847", "Seven Databases in Seven Weeks", "Luc Perkins", "A Guide to Modern Databases and the NoSQL Movement", new BigDecimal(47.00), new BigDecimal(43.00), "https://mtchouimages.blob.core.windows.net/books/SevenDatabasesInSevenWeeks.jpg"));
         books.add(new Book("2", "Programming Languages", "88297", "The Rust Programming Language", "Steve Klabnik", "The official book on the Rust programming language", new BigDecimal(55.00), new BigDecimal(49.00), "https://mtchouimages.blob.core.windows.net/books/RustProgrammingLanguage.jpg"));
@@ -62,10 +73,11 @@ public class DataLoader {
         books.add(new Book("34", "Programming Algorithms", "77147", "Programming Ruby 1.9 & 2.0", "Dave Thomas", "The Pragmatic Programmers' Guide (The Facets of Ruby) 4th Edition", new BigDecimal(30.00), new BigDecimal(18.00), "https://mtchouimages.blob.core.windows.net/books/ProgrammingInRuby.jpg"));
         books.add(new Book("35", "Messaging Systems", "79847", "RabbitMQ Cookbook", "Sigismondo Boschi", "Over 70 practical recipes to help you build messaging applications", new BigDecimal(44.00), new BigDecimal(39.00), "https://mtchouimages.blob.core.windows.net/books/rabbitMQCookBook.jpg"));
         books.add(new Book("36", "Containers", "01234", "Getting Started with kubernetes", "Jonathan Baier", "Learn Kubernetes the right way", new BigDecimal(40.00), new BigDecimal(30.00), "https://mtchouimages.blob.core.windows.net/books/Kubernetes.jpg"));
-        Flux
-                .fromIterable(books)
-                .flatMap(this.bookRepository::upsertBook)
-                .blockLast();
+        bulkIngestService
+                .ingest(Flux.fromIterable(books))
+                .filter(result -> !result.isSuccess())
+                .subscribe(result -> logger.info("Failed to load book {}", result), error -> logger.error("Loading books failed", error),
+                        () -> logger.info("Finished loading {} books", books.size()));
     }
 
 }
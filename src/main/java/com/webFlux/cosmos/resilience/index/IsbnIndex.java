@@ -0,0 +1,122 @@
+package com.webFlux.cosmos.resilience.index;
+
+import com.webFlux.cosmos.resilience.model.Book;
+import com.webFlux.cosmos.resilience.model.BookKey;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process lookup from isbn to the (id, category) of every book carrying it, so an isbn lookup
+ * becomes point reads instead of a cross-partition query. Writes keep it in sync; entries that
+ * turn out to be stale are repaired by the reader. A hit is taken as every book with the isbn, so
+ * lookups are only answered once a rebuild from the store has succeeded; before that, or after a
+ * failed rebuild, the caller queries. This assumes a single writer: books written by another
+ * instance are missing from the index until its next rebuild.
+ */
+@Component
+public class IsbnIndex {
+
+    private final ConcurrentHashMap<String, Set<BookKey>> keysByIsbn = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<BookKey, String> isbnByKey = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder repairs = new LongAdder();
+    private volatile long lastRebuildSize = -1;
+
+    /**
+     * Returns the keys of every book with the isbn, or null when the index cannot tell.
+     */
+    public Set<BookKey> lookup(String isbn) {
+        Set<BookKey> keys = lastRebuildSize < 0 ? null : keysByIsbn.get(isbn);
+        if (keys == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return keys;
+    }
+
+    public void put(Book book) {
+        if (book.getIsbn() == null || book.getId() == null || book.getCategory() == null) {
+            return;
+        }
+        BookKey key = BookKey.of(book);
+        String isbn = book.getIsbn();
+        isbnByKey.compute(key, (k, previous) -> {
+            if (previous != null && !previous.equals(isbn)) {
+                unlink(previous, k);
+            }
+            link(isbn, k);
+            return isbn;
+        });
+    }
+
+    public void remove(BookKey key) {
+        isbnByKey.computeIfPresent(key, (k, isbn) -> {
+            unlink(isbn, k);
+            return null;
+        });
+    }
+
+    public void repair(BookKey key, Book current) {
+        repairs.increment();
+        if (current == null) {
+            remove(key);
+        } else {
+            put(current);
+        }
+    }
+
+    /**
+     * Records the outcome of a rebuild: the number of books scanned, or -1 when it failed.
+     */
+    public void rebuilt(long size) {
+        lastRebuildSize = size;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("isbns", keysByIsbn.mappingCount());
+        stats.put("books", isbnByKey.mappingCount());
+        stats.put("hits", hits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("repairs", repairs.sum());
+        stats.put("lastRebuildSize", lastRebuildSize);
+        return stats;
+    }
+
+    private void link(String isbn, BookKey key) {
+        keysByIsbn.compute(isbn, (i, keys) -> {
+            if (keys == null) {
+                return Collections.singleton(key);
+            }
+            if (keys.contains(key)) {
+                return keys;
+            }
+            Set<BookKey> updated = new HashSet<>(keys);
+            updated.add(key);
+            return Collections.unmodifiableSet(updated);
+        });
+    }
+
+    private void unlink(String isbn, BookKey key) {
+        keysByIsbn.computeIfPresent(isbn, (i, keys) -> {
+            if (!keys.contains(key)) {
+                return keys;
+            }
+            if (keys.size() == 1) {
+                return null;
+            }
+            Set<BookKey> updated = new HashSet<>(keys);
+            updated.remove(key);
+            return Collections.unmodifiableSet(updated);
+        });
+    }
+}
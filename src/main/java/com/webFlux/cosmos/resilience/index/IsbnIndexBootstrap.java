@@ -0,0 +1,35 @@
+package com.webFlux.cosmos.resilience.index;
+
+import com.webFlux.cosmos.resilience.model.BookRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+@Component
+public class IsbnIndexBootstrap {
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+    private final BookRepository bookRepository;
+    private final boolean rebuildOnStartup;
+
+    @Autowired
+    public IsbnIndexBootstrap(BookRepository bookRepository, @Value("${isbn.index.rebuildOnStartup:true}") final boolean rebuildOnStartup) {
+        this.bookRepository = bookRepository;
+        this.rebuildOnStartup = rebuildOnStartup;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        if (!rebuildOnStartup) {
+            return;
+        }
+        bookRepository
+                .rebuildIsbnIndex()
+                .subscribe(count -> logger.info("Isbn index rebuilt from {} books", count),
+                        error -> logger.error("Isbn index rebuild failed, isbn lookups fall back to queries", error));
+    }
+}
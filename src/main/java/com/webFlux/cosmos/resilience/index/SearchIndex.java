@@ -0,0 +1,318 @@
+package com.webFlux.cosmos.resilience.index;
+
+import com.webFlux.cosmos.resilience.model.Book;
+import com.webFlux.cosmos.resilience.model.BookKey;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-process inverted index over the title, author and description of every book, so a keyword
+ * search does not scan the container. Each term keeps its postings as two sorted primitive arrays,
+ * document numbers and weights, where a title occurrence weighs more than an author one and an
+ * author one more than a description one. Every query term matches the indexed terms it is a prefix
+ * of, an exact match scoring higher, and a book has to match all of them; books rank by summed
+ * weight times inverse document frequency. Writes keep it in sync; a removed book is only dropped
+ * once a reader finds it gone.
+ */
+@Component
+public class SearchIndex {
+
+    private static final int TITLE_WEIGHT = 3;
+    private static final int AUTHOR_WEIGHT = 2;
+    private static final int DESCRIPTION_WEIGHT = 1;
+    private static final float PREFIX_MATCH_FACTOR = 0.5f;
+    private static final int MIN_TERM_LENGTH = 2;
+
+    private final boolean enabled;
+    private final int maxPrefixExpansions;
+
+    // searches share the read lock; writes, which mutate postings in place, take the write lock
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TreeMap<String, Postings> postingsByTerm = new TreeMap<>();
+    private final Map<BookKey, Integer> docByKey = new HashMap<>();
+    private final List<BookKey> keyByDoc = new ArrayList<>();
+    private final List<String[]> termsByDoc = new ArrayList<>();
+    private int liveDocs;
+
+    private final LongAdder searches = new LongAdder();
+    private final LongAdder indexed = new LongAdder();
+    private volatile boolean rebuilding;
+    private volatile long lastRebuildSize = -1;
+
+    @Autowired
+    public SearchIndex(@Value("${search.enabled:true}") final boolean enabled,
+                       @Value("${search.maxPrefixExpansions:64}") final int maxPrefixExpansions) {
+        this.enabled = enabled;
+        this.maxPrefixExpansions = Math.max(1, maxPrefixExpansions);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void put(Book book) {
+        putAll(List.of(book));
+    }
+
+    /**
+     * Indexes the books under one write lock, replacing what was indexed for each of them.
+     */
+    public void putAll(Collection<Book> books) {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            for (Book book : books) {
+                if (book.getId() != null && book.getCategory() != null) {
+                    index(book);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(BookKey key) {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            Integer doc = docByKey.remove(key);
+            if (doc != null) {
+                unlink(doc);
+                keyByDoc.set(doc, null);
+                liveDocs--;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the keys of the best matching books, best first, at most {@code limit} of them.
+     */
+    public List<BookKey> search(String query, int limit) {
+        searches.increment();
+        Set<String> queryTerms = new LinkedHashSet<>(tokenize(query));
+        if (!enabled || queryTerms.isEmpty() || limit < 1) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            Map<Integer, Float> scores = null;
+            for (String queryTerm : queryTerms) {
+                Map<Integer, Float> termScores = score(queryTerm);
+                scores = scores == null ? termScores : intersect(scores, termScores);
+                if (scores.isEmpty()) {
+                    return List.of();
+                }
+            }
+            return top(scores, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void rebuilding() {
+        rebuilding = true;
+    }
+
+    public void rebuilt(long size) {
+        lastRebuildSize = size;
+        rebuilding = false;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        lock.readLock().lock();
+        try {
+            stats.put("enabled", enabled);
+            stats.put("books", liveDocs);
+            stats.put("terms", postingsByTerm.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+        stats.put("indexed", indexed.sum());
+        stats.put("searches", searches.sum());
+        stats.put("rebuilding", rebuilding);
+        stats.put("lastRebuildSize", lastRebuildSize);
+        return stats;
+    }
+
+    private void index(Book book) {
+        BookKey key = BookKey.of(book);
+        Integer existing = docByKey.get(key);
+        int doc;
+        if (existing != null) {
+            doc = existing;
+            unlink(doc);
+        } else {
+            doc = keyByDoc.size();
+            docByKey.put(key, doc);
+            keyByDoc.add(key);
+            termsByDoc.add(null);
+            liveDocs++;
+        }
+        Map<String, Integer> weights = new HashMap<>();
+        addTerms(weights, book.getTitle(), TITLE_WEIGHT);
+        addTerms(weights, book.getAuthor(), AUTHOR_WEIGHT);
+        addTerms(weights, book.getDescription(), DESCRIPTION_WEIGHT);
+        String[] terms = weights.keySet().toArray(new String[0]);
+        for (String term : terms) {
+            postingsByTerm.computeIfAbsent(term, ignored -> new Postings()).add(doc, weights.get(term));
+        }
+        termsByDoc.set(doc, terms);
+        indexed.increment();
+    }
+
+    private void unlink(int doc) {
+        String[] terms = termsByDoc.get(doc);
+        if (terms == null) {
+            return;
+        }
+        for (String term : terms) {
+            Postings postings = postingsByTerm.get(term);
+            if (postings != null && postings.remove(doc) && postings.size == 0) {
+                postingsByTerm.remove(term);
+            }
+        }
+        termsByDoc.set(doc, null);
+    }
+
+    private Map<Integer, Float> score(String queryTerm) {
+        Map<Integer, Float> scores = new HashMap<>();
+        int expansions = 0;
+        for (Map.Entry<String, Postings> entry : postingsByTerm.tailMap(queryTerm, true).entrySet()) {
+            String term = entry.getKey();
+            if (!term.startsWith(queryTerm) || expansions++ == maxPrefixExpansions) {
+                break;
+            }
+            Postings postings = entry.getValue();
+            float idf = (float) Math.log(1.0 + (double) liveDocs / postings.size);
+            float factor = term.length() == queryTerm.length() ? idf : idf * PREFIX_MATCH_FACTOR;
+            for (int i = 0; i < postings.size; i++) {
+                // a book matching several expansions counts its best one
+                scores.merge(postings.docs[i], postings.weights[i] * factor, Math::max);
+            }
+        }
+        return scores;
+    }
+
+    private static Map<Integer, Float> intersect(Map<Integer, Float> scores, Map<Integer, Float> termScores) {
+        Map<Integer, Float> smaller = scores.size() <= termScores.size() ? scores : termScores;
+        Map<Integer, Float> larger = smaller == scores ? termScores : scores;
+        Map<Integer, Float> both = new HashMap<>();
+        smaller.forEach((doc, score) -> {
+            Float other = larger.get(doc);
+            if (other != null) {
+                both.put(doc, score + other);
+            }
+        });
+        return both;
+    }
+
+    private List<BookKey> top(Map<Integer, Float> scores, int limit) {
+        PriorityQueue<Map.Entry<Integer, Float>> best = new PriorityQueue<>(limit + 1, SearchIndex::compare);
+        for (Map.Entry<Integer, Float> entry : scores.entrySet()) {
+            best.add(entry);
+            if (best.size() > limit) {
+                best.poll();
+            }
+        }
+        BookKey[] keys = new BookKey[best.size()];
+        for (int i = keys.length - 1; i >= 0; i--) {
+            keys[i] = keyByDoc.get(best.poll().getKey());
+        }
+        return Arrays.asList(keys);
+    }
+
+    // worst first: lower score, then the later document
+    private static int compare(Map.Entry<Integer, Float> left, Map.Entry<Integer, Float> right) {
+        int byScore = Float.compare(left.getValue(), right.getValue());
+        return byScore != 0 ? byScore : Integer.compare(right.getKey(), left.getKey());
+    }
+
+    private static void addTerms(Map<String, Integer> weights, String text, int weight) {
+        for (String term : tokenize(text)) {
+            weights.merge(term, weight, Integer::sum);
+        }
+    }
+
+    static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null) {
+            return terms;
+        }
+        String lower = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            boolean wordChar = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                if (i - start >= MIN_TERM_LENGTH) {
+                    terms.add(lower.substring(start, i));
+                }
+                start = -1;
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * Documents holding a term, ascending, with the weight of the term in each. Documents are
+     * numbered in the order they were first indexed, so most additions append.
+     */
+    private static final class Postings {
+        private int[] docs = new int[2];
+        private int[] weights = new int[2];
+        private int size;
+
+        private void add(int doc, int weight) {
+            int at = Arrays.binarySearch(docs, 0, size, doc);
+            if (at >= 0) {
+                weights[at] = weight;
+                return;
+            }
+            at = -at - 1;
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                weights = Arrays.copyOf(weights, size * 2);
+            }
+            System.arraycopy(docs, at, docs, at + 1, size - at);
+            System.arraycopy(weights, at, weights, at + 1, size - at);
+            docs[at] = doc;
+            weights[at] = weight;
+            size++;
+        }
+
+        private boolean remove(int doc) {
+            int at = Arrays.binarySearch(docs, 0, size, doc);
+            if (at < 0) {
+                return false;
+            }
+            System.arraycopy(docs, at + 1, docs, at, size - at - 1);
+            System.arraycopy(weights, at + 1, weights, at, size - at - 1);
+            size--;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.webFlux.cosmos.resilience.index;
+
+import com.webFlux.cosmos.resilience.model.BookRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Fills the {@link SearchIndex} from a streamed scan once the application is ready. The scan runs in
+ * the background, so readiness does not wait for it; searches meanwhile see the books indexed so far.
+ */
+@Component
+public class SearchIndexBootstrap {
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+    private final BookRepository bookRepository;
+    private final SearchIndex searchIndex;
+    private final boolean rebuildOnStartup;
+
+    @Autowired
+    public SearchIndexBootstrap(BookRepository bookRepository, SearchIndex searchIndex,
+                                @Value("${search.rebuildOnStartup:true}") final boolean rebuildOnStartup) {
+        this.bookRepository = bookRepository;
+        this.searchIndex = searchIndex;
+        this.rebuildOnStartup = rebuildOnStartup;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        if (!rebuildOnStartup || !searchIndex.isEnabled()) {
+            return;
+        }
+        bookRepository
+                .rebuildSearchIndex()
+                .subscribe(count -> logger.info("Search index rebuilt from {} books", count),
+                        error -> logger.error("Search index rebuild failed, searches only find books written since startup", error));
+    }
+}
@@ -0,0 +1,39 @@
+package com.webFlux.cosmos.resilience.metrics;
+
+public enum BookOperation {
+
+    POINT_READ("pointRead", 75, 500),
+    READ_MANY("readMany", 100, 1000),
+    CATEGORY_QUERY("categoryQuery", 100, 5000),
+    ISBN_QUERY("isbnQuery", 300, 5000),
+    SCAN("scan", 500, 2000),
+    STATS("stats", 500, 5000),
+    CREATE("create", 300, 500),
+    UPSERT("upsert", 1300, 2000),
+    REPLACE("replace", 300, 1000),
+    PATCH("patch", 300, 1000),
+    BULK_UPSERT("bulkUpsert", 5000, 30000),
+    BULK_PATCH("bulkPatch", 5000, 30000);
+
+    private final String key;
+    private final long defaultThresholdMs;
+    private final long defaultBudgetMs;
+
+    BookOperation(String key, long defaultThresholdMs, long defaultBudgetMs) {
+        this.key = key;
+        this.defaultThresholdMs = defaultThresholdMs;
+        this.defaultBudgetMs = defaultBudgetMs;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public long getDefaultThresholdMs() {
+        return defaultThresholdMs;
+    }
+
+    public long getDefaultBudgetMs() {
+        return defaultBudgetMs;
+    }
+}
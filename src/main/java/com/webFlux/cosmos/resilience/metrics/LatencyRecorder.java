@@ -0,0 +1,250 @@
+package com.webFlux.cosmos.resilience.metrics;
+
+import com.azure.cosmos.CosmosDiagnostics;
+import com.azure.cosmos.CosmosException;
+import com.azure.cosmos.models.CosmosItemResponse;
+import com.azure.cosmos.models.FeedResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records per-operation latency into {@link LatencyHistogram}s and counts threshold breaches. Cosmos
+ * diagnostics are only rendered and logged when a single Cosmos call breaches its threshold, configured
+ * per operation through {@code diagnostics.thresholdMs.<operation>}. The request charge of every Cosmos
+ * response is added up per operation, with a moving average of the charge of one response. Besides the
+ * histograms since startup, the latencies of the last {@code latency.windowMs} are kept for decisions
+ * that have to follow latency as it moves. Store calls and request attempts are kept apart: an attempt
+ * of {@code /books/stats} or of a whole scan spans many store calls, each recorded under the same operation.
+ */
+@Component
+public class LatencyRecorder {
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private static final double CHARGE_SMOOTHING = 0.1;
+    private static final int WINDOW_SLICES = 6;
+
+    private final EnumMap<BookOperation, OperationStats> stats = new EnumMap<>(BookOperation.class);
+    private final DoubleAdder totalRequestCharge = new DoubleAdder();
+
+    @Autowired
+    public LatencyRecorder(Environment environment) {
+        Duration window = Duration.ofMillis(environment.getProperty("latency.windowMs", Long.class, 60_000L));
+        for (BookOperation operation : BookOperation.values()) {
+            long thresholdMs = environment.getProperty("diagnostics.thresholdMs." + operation.getKey(), Long.class,
+                    operation.getDefaultThresholdMs());
+            stats.put(operation, new OperationStats(thresholdMs, window));
+        }
+    }
+
+    public <T> Mono<T> recordMono(BookOperation operation, Mono<T> source) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return source
+                    .doOnSuccess(value -> record(operation, System.nanoTime() - start))
+                    .doOnError(error -> record(operation, System.nanoTime() - start));
+        });
+    }
+
+    public <T> Flux<T> recordFlux(BookOperation operation, Flux<T> source) {
+        return Flux.defer(() -> {
+            long start = System.nanoTime();
+            // paged callers cancel once they have the page they need
+            return source.doFinally(signal -> record(operation, System.nanoTime() - start));
+        });
+    }
+
+    public void record(BookOperation operation, long elapsedNanos) {
+        OperationStats operationStats = stats.get(operation);
+        operationStats.histogram.recordNanos(elapsedNanos);
+        operationStats.recent.recordNanos(elapsedNanos);
+        if (elapsedNanos > operationStats.thresholdNanos) {
+            operationStats.breaches.increment();
+        } else if (logger.isDebugEnabled()) {
+            logger.debug("{} latency was {} ms", operation.getKey(), TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+        }
+    }
+
+    /**
+     * Records one attempt of a request, first try or retry, as a whole; see {@link #recentAttemptHistogram}.
+     */
+    public void recordAttempt(BookOperation operation, long elapsedNanos) {
+        stats.get(operation).recentAttempts.recordNanos(elapsedNanos);
+    }
+
+    /**
+     * Adds the request charge of one Cosmos response, or of one item of a bulk response.
+     */
+    public void recordCharge(BookOperation operation, double requestCharge) {
+        if (!(requestCharge > 0)) {
+            return;
+        }
+        OperationStats operationStats = stats.get(operation);
+        operationStats.requestCharge.add(requestCharge);
+        double mean = operationStats.meanCharge;
+        // racing updates may drop a sample, which an average over many responses does not notice
+        operationStats.meanCharge = Double.isNaN(mean) ? requestCharge : mean + CHARGE_SMOOTHING * (requestCharge - mean);
+        totalRequestCharge.add(requestCharge);
+    }
+
+    /**
+     * Returns the moving average charge of one response of the operation, or NaN before the first one.
+     */
+    public double meanCharge(BookOperation operation) {
+        return stats.get(operation).meanCharge;
+    }
+
+    public double totalRequestCharge() {
+        return totalRequestCharge.sum();
+    }
+
+    /**
+     * Logs the diagnostics of a Cosmos point operation that breached its threshold.
+     */
+    public <T> Mono<CosmosItemResponse<T>> diagnoseItem(BookOperation operation, Mono<CosmosItemResponse<T>> response) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return response
+                    .doOnNext(itemResponse -> {
+                        recordCharge(operation, itemResponse.getRequestCharge());
+                        diagnose(operation, start, itemResponse.getDiagnostics());
+                    })
+                    .doOnError(error -> {
+                        recordCharge(operation, chargeOf(error));
+                        diagnose(operation, start, diagnosticsOf(error));
+                    });
+        });
+    }
+
+    /**
+     * Logs the diagnostics of the slowest page of a Cosmos query that breached its threshold.
+     */
+    public <T> Flux<FeedResponse<T>> diagnosePages(BookOperation operation, Flux<FeedResponse<T>> pages) {
+        return Flux.defer(() -> {
+            PageTiming timing = new PageTiming(System.nanoTime());
+            return pages
+                    .doOnNext(page -> {
+                        recordCharge(operation, page.getRequestCharge());
+                        timing.onPage(page);
+                    })
+                    .doOnComplete(() -> diagnose(operation, timing.start, timing.slowestPage))
+                    .doOnCancel(() -> {
+                        if (timing.slowestGap >= 0) {
+                            diagnose(operation, timing.start, timing.slowestPage);
+                        }
+                    })
+                    .doOnError(error -> {
+                        recordCharge(operation, chargeOf(error));
+                        diagnose(operation, timing.start, diagnosticsOf(error));
+                    });
+        });
+    }
+
+    public LatencyHistogram histogram(BookOperation operation) {
+        return stats.get(operation).histogram;
+    }
+
+    /**
+     * Returns the latencies of the operation over the last {@code latency.windowMs}.
+     */
+    public LatencyHistogram recentHistogram(BookOperation operation) {
+        return stats.get(operation).recent.snapshot();
+    }
+
+    /**
+     * Returns the latencies of whole request attempts of the operation over the last {@code latency.windowMs}.
+     */
+    public LatencyHistogram recentAttemptHistogram(BookOperation operation) {
+        return stats.get(operation).recentAttempts.snapshot();
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        stats.forEach((operation, operationStats) -> {
+            LatencyHistogram histogram = operationStats.histogram;
+            Map<String, Object> values = new LinkedHashMap<>();
+            values.put("count", histogram.count());
+            values.put("meanMs", histogram.meanMicros() / 1_000.0);
+            values.put("p50Ms", histogram.percentileMicros(50) / 1_000.0);
+            values.put("p99Ms", histogram.percentileMicros(99) / 1_000.0);
+            values.put("p999Ms", histogram.percentileMicros(99.9) / 1_000.0);
+            values.put("maxMs", histogram.maxMicros() / 1_000.0);
+            values.put("recentP99Ms", operationStats.recent.snapshot().percentileMicros(99) / 1_000.0);
+            values.put("recentAttemptP99Ms", operationStats.recentAttempts.snapshot().percentileMicros(99) / 1_000.0);
+            values.put("thresholdMs", TimeUnit.NANOSECONDS.toMillis(operationStats.thresholdNanos));
+            values.put("breaches", operationStats.breaches.sum());
+            values.put("requestCharge", operationStats.requestCharge.sum());
+            values.put("meanCharge", Double.isNaN(operationStats.meanCharge) ? 0 : operationStats.meanCharge);
+            snapshot.put(operation.getKey(), values);
+        });
+        return snapshot;
+    }
+
+    private void diagnose(BookOperation operation, long start, CosmosDiagnostics diagnostics) {
+        long elapsed = System.nanoTime() - start;
+        OperationStats operationStats = stats.get(operation);
+        if (elapsed > operationStats.thresholdNanos) {
+            logger.info("Logging detailed diagnostics as the acceptable latency threshold of {} ms for {} has been breached. Request Latency was {} ms. " +
+                            "Following are the detailed diagnostics:  {}", TimeUnit.NANOSECONDS.toMillis(operationStats.thresholdNanos),
+                    operation.getKey(), TimeUnit.NANOSECONDS.toMillis(elapsed), diagnostics);
+        }
+    }
+
+    private static double chargeOf(Throwable error) {
+        return error instanceof CosmosException ? ((CosmosException) error).getRequestCharge() : 0;
+    }
+
+    private static CosmosDiagnostics diagnosticsOf(Throwable error) {
+        return error instanceof CosmosException ? ((CosmosException) error).getDiagnostics() : null;
+    }
+
+    private static final class OperationStats {
+        private final LatencyHistogram histogram = new LatencyHistogram();
+        private final RollingLatencyHistogram recent;
+        private final RollingLatencyHistogram recentAttempts;
+        private final LongAdder breaches = new LongAdder();
+        private final DoubleAdder requestCharge = new DoubleAdder();
+        private volatile double meanCharge = Double.NaN;
+        private final long thresholdNanos;
+
+        private OperationStats(long thresholdMs, Duration window) {
+            this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMs);
+            this.recent = new RollingLatencyHistogram(window, WINDOW_SLICES);
+            this.recentAttempts = new RollingLatencyHistogram(window, WINDOW_SLICES);
+        }
+    }
+
+    private static final class PageTiming {
+        private final long start;
+        private long lastPage;
+        private long slowestGap = -1;
+        private CosmosDiagnostics slowestPage;
+
+        private PageTiming(long start) {
+            this.start = start;
+            this.lastPage = start;
+        }
+
+        private void onPage(FeedResponse<?> page) {
+            long now = System.nanoTime();
+            if (now - lastPage > slowestGap) {
+                slowestGap = now - lastPage;
+                slowestPage = page.getCosmosDiagnostics();
+            }
+            lastPage = now;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.webFlux.cosmos.resilience.metrics;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Latencies of the last window only, for decisions that have to follow latency as it moves. The
+ * window is split into slices, each a {@link LatencyHistogram}; a slice is replaced by an empty one
+ * when recording moves past it, so old latencies fall out a slice at a time. A value recorded while
+ * its slice is being replaced may be lost.
+ */
+public class RollingLatencyHistogram {
+
+    private final long sliceNanos;
+    private final LongSupplier nanoClock;
+    private final AtomicReferenceArray<Slice> slices;
+
+    public RollingLatencyHistogram(Duration window, int sliceCount) {
+        this(window, sliceCount, System::nanoTime);
+    }
+
+    RollingLatencyHistogram(Duration window, int sliceCount, LongSupplier nanoClock) {
+        this.sliceNanos = Math.max(1, window.toNanos() / sliceCount);
+        this.nanoClock = nanoClock;
+        this.slices = new AtomicReferenceArray<>(sliceCount);
+    }
+
+    public void recordNanos(long nanos) {
+        long epoch = Math.floorDiv(nanoClock.getAsLong(), sliceNanos);
+        int index = (int) Math.floorMod(epoch, (long) slices.length());
+        Slice slice = slices.get(index);
+        if (slice == null || slice.epoch != epoch) {
+            Slice fresh = new Slice(epoch);
+            slice = slices.compareAndSet(index, slice, fresh) ? fresh : slices.get(index);
+        }
+        slice.histogram.recordNanos(nanos);
+    }
+
+    /**
+     * Merges the slices still inside the window into a new histogram.
+     */
+    public LatencyHistogram snapshot() {
+        long epoch = Math.floorDiv(nanoClock.getAsLong(), sliceNanos);
+        LatencyHistogram merged = new LatencyHistogram();
+        for (int i = 0; i < slices.length(); i++) {
+            Slice slice = slices.get(i);
+            if (slice != null && epoch - slice.epoch < slices.length()) {
+                merged.merge(slice.histogram);
+            }
+        }
+        return merged;
+    }
+
+    private static final class Slice {
+        private final long epoch;
+        private final LatencyHistogram histogram = new LatencyHistogram();
+
+        private Slice(long epoch) {
+            this.epoch = epoch;
+        }
+    }
+}
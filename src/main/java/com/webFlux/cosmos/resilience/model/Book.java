@@ -2,6 +2,8 @@ package com.webFlux.cosmos.resilience.model;
 
 
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import java.math.BigDecimal;
 
 
@@ -16,6 +18,9 @@ public class Book {
     private BigDecimal price;
     private BigDecimal discountedPrice;
     private String image;
+    // version of the stored document, kept out of the document itself and out of response bodies
+    @JsonIgnore
+    private String etag;
 
     public Book() {
     }
@@ -104,6 +109,16 @@ public class Book {
         this.image = image;
     }
 
+    @JsonIgnore
+    public String getEtag() {
+        return etag;
+    }
+
+    @JsonIgnore
+    public void setEtag(String etag) {
+        this.etag = etag;
+    }
+
     @Override
     public String toString() {
         return "Book{" +
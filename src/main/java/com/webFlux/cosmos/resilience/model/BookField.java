@@ -0,0 +1,69 @@
+package com.webFlux.cosmos.resilience.model;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * The {@link Book} properties a list request can select with {@code fields=}. The id and category are
+ * always selected, as they identify the book.
+ */
+public enum BookField {
+
+    ID("id", (projection, book) -> projection.setId(book.getId())),
+    CATEGORY("category", (projection, book) -> projection.setCategory(book.getCategory())),
+    ISBN("isbn", (projection, book) -> projection.setIsbn(book.getIsbn())),
+    TITLE("title", (projection, book) -> projection.setTitle(book.getTitle())),
+    AUTHOR("author", (projection, book) -> projection.setAuthor(book.getAuthor())),
+    DESCRIPTION("description", (projection, book) -> projection.setDescription(book.getDescription())),
+    PRICE("price", (projection, book) -> projection.setPrice(book.getPrice())),
+    DISCOUNTED_PRICE("discountedPrice", (projection, book) -> projection.setDiscountedPrice(book.getDiscountedPrice())),
+    IMAGE("image", (projection, book) -> projection.setImage(book.getImage()));
+
+    private final String property;
+    private final BiConsumer<BookProjection, Book> copy;
+
+    BookField(String property, BiConsumer<BookProjection, Book> copy) {
+        this.property = property;
+        this.copy = copy;
+    }
+
+    public String getProperty() {
+        return property;
+    }
+
+    /**
+     * Parses a comma separated list of property names, such as {@code title,price}.
+     *
+     * @throws IllegalArgumentException when a name is not a book property
+     */
+    public static Set<BookField> parse(String fields) {
+        EnumSet<BookField> selected = EnumSet.of(ID, CATEGORY);
+        for (String name : fields.split(",")) {
+            String trimmed = name.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            selected.add(of(trimmed));
+        }
+        return Collections.unmodifiableSet(selected);
+    }
+
+    public static BookProjection project(Book book, Set<BookField> fields) {
+        BookProjection projection = new BookProjection();
+        for (BookField field : fields) {
+            field.copy.accept(projection, book);
+        }
+        return projection;
+    }
+
+    private static BookField of(String property) {
+        for (BookField field : values()) {
+            if (field.property.equalsIgnoreCase(property)) {
+                return field;
+            }
+        }
+        throw new IllegalArgumentException("Unknown book field " + property);
+    }
+}
@@ -0,0 +1,51 @@
+package com.webFlux.cosmos.resilience.model;
+
+import java.util.Objects;
+
+public final class BookKey {
+
+    private final String id;
+    private final String category;
+
+    public BookKey(String id, String category) {
+        this.id = Objects.requireNonNull(id, "id");
+        this.category = Objects.requireNonNull(category, "category");
+    }
+
+    public static BookKey of(Book book) {
+        return new BookKey(book.getId(), book.getCategory());
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof BookKey)) {
+            return false;
+        }
+        BookKey other = (BookKey) o;
+        return id.equals(other.id) && category.equals(other.category);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * id.hashCode() + category.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "BookKey{" +
+                "id='" + id + '\'' +
+                ", category='" + category + '\'' +
+                '}';
+    }
+}
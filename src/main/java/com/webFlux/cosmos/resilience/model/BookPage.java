@@ -0,0 +1,33 @@
+package com.webFlux.cosmos.resilience.model;
+
+import java.util.List;
+
+public class BookPage {
+
+    private List<Book> items;
+    private String continuationToken;
+
+    public BookPage() {
+    }
+
+    public BookPage(List<Book> items, String continuationToken) {
+        this.items = items;
+        this.continuationToken = continuationToken;
+    }
+
+    public List<Book> getItems() {
+        return items;
+    }
+
+    public void setItems(List<Book> items) {
+        this.items = items;
+    }
+
+    public String getContinuationToken() {
+        return continuationToken;
+    }
+
+    public void setContinuationToken(String continuationToken) {
+        this.continuationToken = continuationToken;
+    }
+}
@@ -1,200 +1,242 @@
 package com.webFlux.cosmos.resilience.model;
 
-import com.azure.cosmos.models.*;
-import com.webFlux.cosmos.resilience.cosmos.CosmosDB;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import com.webFlux.cosmos.resilience.index.IsbnIndex;
+import com.webFlux.cosmos.resilience.index.SearchIndex;
+import com.webFlux.cosmos.resilience.store.BookStore;
+import com.webFlux.cosmos.resilience.store.BookStoreException;
+import com.webFlux.cosmos.resilience.view.MaterializedBookView;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
-import org.springframework.util.StopWatch;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @Service
 public class BookRepository {
-    private final Logger logger = LoggerFactory.getLogger(this.getClass());
-    private final CosmosDB cosmosDB;
+    private static final int DEFAULT_PAGE_SIZE = 0;
+    private static final int STATS_CONCURRENCY = 8;
+    private static final int SEARCH_REBUILD_PAGE_SIZE = 500;
+
+    private final BookStore bookStore;
+    private final IsbnIndex isbnIndex;
+    private final MaterializedBookView bookView;
+    private final SearchIndex searchIndex;
 
     @Autowired
-    public BookRepository(CosmosDB cosmosDB) {
-        this.cosmosDB = cosmosDB;
+    public BookRepository(BookStore bookStore, IsbnIndex isbnIndex, MaterializedBookView bookView, SearchIndex searchIndex) {
+        this.bookStore = bookStore;
+        this.isbnIndex = isbnIndex;
+        this.bookView = bookView;
+        this.searchIndex = searchIndex;
     }
 
 
     public Mono<Book> upsertBook(Book book) {
-        CosmosItemRequestOptions cosmosItemRequestOptions = new CosmosItemRequestOptions();
-        cosmosItemRequestOptions.setContentResponseOnWriteEnabled(true);
-        StringBuilder diagnosticLog = new StringBuilder();
-        StopWatch stopWatch = new StopWatch();
-        long acceptableLatencyMS = 1300;
-        stopWatch.start();
-        return cosmosDB
-                .getContainer()
-                .upsertItem(book, new PartitionKey(book.getCategory()), cosmosItemRequestOptions)
-                .map(cosmosItemResponse -> {
-                    diagnosticLog.append(cosmosItemResponse
-                            .getDiagnostics()
-                            .toString());
-                    return cosmosItemResponse.getItem();
-                })
-                .doOnTerminate(() -> {
-                    stopWatch.stop();
-                    if (stopWatch.getTotalTimeMillis() > acceptableLatencyMS) {
-                        logger.info("Logging detailed diagnostics as the acceptable latency threshold of {} ms has be breached. Request Latency was {} ms. " +
-                                "Following are the detailed diagnostics:  {}", acceptableLatencyMS, stopWatch.getTotalTimeMillis(), diagnosticLog);
-                    } else {
-                        logger.info("Request Latency was {} ms and acceptable latency threshold was {} ms ",
-                                stopWatch.getTotalTimeMillis(), acceptableLatencyMS);
-                    }
-                });
+        return bookStore
+                .upsert(book)
+                .doOnNext(this::indexed);
+    }
+
+    public Mono<Book> replaceBook(Book book, String ifMatchEtag) {
+        return bookStore
+                .replace(book, ifMatchEtag)
+                .doOnNext(this::indexed);
     }
 
     public Mono<Book> finByIdAndCategory(String id, String category) {
-        CosmosItemRequestOptions cosmosItemRequestOptions = new CosmosItemRequestOptions();
-        StringBuilder diagnosticLog = new StringBuilder();
-        StopWatch stopWatch = new StopWatch();
-        long acceptableLatencyMS = 75;
-        stopWatch.start();
-        return cosmosDB
-                .getContainer()
-                .readItem(id, new PartitionKey(category), cosmosItemRequestOptions, Book.class)
-                .map(cosmosItemResponse -> {
-                    diagnosticLog.append(cosmosItemResponse
-                            .getDiagnostics()
-                            .toString());
-                    return cosmosItemResponse.getItem();
-                })
-                .doOnTerminate(() -> {
-                    stopWatch.stop();
-                    if (stopWatch.getTotalTimeMillis() > acceptableLatencyMS) {
-                        logger.info("Logging detailed diagnostics as the acceptable latency threshold of {} ms has be breached. Request Latency was {} ms. " +
-                                "Following are the detailed diagnostics:  {}", acceptableLatencyMS, stopWatch.getTotalTimeMillis(), diagnosticLog);
-                    } else {
-                        logger.info("Request Latency was {} ms and acceptable latency threshold was {} ms ",
-                                stopWatch.getTotalTimeMillis(), acceptableLatencyMS);
-                    }
-
-                });
+        BookKey key = new BookKey(id, category);
+        return Mono.defer(() -> {
+            Book viewed = bookView.isServing() ? bookView.get(key) : null;
+            return viewed != null ? Mono.just(viewed) : bookStore.read(key);
+        });
+    }
+
+    /**
+     * Reads the book unless it is still at the given etag, completing empty in that case. The view
+     * answers when it holds the book with an etag; otherwise the store does, from its cache if it can.
+     */
+    public Mono<Book> findIfChanged(String id, String category, String etag) {
+        BookKey key = new BookKey(id, category);
+        return Mono.defer(() -> {
+            Book viewed = bookView.isServing() ? bookView.get(key) : null;
+            if (viewed != null && viewed.getEtag() != null) {
+                return etag.equals(viewed.getEtag()) ? Mono.empty() : Mono.just(viewed);
+            }
+            return bookStore.readIfChanged(key, etag);
+        });
     }
 
     public Flux<Book> findByCategory(String category) {
-        CosmosQueryRequestOptions cosmosQueryRequestOptions = new CosmosQueryRequestOptions();
-        cosmosQueryRequestOptions.setPartitionKey(new PartitionKey(category));
-        String query = "SELECT * FROM o WHERE o.category = @category";
-        SqlParameter parameter = new SqlParameter("@category", category);
-        List<SqlParameter> sqlParameters = new ArrayList<>();
-        sqlParameters.add(parameter);
-        SqlQuerySpec querySpec = new SqlQuerySpec(query, sqlParameters);
-        StringBuilder diagnosticLog = new StringBuilder();
-        StopWatch stopWatch = new StopWatch();
-        stopWatch.start();
-        long acceptableLatencyMS = 100;
-        return cosmosDB
-                .getContainer()
-                .queryItems(querySpec, cosmosQueryRequestOptions, Book.class)
-                .handle(feedResponse -> diagnosticLog.append(feedResponse
-                        .getCosmosDiagnostics()
-                        .toString()))
-                .doOnComplete(() -> {
-                    stopWatch.stop();
-                    if (stopWatch.getTotalTimeMillis() > acceptableLatencyMS) {
-                        logger.info("Logging detailed diagnostics as the acceptable latency threshold of {} ms has be breached. Request Latency was {} ms. " +
-                                "Following are the detailed diagnostics:  {}", acceptableLatencyMS, stopWatch.getTotalTimeMillis(), diagnosticLog);
-                    } else {
-                        logger.info("Request Latency was {} ms and acceptable latency threshold was {} ms ",
-                                stopWatch.getTotalTimeMillis(), acceptableLatencyMS);
-                    }
-
-                });
+        return Flux.defer(() -> bookView.isServing() ? Flux.fromIterable(bookView.byCategory(category)) : bookStore.queryByCategory(category,
+                DEFAULT_PAGE_SIZE));
+    }
+
+    public Flux<BookProjection> findByCategory(String category, Set<BookField> fields) {
+        return Flux.defer(() -> bookView.isServing() ? Flux
+                .fromIterable(bookView.byCategory(category))
+                .map(book -> BookField.project(book, fields)) : bookStore.projectByCategory(category, fields));
+    }
+
+    public Flux<Book> streamByCategory(String category, int pageSize) {
+        return bookStore.queryByCategory(category, pageSize);
+    }
 
+    public Mono<BookPage> findByCategoryPage(String category, int pageSize, String continuationToken) {
+        return bookStore.queryByCategoryPage(category, pageSize, continuationToken);
     }
 
     public Flux<Book> findByIsbn(String isbn) {
-        CosmosQueryRequestOptions cosmosQueryRequestOptions = new CosmosQueryRequestOptions();
-        String query = "SELECT * FROM o WHERE o.isbn =  @isbn";
-        SqlParameter parameter = new SqlParameter("@isbn", isbn);
-        List<SqlParameter> sqlParameters = new ArrayList<>();
-        sqlParameters.add(parameter);
-        SqlQuerySpec querySpec = new SqlQuerySpec(query, sqlParameters);
-        StringBuilder diagnosticLog = new StringBuilder();
-        long acceptableLatencyMS = 300;
-        StopWatch stopWatch = new StopWatch();
-        stopWatch.start();
-        return cosmosDB
-                .getContainer()
-                .queryItems(querySpec, cosmosQueryRequestOptions, Book.class)
-                .handle(feedResponse -> diagnosticLog.append(feedResponse
-                        .getCosmosDiagnostics()
-                        .toString()))
-                .doOnComplete(() -> {
-                    stopWatch.stop();
-                    if (stopWatch.getTotalTimeMillis() > acceptableLatencyMS) {
-                        logger.info("Logging detailed diagnostics as the acceptable latency threshold of {} ms has be breached. Request Latency was {} ms. " +
-                                "Following are the detailed diagnostics:  {}", acceptableLatencyMS, stopWatch.getTotalTimeMillis(), diagnosticLog);
-                    } else {
-                        logger.info("Request Latency was {} ms and acceptable latency threshold was {} ms ",
-                                stopWatch.getTotalTimeMillis(), acceptableLatencyMS);
-                    }
-                });
+        return Flux.defer(() -> {
+            if (bookView.isServing()) {
+                return Flux.fromIterable(bookView.byIsbn(isbn));
+            }
+            Set<BookKey> keys = isbnIndex.lookup(isbn);
+            if (keys == null) {
+                return bookStore
+                        .queryByIsbn(isbn)
+                        .doOnNext(isbnIndex::put);
+            }
+            return Flux
+                    .fromIterable(keys)
+                    .flatMap(key -> finByIdAndCategory(key.getId(), key.getCategory())
+                            .onErrorResume(BookRepository::isNotFound, error -> {
+                                isbnIndex.repair(key, null);
+                                return Mono.empty();
+                            }))
+                    .filter(book -> {
+                        if (isbn.equals(book.getIsbn())) {
+                            return true;
+                        }
+                        isbnIndex.repair(BookKey.of(book), book);
+                        return false;
+                    });
+        });
+    }
+
+    /**
+     * Isbn lookups the view or the index can answer are served from whole books, which the cache
+     * usually holds; only a lookup that would query anyway is sent as a projected query.
+     */
+    public Flux<BookProjection> findByIsbn(String isbn, Set<BookField> fields) {
+        return Flux.defer(() -> {
+            if (bookView.isServing() || isbnIndex.lookup(isbn) != null) {
+                return findByIsbn(isbn).map(book -> BookField.project(book, fields));
+            }
+            return bookStore.projectByIsbn(isbn, fields);
+        });
+    }
+
+    public Mono<Long> rebuildIsbnIndex() {
+        return bookStore
+                .scanIsbnLocations()
+                .doOnNext(isbnIndex::put)
+                .count()
+                .doOnNext(isbnIndex::rebuilt)
+                .doOnError(error -> isbnIndex.rebuilt(-1));
+    }
+
+
+    /**
+     * Finds the books best matching the query through the search index, best first. Hits are read as
+     * point reads, so they come from the cache or are coalesced into read-many batches, and a hit that
+     * no longer exists is dropped from the index.
+     */
+    public Flux<Book> search(String query, int limit) {
+        return Flux
+                .defer(() -> Flux.fromIterable(searchIndex.search(query, limit)))
+                .flatMapSequential(key -> finByIdAndCategory(key.getId(), key.getCategory())
+                        .onErrorResume(BookRepository::isNotFound, error -> {
+                            searchIndex.remove(key);
+                            return Mono.empty();
+                        }));
+    }
+
+    /**
+     * Streams every book into the search index page by page; searches keep being answered meanwhile.
+     */
+    public Mono<Long> rebuildSearchIndex() {
+        return Mono
+                .fromRunnable(searchIndex::rebuilding)
+                .thenMany(bookStore.scan(SEARCH_REBUILD_PAGE_SIZE))
+                .buffer(SEARCH_REBUILD_PAGE_SIZE)
+                .doOnNext(searchIndex::putAll)
+                .reduce(0L, (count, books) -> count + books.size())
+                .doOnNext(searchIndex::rebuilt)
+                .doOnError(error -> searchIndex.rebuilt(-1));
     }
 
 
     public Flux<Book> findAll() {
-        CosmosQueryRequestOptions cosmosQueryRequestOptions = new CosmosQueryRequestOptions();
-        String query = "SELECT * FROM o";
-        StringBuilder diagnosticLog = new StringBuilder();
-        long acceptableLatencyMS = 500;
-        StopWatch stopWatch = new StopWatch();
-        stopWatch.start();
-        return cosmosDB
-                .getContainer()
-                .queryItems(query, cosmosQueryRequestOptions, Book.class)
-                .handle(feedResponse -> diagnosticLog.append(feedResponse
-                        .getCosmosDiagnostics()
-                        .toString()))
-                .doOnComplete(() -> {
-                    stopWatch.stop();
-                    if (stopWatch.getTotalTimeMillis() > acceptableLatencyMS) {
-                        logger.info("Logging detailed diagnostics as the acceptable latency threshold of {} ms has be breached. Request Latency was {} ms. " +
-                                "Following are the detailed diagnostics:  {}", acceptableLatencyMS, stopWatch.getTotalTimeMillis(), diagnosticLog);
-                    } else {
-                        logger.info("Request Latency was {} ms and acceptable latency threshold was {} ms ",
-                                stopWatch.getTotalTimeMillis(), acceptableLatencyMS);
-                    }
-                });
+        return Flux.defer(() -> bookView.isServing() ? Flux.fromIterable(bookView.all()) : bookStore.scan(DEFAULT_PAGE_SIZE));
     }
 
+    public Flux<BookProjection> findAll(Set<BookField> fields) {
+        return Flux.defer(() -> bookView.isServing() ? Flux
+                .fromIterable(bookView.all())
+                .map(book -> BookField.project(book, fields)) : bookStore.projectAll(fields));
+    }
+
+    public Flux<Book> streamAll(int pageSize) {
+        return bookStore.scan(pageSize);
+    }
+
+    public Mono<BookPage> findAllPage(int pageSize, String continuationToken) {
+        return bookStore.scanPage(pageSize, continuationToken);
+    }
+
+
+    /**
+     * Aggregates every category in its own partition, a few at a time, and merges the results here.
+     */
+    public Mono<BookStats> stats() {
+        return bookStore
+                .categories()
+                .flatMap(bookStore::categoryStats, STATS_CONCURRENCY)
+                .filter(stats -> stats.getCount() > 0)
+                .collectList()
+                .map(BookStats::new);
+    }
 
     public Mono<Book> create(Book book) {
-        CosmosItemRequestOptions cosmosItemRequestOptions = new CosmosItemRequestOptions();
-        cosmosItemRequestOptions.setContentResponseOnWriteEnabled(true);
-        StringBuilder diagnosticLog = new StringBuilder();
-        StopWatch stopWatch = new StopWatch();
-        long acceptableLatencyMS = 300;
-        stopWatch.start();
-        return cosmosDB
-                .getContainer()
-                .createItem(book, new PartitionKey(book.getCategory()), cosmosItemRequestOptions)
-                .map(cosmosItemResponse -> {
-                    diagnosticLog.append(cosmosItemResponse
-                            .getDiagnostics()
-                            .toString());
-                    return cosmosItemResponse.getItem();
-                })
-                .doOnTerminate(() -> {
-                    stopWatch.stop();
-                    if (stopWatch.getTotalTimeMillis() > acceptableLatencyMS) {
-                        logger.info("Logging detailed diagnostics as the acceptable latency threshold of {} ms has be breached. Request Latency was {} ms. " +
-                                "Following are the detailed diagnostics:  {}", acceptableLatencyMS, stopWatch.getTotalTimeMillis(), diagnosticLog);
-                    } else {
-                        logger.info("Request Latency was {} ms and acceptable latency threshold was {} ms ",
-                                stopWatch.getTotalTimeMillis(), acceptableLatencyMS);
-                    }
-
-                });
+        return bookStore
+                .create(book)
+                .doOnNext(this::indexed);
+    }
+
+    public Mono<Book> patchPrices(String id, String category, PricePatch patch, String ifMatchEtag) {
+        return bookStore.patch(new BookKey(id, category), patch, ifMatchEtag);
+    }
+
+    public Flux<BulkItemResult> bulkPatchPrices(String category, List<PricePatch> patches) {
+        return bookStore.bulkPatch(category, patches);
+    }
+
+    public Flux<BulkItemResult> bulkUpsert(List<Book> books) {
+        return Flux.defer(() -> {
+            Map<BookKey, Book> byKey = new HashMap<>();
+            books.forEach(book -> byKey.put(BookKey.of(book), book));
+            return bookStore
+                    .bulkUpsert(books)
+                    .doOnNext(result -> {
+                        Book book = byKey.get(new BookKey(result.getId(), result.getCategory()));
+                        if (result.isSuccess() && book != null) {
+                            indexed(book);
+                        }
+                    });
+        });
+    }
+
+    private void indexed(Book book) {
+        isbnIndex.put(book);
+        searchIndex.put(book);
+    }
+
+    private static boolean isNotFound(Throwable error) {
+        return BookStoreException.statusCode(error) == BookStoreException.NOT_FOUND;
     }
 
 }
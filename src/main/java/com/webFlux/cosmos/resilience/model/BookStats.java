@@ -0,0 +1,41 @@
+package com.webFlux.cosmos.resilience.model;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Aggregates over the whole catalog, per category and in total.
+ */
+public class BookStats {
+
+    private CategoryStats total;
+    private List<CategoryStats> categories;
+
+    public BookStats() {
+    }
+
+    public BookStats(List<CategoryStats> categories) {
+        this.categories = new ArrayList<>(categories);
+        this.categories.sort(Comparator.comparing(CategoryStats::getCategory));
+        this.total = this.categories
+                .stream()
+                .reduce(new CategoryStats(), CategoryStats::merge);
+    }
+
+    public CategoryStats getTotal() {
+        return total;
+    }
+
+    public void setTotal(CategoryStats total) {
+        this.total = total;
+    }
+
+    public List<CategoryStats> getCategories() {
+        return categories;
+    }
+
+    public void setCategories(List<CategoryStats> categories) {
+        this.categories = categories;
+    }
+}
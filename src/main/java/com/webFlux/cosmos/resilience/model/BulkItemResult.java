@@ -0,0 +1,70 @@
+package com.webFlux.cosmos.resilience.model;
+
+public class BulkItemResult {
+
+    private String id;
+    private String category;
+    private int statusCode;
+    private double requestCharge;
+    private long retryAfterMs;
+    private String error;
+
+    public BulkItemResult() {
+    }
+
+    public BulkItemResult(String id, String category, int statusCode, double requestCharge, long retryAfterMs, String error) {
+        this.id = id;
+        this.category = category;
+        this.statusCode = statusCode;
+        this.requestCharge = requestCharge;
+        this.retryAfterMs = retryAfterMs;
+        this.error = error;
+    }
+
+    public boolean isSuccess() {
+        return statusCode >= 200 && statusCode < 300;
+    }
+
+    /**
+     * Whether the item may succeed when sent again: a timeout, a throttle, a 449 or a server error.
+     */
+    public boolean isRetryable() {
+        return statusCode == 408 || statusCode == 429 || statusCode == 449 || statusCode >= 500;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public double getRequestCharge() {
+        return requestCharge;
+    }
+
+    public long getRetryAfterMs() {
+        return retryAfterMs;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return "BulkItemResult{" +
+                "id='" + id + '\'' +
+                ", category='" + category + '\'' +
+                ", statusCode=" + statusCode +
+                ", requestCharge=" + requestCharge +
+                ", retryAfterMs=" + retryAfterMs +
+                ", error='" + error + '\'' +
+                '}';
+    }
+}
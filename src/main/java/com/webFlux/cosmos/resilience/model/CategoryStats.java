@@ -0,0 +1,147 @@
+package com.webFlux.cosmos.resilience.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+/**
+ * Count and price aggregates over the books of one category, or of several once merged. Sums are
+ * kept so averages stay exact across merges; they are read from the store but not written out.
+ */
+public class CategoryStats {
+
+    private String category;
+    private long count;
+    private BigDecimal minPrice;
+    private BigDecimal maxPrice;
+    @JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
+    private BigDecimal sumPrice;
+    private BigDecimal minDiscountedPrice;
+    private BigDecimal maxDiscountedPrice;
+    @JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
+    private BigDecimal sumDiscountedPrice;
+
+    public CategoryStats() {
+    }
+
+    /**
+     * Combines two aggregates. Either may be empty, in which case its min and max are null.
+     */
+    public static CategoryStats merge(CategoryStats left, CategoryStats right) {
+        CategoryStats merged = new CategoryStats();
+        merged.category = left.category != null && left.category.equals(right.category) ? left.category : null;
+        merged.count = left.count + right.count;
+        merged.minPrice = min(left.minPrice, right.minPrice);
+        merged.maxPrice = max(left.maxPrice, right.maxPrice);
+        merged.sumPrice = sum(left.sumPrice, right.sumPrice);
+        merged.minDiscountedPrice = min(left.minDiscountedPrice, right.minDiscountedPrice);
+        merged.maxDiscountedPrice = max(left.maxDiscountedPrice, right.maxDiscountedPrice);
+        merged.sumDiscountedPrice = sum(left.sumDiscountedPrice, right.sumDiscountedPrice);
+        return merged;
+    }
+
+    /**
+     * Aggregates of a single book, to be merged into the aggregates of its category.
+     */
+    public static CategoryStats of(Book book) {
+        CategoryStats stats = new CategoryStats();
+        stats.category = book.getCategory();
+        stats.count = 1;
+        stats.minPrice = book.getPrice();
+        stats.maxPrice = book.getPrice();
+        stats.sumPrice = book.getPrice();
+        stats.minDiscountedPrice = book.getDiscountedPrice();
+        stats.maxDiscountedPrice = book.getDiscountedPrice();
+        stats.sumDiscountedPrice = book.getDiscountedPrice();
+        return stats;
+    }
+
+    public BigDecimal getAvgPrice() {
+        return average(sumPrice);
+    }
+
+    public BigDecimal getAvgDiscountedPrice() {
+        return average(sumDiscountedPrice);
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public void setCategory(String category) {
+        this.category = category;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public void setCount(long count) {
+        this.count = count;
+    }
+
+    public BigDecimal getMinPrice() {
+        return minPrice;
+    }
+
+    public void setMinPrice(BigDecimal minPrice) {
+        this.minPrice = minPrice;
+    }
+
+    public BigDecimal getMaxPrice() {
+        return maxPrice;
+    }
+
+    public void setMaxPrice(BigDecimal maxPrice) {
+        this.maxPrice = maxPrice;
+    }
+
+    public BigDecimal getSumPrice() {
+        return sumPrice;
+    }
+
+    public void setSumPrice(BigDecimal sumPrice) {
+        this.sumPrice = sumPrice;
+    }
+
+    public BigDecimal getMinDiscountedPrice() {
+        return minDiscountedPrice;
+    }
+
+    public void setMinDiscountedPrice(BigDecimal minDiscountedPrice) {
+        this.minDiscountedPrice = minDiscountedPrice;
+    }
+
+    public BigDecimal getMaxDiscountedPrice() {
+        return maxDiscountedPrice;
+    }
+
+    public void setMaxDiscountedPrice(BigDecimal maxDiscountedPrice) {
+        this.maxDiscountedPrice = maxDiscountedPrice;
+    }
+
+    public BigDecimal getSumDiscountedPrice() {
+        return sumDiscountedPrice;
+    }
+
+    public void setSumDiscountedPrice(BigDecimal sumDiscountedPrice) {
+        this.sumDiscountedPrice = sumDiscountedPrice;
+    }
+
+    private BigDecimal average(BigDecimal sum) {
+        return sum == null || count == 0 ? null : sum.divide(BigDecimal.valueOf(count), MathContext.DECIMAL64);
+    }
+
+    private static BigDecimal min(BigDecimal left, BigDecimal right) {
+        return left == null ? right : right == null ? left : left.min(right);
+    }
+
+    private static BigDecimal max(BigDecimal left, BigDecimal right) {
+        return left == null ? right : right == null ? left : left.max(right);
+    }
+
+    private static BigDecimal sum(BigDecimal left, BigDecimal right) {
+        return left == null ? right : right == null ? left : left.add(right);
+    }
+}
@@ -0,0 +1,74 @@
+package com.webFlux.cosmos.resilience.model;
+
+import java.math.BigDecimal;
+
+/**
+ * New prices for one book. A price left null is not changed; the id is only read by bulk patches,
+ * which carry many of them.
+ */
+public class PricePatch {
+
+    private String id;
+    private BigDecimal price;
+    private BigDecimal discountedPrice;
+
+    public PricePatch() {
+    }
+
+    public PricePatch(String id, BigDecimal price, BigDecimal discountedPrice) {
+        this.id = id;
+        this.price = price;
+        this.discountedPrice = discountedPrice;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public BigDecimal getPrice() {
+        return price;
+    }
+
+    public void setPrice(BigDecimal price) {
+        this.price = price;
+    }
+
+    public BigDecimal getDiscountedPrice() {
+        return discountedPrice;
+    }
+
+    public void setDiscountedPrice(BigDecimal discountedPrice) {
+        this.discountedPrice = discountedPrice;
+    }
+
+    /**
+     * True when the patch changes at least one price and sets no price below zero.
+     */
+    public boolean isValid() {
+        return (price != null || discountedPrice != null)
+                && (price == null || price.signum() >= 0)
+                && (discountedPrice == null || discountedPrice.signum() >= 0);
+    }
+
+    public void applyTo(Book book) {
+        if (price != null) {
+            book.setPrice(price);
+        }
+        if (discountedPrice != null) {
+            book.setDiscountedPrice(discountedPrice);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "PricePatch{" +
+                "id='" + id + '\'' +
+                ", price=" + price +
+                ", discountedPrice=" + discountedPrice +
+                '}';
+    }
+}
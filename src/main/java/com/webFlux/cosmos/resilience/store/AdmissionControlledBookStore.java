@@ -0,0 +1,131 @@
+package com.webFlux.cosmos.resilience.store;
+
+import com.webFlux.cosmos.resilience.metrics.BookOperation;
+import com.webFlux.cosmos.resilience.model.Book;
+import com.webFlux.cosmos.resilience.model.BookField;
+import com.webFlux.cosmos.resilience.model.BookKey;
+import com.webFlux.cosmos.resilience.model.BookPage;
+import com.webFlux.cosmos.resilience.model.BookProjection;
+import com.webFlux.cosmos.resilience.model.BulkItemResult;
+import com.webFlux.cosmos.resilience.model.CategoryStats;
+import com.webFlux.cosmos.resilience.model.PricePatch;
+import com.webFlux.cosmos.resilience.util.AdmissionController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Passes every call into the delegate through the {@link AdmissionController} under its {@link BookOperation}.
+ */
+public class AdmissionControlledBookStore implements BookStore {
+
+    private final BookStore delegate;
+    private final AdmissionController admissionController;
+
+    public AdmissionControlledBookStore(BookStore delegate, AdmissionController admissionController) {
+        this.delegate = delegate;
+        this.admissionController = admissionController;
+    }
+
+    @Override
+    public Mono<Book> read(BookKey key) {
+        return admissionController.admitMono(BookOperation.POINT_READ, delegate.read(key));
+    }
+
+    @Override
+    public Mono<Book> readIfChanged(BookKey key, String etag) {
+        return admissionController.admitMono(BookOperation.POINT_READ, delegate.readIfChanged(key, etag));
+    }
+
+    @Override
+    public Flux<Book> readMany(String category, List<String> ids) {
+        return admissionController.admitFlux(BookOperation.READ_MANY, delegate.readMany(category, ids));
+    }
+
+    @Override
+    public Flux<Book> queryByCategory(String category, int pageSize) {
+        return admissionController.admitFlux(BookOperation.CATEGORY_QUERY, delegate.queryByCategory(category, pageSize));
+    }
+
+    @Override
+    public Mono<BookPage> queryByCategoryPage(String category, int pageSize, String continuationToken) {
+        return admissionController.admitMono(BookOperation.CATEGORY_QUERY, delegate.queryByCategoryPage(category, pageSize, continuationToken));
+    }
+
+    @Override
+    public Flux<Book> queryByIsbn(String isbn) {
+        return admissionController.admitFlux(BookOperation.ISBN_QUERY, delegate.queryByIsbn(isbn));
+    }
+
+    @Override
+    public Flux<Book> scan(int pageSize) {
+        return admissionController.admitFlux(BookOperation.SCAN, delegate.scan(pageSize));
+    }
+
+    @Override
+    public Mono<BookPage> scanPage(int pageSize, String continuationToken) {
+        return admissionController.admitMono(BookOperation.SCAN, delegate.scanPage(pageSize, continuationToken));
+    }
+
+    @Override
+    public Flux<Book> scanIsbnLocations() {
+        return admissionController.admitFlux(BookOperation.SCAN, delegate.scanIsbnLocations());
+    }
+
+    @Override
+    public Flux<BookProjection> projectByCategory(String category, Set<BookField> fields) {
+        return admissionController.admitFlux(BookOperation.CATEGORY_QUERY, delegate.projectByCategory(category, fields));
+    }
+
+    @Override
+    public Flux<BookProjection> projectByIsbn(String isbn, Set<BookField> fields) {
+        return admissionController.admitFlux(BookOperation.ISBN_QUERY, delegate.projectByIsbn(isbn, fields));
+    }
+
+    @Override
+    public Flux<BookProjection> projectAll(Set<BookField> fields) {
+        return admissionController.admitFlux(BookOperation.SCAN, delegate.projectAll(fields));
+    }
+
+    @Override
+    public Flux<String> categories() {
+        return admissionController.admitFlux(BookOperation.STATS, delegate.categories());
+    }
+
+    @Override
+    public Mono<CategoryStats> categoryStats(String category) {
+        return admissionController.admitMono(BookOperation.STATS, delegate.categoryStats(category));
+    }
+
+    @Override
+    public Mono<Book> create(Book book) {
+        return admissionController.admitMono(BookOperation.CREATE, delegate.create(book));
+    }
+
+    @Override
+    public Mono<Book> upsert(Book book) {
+        return admissionController.admitMono(BookOperation.UPSERT, delegate.upsert(book));
+    }
+
+    @Override
+    public Mono<Book> replace(Book book, String ifMatchEtag) {
+        return admissionController.admitMono(BookOperation.REPLACE, delegate.replace(book, ifMatchEtag));
+    }
+
+    @Override
+    public Flux<BulkItemResult> bulkUpsert(List<Book> books) {
+        return admissionController.admitFlux(BookOperation.BULK_UPSERT, books.size(), delegate.bulkUpsert(books));
+    }
+
+    @Override
+    public Mono<Book> patch(BookKey key, PricePatch patch, String ifMatchEtag) {
+        return admissionController.admitMono(BookOperation.PATCH, delegate.patch(key, patch, ifMatchEtag));
+    }
+
+    @Override
+    public Flux<BulkItemResult> bulkPatch(String category, List<PricePatch> patches) {
+        return admissionController.admitFlux(BookOperation.BULK_PATCH, patches.size(), delegate.bulkPatch(category, patches));
+    }
+}
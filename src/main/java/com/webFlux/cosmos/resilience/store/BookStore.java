@@ -0,0 +1,107 @@
+package com.webFlux.cosmos.resilience.store;
+
+import com.webFlux.cosmos.resilience.model.Book;
+import com.webFlux.cosmos.resilience.model.BookField;
+import com.webFlux.cosmos.resilience.model.BookKey;
+import com.webFlux.cosmos.resilience.model.BookPage;
+import com.webFlux.cosmos.resilience.model.BookProjection;
+import com.webFlux.cosmos.resilience.model.BulkItemResult;
+import com.webFlux.cosmos.resilience.model.CategoryStats;
+import com.webFlux.cosmos.resilience.model.PricePatch;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Reactive storage for books partitioned by category. Implementations report failures with the status
+ * code Cosmos uses, in a {@code CosmosException} from Cosmos or a {@link BookStoreException} otherwise:
+ * 404 for a missing book, 409 for a create of an existing one, 412 for a conditional write of a book
+ * changed since, so callers handle every backend alike through {@link BookStoreException#statusCode}.
+ * Continuation tokens are opaque and only meaningful to the store that issued them.
+ * Books read or written carry the etag of the stored version, when the backend has one.
+ */
+public interface BookStore {
+
+    Mono<Book> read(BookKey key);
+
+    /**
+     * Reads the book unless it is still at the given etag, completing empty in that case, so an
+     * unchanged book is neither sent nor deserialized.
+     */
+    Mono<Book> readIfChanged(BookKey key, String etag);
+
+    /**
+     * Reads the books with the given ids in one category in a single round trip. Ids that do not
+     * exist are left out rather than failing the read.
+     */
+    Flux<Book> readMany(String category, List<String> ids);
+
+    /**
+     * Streams the category page by page, fetching at most {@code pageSize} books per round trip,
+     * or the backend's default page size when {@code pageSize} is not positive.
+     */
+    Flux<Book> queryByCategory(String category, int pageSize);
+
+    Mono<BookPage> queryByCategoryPage(String category, int pageSize, String continuationToken);
+
+    Flux<Book> queryByIsbn(String isbn);
+
+    /**
+     * Streams every book page by page, with the same {@code pageSize} contract as {@link #queryByCategory}.
+     */
+    Flux<Book> scan(int pageSize);
+
+    Mono<BookPage> scanPage(int pageSize, String continuationToken);
+
+    /**
+     * Streams every book carrying only its id, category and isbn.
+     */
+    Flux<Book> scanIsbnLocations();
+
+    /**
+     * Streams the category with only the selected fields of each book, so the backend can skip
+     * reading and sending the rest.
+     */
+    Flux<BookProjection> projectByCategory(String category, Set<BookField> fields);
+
+    Flux<BookProjection> projectByIsbn(String isbn, Set<BookField> fields);
+
+    Flux<BookProjection> projectAll(Set<BookField> fields);
+
+    /**
+     * Streams the distinct categories holding books.
+     */
+    Flux<String> categories();
+
+    /**
+     * Aggregates the books of one category without reading them out; an unknown category has a count of zero.
+     */
+    Mono<CategoryStats> categoryStats(String category);
+
+    Mono<Book> create(Book book);
+
+    Mono<Book> upsert(Book book);
+
+    /**
+     * Replaces a stored book, failing with 404 when there is none. With an {@code ifMatchEtag} the
+     * replace only applies while the book is still at that version, and fails with 412 otherwise.
+     */
+    Mono<Book> replace(Book book, String ifMatchEtag);
+
+    Flux<BulkItemResult> bulkUpsert(List<Book> books);
+
+    /**
+     * Changes the prices of one book in place, leaving its other fields as stored, and completes with
+     * the patched book. With an {@code ifMatchEtag} the patch only applies while the book is still at
+     * that version, and fails with 412 otherwise; a null one patches unconditionally.
+     */
+    Mono<Book> patch(BookKey key, PricePatch patch, String ifMatchEtag);
+
+    /**
+     * Patches the prices of books in one category as a bulk write. Results come back per book, as for
+     * {@link #bulkUpsert}; a missing book fails with 404 without failing the others.
+     */
+    Flux<BulkItemResult> bulkPatch(String category, List<PricePatch> patches);
+}
@@ -0,0 +1,78 @@
+package com.webFlux.cosmos.resilience.store;
+
+import com.webFlux.cosmos.resilience.cache.BookCache;
+import com.webFlux.cosmos.resilience.cache.CategoryStatsCache;
+import com.webFlux.cosmos.resilience.cosmos.CosmosDB;
+import com.webFlux.cosmos.resilience.index.IsbnIndex;
+import com.webFlux.cosmos.resilience.index.SearchIndex;
+import com.webFlux.cosmos.resilience.metrics.LatencyRecorder;
+import com.webFlux.cosmos.resilience.model.BookKey;
+import com.webFlux.cosmos.resilience.util.AdmissionController;
+import com.webFlux.cosmos.resilience.util.HedgedReads;
+import com.webFlux.cosmos.resilience.util.ReadCoalescer;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import reactor.core.publisher.Mono;
+
+/**
+ * Picks the backend with {@code store.backend} ({@code cosmos}, the default, or {@code memory}) and
+ * wraps it, innermost first, in hedging (Cosmos only), metrics, admission control, read coalescing,
+ * write-behind and the caches. Cache hits therefore never show up in the latency histograms, a hedged
+ * read is timed as one read, point reads coalesced with others are timed as the read-many they were
+ * sent as while a lone point read stays a point read, and buffered upserts are timed as the bulk writes
+ * they were flushed in. Time spent waiting for admission
+ * is not timed, and only calls that reach Cosmos are admitted.
+ */
+@Configuration
+public class BookStoreConfiguration {
+
+    public static final String BACKEND = "backendBookStore";
+
+    @Bean(BACKEND)
+    @ConditionalOnProperty(name = "store.backend", havingValue = "cosmos", matchIfMissing = true)
+    public BookStore cosmosBookStore(CosmosDB cosmosDB, LatencyRecorder latencyRecorder, HedgedReads hedgedReads) {
+        return new HedgedBookStore(new CosmosBookStore(Mono.defer(cosmosDB::getContainer), latencyRecorder),
+                new CosmosBookStore(Mono.defer(cosmosDB::getHedgeContainer), latencyRecorder), hedgedReads);
+    }
+
+    @Bean(BACKEND)
+    @ConditionalOnProperty(name = "store.backend", havingValue = "memory")
+    public BookStore inMemoryBookStore() {
+        return new InMemoryBookStore();
+    }
+
+    @Bean
+    @Primary
+    public BookStore bookStore(@Qualifier(BACKEND) BookStore backend, LatencyRecorder latencyRecorder, AdmissionController admissionController,
+                               ReadCoalescer readCoalescer, WriteBehindBuffer writeBehindBuffer, BookCache bookCache,
+                               CategoryStatsCache categoryStatsCache, IsbnIndex isbnIndex, SearchIndex searchIndex) {
+        return decorate(backend, latencyRecorder, admissionController, readCoalescer, writeBehindBuffer, bookCache, categoryStatsCache,
+                isbnIndex, searchIndex);
+    }
+
+    public static BookStore decorate(BookStore backend, LatencyRecorder latencyRecorder, AdmissionController admissionController,
+                                     ReadCoalescer readCoalescer, WriteBehindBuffer writeBehindBuffer, BookCache bookCache,
+                                     CategoryStatsCache categoryStatsCache, IsbnIndex isbnIndex, SearchIndex searchIndex) {
+        BookStore admitted = new AdmissionControlledBookStore(new MetricsBookStore(backend, latencyRecorder), admissionController);
+        BookStore coalescing = new CoalescingBookStore(admitted, readCoalescer);
+        writeBehindBuffer.listen(new WriteBehindBuffer.Listener() {
+            // a buffered upsert reaches the aggregates only once it is flushed
+            @Override
+            public void flushed(String category) {
+                categoryStatsCache.invalidate(category);
+            }
+
+            // the cache and the indexes took the upsert when it was buffered, but it was never stored
+            @Override
+            public void dropped(BookKey key) {
+                bookCache.invalidate(key);
+                isbnIndex.remove(key);
+                searchIndex.remove(key);
+            }
+        });
+        return new CachingBookStore(new WriteBehindBookStore(coalescing, writeBehindBuffer), bookCache, categoryStatsCache);
+    }
+}
@@ -0,0 +1,36 @@
+package com.webFlux.cosmos.resilience.store;
+
+import com.azure.cosmos.CosmosException;
+
+/**
+ * A failure a {@link BookStore} answers by itself, without Cosmos, carrying the status code Cosmos
+ * would have answered with. {@link #statusCode(Throwable)} reads the status of either.
+ */
+public class BookStoreException extends RuntimeException {
+
+    public static final int BAD_REQUEST = 400;
+    public static final int NOT_FOUND = 404;
+    public static final int CONFLICT = 409;
+    public static final int PRECONDITION_FAILED = 412;
+
+    private final int statusCode;
+
+    public BookStoreException(int statusCode) {
+        super("Book store answered with status " + statusCode, null, false, false);
+        this.statusCode = statusCode;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * Returns the status code of a book store or Cosmos failure, or 0 for any other error.
+     */
+    public static int statusCode(Throwable error) {
+        if (error instanceof BookStoreException) {
+            return ((BookStoreException) error).getStatusCode();
+        }
+        return error instanceof CosmosException ? ((CosmosException) error).getStatusCode() : 0;
+    }
+}
@@ -0,0 +1,166 @@
+package com.webFlux.cosmos.resilience.store;
+
+import com.webFlux.cosmos.resilience.cache.BookCache;
+import com.webFlux.cosmos.resilience.cache.CategoryStatsCache;
+import com.webFlux.cosmos.resilience.model.Book;
+import com.webFlux.cosmos.resilience.model.BookField;
+import com.webFlux.cosmos.resilience.model.BookKey;
+import com.webFlux.cosmos.resilience.model.BookPage;
+import com.webFlux.cosmos.resilience.model.BookProjection;
+import com.webFlux.cosmos.resilience.model.BulkItemResult;
+import com.webFlux.cosmos.resilience.model.CategoryStats;
+import com.webFlux.cosmos.resilience.model.PricePatch;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Serves point reads through the {@link BookCache} and category aggregates through the
+ * {@link CategoryStatsCache}. Writes refresh the cache with the stored book, and a failed or bulk write
+ * invalidates the key, as its outcome is unknown to the cache. Every write invalidates the aggregates of
+ * its category once it has finished; an upsert buffered for write-behind is only stored once flushed, so
+ * {@link BookStoreConfiguration} has the flush invalidate its category again.
+ */
+public class CachingBookStore implements BookStore {
+
+    private final BookStore delegate;
+    private final BookCache bookCache;
+    private final CategoryStatsCache categoryStatsCache;
+
+    public CachingBookStore(BookStore delegate, BookCache bookCache, CategoryStatsCache categoryStatsCache) {
+        this.delegate = delegate;
+        this.bookCache = bookCache;
+        this.categoryStatsCache = categoryStatsCache;
+    }
+
+    @Override
+    public Mono<Book> read(BookKey key) {
+        return bookCache.get(key, delegate::read);
+    }
+
+    /**
+     * Answers from a cached book that has an etag without going further; a miss is read conditionally
+     * and not cached, as it may race with a write.
+     */
+    @Override
+    public Mono<Book> readIfChanged(BookKey key, String etag) {
+        return Mono.defer(() -> {
+            Book cached = bookCache.getIfPresent(key);
+            if (cached != null && cached.getEtag() != null) {
+                return etag.equals(cached.getEtag()) ? Mono.empty() : Mono.just(cached);
+            }
+            return delegate.readIfChanged(key, etag);
+        });
+    }
+
+    @Override
+    public Flux<Book> readMany(String category, List<String> ids) {
+        return delegate.readMany(category, ids);
+    }
+
+    @Override
+    public Flux<Book> queryByCategory(String category, int pageSize) {
+        return delegate.queryByCategory(category, pageSize);
+    }
+
+    @Override
+    public Mono<BookPage> queryByCategoryPage(String category, int pageSize, String continuationToken) {
+        return delegate.queryByCategoryPage(category, pageSize, continuationToken);
+    }
+
+    @Override
+    public Flux<Book> queryByIsbn(String isbn) {
+        return delegate.queryByIsbn(isbn);
+    }
+
+    @Override
+    public Flux<Book> scan(int pageSize) {
+        return delegate.scan(pageSize);
+    }
+
+    @Override
+    public Mono<BookPage> scanPage(int pageSize, String continuationToken) {
+        return delegate.scanPage(pageSize, continuationToken);
+    }
+
+    @Override
+    public Flux<Book> scanIsbnLocations() {
+        return delegate.scanIsbnLocations();
+    }
+
+    @Override
+    public Flux<BookProjection> projectByCategory(String category, Set<BookField> fields) {
+        return delegate.projectByCategory(category, fields);
+    }
+
+    @Override
+    public Flux<BookProjection> projectByIsbn(String isbn, Set<BookField> fields) {
+        return delegate.projectByIsbn(isbn, fields);
+    }
+
+    @Override
+    public Flux<BookProjection> projectAll(Set<BookField> fields) {
+        return delegate.projectAll(fields);
+    }
+
+    @Override
+    public Flux<String> categories() {
+        return categoryStatsCache.categories(delegate::categories);
+    }
+
+    @Override
+    public Mono<CategoryStats> categoryStats(String category) {
+        return categoryStatsCache.get(category, delegate::categoryStats);
+    }
+
+    @Override
+    public Mono<Book> create(Book book) {
+        return cached(book, delegate.create(book));
+    }
+
+    @Override
+    public Mono<Book> upsert(Book book) {
+        return cached(book, delegate.upsert(book));
+    }
+
+    @Override
+    public Mono<Book> replace(Book book, String ifMatchEtag) {
+        return cached(book, delegate.replace(book, ifMatchEtag));
+    }
+
+    @Override
+    public Flux<BulkItemResult> bulkUpsert(List<Book> books) {
+        return delegate
+                .bulkUpsert(books)
+                .doOnNext(result -> {
+                    bookCache.invalidate(new BookKey(result.getId(), result.getCategory()));
+                    categoryStatsCache.invalidate(result.getCategory());
+                });
+    }
+
+    @Override
+    public Mono<Book> patch(BookKey key, PricePatch patch, String ifMatchEtag) {
+        return delegate
+                .patch(key, patch, ifMatchEtag)
+                .doOnNext(bookCache::put)
+                .doOnError(error -> bookCache.invalidate(key))
+                .doFinally(signal -> categoryStatsCache.invalidate(key.getCategory()));
+    }
+
+    @Override
+    public Flux<BulkItemResult> bulkPatch(String category, List<PricePatch> patches) {
+        return delegate
+                .bulkPatch(category, patches)
+                .doOnNext(result -> bookCache.invalidate(new BookKey(result.getId(), category)))
+                .doFinally(signal -> categoryStatsCache.invalidate(category));
+    }
+
+    private Mono<Book> cached(Book book, Mono<Book> write) {
+        return write
+                .doOnNext(bookCache::put)
+                .doOnError(error -> bookCache.invalidate(BookKey.of(book)))
+                .doFinally(signal -> categoryStatsCache.invalidate(book.getCategory()));
+    }
+}
@@ -0,0 +1,133 @@
+package com.webFlux.cosmos.resilience.store;
+
+import com.webFlux.cosmos.resilience.model.Book;
+import com.webFlux.cosmos.resilience.model.BookField;
+import com.webFlux.cosmos.resilience.model.BookKey;
+import com.webFlux.cosmos.resilience.model.BookPage;
+import com.webFlux.cosmos.resilience.model.BookProjection;
+import com.webFlux.cosmos.resilience.model.BulkItemResult;
+import com.webFlux.cosmos.resilience.model.CategoryStats;
+import com.webFlux.cosmos.resilience.model.PricePatch;
+import com.webFlux.cosmos.resilience.util.ReadCoalescer;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Sends point reads through the {@link ReadCoalescer}, which shares identical reads in flight and turns
+ * reads of one category arriving together into one read-many. Everything else goes to the delegate.
+ */
+public class CoalescingBookStore implements BookStore {
+
+    private final BookStore delegate;
+    private final ReadCoalescer readCoalescer;
+
+    public CoalescingBookStore(BookStore delegate, ReadCoalescer readCoalescer) {
+        this.delegate = delegate;
+        this.readCoalescer = readCoalescer;
+    }
+
+    @Override
+    public Mono<Book> read(BookKey key) {
+        return readCoalescer
+                .read(key, delegate::read, delegate::readMany)
+                .switchIfEmpty(Mono.error(() -> new BookStoreException(BookStoreException.NOT_FOUND)));
+    }
+
+    @Override
+    public Mono<Book> readIfChanged(BookKey key, String etag) {
+        return delegate.readIfChanged(key, etag);
+    }
+
+    @Override
+    public Flux<Book> readMany(String category, List<String> ids) {
+        return delegate.readMany(category, ids);
+    }
+
+    @Override
+    public Flux<Book> queryByCategory(String category, int pageSize) {
+        return delegate.queryByCategory(category, pageSize);
+    }
+
+    @Override
+    public Mono<BookPage> queryByCategoryPage(String category, int pageSize, String continuationToken) {
+        return delegate.queryByCategoryPage(category, pageSize, continuationToken);
+    }
+
+    @Override
+    public Flux<Book> queryByIsbn(String isbn) {
+        return delegate.queryByIsbn(isbn);
+    }
+
+    @Override
+    public Flux<Book> scan(int pageSize) {
+        return delegate.scan(pageSize);
+    }
+
+    @Override
+    public Mono<BookPage> scanPage(int pageSize, String continuationToken) {
+        return delegate.scanPage(pageSize, continuationToken);
+    }
+
+    @Override
+    public Flux<Book> scanIsbnLocations() {
+        return delegate.scanIsbnLocations();
+    }
+
+    @Override
+    public Flux<BookProjection> projectByCategory(String category, Set<BookField> fields) {
+        return delegate.projectByCategory(category, fields);
+    }
+
+    @Override
+    public Flux<BookProjection> projectByIsbn(String isbn, Set<BookField> fields) {
+        return delegate.projectByIsbn(isbn, fields);
+    }
+
+    @Override
+    public Flux<BookProjection> projectAll(Set<BookField> fields) {
+        return delegate.projectAll(fields);
+    }
+
+    @Override
+    public Flux<String> categories() {
+        return delegate.categories();
+    }
+
+    @Override
+    public Mono<CategoryStats> categoryStats(String category) {
+        return delegate.categoryStats(category);
+    }
+
+    @Override
+    public Mono<Book> create(Book book) {
+        return delegate.create(book);
+    }
+
+    @Override
+    public Mono<Book> upsert(Book book) {
+        return delegate.upsert(book);
+    }
+
+    @Override
+    public Mono<Book> replace(Book book, String ifMatchEtag) {
+        return delegate.replace(book, ifMatchEtag);
+    }
+
+    @Override
+    public Flux<BulkItemResult> bulkUpsert(List<Book> books) {
+        return delegate.bulkUpsert(books);
+    }
+
+    @Override
+    public Mono<Book> patch(BookKey key, PricePatch patch, String ifMatchEtag) {
+        return delegate.patch(key, patch, ifMatchEtag);
+    }
+
+    @Override
+    public Flux<BulkItemResult> bulkPatch(String category, List<PricePatch> patches) {
+        return delegate.bulkPatch(category, patches);
+    }
+}
@@ -0,0 +1,388 @@
+package com.webFlux.cosmos.resilience.store;
+
+import com.azure.cosmos.CosmosAsyncContainer;
+import com.azure.cosmos.CosmosException;
+import com.azure.cosmos.models.*;
+import com.azure.cosmos.util.CosmosPagedFlux;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.webFlux.cosmos.resilience.metrics.BookOperation;
+import com.webFlux.cosmos.resilience.metrics.LatencyRecorder;
+import com.webFlux.cosmos.resilience.model.Book;
+import com.webFlux.cosmos.resilience.model.BookField;
+import com.webFlux.cosmos.resilience.model.BookKey;
+import com.webFlux.cosmos.resilience.model.BookPage;
+import com.webFlux.cosmos.resilience.model.BookProjection;
+import com.webFlux.cosmos.resilience.model.BulkItemResult;
+import com.webFlux.cosmos.resilience.model.CategoryStats;
+import com.webFlux.cosmos.resilience.model.PricePatch;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * {@link BookStore} over a Cosmos container partitioned on {@code /category}. Slow calls have their
+ * Cosmos diagnostics logged through the {@link LatencyRecorder}. Writes do not ask for the stored
+ * document back and complete with a copy of the book that was sent, carrying the etag Cosmos returned.
+ */
+public class CosmosBookStore implements BookStore {
+    private static final String SCAN_QUERY = "SELECT * FROM o";
+    private static final int NOT_MODIFIED = 304;
+    private static final String ISBN_LOCATION_QUERY = "SELECT o.id, o.category, o.isbn FROM o";
+    // reads documents that come back as JSON, skipping the system properties other than the etag
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private static final String CATEGORIES_QUERY = "SELECT DISTINCT VALUE o.category FROM o";
+    private static final String CATEGORY_PREDICATE = " WHERE o.category = @category";
+    private static final String ISBN_PREDICATE = " WHERE o.isbn = @isbn";
+    private static final String BY_CATEGORY_QUERY = "SELECT * FROM o" + CATEGORY_PREDICATE;
+    private static final String BY_ISBN_QUERY = "SELECT * FROM o" + ISBN_PREDICATE;
+    private static final String CATEGORY_STATS_QUERY = "SELECT COUNT(1) AS count, MIN(o.price) AS minPrice, MAX(o.price) AS maxPrice, "
+            + "SUM(o.price) AS sumPrice, MIN(o.discountedPrice) AS minDiscountedPrice, MAX(o.discountedPrice) AS maxDiscountedPrice, "
+            + "SUM(o.discountedPrice) AS sumDiscountedPrice FROM o" + CATEGORY_PREDICATE;
+
+    private final Mono<CosmosAsyncContainer> container;
+    private final LatencyRecorder latencyRecorder;
+    // one set of projected queries per field set, at most 2^7 of them as the id and category are always selected
+    private final ConcurrentHashMap<Set<BookField>, ProjectedQueries> projectedQueries = new ConcurrentHashMap<>();
+    // specs bound to a category are kept, there are few categories; isbns are too many to keep a spec for each
+    private final ConcurrentHashMap<String, SqlQuerySpec> categoryQuerySpecs = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, SqlQuerySpec> categoryStatsSpecs = new ConcurrentHashMap<>();
+
+    /**
+     * @param container completes with the container once it is usable; calls made before that wait on it
+     *                  instead of failing, so the store can be built before the client has connected
+     */
+    public CosmosBookStore(Mono<CosmosAsyncContainer> container, LatencyRecorder latencyRecorder) {
+        this.container = container;
+        this.latencyRecorder = latencyRecorder;
+    }
+
+    @Override
+    public Mono<Book> read(BookKey key) {
+        CosmosItemRequestOptions cosmosItemRequestOptions = new CosmosItemRequestOptions();
+        return latencyRecorder
+                .diagnoseItem(BookOperation.POINT_READ, container.flatMap(cosmosContainer -> cosmosContainer
+                        .readItem(key.getId(), new PartitionKey(key.getCategory()), cosmosItemRequestOptions, Book.class)))
+                .map(CosmosBookStore::versioned);
+    }
+
+    @Override
+    public Mono<Book> readIfChanged(BookKey key, String etag) {
+        CosmosItemRequestOptions cosmosItemRequestOptions = new CosmosItemRequestOptions();
+        cosmosItemRequestOptions.setIfNoneMatchETag(etag);
+        return latencyRecorder
+                .diagnoseItem(BookOperation.POINT_READ, container.flatMap(cosmosContainer -> cosmosContainer
+                        .readItem(key.getId(), new PartitionKey(key.getCategory()), cosmosItemRequestOptions, Book.class)))
+                .onErrorResume(error -> error instanceof CosmosException && ((CosmosException) error).getStatusCode() == NOT_MODIFIED,
+                        error -> Mono.empty())
+                // checked before the item is touched, so an unchanged book is never deserialized
+                .filter(response -> response.getStatusCode() != NOT_MODIFIED)
+                .map(CosmosBookStore::versioned);
+    }
+
+    @Override
+    public Flux<Book> readMany(String category, List<String> ids) {
+        PartitionKey partitionKey = new PartitionKey(category);
+        List<CosmosItemIdentity> identities = new ArrayList<>(ids.size());
+        ids.forEach(id -> identities.add(new CosmosItemIdentity(partitionKey, id)));
+        // read as documents, as a book leaves out the _etag of each one
+        return items(BookOperation.READ_MANY, cosmosContainer -> cosmosContainer
+                .readMany(identities, JsonNode.class)
+                .flux())
+                .map(CosmosBookStore::versioned);
+    }
+
+    @Override
+    public Flux<Book> queryByCategory(String category, int pageSize) {
+        CosmosQueryRequestOptions cosmosQueryRequestOptions = categoryQueryOptions(category);
+        return items(BookOperation.CATEGORY_QUERY, cosmosContainer -> byPage(cosmosContainer
+                .queryItems(categoryQuerySpec(category), bufferedUpTo(cosmosQueryRequestOptions, pageSize), Book.class), pageSize));
+    }
+
+    @Override
+    public Mono<BookPage> queryByCategoryPage(String category, int pageSize, String continuationToken) {
+        return firstPage(BookOperation.CATEGORY_QUERY, cosmosContainer -> cosmosContainer
+                .queryItems(categoryQuerySpec(category), categoryQueryOptions(category), Book.class)
+                .byPage(continuationToken, pageSize));
+    }
+
+    @Override
+    public Flux<Book> queryByIsbn(String isbn) {
+        CosmosQueryRequestOptions cosmosQueryRequestOptions = new CosmosQueryRequestOptions();
+        SqlQuerySpec querySpec = querySpec(BY_ISBN_QUERY, "@isbn", isbn);
+        return items(BookOperation.ISBN_QUERY, cosmosContainer -> cosmosContainer
+                .queryItems(querySpec, cosmosQueryRequestOptions, Book.class)
+                .byPage());
+    }
+
+    @Override
+    public Flux<Book> scan(int pageSize) {
+        CosmosQueryRequestOptions cosmosQueryRequestOptions = new CosmosQueryRequestOptions();
+        return items(BookOperation.SCAN, cosmosContainer -> byPage(cosmosContainer
+                .queryItems(SCAN_QUERY, bufferedUpTo(cosmosQueryRequestOptions, pageSize), Book.class), pageSize));
+    }
+
+    @Override
+    public Mono<BookPage> scanPage(int pageSize, String continuationToken) {
+        return firstPage(BookOperation.SCAN, cosmosContainer -> cosmosContainer
+                .queryItems(SCAN_QUERY, new CosmosQueryRequestOptions(), Book.class)
+                .byPage(continuationToken, pageSize));
+    }
+
+    @Override
+    public Flux<Book> scanIsbnLocations() {
+        return items(BookOperation.SCAN, cosmosContainer -> cosmosContainer
+                .queryItems(ISBN_LOCATION_QUERY, new CosmosQueryRequestOptions(), Book.class)
+                .byPage());
+    }
+
+    @Override
+    public Flux<BookProjection> projectByCategory(String category, Set<BookField> fields) {
+        SqlQuerySpec querySpec = querySpec(projected(fields).byCategory, "@category", category);
+        return items(BookOperation.CATEGORY_QUERY, cosmosContainer -> cosmosContainer
+                .queryItems(querySpec, categoryQueryOptions(category), BookProjection.class)
+                .byPage());
+    }
+
+    @Override
+    public Flux<BookProjection> projectByIsbn(String isbn, Set<BookField> fields) {
+        SqlQuerySpec querySpec = querySpec(projected(fields).byIsbn, "@isbn", isbn);
+        return items(BookOperation.ISBN_QUERY, cosmosContainer -> cosmosContainer
+                .queryItems(querySpec, new CosmosQueryRequestOptions(), BookProjection.class)
+                .byPage());
+    }
+
+    @Override
+    public Flux<BookProjection> projectAll(Set<BookField> fields) {
+        String query = projected(fields).all;
+        return items(BookOperation.SCAN, cosmosContainer -> cosmosContainer
+                .queryItems(query, new CosmosQueryRequestOptions(), BookProjection.class)
+                .byPage());
+    }
+
+    @Override
+    public Flux<String> categories() {
+        return items(BookOperation.STATS, cosmosContainer -> cosmosContainer
+                .queryItems(CATEGORIES_QUERY, new CosmosQueryRequestOptions(), String.class)
+                .byPage());
+    }
+
+    /**
+     * Runs the aggregates inside the category's partition, so only one small document comes back.
+     */
+    @Override
+    public Mono<CategoryStats> categoryStats(String category) {
+        SqlQuerySpec querySpec = categoryStatsSpecs.computeIfAbsent(category, k -> querySpec(CATEGORY_STATS_QUERY, "@category", k));
+        return items(BookOperation.STATS, cosmosContainer -> cosmosContainer
+                .queryItems(querySpec, categoryQueryOptions(category), CategoryStats.class)
+                .byPage())
+                .next()
+                .defaultIfEmpty(new CategoryStats())
+                .doOnNext(stats -> stats.setCategory(category));
+    }
+
+    @Override
+    public Mono<Book> create(Book book) {
+        CosmosItemRequestOptions cosmosItemRequestOptions = new CosmosItemRequestOptions();
+        cosmosItemRequestOptions.setContentResponseOnWriteEnabled(false);
+        return latencyRecorder
+                .diagnoseItem(BookOperation.CREATE, container.flatMap(cosmosContainer -> cosmosContainer
+                        .createItem(book, new PartitionKey(book.getCategory()), cosmosItemRequestOptions)))
+                .map(response -> written(book, response));
+    }
+
+    @Override
+    public Mono<Book> upsert(Book book) {
+        CosmosItemRequestOptions cosmosItemRequestOptions = new CosmosItemRequestOptions();
+        cosmosItemRequestOptions.setContentResponseOnWriteEnabled(false);
+        return latencyRecorder
+                .diagnoseItem(BookOperation.UPSERT, container.flatMap(cosmosContainer -> cosmosContainer
+                        .upsertItem(book, new PartitionKey(book.getCategory()), cosmosItemRequestOptions)))
+                .map(response -> written(book, response));
+    }
+
+    @Override
+    public Mono<Book> replace(Book book, String ifMatchEtag) {
+        CosmosItemRequestOptions cosmosItemRequestOptions = new CosmosItemRequestOptions();
+        cosmosItemRequestOptions.setContentResponseOnWriteEnabled(false);
+        if (ifMatchEtag != null) {
+            cosmosItemRequestOptions.setIfMatchETag(ifMatchEtag);
+        }
+        return latencyRecorder
+                .diagnoseItem(BookOperation.REPLACE, container.flatMap(cosmosContainer -> cosmosContainer
+                        .replaceItem(book, book.getId(), new PartitionKey(book.getCategory()), cosmosItemRequestOptions)))
+                .map(response -> written(book, response));
+    }
+
+    @Override
+    public Flux<BulkItemResult> bulkUpsert(List<Book> books) {
+        CosmosBulkItemRequestOptions cosmosBulkItemRequestOptions = new CosmosBulkItemRequestOptions().setContentResponseOnWriteEnabled(false);
+        Flux<CosmosItemOperation> operations = Flux
+                .fromIterable(books)
+                .map(book -> CosmosBulkOperations.getUpsertItemOperation(book, new PartitionKey(book.getCategory()), cosmosBulkItemRequestOptions));
+        return container
+                .flatMapMany(cosmosContainer -> cosmosContainer.<Object>executeBulkOperations(operations))
+                .map(operationResponse -> {
+                    Book book = operationResponse
+                            .getOperation()
+                            .getItem();
+                    return toBulkItemResult(operationResponse, book.getId(), book.getCategory());
+                })
+                .doOnNext(result -> latencyRecorder.recordCharge(BookOperation.BULK_UPSERT, result.getRequestCharge()));
+    }
+
+    @Override
+    public Mono<Book> patch(BookKey key, PricePatch patch, String ifMatchEtag) {
+        CosmosPatchItemRequestOptions cosmosPatchItemRequestOptions = new CosmosPatchItemRequestOptions();
+        // the whole book comes back, so the cache can be refreshed without another read
+        cosmosPatchItemRequestOptions.setContentResponseOnWriteEnabled(true);
+        if (ifMatchEtag != null) {
+            cosmosPatchItemRequestOptions.setIfMatchETag(ifMatchEtag);
+        }
+        return latencyRecorder
+                .diagnoseItem(BookOperation.PATCH, container.flatMap(cosmosContainer -> cosmosContainer
+                        .patchItem(key.getId(), new PartitionKey(key.getCategory()), patchOperations(patch), cosmosPatchItemRequestOptions, Book.class)))
+                .map(CosmosBookStore::versioned);
+    }
+
+    @Override
+    public Flux<BulkItemResult> bulkPatch(String category, List<PricePatch> patches) {
+        PartitionKey partitionKey = new PartitionKey(category);
+        CosmosBulkPatchItemRequestOptions cosmosBulkPatchItemRequestOptions = new CosmosBulkPatchItemRequestOptions();
+        cosmosBulkPatchItemRequestOptions.setContentResponseOnWriteEnabled(false);
+        Flux<CosmosItemOperation> operations = Flux
+                .fromIterable(patches)
+                .map(patch -> CosmosBulkOperations.getPatchItemOperation(patch.getId(), partitionKey, patchOperations(patch),
+                        cosmosBulkPatchItemRequestOptions));
+        return container
+                .flatMapMany(cosmosContainer -> cosmosContainer.<Object>executeBulkOperations(operations))
+                .map(operationResponse -> toBulkItemResult(operationResponse, operationResponse
+                        .getOperation()
+                        .getId(), category))
+                .doOnNext(result -> latencyRecorder.recordCharge(BookOperation.BULK_PATCH, result.getRequestCharge()));
+    }
+
+    private static Book written(Book book, CosmosItemResponse<Book> response) {
+        Book written = InMemoryBookStore.copy(book);
+        written.setEtag(response.getETag());
+        return written;
+    }
+
+    private static Book versioned(CosmosItemResponse<Book> response) {
+        Book book = response.getItem();
+        book.setEtag(response.getETag());
+        return book;
+    }
+
+    private static Book versioned(JsonNode document) {
+        try {
+            Book book = OBJECT_MAPPER.treeToValue(document, Book.class);
+            JsonNode etag = document.get("_etag");
+            book.setEtag(etag == null ? null : etag.asText());
+            return book;
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Stored document " + document.get("id") + " is not a book", e);
+        }
+    }
+
+    private static CosmosPatchOperations patchOperations(PricePatch patch) {
+        CosmosPatchOperations cosmosPatchOperations = CosmosPatchOperations.create();
+        if (patch.getPrice() != null) {
+            cosmosPatchOperations.set("/price", patch.getPrice());
+        }
+        if (patch.getDiscountedPrice() != null) {
+            cosmosPatchOperations.set("/discountedPrice", patch.getDiscountedPrice());
+        }
+        return cosmosPatchOperations;
+    }
+
+    private static CosmosQueryRequestOptions bufferedUpTo(CosmosQueryRequestOptions cosmosQueryRequestOptions, int pageSize) {
+        if (pageSize > 0) {
+            cosmosQueryRequestOptions.setMaxBufferedItemCount(pageSize);
+        }
+        return cosmosQueryRequestOptions;
+    }
+
+    private static Flux<FeedResponse<Book>> byPage(CosmosPagedFlux<Book> pagedFlux, int pageSize) {
+        return pageSize > 0 ? pagedFlux.byPage(pageSize) : pagedFlux.byPage();
+    }
+
+    private <T> Flux<T> items(BookOperation operation, Function<CosmosAsyncContainer, Flux<FeedResponse<T>>> pages) {
+        return latencyRecorder
+                .diagnosePages(operation, container.flatMapMany(pages))
+                .concatMapIterable(FeedResponse::getResults, 1);
+    }
+
+    private ProjectedQueries projected(Set<BookField> fields) {
+        return projectedQueries.computeIfAbsent(fields, selected -> new ProjectedQueries(selected
+                .stream()
+                .map(field -> "o." + field.getProperty())
+                .collect(Collectors.joining(", ", "SELECT ", " FROM o"))));
+    }
+
+    private Mono<BookPage> firstPage(BookOperation operation, Function<CosmosAsyncContainer, Flux<FeedResponse<Book>>> pages) {
+        return latencyRecorder
+                .diagnosePages(operation, container.flatMapMany(pages))
+                .filter(page -> !page
+                        .getResults()
+                        .isEmpty() || page.getContinuationToken() == null)
+                .next()
+                .map(page -> new BookPage(page.getResults(), page.getContinuationToken()))
+                .defaultIfEmpty(new BookPage(Collections.emptyList(), null));
+    }
+
+    private SqlQuerySpec categoryQuerySpec(String category) {
+        return categoryQuerySpecs.computeIfAbsent(category, k -> querySpec(BY_CATEGORY_QUERY, "@category", k));
+    }
+
+    private static SqlQuerySpec querySpec(String query, String parameterName, Object value) {
+        List<SqlParameter> sqlParameters = new ArrayList<>();
+        sqlParameters.add(new SqlParameter(parameterName, value));
+        return new SqlQuerySpec(query, sqlParameters);
+    }
+
+    private static CosmosQueryRequestOptions categoryQueryOptions(String category) {
+        CosmosQueryRequestOptions cosmosQueryRequestOptions = new CosmosQueryRequestOptions();
+        cosmosQueryRequestOptions.setPartitionKey(new PartitionKey(category));
+        return cosmosQueryRequestOptions;
+    }
+
+    private static BulkItemResult toBulkItemResult(CosmosBulkOperationResponse<Object> operationResponse, String id, String category) {
+        CosmosBulkItemResponse response = operationResponse.getResponse();
+        if (response == null) {
+            Exception exception = operationResponse.getException();
+            if (exception instanceof CosmosException) {
+                CosmosException cosmosException = (CosmosException) exception;
+                Duration retryAfter = cosmosException.getRetryAfterDuration();
+                return new BulkItemResult(id, category, cosmosException.getStatusCode(), cosmosException.getRequestCharge(),
+                        retryAfter == null ? 0 : retryAfter.toMillis(), String.valueOf(exception));
+            }
+            return new BulkItemResult(id, category, 500, 0, 0, String.valueOf(exception));
+        }
+        Duration retryAfter = response.getRetryAfterDuration();
+        return new BulkItemResult(id, category, response.getStatusCode(), response.getRequestCharge(),
+                retryAfter == null ? 0 : retryAfter.toMillis(), response.isSuccessStatusCode() ? null : "status " + response.getStatusCode());
+    }
+
+    private static final class ProjectedQueries {
+        private final String all;
+        private final String byCategory;
+        private final String byIsbn;
+
+        private ProjectedQueries(String select) {
+            this.all = select;
+            this.byCategory = select + CATEGORY_PREDICATE;
+            this.byIsbn = select + ISBN_PREDICATE;
+        }
+    }
+}
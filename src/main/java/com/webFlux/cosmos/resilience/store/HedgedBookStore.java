@@ -0,0 +1,133 @@
+package com.webFlux.cosmos.resilience.store;
+
+import com.webFlux.cosmos.resilience.model.Book;
+import com.webFlux.cosmos.resilience.model.BookField;
+import com.webFlux.cosmos.resilience.model.BookKey;
+import com.webFlux.cosmos.resilience.model.BookPage;
+import com.webFlux.cosmos.resilience.model.BookProjection;
+import com.webFlux.cosmos.resilience.model.BulkItemResult;
+import com.webFlux.cosmos.resilience.model.CategoryStats;
+import com.webFlux.cosmos.resilience.model.PricePatch;
+import com.webFlux.cosmos.resilience.util.HedgedReads;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Hedges point reads from the primary store with reads from the secondary, per {@link HedgedReads}.
+ * Everything else, conditional reads included, goes to the primary only.
+ */
+public class HedgedBookStore implements BookStore {
+
+    private final BookStore primary;
+    private final BookStore secondary;
+    private final HedgedReads hedgedReads;
+
+    public HedgedBookStore(BookStore primary, BookStore secondary, HedgedReads hedgedReads) {
+        this.primary = primary;
+        this.secondary = secondary;
+        this.hedgedReads = hedgedReads;
+    }
+
+    @Override
+    public Mono<Book> read(BookKey key) {
+        return hedgedReads.hedge(primary.read(key), Mono.defer(() -> secondary.read(key)));
+    }
+
+    @Override
+    public Mono<Book> readIfChanged(BookKey key, String etag) {
+        return primary.readIfChanged(key, etag);
+    }
+
+    @Override
+    public Flux<Book> readMany(String category, List<String> ids) {
+        return primary.readMany(category, ids);
+    }
+
+    @Override
+    public Flux<Book> queryByCategory(String category, int pageSize) {
+        return primary.queryByCategory(category, pageSize);
+    }
+
+    @Override
+    public Mono<BookPage> queryByCategoryPage(String category, int pageSize, String continuationToken) {
+        return primary.queryByCategoryPage(category, pageSize, continuationToken);
+    }
+
+    @Override
+    public Flux<Book> queryByIsbn(String isbn) {
+        return primary.queryByIsbn(isbn);
+    }
+
+    @Override
+    public Flux<Book> scan(int pageSize) {
+        return primary.scan(pageSize);
+    }
+
+    @Override
+    public Mono<BookPage> scanPage(int pageSize, String continuationToken) {
+        return primary.scanPage(pageSize, continuationToken);
+    }
+
+    @Override
+    public Flux<Book> scanIsbnLocations() {
+        return primary.scanIsbnLocations();
+    }
+
+    @Override
+    public Flux<BookProjection> projectByCategory(String category, Set<BookField> fields) {
+        return primary.projectByCategory(category, fields);
+    }
+
+    @Override
+    public Flux<BookProjection> projectByIsbn(String isbn, Set<BookField> fields) {
+        return primary.projectByIsbn(isbn, fields);
+    }
+
+    @Override
+    public Flux<BookProjection> projectAll(Set<BookField> fields) {
+        return primary.projectAll(fields);
+    }
+
+    @Override
+    public Flux<String> categories() {
+        return primary.categories();
+    }
+
+    @Override
+    public Mono<CategoryStats> categoryStats(String category) {
+        return primary.categoryStats(category);
+    }
+
+    @Override
+    public Mono<Book> create(Book book) {
+        return primary.create(book);
+    }
+
+    @Override
+    public Mono<Book> upsert(Book book) {
+        return primary.upsert(book);
+    }
+
+    @Override
+    public Mono<Book> replace(Book book, String ifMatchEtag) {
+        return primary.replace(book, ifMatchEtag);
+    }
+
+    @Override
+    public Flux<BulkItemResult> bulkUpsert(List<Book> books) {
+        return primary.bulkUpsert(books);
+    }
+
+    @Override
+    public Mono<Book> patch(BookKey key, PricePatch patch, String ifMatchEtag) {
+        return primary.patch(key, patch, ifMatchEtag);
+    }
+
+    @Override
+    public Flux<BulkItemResult> bulkPatch(String category, List<PricePatch> patches) {
+        return primary.bulkPatch(category, patches);
+    }
+}
@@ -0,0 +1,301 @@
+package com.webFlux.cosmos.resilience.store;
+
+import com.webFlux.cosmos.resilience.model.Book;
+import com.webFlux.cosmos.resilience.model.BookField;
+import com.webFlux.cosmos.resilience.model.BookKey;
+import com.webFlux.cosmos.resilience.model.BookPage;
+import com.webFlux.cosmos.resilience.model.BookProjection;
+import com.webFlux.cosmos.resilience.model.BulkItemResult;
+import com.webFlux.cosmos.resilience.model.CategoryStats;
+import com.webFlux.cosmos.resilience.model.PricePatch;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free {@link BookStore} held in memory: one skip list of books per category, ordered by id, inside a
+ * skip list of categories. Reads never block writes, queries see a weakly consistent snapshot, and books
+ * are copied on the way in and out so callers cannot alias stored state. Every write gives the stored book
+ * a new etag. Meant for performance tests and read replicas kept at the edge, not as the system of record.
+ */
+public class InMemoryBookStore implements BookStore {
+
+    private static final char TOKEN_SEPARATOR = '\u0000';
+
+    private final ConcurrentSkipListMap<String, ConcurrentSkipListMap<String, Book>> partitions = new ConcurrentSkipListMap<>();
+    private final AtomicLong versions = new AtomicLong();
+
+    @Override
+    public Mono<Book> read(BookKey key) {
+        return Mono.fromSupplier(() -> {
+            Map<String, Book> partition = partitions.get(key.getCategory());
+            Book book = partition == null ? null : partition.get(key.getId());
+            if (book == null) {
+                throw new BookStoreException(BookStoreException.NOT_FOUND);
+            }
+            return copy(book);
+        });
+    }
+
+    @Override
+    public Mono<Book> readIfChanged(BookKey key, String etag) {
+        return read(key).filter(book -> !etag.equals(book.getEtag()));
+    }
+
+    @Override
+    public Flux<Book> readMany(String category, List<String> ids) {
+        return Flux.defer(() -> {
+            Map<String, Book> partition = partitions.get(category);
+            List<Book> books = new ArrayList<>();
+            if (partition != null) {
+                for (String id : ids) {
+                    Book book = partition.get(id);
+                    if (book != null) {
+                        books.add(copy(book));
+                    }
+                }
+            }
+            return Flux.fromIterable(books);
+        });
+    }
+
+    @Override
+    public Flux<Book> queryByCategory(String category, int pageSize) {
+        return Flux.defer(() -> {
+            Map<String, Book> partition = partitions.get(category);
+            return partition == null ? Flux.empty() : Flux
+                    .fromIterable(partition.values())
+                    .map(InMemoryBookStore::copy);
+        });
+    }
+
+    @Override
+    public Mono<BookPage> queryByCategoryPage(String category, int pageSize, String continuationToken) {
+        return Mono.fromSupplier(() -> {
+            NavigableMap<String, Book> partition = partitions.get(category);
+            if (partition == null) {
+                return new BookPage(new ArrayList<>(), null);
+            }
+            NavigableMap<String, Book> remaining = continuationToken == null ? partition : partition.tailMap(continuationToken, false);
+            List<Book> items = take(remaining.values(), pageSize);
+            String next = !items.isEmpty() && items.size() == pageSize && remaining.higherKey(lastId(items)) != null ? lastId(items) : null;
+            return new BookPage(items, next);
+        });
+    }
+
+    @Override
+    public Flux<Book> queryByIsbn(String isbn) {
+        return scan(0).filter(book -> isbn.equals(book.getIsbn()));
+    }
+
+    @Override
+    public Flux<Book> scan(int pageSize) {
+        return Flux.defer(() -> Flux
+                .fromIterable(partitions.values())
+                .concatMapIterable(Map::values)
+                .map(InMemoryBookStore::copy));
+    }
+
+    @Override
+    public Mono<BookPage> scanPage(int pageSize, String continuationToken) {
+        return Mono.fromSupplier(() -> {
+            String category = null;
+            String id = null;
+            if (continuationToken != null) {
+                int separator = continuationToken.indexOf(TOKEN_SEPARATOR);
+                if (separator < 0) {
+                    throw new BookStoreException(BookStoreException.BAD_REQUEST);
+                }
+                category = continuationToken.substring(0, separator);
+                id = continuationToken.substring(separator + 1);
+            }
+            List<Book> items = new ArrayList<>(pageSize);
+            Book last = null;
+            NavigableMap<String, ConcurrentSkipListMap<String, Book>> remaining = category == null ? partitions : partitions.tailMap(category, true);
+            for (Map.Entry<String, ConcurrentSkipListMap<String, Book>> partition : remaining.entrySet()) {
+                NavigableMap<String, Book> books = partition.getKey().equals(category) ? partition.getValue().tailMap(id, false) : partition.getValue();
+                for (Book book : books.values()) {
+                    if (last != null && items.size() == pageSize) {
+                        return new BookPage(items, last.getCategory() + TOKEN_SEPARATOR + last.getId());
+                    }
+                    items.add(copy(book));
+                    last = book;
+                }
+            }
+            return new BookPage(items, null);
+        });
+    }
+
+    @Override
+    public Flux<Book> scanIsbnLocations() {
+        return scan(0).map(book -> {
+            Book location = new Book();
+            location.setId(book.getId());
+            location.setCategory(book.getCategory());
+            location.setIsbn(book.getIsbn());
+            return location;
+        });
+    }
+
+    @Override
+    public Flux<BookProjection> projectByCategory(String category, Set<BookField> fields) {
+        return Flux.defer(() -> {
+            Map<String, Book> partition = partitions.get(category);
+            return partition == null ? Flux.empty() : Flux
+                    .fromIterable(partition.values())
+                    .map(book -> BookField.project(book, fields));
+        });
+    }
+
+    @Override
+    public Flux<BookProjection> projectByIsbn(String isbn, Set<BookField> fields) {
+        return queryByIsbn(isbn).map(book -> BookField.project(book, fields));
+    }
+
+    @Override
+    public Flux<BookProjection> projectAll(Set<BookField> fields) {
+        return scan(0).map(book -> BookField.project(book, fields));
+    }
+
+    @Override
+    public Flux<String> categories() {
+        return Flux.defer(() -> Flux.fromIterable(new ArrayList<>(partitions.keySet())));
+    }
+
+    @Override
+    public Mono<CategoryStats> categoryStats(String category) {
+        return Mono.fromSupplier(() -> {
+            Map<String, Book> partition = partitions.get(category);
+            CategoryStats stats = new CategoryStats();
+            stats.setCategory(category);
+            if (partition != null) {
+                for (Book book : partition.values()) {
+                    stats = CategoryStats.merge(stats, CategoryStats.of(book));
+                }
+            }
+            return stats;
+        });
+    }
+
+    @Override
+    public Mono<Book> create(Book book) {
+        return Mono.fromSupplier(() -> {
+            Book stored = versioned(book);
+            if (partition(book.getCategory()).putIfAbsent(book.getId(), stored) != null) {
+                throw new BookStoreException(BookStoreException.CONFLICT);
+            }
+            return copy(stored);
+        });
+    }
+
+    @Override
+    public Mono<Book> upsert(Book book) {
+        return Mono.fromSupplier(() -> {
+            Book stored = versioned(book);
+            partition(book.getCategory()).put(book.getId(), stored);
+            return copy(stored);
+        });
+    }
+
+    @Override
+    public Mono<Book> replace(Book book, String ifMatchEtag) {
+        return Mono.fromSupplier(() -> {
+            ConcurrentSkipListMap<String, Book> partition = partitions.get(book.getCategory());
+            Book stored = partition == null ? null : partition.computeIfPresent(book.getId(), (id, current) -> {
+                if (ifMatchEtag != null && !ifMatchEtag.equals(current.getEtag())) {
+                    throw new BookStoreException(BookStoreException.PRECONDITION_FAILED);
+                }
+                return versioned(book);
+            });
+            if (stored == null) {
+                throw new BookStoreException(BookStoreException.NOT_FOUND);
+            }
+            return copy(stored);
+        });
+    }
+
+    @Override
+    public Flux<BulkItemResult> bulkUpsert(List<Book> books) {
+        return Flux
+                .fromIterable(books)
+                .map(book -> {
+                    partition(book.getCategory()).put(book.getId(), versioned(book));
+                    return new BulkItemResult(book.getId(), book.getCategory(), 200, 0, 0, null);
+                });
+    }
+
+    @Override
+    public Mono<Book> patch(BookKey key, PricePatch patch, String ifMatchEtag) {
+        return Mono.fromSupplier(() -> copy(patched(key, patch, ifMatchEtag)));
+    }
+
+    @Override
+    public Flux<BulkItemResult> bulkPatch(String category, List<PricePatch> patches) {
+        return Flux
+                .fromIterable(patches)
+                .map(patch -> {
+                    try {
+                        patched(new BookKey(patch.getId(), category), patch, null);
+                        return new BulkItemResult(patch.getId(), category, 200, 0, 0, null);
+                    } catch (BookStoreException e) {
+                        return new BulkItemResult(patch.getId(), category, e.getStatusCode(), 0, 0, "status " + e.getStatusCode());
+                    }
+                });
+    }
+
+    private Book patched(BookKey key, PricePatch patch, String ifMatchEtag) {
+        ConcurrentSkipListMap<String, Book> partition = partitions.get(key.getCategory());
+        // the function may run more than once, but only its last result is stored
+        Book stored = partition == null ? null : partition.computeIfPresent(key.getId(), (id, current) -> {
+            if (ifMatchEtag != null && !ifMatchEtag.equals(current.getEtag())) {
+                throw new BookStoreException(BookStoreException.PRECONDITION_FAILED);
+            }
+            Book book = copy(current);
+            patch.applyTo(book);
+            return versioned(book);
+        });
+        if (stored == null) {
+            throw new BookStoreException(BookStoreException.NOT_FOUND);
+        }
+        return stored;
+    }
+
+    private Book versioned(Book book) {
+        Book stored = copy(book);
+        stored.setEtag("\"" + versions.incrementAndGet() + "\"");
+        return stored;
+    }
+
+    private ConcurrentSkipListMap<String, Book> partition(String category) {
+        return partitions.computeIfAbsent(category, ignored -> new ConcurrentSkipListMap<>());
+    }
+
+    private static List<Book> take(Collection<Book> books, int count) {
+        List<Book> items = new ArrayList<>(count);
+        Iterator<Book> iterator = books.iterator();
+        while (items.size() < count && iterator.hasNext()) {
+            items.add(copy(iterator.next()));
+        }
+        return items;
+    }
+
+    private static String lastId(List<Book> books) {
+        return books.isEmpty() ? null : books.get(books.size() - 1).getId();
+    }
+
+    static Book copy(Book book) {
+        Book copy = new Book(book.getId(), book.getCategory(), book.getIsbn(), book.getTitle(), book.getAuthor(),
+                book.getDescription(), book.getPrice(), book.getDiscountedPrice(), book.getImage());
+        copy.setEtag(book.getEtag());
+        return copy;
+    }
+}
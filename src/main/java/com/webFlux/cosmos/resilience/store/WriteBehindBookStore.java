@@ -0,0 +1,225 @@
+package com.webFlux.cosmos.resilience.store;
+
+import com.webFlux.cosmos.resilience.model.Book;
+import com.webFlux.cosmos.resilience.model.BookField;
+import com.webFlux.cosmos.resilience.model.BookKey;
+import com.webFlux.cosmos.resilience.model.BookPage;
+import com.webFlux.cosmos.resilience.model.BookProjection;
+import com.webFlux.cosmos.resilience.model.BulkItemResult;
+import com.webFlux.cosmos.resilience.model.CategoryStats;
+import com.webFlux.cosmos.resilience.model.PricePatch;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Sends upserts through the {@link WriteBehindBuffer} when write-behind is enabled, and serves point
+ * reads of pending books from it, so a caller reads its own writes. Queries see a buffered upsert once
+ * it has been flushed. A create of a pending book fails with 409, and a bulk write drops the pending
+ * upserts of its books, as it is newer. A patch or replace of a pending book applies to the pending
+ * upsert, which has no etag yet, so a conditional one fails with 412 and a conditional read returns
+ * it. Everything else goes to the delegate.
+ */
+public class WriteBehindBookStore implements BookStore {
+
+    private final BookStore delegate;
+    private final WriteBehindBuffer writeBehindBuffer;
+
+    public WriteBehindBookStore(BookStore delegate, WriteBehindBuffer writeBehindBuffer) {
+        this.delegate = delegate;
+        this.writeBehindBuffer = writeBehindBuffer;
+        writeBehindBuffer.attach(delegate::bulkUpsert);
+    }
+
+    @Override
+    public Mono<Book> read(BookKey key) {
+        if (!writeBehindBuffer.isEnabled()) {
+            return delegate.read(key);
+        }
+        return Mono.defer(() -> {
+            Book pending = writeBehindBuffer.pending(key);
+            return pending != null ? Mono.just(pending) : delegate.read(key);
+        });
+    }
+
+    @Override
+    public Mono<Book> readIfChanged(BookKey key, String etag) {
+        if (!writeBehindBuffer.isEnabled()) {
+            return delegate.readIfChanged(key, etag);
+        }
+        return Mono.defer(() -> {
+            Book pending = writeBehindBuffer.pending(key);
+            return pending != null ? Mono.just(pending) : delegate.readIfChanged(key, etag);
+        });
+    }
+
+    @Override
+    public Flux<Book> readMany(String category, List<String> ids) {
+        if (!writeBehindBuffer.isEnabled()) {
+            return delegate.readMany(category, ids);
+        }
+        return Flux.defer(() -> {
+            List<Book> pending = new ArrayList<>();
+            List<String> remaining = new ArrayList<>(ids.size());
+            for (String id : ids) {
+                Book book = writeBehindBuffer.pending(new BookKey(id, category));
+                if (book != null) {
+                    pending.add(book);
+                } else {
+                    remaining.add(id);
+                }
+            }
+            Flux<Book> buffered = Flux.fromIterable(pending);
+            return remaining.isEmpty() ? buffered : buffered.concatWith(delegate.readMany(category, remaining));
+        });
+    }
+
+    @Override
+    public Flux<Book> queryByCategory(String category, int pageSize) {
+        return delegate.queryByCategory(category, pageSize);
+    }
+
+    @Override
+    public Mono<BookPage> queryByCategoryPage(String category, int pageSize, String continuationToken) {
+        return delegate.queryByCategoryPage(category, pageSize, continuationToken);
+    }
+
+    @Override
+    public Flux<Book> queryByIsbn(String isbn) {
+        return delegate.queryByIsbn(isbn);
+    }
+
+    @Override
+    public Flux<Book> scan(int pageSize) {
+        return delegate.scan(pageSize);
+    }
+
+    @Override
+    public Mono<BookPage> scanPage(int pageSize, String continuationToken) {
+        return delegate.scanPage(pageSize, continuationToken);
+    }
+
+    @Override
+    public Flux<Book> scanIsbnLocations() {
+        return delegate.scanIsbnLocations();
+    }
+
+    @Override
+    public Flux<BookProjection> projectByCategory(String category, Set<BookField> fields) {
+        return delegate.projectByCategory(category, fields);
+    }
+
+    @Override
+    public Flux<BookProjection> projectByIsbn(String isbn, Set<BookField> fields) {
+        return delegate.projectByIsbn(isbn, fields);
+    }
+
+    @Override
+    public Flux<BookProjection> projectAll(Set<BookField> fields) {
+        return delegate.projectAll(fields);
+    }
+
+    @Override
+    public Flux<String> categories() {
+        return delegate.categories();
+    }
+
+    @Override
+    public Mono<CategoryStats> categoryStats(String category) {
+        return delegate.categoryStats(category);
+    }
+
+    @Override
+    public Mono<Book> create(Book book) {
+        if (!writeBehindBuffer.isEnabled()) {
+            return delegate.create(book);
+        }
+        return Mono.defer(() -> writeBehindBuffer.pending(BookKey.of(book)) != null
+                ? Mono.error(new BookStoreException(BookStoreException.CONFLICT))
+                : delegate.create(book));
+    }
+
+    @Override
+    public Mono<Book> upsert(Book book) {
+        if (!writeBehindBuffer.isEnabled()) {
+            return delegate.upsert(book);
+        }
+        return writeBehindBuffer
+                .put(book)
+                .switchIfEmpty(Mono.defer(() -> delegate.upsert(book)));
+    }
+
+    @Override
+    public Mono<Book> replace(Book book, String ifMatchEtag) {
+        if (!writeBehindBuffer.isEnabled()) {
+            return delegate.replace(book, ifMatchEtag);
+        }
+        return Mono.defer(() -> {
+            if (writeBehindBuffer.pending(BookKey.of(book)) == null) {
+                return delegate.replace(book, ifMatchEtag);
+            }
+            if (ifMatchEtag != null) {
+                return Mono.error(new BookStoreException(BookStoreException.PRECONDITION_FAILED));
+            }
+            return upsert(book);
+        });
+    }
+
+    @Override
+    public Flux<BulkItemResult> bulkUpsert(List<Book> books) {
+        if (!writeBehindBuffer.isEnabled()) {
+            return delegate.bulkUpsert(books);
+        }
+        List<BookKey> keys = new ArrayList<>(books.size());
+        books.forEach(book -> keys.add(BookKey.of(book)));
+        return writeBehindBuffer
+                .supersede(keys)
+                .thenMany(Flux.defer(() -> delegate.bulkUpsert(books)));
+    }
+
+    @Override
+    public Mono<Book> patch(BookKey key, PricePatch patch, String ifMatchEtag) {
+        if (!writeBehindBuffer.isEnabled()) {
+            return delegate.patch(key, patch, ifMatchEtag);
+        }
+        return Mono.defer(() -> {
+            if (writeBehindBuffer.pending(key) == null) {
+                return delegate.patch(key, patch, ifMatchEtag);
+            }
+            if (ifMatchEtag != null) {
+                return Mono.error(new BookStoreException(BookStoreException.PRECONDITION_FAILED));
+            }
+            return writeBehindBuffer
+                    .patch(key, patch)
+                    .switchIfEmpty(Mono.defer(() -> delegate.patch(key, patch, null)));
+        });
+    }
+
+    @Override
+    public Flux<BulkItemResult> bulkPatch(String category, List<PricePatch> patches) {
+        if (!writeBehindBuffer.isEnabled()) {
+            return delegate.bulkPatch(category, patches);
+        }
+        return Flux.defer(() -> {
+            List<PricePatch> buffered = new ArrayList<>();
+            List<PricePatch> remaining = new ArrayList<>(patches.size());
+            for (PricePatch patch : patches) {
+                if (writeBehindBuffer.pending(new BookKey(patch.getId(), category)) != null) {
+                    buffered.add(patch);
+                } else {
+                    remaining.add(patch);
+                }
+            }
+            Flux<BulkItemResult> patched = Flux
+                    .fromIterable(buffered)
+                    .concatMap(patch -> writeBehindBuffer
+                            .patch(new BookKey(patch.getId(), category), patch)
+                            .map(book -> new BulkItemResult(patch.getId(), category, 200, 0, 0, null))
+                            .switchIfEmpty(delegate.bulkPatch(category, List.of(patch)).next()));
+            return remaining.isEmpty() ? patched : patched.concatWith(delegate.bulkPatch(category, remaining));
+        });
+    }
+}
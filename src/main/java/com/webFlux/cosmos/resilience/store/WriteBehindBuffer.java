@@ -0,0 +1,327 @@
+package com.webFlux.cosmos.resilience.store;
+
+import com.webFlux.cosmos.resilience.model.Book;
+import com.webFlux.cosmos.resilience.model.BookKey;
+import com.webFlux.cosmos.resilience.model.BulkItemResult;
+import com.webFlux.cosmos.resilience.model.PricePatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import javax.annotation.PreDestroy;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Buffers upserts and writes them behind the caller. An upsert is acknowledged once it is buffered,
+ * and journaled unless {@code writeBehind.journalMode} is {@code none}; the last upsert of a book within
+ * {@code writeBehind.flushMs} wins, and every flush sends what is pending as bulk batches grouped by
+ * category. A book whose write times out, is throttled or hits a server error stays pending for the
+ * next flush; any other failure, such as a 400 or 413, would fail again, so the book is dropped and
+ * logged. A {@link Listener} hears of every category a flush has written, once the flush is over, and
+ * of every dropped book, which was acknowledged but never stored. Once {@code writeBehind.maxPending}
+ * books are pending, upserts of other books are written through. Books still pending at shutdown, or
+ * after a crash, are replayed from the journal on the next start.
+ */
+@Component
+public class WriteBehindBuffer {
+
+    private static final int FLUSH_CONCURRENCY = 4;
+    private static final Duration SHUTDOWN_FLUSH_TIMEOUT = Duration.ofSeconds(10);
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final boolean enabled;
+    private final Duration flushInterval;
+    private final int maxPending;
+    private final int batchSize;
+    private final WriteBehindJournal journal;
+
+    private final ConcurrentHashMap<BookKey, Book> pending = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushing = new AtomicBoolean();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private volatile Function<List<Book>, Flux<BulkItemResult>> writer;
+    private volatile Disposable flushLoop;
+
+    private final LongAdder buffered = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder writtenThrough = new LongAdder();
+    private final LongAdder replayed = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder flushed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    @Autowired
+    public WriteBehindBuffer(@Value("${writeBehind.enabled:false}") final boolean enabled,
+                             @Value("${writeBehind.flushMs:1000}") final long flushMs,
+                             @Value("${writeBehind.maxPending:10000}") final int maxPending,
+                             @Value("${bulk.batchSize:100}") final int batchSize,
+                             @Value("${writeBehind.journalMode:write}") final String journalMode,
+                             @Value("${writeBehind.journalPath:write-behind.journal}") final String journalPath) {
+        this(enabled, flushMs, maxPending, batchSize,
+                new WriteBehindJournal(WriteBehindJournal.Mode.valueOf(journalMode.toUpperCase(Locale.ROOT)), Paths.get(journalPath)));
+    }
+
+    public WriteBehindBuffer(boolean enabled, long flushMs, int maxPending, int batchSize, WriteBehindJournal journal) {
+        this.enabled = enabled;
+        this.flushInterval = Duration.ofMillis(flushMs);
+        this.maxPending = maxPending;
+        this.batchSize = Math.max(1, batchSize);
+        this.journal = journal;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Sets where flushes are written and takes back the books journaled before the last shutdown.
+     */
+    public void attach(Function<List<Book>, Flux<BulkItemResult>> writer) {
+        if (!enabled) {
+            return;
+        }
+        if (this.writer != null) {
+            throw new IllegalStateException("Write-behind buffer is already attached to a book store");
+        }
+        this.writer = writer;
+        for (Book book : journal.replay()) {
+            pending.put(BookKey.of(book), book);
+            replayed.increment();
+        }
+        if (!pending.isEmpty()) {
+            logger.info("Replayed {} pending writes from the write-behind journal", pending.size());
+        }
+    }
+
+    public void listen(Listener listener) {
+        listeners.add(listener);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        flushLoop = Flux
+                .interval(flushInterval)
+                .onBackpressureDrop()
+                .concatMap(tick -> flush())
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (flushLoop != null) {
+            flushLoop.dispose();
+        }
+        if (enabled && writer != null) {
+            try {
+                flush().block(SHUTDOWN_FLUSH_TIMEOUT);
+            } catch (RuntimeException e) {
+                logger.warn("Final write-behind flush failed, {} writes are left in the journal", pending.size(), e);
+            }
+        }
+        journal.close();
+    }
+
+    /**
+     * Buffers the upsert, completing with a copy of the book once it is buffered, or empty when the
+     * buffer is full and the caller has to write it through.
+     */
+    public Mono<Book> put(Book book) {
+        return Mono
+                .fromCallable(() -> {
+                    BookKey key = BookKey.of(book);
+                    if (pending.size() >= maxPending && !pending.containsKey(key)) {
+                        writtenThrough.increment();
+                        return null;
+                    }
+                    Book copy = InMemoryBookStore.copy(book);
+                    // the journal is rewritten from the pending map, so a book is pending before it is appended
+                    synchronized (journal) {
+                        if (pending.put(key, copy) != null) {
+                            coalesced.increment();
+                        }
+                        journal.append(copy);
+                    }
+                    buffered.increment();
+                    return InMemoryBookStore.copy(copy);
+                })
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Applies the patch to the pending upsert of the book, completing with a copy of the patched book,
+     * or empty when nothing is pending for the key.
+     */
+    public Mono<Book> patch(BookKey key, PricePatch patch) {
+        return Mono
+                .fromCallable(() -> {
+                    Book patched;
+                    synchronized (journal) {
+                        patched = pending.computeIfPresent(key, (ignored, current) -> {
+                            Book book = InMemoryBookStore.copy(current);
+                            patch.applyTo(book);
+                            return book;
+                        });
+                        if (patched == null) {
+                            return null;
+                        }
+                        journal.append(patched);
+                    }
+                    buffered.increment();
+                    coalesced.increment();
+                    return InMemoryBookStore.copy(patched);
+                })
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Drops the pending upserts of books about to be written past the buffer, so a later flush does
+     * not overwrite them. Completes once the journal no longer holds the dropped upserts.
+     */
+    public Mono<Void> supersede(List<BookKey> keys) {
+        return Mono
+                .fromRunnable(() -> {
+                    boolean dropped = false;
+                    for (BookKey key : keys) {
+                        dropped |= pending.remove(key) != null;
+                    }
+                    if (dropped) {
+                        compact();
+                    }
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .then();
+    }
+
+    /**
+     * Returns a copy of the book pending for the key, or null when nothing is pending.
+     */
+    public Book pending(BookKey key) {
+        Book book = pending.get(key);
+        return book == null ? null : InMemoryBookStore.copy(book);
+    }
+
+    /**
+     * Writes what is pending now. A flush already running makes this one a no-op.
+     */
+    public Mono<Void> flush() {
+        return Mono.defer(() -> {
+            if (writer == null || pending.isEmpty() || !flushing.compareAndSet(false, true)) {
+                return Mono.empty();
+            }
+            flushes.increment();
+            Map<BookKey, Book> snapshot = new HashMap<>(pending);
+            Map<String, List<Book>> byCategory = new HashMap<>();
+            snapshot.values().forEach(book -> byCategory.computeIfAbsent(book.getCategory(), category -> new ArrayList<>()).add(book));
+            Set<String> written = ConcurrentHashMap.newKeySet();
+            return Flux
+                    .fromIterable(byCategory.values())
+                    .concatMapIterable(books -> partition(books, batchSize))
+                    .flatMap(writer, FLUSH_CONCURRENCY)
+                    .doOnNext(result -> {
+                        BookKey key = new BookKey(result.getId(), result.getCategory());
+                        if (result.isSuccess()) {
+                            // a newer upsert of the book stays pending
+                            pending.remove(key, snapshot.get(key));
+                            written.add(result.getCategory());
+                            flushed.increment();
+                        } else if (result.isRetryable()) {
+                            failed.increment();
+                        } else if (pending.remove(key, snapshot.get(key))) {
+                            dropped.increment();
+                            logger.warn("Dropping the buffered write of {}, it failed with {}", key, result);
+                            listeners.forEach(listener -> listener.dropped(key));
+                        }
+                    })
+                    .onErrorResume(error -> {
+                        logger.warn("Write-behind flush failed, {} writes stay pending", pending.size(), error);
+                        return Mono.empty();
+                    })
+                    .then(Mono.fromRunnable(() -> written.forEach(category -> listeners.forEach(listener -> listener.flushed(category)))))
+                    .then(Mono
+                            .fromRunnable(this::compact)
+                            .subscribeOn(Schedulers.boundedElastic()))
+                    .onErrorResume(error -> {
+                        logger.warn("Write-behind journal could not be compacted", error);
+                        return Mono.empty();
+                    })
+                    .doFinally(signal -> flushing.set(false))
+                    .then();
+        });
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long bufferedCount = buffered.sum();
+        stats.put("enabled", enabled);
+        stats.put("flushMs", flushInterval.toMillis());
+        stats.put("maxPending", maxPending);
+        stats.put("pending", pending.mappingCount());
+        stats.put("buffered", bufferedCount);
+        stats.put("coalesced", coalesced.sum());
+        stats.put("coalescedPercent", bufferedCount == 0 ? 0 : 100.0 * coalesced.sum() / bufferedCount);
+        stats.put("writtenThrough", writtenThrough.sum());
+        stats.put("replayed", replayed.sum());
+        stats.put("flushes", flushes.sum());
+        stats.put("flushed", flushed.sum());
+        stats.put("failed", failed.sum());
+        stats.put("dropped", dropped.sum());
+        return stats;
+    }
+
+    /**
+     * Hears what the buffer did with the upserts it acknowledged.
+     */
+    public interface Listener {
+
+        /**
+         * Called once a flush is over, with a category it has written books of.
+         */
+        default void flushed(String category) {
+        }
+
+        /**
+         * Called when the buffered upsert of the book is dropped after a failure that would not go away.
+         */
+        default void dropped(BookKey key) {
+        }
+    }
+
+    private void compact() {
+        synchronized (journal) {
+            journal.rewrite(new ArrayList<>(pending.values()));
+        }
+    }
+
+    private static List<List<Book>> partition(List<Book> books, int size) {
+        List<List<Book>> batches = new ArrayList<>();
+        for (int from = 0; from < books.size(); from += size) {
+            batches.add(books.subList(from, Math.min(books.size(), from + size)));
+        }
+        return batches;
+    }
+}
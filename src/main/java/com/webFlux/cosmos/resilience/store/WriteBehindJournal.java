@@ -0,0 +1,140 @@
+package com.webFlux.cosmos.resilience.store;
+
+import com.webFlux.cosmos.resilience.codec.BookCodec;
+import com.webFlux.cosmos.resilience.model.Book;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Append-only file of buffered writes, a header followed by one {@link BookCodec} frame per book, so
+ * books acknowledged by the {@link WriteBehindBuffer} but not yet flushed survive a restart. After a
+ * flush the file is rewritten with only what is still pending. {@link Mode#FSYNC} forces every append
+ * to disk; {@link Mode#WRITE} leaves it in the OS page cache, which survives a crash of the process but
+ * not of the machine. Calls block and must stay off the event loop.
+ */
+public class WriteBehindJournal {
+
+    public enum Mode {
+        NONE, WRITE, FSYNC
+    }
+
+    private static final byte[] HEADER = {'B', 'K', 'J', '1'};
+
+    private final Mode mode;
+    private final Path path;
+    private FileChannel channel;
+
+    public WriteBehindJournal(Mode mode, Path path) {
+        this.mode = mode;
+        this.path = path;
+    }
+
+    /**
+     * Reads back every book journaled before the last shutdown, oldest first. A torn last frame is skipped.
+     */
+    public synchronized List<Book> replay() {
+        if (mode == Mode.NONE || !Files.exists(path)) {
+            return new ArrayList<>();
+        }
+        try {
+            byte[] journal = Files.readAllBytes(path);
+            if (journal.length < HEADER.length) {
+                // the journal was created but its header never made it to disk
+                return new ArrayList<>();
+            }
+            if (!Arrays.equals(Arrays.copyOf(journal, HEADER.length), HEADER)) {
+                throw new IllegalStateException(path + " is not a write-behind journal");
+            }
+            return BookCodec.unframe(ByteBuffer.wrap(journal, HEADER.length, journal.length - HEADER.length));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public synchronized void append(Book book) {
+        if (mode == Mode.NONE) {
+            return;
+        }
+        try {
+            write(channel(), book);
+            if (mode == Mode.FSYNC) {
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Replaces the journal with the given books, through a temporary file so a crash leaves either the old or the new journal.
+     */
+    public synchronized void rewrite(Collection<Book> pending) {
+        if (mode == Mode.NONE) {
+            return;
+        }
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            close();
+            try (FileChannel rewritten = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                write(rewritten, HEADER);
+                for (Book book : pending) {
+                    write(rewritten, book);
+                }
+                rewritten.force(false);
+            }
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public synchronized void close() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            channel = null;
+        }
+    }
+
+    private FileChannel channel() throws IOException {
+        if (channel == null) {
+            Path parent = path.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            if (channel.size() == 0) {
+                write(channel, HEADER);
+            }
+        }
+        return channel;
+    }
+
+    private static void write(FileChannel target, Book book) throws IOException {
+        write(target, BookCodec.frame(book));
+    }
+
+    private static void write(FileChannel target, byte[] bytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            target.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package com.webFlux.cosmos.resilience.util;
+
+import com.webFlux.cosmos.resilience.metrics.BookOperation;
+import com.webFlux.cosmos.resilience.metrics.LatencyRecorder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Client-side admission control against the request units the container is provisioned with. A token
+ * bucket refills at {@code admission.ruPerSecond}, by default the {@code cosmos.throughput.ruPerSecond}
+ * the container is provisioned with, and holds {@code admission.burstSeconds} of it; it is
+ * drawn down by the request charge of every Cosmos response, as added up by the {@link LatencyRecorder},
+ * while calls in flight hold back the average charge of their operation, times the number of items of a
+ * bulk call, whose charge is recorded per item. Interactive calls are always
+ * admitted. Scans and aggregates, and bulk writes below them, are only admitted while the bucket holds
+ * more than their reserve, {@code admission.reservePercent.<priority>} of its capacity; otherwise they
+ * wait for the bucket to refill, at most {@code admission.maxQueueMs.<priority>} and never past their
+ * {@link Deadline}, with at most {@code admission.maxQueued} of them waiting. Calls that cannot wait are
+ * shed with a {@link CallNotPermittedException}. A bulk call estimated above what the lane may ever
+ * hold waits for a bucket full down to its reserve and then overdraws it. This is the only request unit
+ * limit on bulk writes; ingestion paces itself only on the retry-after of throttled items.
+ */
+@Component
+public class AdmissionController {
+
+    public enum Priority {
+        INTERACTIVE, SCAN, BACKGROUND
+    }
+
+    private static final long MIN_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final LatencyRecorder latencyRecorder;
+    private final boolean enabled;
+    private final double ruPerSecond;
+    private final double capacity;
+    private final double defaultChargeEstimate;
+    private final int maxQueued;
+    private final EnumMap<Priority, Lane> lanes = new EnumMap<>(Priority.class);
+
+    // guarded by this
+    private double tokens;
+    private double inFlightCharge;
+    private double chargeSeen;
+    private long refilledAtNanos = System.nanoTime();
+
+    @Autowired
+    public AdmissionController(Environment environment, LatencyRecorder latencyRecorder) {
+        this.latencyRecorder = latencyRecorder;
+        this.enabled = environment.getProperty("admission.enabled", Boolean.class, true);
+        this.ruPerSecond = environment.getProperty("admission.ruPerSecond", Double.class,
+                environment.getProperty("cosmos.throughput.ruPerSecond", Double.class, 400.0));
+        this.capacity = ruPerSecond * environment.getProperty("admission.burstSeconds", Double.class, 1.0);
+        this.defaultChargeEstimate = environment.getProperty("admission.defaultChargeEstimate", Double.class, 5.0);
+        this.maxQueued = environment.getProperty("admission.maxQueued", Integer.class, 256);
+        this.tokens = capacity;
+        this.chargeSeen = latencyRecorder.totalRequestCharge();
+        lanes.put(Priority.INTERACTIVE, new Lane(0, 0));
+        lanes.put(Priority.SCAN, lane(environment, Priority.SCAN, 30, 1_000));
+        lanes.put(Priority.BACKGROUND, lane(environment, Priority.BACKGROUND, 50, 10_000));
+    }
+
+    public static Priority priorityOf(BookOperation operation) {
+        switch (operation) {
+            case SCAN:
+            case STATS:
+                return Priority.SCAN;
+            case BULK_UPSERT:
+            case BULK_PATCH:
+                return Priority.BACKGROUND;
+            default:
+                return Priority.INTERACTIVE;
+        }
+    }
+
+    public <T> Mono<T> admitMono(BookOperation operation, Mono<T> call) {
+        if (!enabled) {
+            return call;
+        }
+        return admit(operation, 1).flatMap(charge -> call.doFinally(signal -> release(charge)));
+    }
+
+    public <T> Flux<T> admitFlux(BookOperation operation, Flux<T> call) {
+        return admitFlux(operation, 1, call);
+    }
+
+    /**
+     * Admits a call of {@code items} items, such as a bulk write, whose charge is recorded per item.
+     */
+    public <T> Flux<T> admitFlux(BookOperation operation, int items, Flux<T> call) {
+        if (!enabled) {
+            return call;
+        }
+        return admit(operation, items).flatMapMany(charge -> call.doFinally(signal -> release(charge)));
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("ruPerSecond", ruPerSecond);
+        stats.put("capacity", capacity);
+        synchronized (this) {
+            refill();
+            stats.put("available", tokens - inFlightCharge);
+            stats.put("inFlightCharge", inFlightCharge);
+        }
+        stats.put("charged", latencyRecorder.totalRequestCharge());
+        lanes.forEach((priority, lane) -> {
+            Map<String, Object> values = new LinkedHashMap<>();
+            values.put("reservePercent", lane.reserve / capacity * 100);
+            values.put("maxQueueMs", TimeUnit.NANOSECONDS.toMillis(lane.maxQueueNanos));
+            values.put("admitted", lane.admitted.sum());
+            values.put("queueDepth", lane.queued.get());
+            values.put("queued", lane.queuedTotal.sum());
+            values.put("shed", lane.shed.sum());
+            stats.put(priority.name().toLowerCase(Locale.ROOT), values);
+        });
+        return stats;
+    }
+
+    private Lane lane(Environment environment, Priority priority, int defaultReservePercent, long defaultMaxQueueMs) {
+        String key = priority.name().toLowerCase(Locale.ROOT);
+        double reservePercent = environment.getProperty("admission.reservePercent." + key, Double.class, (double) defaultReservePercent);
+        long maxQueueMs = environment.getProperty("admission.maxQueueMs." + key, Long.class, defaultMaxQueueMs);
+        return new Lane(capacity * reservePercent / 100, TimeUnit.MILLISECONDS.toNanos(maxQueueMs));
+    }
+
+    private Mono<Double> admit(BookOperation operation, int items) {
+        Priority priority = priorityOf(operation);
+        Lane lane = lanes.get(priority);
+        return Mono.deferContextual(context -> {
+            // a call the lane could never reserve whole is admitted on a bucket full down to the reserve
+            double charge = Math.min(estimate(operation) * Math.max(1, items), Math.max(capacity - lane.reserve, 0));
+            if (priority == Priority.INTERACTIVE) {
+                synchronized (this) {
+                    inFlightCharge += charge;
+                }
+                lane.admitted.increment();
+                return Mono.just(charge);
+            }
+            if (tryReserve(lane, charge) == 0) {
+                lane.admitted.increment();
+                return Mono.just(charge);
+            }
+            long maxWaitNanos = Deadline
+                    .from(context)
+                    .map(deadline -> Math.min(lane.maxQueueNanos, deadline.remaining().toNanos()))
+                    .orElse(lane.maxQueueNanos);
+            if (lane.queued.incrementAndGet() > maxQueued) {
+                lane.queued.decrementAndGet();
+                return shed(operation, lane);
+            }
+            lane.queuedTotal.increment();
+            return await(operation, lane, charge, System.nanoTime() + maxWaitNanos)
+                    .doFinally(signal -> lane.queued.decrementAndGet());
+        });
+    }
+
+    private Mono<Double> await(BookOperation operation, Lane lane, double charge, long giveUpAtNanos) {
+        return Mono.defer(() -> {
+            long waitNanos = tryReserve(lane, charge);
+            if (waitNanos == 0) {
+                lane.admitted.increment();
+                return Mono.just(charge);
+            }
+            if (System.nanoTime() + waitNanos > giveUpAtNanos) {
+                return shed(operation, lane);
+            }
+            // calls admitted meanwhile may have drawn the bucket down again, so the reservation is retried
+            return Mono
+                    .delay(Duration.ofNanos(waitNanos))
+                    .then(await(operation, lane, charge, giveUpAtNanos));
+        });
+    }
+
+    private Mono<Double> shed(BookOperation operation, Lane lane) {
+        lane.shed.increment();
+        return Mono.error(new CallNotPermittedException("Request units exhausted, shedding " + operation.getKey()));
+    }
+
+    /**
+     * Reserves the charge when the bucket holds it above the lane's reserve, returning 0, or returns how
+     * long the bucket needs to refill that far.
+     */
+    private synchronized long tryReserve(Lane lane, double charge) {
+        refill();
+        double missing = lane.reserve + charge - (tokens - inFlightCharge);
+        if (missing <= 0) {
+            inFlightCharge += charge;
+            return 0;
+        }
+        return Math.max(MIN_WAIT_NANOS, (long) (missing / ruPerSecond * TimeUnit.SECONDS.toNanos(1)));
+    }
+
+    private synchronized void release(double charge) {
+        inFlightCharge = Math.max(0, inFlightCharge - charge);
+    }
+
+    // guarded by this
+    private void refill() {
+        long now = System.nanoTime();
+        double charged = latencyRecorder.totalRequestCharge();
+        tokens += (now - refilledAtNanos) * ruPerSecond / TimeUnit.SECONDS.toNanos(1) - (charged - chargeSeen);
+        // a single expensive response can put the bucket in debt, but never by more than one burst
+        tokens = Math.max(-capacity, Math.min(capacity, tokens));
+        refilledAtNanos = now;
+        chargeSeen = charged;
+    }
+
+    private double estimate(BookOperation operation) {
+        double mean = latencyRecorder.meanCharge(operation);
+        return Double.isNaN(mean) ? defaultChargeEstimate : mean;
+    }
+
+    private static final class Lane {
+        private final double reserve;
+        private final long maxQueueNanos;
+        private final AtomicInteger queued = new AtomicInteger();
+        private final LongAdder queuedTotal = new LongAdder();
+        private final LongAdder admitted = new LongAdder();
+        private final LongAdder shed = new LongAdder();
+
+        private Lane(double reserve, long maxQueueNanos) {
+            this.reserve = reserve;
+            this.maxQueueNanos = maxQueueNanos;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.webFlux.cosmos.resilience.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caps the number of calls of one operation in flight at once; calls over the cap are rejected, never queued.
+ */
+public class Bulkhead {
+
+    private final int maxConcurrent;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder rejected = new LongAdder();
+
+    public Bulkhead(int maxConcurrent) {
+        this.maxConcurrent = maxConcurrent;
+    }
+
+    public boolean tryAcquire() {
+        if (inFlight.incrementAndGet() <= maxConcurrent) {
+            return true;
+        }
+        inFlight.decrementAndGet();
+        rejected.increment();
+        return false;
+    }
+
+    public void release() {
+        inFlight.decrementAndGet();
+    }
+
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+}
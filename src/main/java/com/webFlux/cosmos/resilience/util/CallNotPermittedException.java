@@ -0,0 +1,12 @@
+package com.webFlux.cosmos.resilience.util;
+
+/**
+ * Raised instead of calling Cosmos when an operation's circuit is open, its bulkhead is full or
+ * {@link AdmissionController} sheds it.
+ */
+public class CallNotPermittedException extends RuntimeException {
+
+    public CallNotPermittedException(String message) {
+        super(message, null, false, false);
+    }
+}
@@ -0,0 +1,143 @@
+package com.webFlux.cosmos.resilience.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free circuit breaker over a tumbling window of calls. The circuit opens when the failure rate
+ * of the current window reaches the threshold, rejects calls for {@code openMs}, then lets a fixed
+ * number of half-open probes through: all of them succeeding closes it, any failure opens it again.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private static final long FAILURE = 1L << 32;
+    private static final long CALLS = 0xFFFF_FFFFL;
+
+    private final int failureRatePercent;
+    private final int minimumCalls;
+    private final long windowNanos;
+    private final long openNanos;
+    private final int halfOpenProbes;
+
+    private final AtomicInteger state = new AtomicInteger(State.CLOSED.ordinal());
+    // failures in the high 32 bits, calls in the low 32 bits, so both move together
+    private final AtomicLong window = new AtomicLong();
+    private final AtomicLong windowStartNanos = new AtomicLong(System.nanoTime());
+    private final AtomicInteger probesIssued = new AtomicInteger();
+    private final AtomicInteger probesSucceeded = new AtomicInteger();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder opened = new LongAdder();
+    private volatile long openedAtNanos;
+
+    public CircuitBreaker(int failureRatePercent, int minimumCalls, long windowMs, long openMs, int halfOpenProbes) {
+        this.failureRatePercent = failureRatePercent;
+        this.minimumCalls = minimumCalls;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMs);
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMs);
+        this.halfOpenProbes = halfOpenProbes;
+    }
+
+    public boolean tryAcquire() {
+        int current = state.get();
+        if (current == State.CLOSED.ordinal()) {
+            return true;
+        }
+        if (current == State.OPEN.ordinal()) {
+            if (System.nanoTime() - openedAtNanos < openNanos
+                    || !state.compareAndSet(State.OPEN.ordinal(), State.HALF_OPEN.ordinal())) {
+                if (state.get() != State.HALF_OPEN.ordinal()) {
+                    rejected.increment();
+                    return false;
+                }
+            }
+        }
+        if (probesIssued.incrementAndGet() <= halfOpenProbes) {
+            return true;
+        }
+        probesIssued.decrementAndGet();
+        rejected.increment();
+        return false;
+    }
+
+    public void onSuccess() {
+        if (state.get() == State.HALF_OPEN.ordinal()) {
+            if (probesSucceeded.incrementAndGet() >= halfOpenProbes
+                    && state.compareAndSet(State.HALF_OPEN.ordinal(), State.CLOSED.ordinal())) {
+                window.set(0);
+                windowStartNanos.set(System.nanoTime());
+            }
+            return;
+        }
+        record(1);
+    }
+
+    public void onFailure() {
+        int current = state.get();
+        if (current == State.HALF_OPEN.ordinal()) {
+            trip(current);
+            return;
+        }
+        if (current != State.CLOSED.ordinal()) {
+            return;
+        }
+        long counts = record(FAILURE | 1);
+        long calls = counts & CALLS;
+        long failures = counts >>> 32;
+        if (calls >= minimumCalls && failures * 100 >= failureRatePercent * calls) {
+            trip(current);
+        }
+    }
+
+    /**
+     * A call that ended without a verdict, such as a cancellation, only gives back its probe slot.
+     */
+    public void onIgnored() {
+        if (state.get() == State.HALF_OPEN.ordinal()) {
+            probesIssued.decrementAndGet();
+        }
+    }
+
+    public State getState() {
+        return State.values()[state.get()];
+    }
+
+    public long getWindowCalls() {
+        return window.get() & CALLS;
+    }
+
+    public long getWindowFailures() {
+        return window.get() >>> 32;
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    public long getOpened() {
+        return opened.sum();
+    }
+
+    private long record(long delta) {
+        long now = System.nanoTime();
+        long start = windowStartNanos.get();
+        if (now - start >= windowNanos && windowStartNanos.compareAndSet(start, now)) {
+            window.set(0);
+        }
+        return window.addAndGet(delta);
+    }
+
+    private void trip(int from) {
+        openedAtNanos = System.nanoTime();
+        probesIssued.set(0);
+        probesSucceeded.set(0);
+        if (state.compareAndSet(from, State.OPEN.ordinal())) {
+            opened.increment();
+        }
+    }
+}
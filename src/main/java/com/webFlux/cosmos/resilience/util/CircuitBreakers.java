@@ -0,0 +1,164 @@
+package com.webFlux.cosmos.resilience.util;
+
+import com.webFlux.cosmos.resilience.metrics.BookOperation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * One {@link CircuitBreaker} and one {@link Bulkhead} per {@link BookOperation}. Only failures the
+ * {@link RetryEngine} classifies as transient count against a circuit; a 404 or 409 means Cosmos answered.
+ * Circuits are configured through {@code breaker.*}, bulkheads through {@code bulkhead.maxConcurrent.<operation>}.
+ */
+@Component
+public class CircuitBreakers {
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final boolean enabled;
+    private final EnumMap<BookOperation, CircuitBreaker> breakers = new EnumMap<>(BookOperation.class);
+    private final EnumMap<BookOperation, Bulkhead> bulkheads = new EnumMap<>(BookOperation.class);
+
+    @Autowired
+    public CircuitBreakers(Environment environment) {
+        this.enabled = environment.getProperty("breaker.enabled", Boolean.class, true);
+        int failureRatePercent = environment.getProperty("breaker.failureRatePercent", Integer.class, 50);
+        int minimumCalls = environment.getProperty("breaker.minimumCalls", Integer.class, 20);
+        long windowMs = environment.getProperty("breaker.windowMs", Long.class, 10_000L);
+        long openMs = environment.getProperty("breaker.openMs", Long.class, 5_000L);
+        int halfOpenProbes = environment.getProperty("breaker.halfOpenProbes", Integer.class, 3);
+        int defaultMaxConcurrent = environment.getProperty("bulkhead.maxConcurrent", Integer.class, 64);
+        for (BookOperation operation : BookOperation.values()) {
+            breakers.put(operation, new CircuitBreaker(failureRatePercent, minimumCalls, windowMs, openMs, halfOpenProbes));
+            bulkheads.put(operation, new Bulkhead(environment.getProperty("bulkhead.maxConcurrent." + operation.getKey(),
+                    Integer.class, defaultMaxConcurrent)));
+        }
+    }
+
+    public <T> Function<Mono<T>, Mono<T>> mono(BookOperation operation) {
+        return source -> protect(operation, source);
+    }
+
+    public <T> Function<Flux<T>, Flux<T>> flux(BookOperation operation) {
+        return source -> protect(operation, source);
+    }
+
+    public <T> Mono<T> protect(BookOperation operation, Mono<T> source) {
+        if (!enabled) {
+            return source;
+        }
+        return Mono.defer(() -> {
+            Call call = acquire(operation);
+            if (call == null) {
+                return Mono.error(new CallNotPermittedException(operation.getKey()));
+            }
+            return source
+                    .doOnSuccess(value -> call.succeeded())
+                    .doOnError(call::failed)
+                    .doOnCancel(call::ignored);
+        });
+    }
+
+    public <T> Flux<T> protect(BookOperation operation, Flux<T> source) {
+        if (!enabled) {
+            return source;
+        }
+        return Flux.defer(() -> {
+            Call call = acquire(operation);
+            if (call == null) {
+                return Flux.error(new CallNotPermittedException(operation.getKey()));
+            }
+            return source
+                    .doOnComplete(call::succeeded)
+                    .doOnError(call::failed)
+                    .doOnCancel(call::ignored);
+        });
+    }
+
+    public CircuitBreaker breaker(BookOperation operation) {
+        return breakers.get(operation);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        breakers.forEach((operation, breaker) -> {
+            Bulkhead bulkhead = bulkheads.get(operation);
+            Map<String, Object> values = new LinkedHashMap<>();
+            values.put("state", breaker.getState());
+            values.put("windowCalls", breaker.getWindowCalls());
+            values.put("windowFailures", breaker.getWindowFailures());
+            values.put("opened", breaker.getOpened());
+            values.put("rejectedOpen", breaker.getRejected());
+            values.put("inFlight", bulkhead.getInFlight());
+            values.put("maxConcurrent", bulkhead.getMaxConcurrent());
+            values.put("rejectedFull", bulkhead.getRejected());
+            stats.put(operation.getKey(), values);
+        });
+        return stats;
+    }
+
+    private Call acquire(BookOperation operation) {
+        CircuitBreaker breaker = breakers.get(operation);
+        Bulkhead bulkhead = bulkheads.get(operation);
+        if (!bulkhead.tryAcquire()) {
+            return null;
+        }
+        if (!breaker.tryAcquire()) {
+            bulkhead.release();
+            return null;
+        }
+        return new Call(operation, breaker, bulkhead);
+    }
+
+    private final class Call {
+        private final BookOperation operation;
+        private final CircuitBreaker breaker;
+        private final Bulkhead bulkhead;
+        private final AtomicBoolean done = new AtomicBoolean();
+
+        private Call(BookOperation operation, CircuitBreaker breaker, Bulkhead bulkhead) {
+            this.operation = operation;
+            this.breaker = breaker;
+            this.bulkhead = bulkhead;
+        }
+
+        void succeeded() {
+            if (done.compareAndSet(false, true)) {
+                bulkhead.release();
+                breaker.onSuccess();
+            }
+        }
+
+        void failed(Throwable error) {
+            if (done.compareAndSet(false, true)) {
+                bulkhead.release();
+                if (!RetryEngine.isRetryable(error)) {
+                    breaker.onSuccess();
+                    return;
+                }
+                CircuitBreaker.State before = breaker.getState();
+                breaker.onFailure();
+                if (before != CircuitBreaker.State.OPEN && breaker.getState() == CircuitBreaker.State.OPEN) {
+                    logger.info("Circuit for {} opened after the error {}", operation.getKey(), error.toString());
+                }
+            }
+        }
+
+        void ignored() {
+            if (done.compareAndSet(false, true)) {
+                bulkhead.release();
+                breaker.onIgnored();
+            }
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.webFlux.cosmos.resilience.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Cosmos continuation tokens are JSON documents; clients get them as opaque URL-safe strings.
+ */
+public class ContinuationTokens {
+
+    public static String encode(String continuationToken) {
+        if (continuationToken == null) {
+            return null;
+        }
+        return Base64
+                .getUrlEncoder()
+                .withoutPadding()
+                .encodeToString(continuationToken.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static String decode(String opaqueToken) {
+        if (opaqueToken == null || opaqueToken.isEmpty()) {
+            return null;
+        }
+        return new String(Base64
+                .getUrlDecoder()
+                .decode(opaqueToken), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,38 @@
+package com.webFlux.cosmos.resilience.util;
+
+import reactor.util.context.ContextView;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * The point in time by which a request has to be answered. It travels in the Reactor context, so every
+ * attempt, retry and hedge made on behalf of the request can see how much of its budget is left.
+ */
+public final class Deadline {
+
+    private final long expiresAtNanos;
+
+    private Deadline(long expiresAtNanos) {
+        this.expiresAtNanos = expiresAtNanos;
+    }
+
+    public static Deadline after(Duration budget) {
+        return new Deadline(System.nanoTime() + budget.toNanos());
+    }
+
+    public static Optional<Deadline> from(ContextView context) {
+        return context.getOrEmpty(Deadline.class);
+    }
+
+    /**
+     * Returns the time left, never negative.
+     */
+    public Duration remaining() {
+        return Duration.ofNanos(Math.max(0, expiresAtNanos - System.nanoTime()));
+    }
+
+    public boolean isExpired() {
+        return expiresAtNanos - System.nanoTime() <= 0;
+    }
+}
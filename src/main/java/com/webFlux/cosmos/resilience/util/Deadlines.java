@@ -0,0 +1,224 @@
+package com.webFlux.cosmos.resilience.util;
+
+import com.webFlux.cosmos.resilience.metrics.BookOperation;
+import com.webFlux.cosmos.resilience.metrics.LatencyHistogram;
+import com.webFlux.cosmos.resilience.metrics.LatencyRecorder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.context.ContextView;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Latency budgets for requests. Every request gets a {@link Deadline} from the budget of its
+ * operation, {@code deadline.budgetMs.<operation>}, or from the shorter budget a client asked for in
+ * the {@code deadline.clientHeader} header. Each attempt made before the deadline, first try or
+ * retry, is timed out after the given percentile of the latency of the operation's attempts over the
+ * last {@code latency.windowMs} times {@code deadline.attemptMultiplier}, but never after the time the
+ * request has left; with too few samples an attempt may use all of it. Attempts are timed here, as a
+ * whole, rather than per store call, since one attempt of a scan or of the stats makes many of them.
+ * The timeout bounds the whole attempt, every item of a query included. An attempt is not started once
+ * the deadline has passed.
+ */
+@Component
+public class Deadlines {
+
+    public static final String CLIENT_BUDGET = Deadlines.class.getName() + ".clientBudget";
+
+    private static final long REFRESH_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final LatencyRecorder latencyRecorder;
+    private final String clientHeader;
+    private final double attemptPercentile;
+    private final double attemptMultiplier;
+    private final long minAttemptNanos;
+    private final int minSamples;
+    private final Duration streamPageTimeout;
+    private final EnumMap<BookOperation, Duration> budgets = new EnumMap<>(BookOperation.class);
+    private final EnumMap<BookOperation, AttemptTimeout> attemptTimeouts = new EnumMap<>(BookOperation.class);
+
+    private final LongAdder clientBudgets = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder attemptsNotStarted = new LongAdder();
+
+    @Autowired
+    public Deadlines(Environment environment, LatencyRecorder latencyRecorder) {
+        this.latencyRecorder = latencyRecorder;
+        this.clientHeader = environment.getProperty("deadline.clientHeader", "X-Request-Timeout-Ms");
+        this.attemptPercentile = environment.getProperty("deadline.attemptPercentile", Double.class, 99.0);
+        this.attemptMultiplier = environment.getProperty("deadline.attemptMultiplier", Double.class, 2.0);
+        this.minAttemptNanos = TimeUnit.MILLISECONDS.toNanos(environment.getProperty("deadline.minAttemptMs", Long.class, 20L));
+        this.minSamples = environment.getProperty("deadline.minSamples", Integer.class, 100);
+        this.streamPageTimeout = Duration.ofMillis(environment.getProperty("deadline.streamPageMs", Long.class, 3_000L));
+        for (BookOperation operation : BookOperation.values()) {
+            budgets.put(operation, Duration.ofMillis(environment.getProperty("deadline.budgetMs." + operation.getKey(), Long.class,
+                    operation.getDefaultBudgetMs())));
+            attemptTimeouts.put(operation, new AttemptTimeout());
+        }
+    }
+
+    public String getClientHeader() {
+        return clientHeader;
+    }
+
+    /**
+     * How long a streamed response may wait for its next page; streams run as long as they keep moving.
+     */
+    public Duration getStreamPageTimeout() {
+        return streamPageTimeout;
+    }
+
+    /**
+     * Parses the budget a client asked for, or returns null when the header is absent or not a positive number of milliseconds.
+     */
+    public Duration clientBudget(String header) {
+        if (header == null) {
+            return null;
+        }
+        try {
+            long budgetMs = Long.parseLong(header.trim());
+            if (budgetMs <= 0) {
+                return null;
+            }
+            clientBudgets.increment();
+            return Duration.ofMillis(budgetMs);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Bounds the whole request, retries included, by its deadline and hands the deadline to everything upstream.
+     */
+    public <T> Function<Mono<T>, Mono<T>> mono(BookOperation operation) {
+        return source -> Mono.deferContextual(context -> {
+            Deadline deadline = deadline(operation, context);
+            return source
+                    .timeout(deadline.remaining())
+                    .doOnError(TimeoutException.class, error -> expired(deadline))
+                    .contextWrite(upstream -> upstream.put(Deadline.class, deadline));
+        });
+    }
+
+    public <T> Function<Flux<T>, Flux<T>> flux(BookOperation operation) {
+        return source -> Flux.deferContextual(context -> {
+            Deadline deadline = deadline(operation, context);
+            // every item restarts the timer with what is left, so together they bound the whole response
+            Mono<Long> expiry = Mono.defer(() -> Mono.delay(deadline.remaining()));
+            return source
+                    .timeout(expiry, item -> expiry)
+                    .doOnError(TimeoutException.class, error -> expired(deadline))
+                    .contextWrite(upstream -> upstream.put(Deadline.class, deadline));
+        });
+    }
+
+    /**
+     * Times out a single attempt, to be applied inside the retry.
+     */
+    public <T> Function<Mono<T>, Mono<T>> attemptMono(BookOperation operation) {
+        return source -> Mono.deferContextual(context -> {
+            Duration timeout = attemptTimeout(operation, Deadline.from(context));
+            if (timeout.isZero()) {
+                attemptsNotStarted.increment();
+                return Mono.error(new TimeoutException("Deadline of " + operation.getKey() + " has passed"));
+            }
+            long start = System.nanoTime();
+            return source
+                    .timeout(timeout)
+                    .doOnSuccess(value -> latencyRecorder.recordAttempt(operation, System.nanoTime() - start))
+                    .doOnError(error -> latencyRecorder.recordAttempt(operation, System.nanoTime() - start));
+        });
+    }
+
+    /**
+     * Times out a single attempt of a query, to be applied inside the retry. The timeout covers all
+     * of its items, not each gap between two of them.
+     */
+    public <T> Function<Flux<T>, Flux<T>> attemptFlux(BookOperation operation) {
+        return source -> Flux.deferContextual(context -> {
+            Duration timeout = attemptTimeout(operation, Deadline.from(context));
+            if (timeout.isZero()) {
+                attemptsNotStarted.increment();
+                return Flux.error(new TimeoutException("Deadline of " + operation.getKey() + " has passed"));
+            }
+            Deadline attemptDeadline = Deadline.after(timeout);
+            Mono<Long> expiry = Mono.defer(() -> Mono.delay(attemptDeadline.remaining()));
+            long start = System.nanoTime();
+            // an attempt cancelled by its caller, such as a page that has enough books, is not timed
+            return source
+                    .timeout(expiry, item -> expiry)
+                    .doOnComplete(() -> latencyRecorder.recordAttempt(operation, System.nanoTime() - start))
+                    .doOnError(error -> latencyRecorder.recordAttempt(operation, System.nanoTime() - start));
+        });
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("clientBudgets", clientBudgets.sum());
+        stats.put("expired", expired.sum());
+        stats.put("attemptsNotStarted", attemptsNotStarted.sum());
+        budgets.forEach((operation, budget) -> {
+            Map<String, Object> values = new LinkedHashMap<>();
+            long adaptiveNanos = adaptiveAttemptNanos(operation);
+            values.put("budgetMs", budget.toMillis());
+            values.put("attemptTimeoutMs", adaptiveNanos < 0 ? budget.toMillis() : TimeUnit.NANOSECONDS.toMillis(adaptiveNanos));
+            stats.put(operation.getKey(), values);
+        });
+        return stats;
+    }
+
+    Duration attemptTimeout(BookOperation operation, Optional<Deadline> deadline) {
+        Duration remaining = deadline.map(Deadline::remaining).orElse(budgets.get(operation));
+        long adaptiveNanos = adaptiveAttemptNanos(operation);
+        return adaptiveNanos < 0 || adaptiveNanos >= remaining.toNanos() ? remaining : Duration.ofNanos(adaptiveNanos);
+    }
+
+    private Deadline deadline(BookOperation operation, ContextView context) {
+        Duration budget = budgets.get(operation);
+        Optional<Duration> requested = context.getOrEmpty(CLIENT_BUDGET);
+        if (requested.isPresent() && requested.get().compareTo(budget) < 0) {
+            budget = requested.get();
+        }
+        Deadline deadline = Deadline.after(budget);
+        // a deadline set further downstream is never extended
+        Optional<Deadline> outer = Deadline.from(context);
+        return outer.isPresent() && outer.get().remaining().compareTo(budget) < 0 ? outer.get() : deadline;
+    }
+
+    private void expired(Deadline deadline) {
+        if (deadline.isExpired()) {
+            expired.increment();
+        }
+    }
+
+    // the attempt timeout is recomputed at most once a second; -1 until the operation has enough samples
+    private long adaptiveAttemptNanos(BookOperation operation) {
+        AttemptTimeout attemptTimeout = attemptTimeouts.get(operation);
+        long now = System.nanoTime();
+        if (now - attemptTimeout.computedAtNanos >= REFRESH_NANOS) {
+            attemptTimeout.computedAtNanos = now;
+            LatencyHistogram histogram = latencyRecorder.recentAttemptHistogram(operation);
+            if (histogram.count() >= minSamples) {
+                long observedNanos = TimeUnit.MICROSECONDS.toNanos(histogram.percentileMicros(attemptPercentile));
+                attemptTimeout.nanos = Math.max(minAttemptNanos, (long) (observedNanos * attemptMultiplier));
+            }
+        }
+        return attemptTimeout.nanos;
+    }
+
+    private static final class AttemptTimeout {
+        private volatile long nanos = -1;
+        private volatile long computedAtNanos = System.nanoTime() - REFRESH_NANOS;
+    }
+}
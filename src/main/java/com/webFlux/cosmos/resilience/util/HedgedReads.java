@@ -0,0 +1,108 @@
+package com.webFlux.cosmos.resilience.util;
+
+import com.webFlux.cosmos.resilience.metrics.LatencyHistogram;
+import com.webFlux.cosmos.resilience.metrics.RollingLatencyHistogram;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Speculative reads: when the primary attempt has not answered within the configured percentile
+ * of primary latency over the last {@code hedge.windowMs}, a second attempt is fired and whichever answers first wins, the other
+ * is cancelled. A failing hedge never fails the read; the primary outcome decides. No hedge is fired
+ * for a read whose {@link Deadline} passes before the hedge delay. Only primaries that answered are
+ * timed; one cancelled because the hedge won would pull the delay down with its cut-short time.
+ */
+@Component
+public class HedgedReads {
+
+    private static final long DELAY_REFRESH_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final int WINDOW_SLICES = 6;
+
+    private final boolean enabled;
+    private final double percentile;
+    private final long minDelayMicros;
+    private final long maxDelayMicros;
+    private final int minSamples;
+
+    private final RollingLatencyHistogram primaryLatency;
+    private final LongAdder reads = new LongAdder();
+    private final LongAdder hedgesFired = new LongAdder();
+    private final LongAdder hedgesWon = new LongAdder();
+    private final LongAdder hedgesSkipped = new LongAdder();
+
+    private volatile long delayMicros;
+    private volatile long delayComputedAtNanos = System.nanoTime() - DELAY_REFRESH_NANOS;
+
+    public HedgedReads(@Value("${hedge.enabled:false}") final boolean enabled,
+                       @Value("${hedge.percentile:95}") final double percentile,
+                       @Value("${hedge.minDelayMs:5}") final long minDelayMs,
+                       @Value("${hedge.maxDelayMs:100}") final long maxDelayMs,
+                       @Value("${hedge.minSamples:100}") final int minSamples,
+                       @Value("${hedge.windowMs:60000}") final long windowMs) {
+        this.enabled = enabled;
+        this.percentile = percentile;
+        this.minDelayMicros = TimeUnit.MILLISECONDS.toMicros(minDelayMs);
+        this.maxDelayMicros = TimeUnit.MILLISECONDS.toMicros(maxDelayMs);
+        this.minSamples = minSamples;
+        this.primaryLatency = new RollingLatencyHistogram(Duration.ofMillis(windowMs), WINDOW_SLICES);
+        this.delayMicros = this.maxDelayMicros;
+    }
+
+    public <T> Mono<T> hedge(Mono<T> primary, Mono<T> secondary) {
+        if (!enabled) {
+            return primary;
+        }
+        return Mono.deferContextual(context -> {
+            reads.increment();
+            long start = System.nanoTime();
+            Mono<T> first = primary.doOnSuccess(value -> primaryLatency.recordNanos(System.nanoTime() - start));
+            Duration delay = Duration.ofNanos(TimeUnit.MICROSECONDS.toNanos(currentDelayMicros()));
+            if (Deadline.from(context).map(deadline -> deadline.remaining().compareTo(delay) <= 0).orElse(false)) {
+                hedgesSkipped.increment();
+                return first;
+            }
+            Mono<T> hedged = Mono
+                    .delay(delay)
+                    .doOnNext(tick -> hedgesFired.increment())
+                    .then(secondary)
+                    .doOnNext(value -> hedgesWon.increment())
+                    .onErrorResume(error -> Mono.never());
+            return Mono.firstWithSignal(first, hedged);
+        });
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("percentile", percentile);
+        stats.put("delayMs", delayMicros / 1_000.0);
+        stats.put("reads", reads.sum());
+        stats.put("hedgesFired", hedgesFired.sum());
+        stats.put("hedgesWon", hedgesWon.sum());
+        stats.put("hedgesSkipped", hedgesSkipped.sum());
+        LatencyHistogram recent = primaryLatency.snapshot();
+        stats.put("primaryP50Ms", recent.percentileMicros(50) / 1_000.0);
+        stats.put("primaryP99Ms", recent.percentileMicros(99) / 1_000.0);
+        return stats;
+    }
+
+    private long currentDelayMicros() {
+        long now = System.nanoTime();
+        if (now - delayComputedAtNanos >= DELAY_REFRESH_NANOS) {
+            delayComputedAtNanos = now;
+            LatencyHistogram recent = primaryLatency.snapshot();
+            if (recent.count() >= minSamples) {
+                long observed = recent.percentileMicros(percentile);
+                delayMicros = Math.min(maxDelayMicros, Math.max(minDelayMicros, observed));
+            }
+        }
+        return delayMicros;
+    }
+}
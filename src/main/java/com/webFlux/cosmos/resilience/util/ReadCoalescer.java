@@ -0,0 +1,176 @@
+package com.webFlux.cosmos.resilience.util;
+
+import com.webFlux.cosmos.resilience.model.Book;
+import com.webFlux.cosmos.resilience.model.BookKey;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Coalesces concurrent point reads. Reads of a key already in flight share that read, and reads of
+ * distinct ids in one category that arrive within {@code coalesce.windowMs} of the first are sent as a
+ * single read-many, so a read waits at most one window longer than it would alone. A batch that reaches
+ * {@code coalesce.maxBatchSize} is sent at once, and a batch of one is sent as the point read it is, so
+ * a lone read keeps its hedging, its etag and its place in the point read latencies. Each book store
+ * layer needs its own coalescer, as a batch is loaded with the reads of the caller that opened it.
+ */
+@Component
+public class ReadCoalescer {
+
+    private final boolean enabled;
+    private final Duration window;
+    private final int maxBatchSize;
+
+    private final ConcurrentHashMap<BookKey, Mono<Book>> inFlight = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Batch> openBatches = new ConcurrentHashMap<>();
+
+    private final LongAdder reads = new LongAdder();
+    private final LongAdder deduplicated = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder batchedIds = new LongAdder();
+    private final LongAdder fullBatches = new LongAdder();
+
+    public ReadCoalescer(@Value("${coalesce.enabled:true}") final boolean enabled,
+                         @Value("${coalesce.windowMs:2}") final long windowMs,
+                         @Value("${coalesce.maxBatchSize:100}") final int maxBatchSize) {
+        this.enabled = enabled;
+        this.window = Duration.ofMillis(windowMs);
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+    }
+
+    /**
+     * @param read     reads one book, used as is when coalescing is disabled and for batches of one
+     * @param readMany reads the books with the given ids in one category, leaving out the ones that do not exist
+     * @return the book, or empty when a read-many left it out
+     */
+    public Mono<Book> read(BookKey key, Function<BookKey, Mono<Book>> read, BiFunction<String, List<String>, Flux<Book>> readMany) {
+        if (!enabled) {
+            return read.apply(key);
+        }
+        return Mono.defer(() -> {
+            reads.increment();
+            Mono<Book> shared = inFlight.get(key);
+            if (shared != null) {
+                deduplicated.increment();
+                return shared;
+            }
+            return inFlight.computeIfAbsent(key, k -> load(k, read, readMany));
+        });
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long batchCount = batches.sum();
+        stats.put("enabled", enabled);
+        stats.put("windowMs", window.toMillis());
+        stats.put("maxBatchSize", maxBatchSize);
+        stats.put("reads", reads.sum());
+        stats.put("deduplicated", deduplicated.sum());
+        stats.put("batches", batchCount);
+        stats.put("fullBatches", fullBatches.sum());
+        stats.put("meanBatchSize", batchCount == 0 ? 0 : (double) batchedIds.sum() / batchCount);
+        stats.put("inFlight", inFlight.mappingCount());
+        return stats;
+    }
+
+    private Mono<Book> load(BookKey key, Function<BookKey, Mono<Book>> read, BiFunction<String, List<String>, Flux<Book>> readMany) {
+        return Mono
+                .defer(() -> join(key, read, readMany))
+                .flatMap(books -> Mono.justOrEmpty(books.get(key.getId())))
+                .doFinally(signal -> inFlight.remove(key))
+                .cache();
+    }
+
+    private Mono<Map<String, Book>> join(BookKey key, Function<BookKey, Mono<Book>> read,
+                                         BiFunction<String, List<String>, Flux<Book>> readMany) {
+        while (true) {
+            Batch batch = openBatches.computeIfAbsent(key.getCategory(), category -> open(category, read, readMany));
+            int size = batch.add(key.getId());
+            if (size < 0) {
+                // sealed between lookup and add
+                openBatches.remove(key.getCategory(), batch);
+                continue;
+            }
+            if (size >= maxBatchSize) {
+                fullBatches.increment();
+                flush(batch);
+            }
+            return batch.result.asMono();
+        }
+    }
+
+    private Batch open(String category, Function<BookKey, Mono<Book>> read, BiFunction<String, List<String>, Flux<Book>> readMany) {
+        Batch batch = new Batch(category, read, readMany);
+        Mono
+                .delay(window)
+                .subscribe(tick -> flush(batch));
+        return batch;
+    }
+
+    private void flush(Batch batch) {
+        List<String> ids = batch.seal();
+        if (ids == null) {
+            return;
+        }
+        openBatches.remove(batch.category, batch);
+        batches.increment();
+        batchedIds.add(ids.size());
+        Flux<Book> books = ids.size() == 1
+                ? batch.read.apply(new BookKey(ids.get(0), batch.category)).flux()
+                : batch.readMany.apply(batch.category, ids);
+        books
+                .collectMap(Book::getId)
+                .subscribe(batch.result::tryEmitValue, batch.result::tryEmitError);
+    }
+
+    private static final class Batch {
+        private final String category;
+        private final Function<BookKey, Mono<Book>> read;
+        private final BiFunction<String, List<String>, Flux<Book>> readMany;
+        private final Set<String> ids = new LinkedHashSet<>();
+        private final Sinks.One<Map<String, Book>> result = Sinks.one();
+        private boolean sealed;
+
+        private Batch(String category, Function<BookKey, Mono<Book>> read, BiFunction<String, List<String>, Flux<Book>> readMany) {
+            this.category = category;
+            this.read = read;
+            this.readMany = readMany;
+        }
+
+        /**
+         * Returns the batch size after adding the id, or -1 when the batch has already been sent.
+         */
+        private synchronized int add(String id) {
+            if (sealed) {
+                return -1;
+            }
+            ids.add(id);
+            return ids.size();
+        }
+
+        /**
+         * Returns the ids to read, or null when the batch has already been sent.
+         */
+        private synchronized List<String> seal() {
+            if (sealed) {
+                return null;
+            }
+            sealed = true;
+            return new ArrayList<>(ids);
+        }
+    }
+}
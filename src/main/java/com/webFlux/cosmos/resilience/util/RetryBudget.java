@@ -0,0 +1,74 @@
+package com.webFlux.cosmos.resilience.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket shared by every retry in the process. Each retry spends one token; tokens come back
+ * at a fixed rate per second plus a fraction of a token per first attempt, so retries stay a bounded
+ * share of traffic however many requests fail at once.
+ */
+public class RetryBudget {
+
+    private static final long MILLI = 1_000;
+
+    private final long capacityMilli;
+    private final long refillMilliPerSecond;
+    private final long depositMilliPerRequest;
+    // time to refill an empty bucket; longer idle time is clamped to it, so the refill cannot overflow
+    private final long fillNanos;
+    private final LongSupplier nanoClock;
+    private final AtomicLong milliTokens;
+    private final AtomicLong lastRefillNanos;
+
+    public RetryBudget(double capacity, double refillPerSecond, double ratio) {
+        this(capacity, refillPerSecond, ratio, System::nanoTime);
+    }
+
+    RetryBudget(double capacity, double refillPerSecond, double ratio, LongSupplier nanoClock) {
+        this.capacityMilli = (long) (capacity * MILLI);
+        this.refillMilliPerSecond = (long) (refillPerSecond * MILLI);
+        this.depositMilliPerRequest = (long) (ratio * MILLI);
+        this.fillNanos = refillMilliPerSecond <= 0 ? 0
+                : (long) Math.ceil(capacityMilli * (double) TimeUnit.SECONDS.toNanos(1) / refillMilliPerSecond);
+        this.nanoClock = nanoClock;
+        this.milliTokens = new AtomicLong(capacityMilli);
+        this.lastRefillNanos = new AtomicLong(nanoClock.getAsLong());
+    }
+
+    public void deposit() {
+        add(depositMilliPerRequest);
+    }
+
+    public boolean tryAcquire() {
+        refill();
+        long current;
+        do {
+            current = milliTokens.get();
+            if (current < MILLI) {
+                return false;
+            }
+        } while (!milliTokens.compareAndSet(current, current - MILLI));
+        return true;
+    }
+
+    public double available() {
+        refill();
+        return milliTokens.get() / (double) MILLI;
+    }
+
+    private void refill() {
+        long now = nanoClock.getAsLong();
+        long last = lastRefillNanos.get();
+        long elapsed = Math.min(now - last, fillNanos);
+        long refill = elapsed * refillMilliPerSecond / TimeUnit.SECONDS.toNanos(1);
+        if (refill > 0 && lastRefillNanos.compareAndSet(last, now)) {
+            add(refill);
+        }
+    }
+
+    private void add(long milli) {
+        milliTokens.accumulateAndGet(milli, (current, delta) -> Math.min(capacityMilli, current + delta));
+    }
+}
@@ -0,0 +1,150 @@
+package com.webFlux.cosmos.resilience.util;
+
+import com.azure.cosmos.CosmosException;
+import com.webFlux.cosmos.resilience.metrics.BookOperation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The single retry policy for every Cosmos call made on behalf of a request. Failures are classified
+ * in one place, retries back off exponentially with full jitter (or wait out the retry-after of a
+ * 429/449), and every retry draws from one process-wide {@link RetryBudget}. A request with a
+ * {@link Deadline} is not retried when the backoff alone would use up the time it has left.
+ */
+@Component
+public class RetryEngine {
+
+    private static final int REQUEST_TIMEOUT = 408;
+    private static final int TOO_MANY_REQUESTS = 429;
+    private static final int RETRY_WITH = 449;
+    private static final int INTERNAL_SERVER_ERROR = 500;
+    private static final int SERVICE_UNAVAILABLE = 503;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final long maxAttempts;
+    private final long baseDelayMs;
+    private final long maxDelayMs;
+    private final RetryBudget budget;
+
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder throttledRetries = new LongAdder();
+    private final LongAdder budgetExhausted = new LongAdder();
+    private final LongAdder attemptsExhausted = new LongAdder();
+    private final LongAdder deadlineExhausted = new LongAdder();
+
+    public RetryEngine(@Value("${retry.maxAttempts:3}") final long maxAttempts,
+                       @Value("${retry.baseDelayMs:10}") final long baseDelayMs,
+                       @Value("${retry.maxDelayMs:1000}") final long maxDelayMs,
+                       @Value("${retry.budget.capacity:50}") final double budgetCapacity,
+                       @Value("${retry.budget.refillPerSecond:5}") final double budgetRefillPerSecond,
+                       @Value("${retry.budget.ratio:0.1}") final double budgetRatio) {
+        this.maxAttempts = maxAttempts;
+        this.baseDelayMs = baseDelayMs;
+        this.maxDelayMs = maxDelayMs;
+        this.budget = new RetryBudget(budgetCapacity, budgetRefillPerSecond, budgetRatio);
+    }
+
+    public Retry retry(BookOperation operation) {
+        return Retry.from(retrySignals -> Flux.deferContextual(context -> {
+            budget.deposit();
+            Optional<Deadline> deadline = Deadline.from(context);
+            return retrySignals.concatMap(retrySignal -> {
+                Throwable failure = retrySignal.failure();
+                if (!isRetryable(failure)) {
+                    return Mono.error(failure);
+                }
+                if (retrySignal.totalRetries() >= maxAttempts) {
+                    attemptsExhausted.increment();
+                    return Mono.error(failure);
+                }
+                Duration retryAfter = retryAfter(failure);
+                Duration delay = delay(retrySignal.totalRetries(), retryAfter);
+                if (deadline.isPresent() && delay.compareTo(deadline.get().remaining()) >= 0) {
+                    deadlineExhausted.increment();
+                    logger.info("Not retrying {} after the error {}, its deadline passes before the next attempt", operation.getKey(),
+                            failure.toString());
+                    return Mono.error(failure);
+                }
+                if (!budget.tryAcquire()) {
+                    budgetExhausted.increment();
+                    logger.info("Retry budget exhausted, not retrying {} after the error {}", operation.getKey(), failure.toString());
+                    return Mono.error(failure);
+                }
+                retries.increment();
+                if (retryAfter != null) {
+                    throttledRetries.increment();
+                }
+                logger.info("{} re-try attempt of {} in {} ms after the error {} ", retrySignal.totalRetries() + 1, operation.getKey(),
+                        delay.toMillis(), failure.toString());
+                return Mono.delay(delay);
+            });
+        }));
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("retries", retries.sum());
+        stats.put("throttledRetries", throttledRetries.sum());
+        stats.put("budgetExhausted", budgetExhausted.sum());
+        stats.put("attemptsExhausted", attemptsExhausted.sum());
+        stats.put("deadlineExhausted", deadlineExhausted.sum());
+        stats.put("budgetAvailable", budget.available());
+        return stats;
+    }
+
+    public static boolean isRetryable(Throwable error) {
+        if (error instanceof TimeoutException) {
+            return true;
+        }
+        if (!(error instanceof CosmosException)) {
+            return false;
+        }
+        switch (((CosmosException) error).getStatusCode()) {
+            case REQUEST_TIMEOUT:
+            case TOO_MANY_REQUESTS:
+            case RETRY_WITH:
+            case INTERNAL_SERVER_ERROR:
+            case SERVICE_UNAVAILABLE:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static Duration retryAfter(Throwable error) {
+        if (!(error instanceof CosmosException)) {
+            return null;
+        }
+        CosmosException cosmosException = (CosmosException) error;
+        int statusCode = cosmosException.getStatusCode();
+        if (statusCode != TOO_MANY_REQUESTS && statusCode != RETRY_WITH) {
+            return null;
+        }
+        return cosmosException.getRetryAfterDuration();
+    }
+
+    private Duration delay(long retry, Duration retryAfter) {
+        long ceiling = Math.min(maxDelayMs, baseDelayMs << Math.min(retry, 20));
+        long jittered = ThreadLocalRandom
+                .current()
+                .nextLong(ceiling + 1);
+        if (retryAfter != null && !retryAfter.isZero() && !retryAfter.isNegative()) {
+            return retryAfter.plusMillis(jittered / 4);
+        }
+        return Duration.ofMillis(jittered);
+    }
+}
@@ -0,0 +1,22 @@
+package com.webFlux.cosmos.resilience.view;
+
+import com.webFlux.cosmos.resilience.model.Book;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * A feed of book changes, delivered from the beginning of the container and in order per document.
+ */
+public interface ChangeFeedSource {
+
+    Mono<Void> start(Consumer<List<Book>> handler);
+
+    /**
+     * Number of changes written to the container but not yet delivered to the handler.
+     */
+    Mono<Long> estimatedLag();
+
+    Mono<Void> stop();
+}
@@ -0,0 +1,81 @@
+package com.webFlux.cosmos.resilience.view;
+
+import com.azure.cosmos.ChangeFeedProcessor;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.webFlux.cosmos.resilience.cosmos.CosmosDB;
+import com.webFlux.cosmos.resilience.model.Book;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Change feed processor over the books container. Every process reads the whole feed under its own
+ * lease prefix, because each one keeps its own complete in-memory view.
+ */
+public class CosmosChangeFeedSource implements ChangeFeedSource {
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+    private final CosmosDB cosmosDB;
+    private final ObjectMapper objectMapper;
+    private final String leaseContainerName;
+    private final String hostName;
+    private volatile ChangeFeedProcessor processor;
+
+    public CosmosChangeFeedSource(CosmosDB cosmosDB, ObjectMapper objectMapper, String leaseContainerName, String hostName) {
+        this.cosmosDB = cosmosDB;
+        this.objectMapper = objectMapper;
+        this.leaseContainerName = leaseContainerName;
+        this.hostName = hostName;
+    }
+
+    @Override
+    public Mono<Void> start(Consumer<List<Book>> handler) {
+        return cosmosDB
+                .buildChangeFeedProcessor(hostName, leaseContainerName, hostName + ".", documents -> handler.accept(toBooks(documents)))
+                .flatMap(changeFeedProcessor -> {
+                    processor = changeFeedProcessor;
+                    return changeFeedProcessor.start();
+                });
+    }
+
+    @Override
+    public Mono<Long> estimatedLag() {
+        ChangeFeedProcessor changeFeedProcessor = processor;
+        if (changeFeedProcessor == null || !changeFeedProcessor.isStarted()) {
+            return Mono.just(Long.MAX_VALUE);
+        }
+        return changeFeedProcessor
+                .getEstimatedLag()
+                .map(lagByLease -> lagByLease
+                        .values()
+                        .stream()
+                        .mapToLong(Integer::longValue)
+                        .sum());
+    }
+
+    @Override
+    public Mono<Void> stop() {
+        ChangeFeedProcessor changeFeedProcessor = processor;
+        return changeFeedProcessor == null ? Mono.empty() : changeFeedProcessor.stop();
+    }
+
+    private List<Book> toBooks(List<JsonNode> documents) {
+        List<Book> books = new ArrayList<>(documents.size());
+        for (JsonNode document : documents) {
+            try {
+                Book book = objectMapper.treeToValue(document, Book.class);
+                JsonNode etag = document.get("_etag");
+                book.setEtag(etag == null ? null : etag.asText());
+                books.add(book);
+            } catch (Exception e) {
+                logger.info("Skipping change feed document that is not a book {}", document.get("id"), e);
+            }
+        }
+        return books;
+    }
+}
@@ -0,0 +1,47 @@
+package com.webFlux.cosmos.resilience.view;
+
+import com.webFlux.cosmos.resilience.model.Book;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Local change feed for tests and development: every published batch is replayed to the handler,
+ * including batches published before {@link #start(Consumer)}.
+ */
+public class InMemoryChangeFeedSource implements ChangeFeedSource {
+
+    private final Sinks.Many<List<Book>> feed = Sinks
+            .many()
+            .replay()
+            .all();
+    private volatile Disposable subscription;
+
+    public synchronized void publish(List<Book> books) {
+        feed.emitNext(books, Sinks.EmitFailureHandler.FAIL_FAST);
+    }
+
+    @Override
+    public Mono<Void> start(Consumer<List<Book>> handler) {
+        return Mono.fromRunnable(() -> subscription = feed
+                .asFlux()
+                .subscribe(handler));
+    }
+
+    @Override
+    public Mono<Long> estimatedLag() {
+        return Mono.just(0L);
+    }
+
+    @Override
+    public Mono<Void> stop() {
+        return Mono.fromRunnable(() -> {
+            if (subscription != null) {
+                subscription.dispose();
+            }
+        });
+    }
+}
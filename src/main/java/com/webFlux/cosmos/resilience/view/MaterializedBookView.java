@@ -0,0 +1,186 @@
+package com.webFlux.cosmos.resilience.view;
+
+import com.webFlux.cosmos.resilience.model.Book;
+import com.webFlux.cosmos.resilience.model.BookKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process copy of the books container fed by a {@link ChangeFeedSource}. The view serves reads
+ * once the feed has caught up, and only while the last catch-up is within {@code view.maxStalenessMs}.
+ * Deletes are not reflected, as the change feed does not carry them.
+ */
+@Component
+public class MaterializedBookView {
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final ChangeFeedSource changeFeedSource;
+    private final boolean enabled;
+    private final long maxStalenessNanos;
+    private final Duration lagCheckInterval;
+
+    private final ConcurrentHashMap<BookKey, Book> byKey = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, ConcurrentHashMap<BookKey, Book>> byCategory = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Set<BookKey>> byIsbn = new ConcurrentHashMap<>();
+    private final LongAdder changesApplied = new LongAdder();
+    private final LongAdder reads = new LongAdder();
+
+    private volatile boolean warm;
+    private volatile long lastCaughtUpNanos;
+    private volatile long lastLag = -1;
+    private volatile Disposable lagCheck;
+
+    @Autowired
+    public MaterializedBookView(ChangeFeedSource changeFeedSource,
+                                @Value("${view.enabled:false}") final boolean enabled,
+                                @Value("${view.maxStalenessMs:5000}") final long maxStalenessMs,
+                                @Value("${view.lagCheckMs:1000}") final long lagCheckMs) {
+        this.changeFeedSource = changeFeedSource;
+        this.enabled = enabled;
+        this.maxStalenessNanos = TimeUnit.MILLISECONDS.toNanos(maxStalenessMs);
+        this.lagCheckInterval = Duration.ofMillis(lagCheckMs);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        changeFeedSource
+                .start(this::apply)
+                .subscribe(ignored -> {
+                }, error -> logger.error("Change feed could not be started, reads stay on Cosmos", error),
+                        () -> logger.info("Materialized book view started"));
+        lagCheck = Flux
+                .interval(lagCheckInterval)
+                .concatMap(tick -> changeFeedSource
+                        .estimatedLag()
+                        .onErrorResume(error -> {
+                            logger.info("Change feed lag estimate failed", error);
+                            return Mono.empty();
+                        }))
+                .subscribe(this::onLag);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (lagCheck != null) {
+            lagCheck.dispose();
+        }
+        if (enabled) {
+            changeFeedSource
+                    .stop()
+                    .block(Duration.ofSeconds(5));
+        }
+    }
+
+    public boolean isServing() {
+        return enabled && warm && System.nanoTime() - lastCaughtUpNanos <= maxStalenessNanos;
+    }
+
+    public Book get(BookKey key) {
+        reads.increment();
+        return byKey.get(key);
+    }
+
+    public Collection<Book> byCategory(String category) {
+        reads.increment();
+        Map<BookKey, Book> books = byCategory.get(category);
+        return books == null ? Collections.emptyList() : new ArrayList<>(books.values());
+    }
+
+    public List<Book> byIsbn(String isbn) {
+        reads.increment();
+        Set<BookKey> keys = byIsbn.get(isbn);
+        if (keys == null) {
+            return Collections.emptyList();
+        }
+        List<Book> books = new ArrayList<>(keys.size());
+        for (BookKey key : keys) {
+            Book book = byKey.get(key);
+            if (book != null && isbn.equals(book.getIsbn())) {
+                books.add(book);
+            }
+        }
+        return books;
+    }
+
+    public Collection<Book> all() {
+        reads.increment();
+        return new ArrayList<>(byKey.values());
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("warm", warm);
+        stats.put("serving", isServing());
+        stats.put("books", byKey.mappingCount());
+        stats.put("categories", byCategory.mappingCount());
+        stats.put("lastLag", lastLag);
+        stats.put("msSinceCaughtUp", warm ? TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastCaughtUpNanos) : -1);
+        stats.put("changesApplied", changesApplied.sum());
+        stats.put("reads", reads.sum());
+        return stats;
+    }
+
+    void apply(List<Book> changes) {
+        for (Book book : changes) {
+            if (book.getId() == null || book.getCategory() == null) {
+                continue;
+            }
+            BookKey key = BookKey.of(book);
+            Book previous = byKey.put(key, book);
+            byCategory
+                    .computeIfAbsent(book.getCategory(), category -> new ConcurrentHashMap<>())
+                    .put(key, book);
+            if (previous != null && previous.getIsbn() != null && !previous.getIsbn().equals(book.getIsbn())) {
+                byIsbn.computeIfPresent(previous.getIsbn(), (isbn, keys) -> {
+                    keys.remove(key);
+                    return keys.isEmpty() ? null : keys;
+                });
+            }
+            if (book.getIsbn() != null) {
+                byIsbn.compute(book.getIsbn(), (isbn, keys) -> {
+                    Set<BookKey> updated = keys == null ? ConcurrentHashMap.newKeySet() : keys;
+                    updated.add(key);
+                    return updated;
+                });
+            }
+            changesApplied.increment();
+        }
+    }
+
+    private void onLag(long lag) {
+        lastLag = lag;
+        if (lag == 0) {
+            lastCaughtUpNanos = System.nanoTime();
+            if (!warm) {
+                logger.info("Materialized book view is warm with {} books", byKey.mappingCount());
+                warm = true;
+            }
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.webFlux.cosmos.resilience.view;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.webFlux.cosmos.resilience.cosmos.CosmosDB;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.UUID;
+
+@Configuration
+public class MaterializedViewConfiguration {
+
+    @Bean
+    @ConditionalOnProperty(name = "view.source", havingValue = "cosmos", matchIfMissing = true)
+    public ChangeFeedSource cosmosChangeFeedSource(CosmosDB cosmosDB, ObjectMapper objectMapper,
+                                                   @Value("${view.leaseContainer:leases}") final String leaseContainer) {
+        return new CosmosChangeFeedSource(cosmosDB, objectMapper, leaseContainer, hostName());
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "view.source", havingValue = "memory")
+    public ChangeFeedSource inMemoryChangeFeedSource() {
+        return new InMemoryChangeFeedSource();
+    }
+
+    private static String hostName() {
+        String suffix = UUID
+                .randomUUID()
+                .toString()
+                .substring(0, 8);
+        try {
+            return InetAddress
+                    .getLocalHost()
+                    .getHostName() + "-" + suffix;
+        } catch (UnknownHostException e) {
+            return "webfluxcosmos-" + suffix;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.webFlux.cosmos.resilience.cache;
+
+import com.webFlux.cosmos.resilience.cosmos.InMemoryCosmosContainer;
+import com.webFlux.cosmos.resilience.model.Book;
+import com.webFlux.cosmos.resilience.model.BookKey;
+import com.webFlux.cosmos.resilience.model.BookRepository;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class BookCacheTest {
+
+    private static Book book(String id, String category, int price) {
+        return new Book(id, category, "99847", "Seven Databases in Seven Weeks", "Luc Perkins",
+                "A Guide to Modern Databases and the NoSQL Movement", new BigDecimal(price), new BigDecimal(price - 4), "image.jpg");
+    }
+
+    private static BookRepository repository(InMemoryCosmosContainer container, BookCache cache) {
+        return container.repository(cache);
+    }
+
+    @Test
+    void repeatedReadsAreServedFromTheCache() {
+        InMemoryCosmosContainer container = new InMemoryCosmosContainer().seed(book("1", "Databases", 47));
+        BookCache cache = new BookCache(true, 100, 60_000);
+        BookRepository repository = repository(container, cache);
+
+        StepVerifier.create(repository.finByIdAndCategory("1", "Databases")).expectNextCount(1).verifyComplete();
+        StepVerifier.create(repository.finByIdAndCategory("1", "Databases")).expectNextCount(1).verifyComplete();
+
+        assertEquals(1, container.reads());
+        assertEquals(1L, cache.stats().get("hits"));
+        assertEquals(1L, cache.stats().get("misses"));
+    }
+
+    @Test
+    void concurrentMissesShareOneRead() {
+        InMemoryCosmosContainer container = new InMemoryCosmosContainer()
+                .seed(book("1", "Databases", 47))
+                .withLatency(Duration.ofMillis(50));
+        BookRepository repository = repository(container, new BookCache(true, 100, 60_000));
+
+        StepVerifier.create(Flux.range(0, 32).flatMap(i -> repository.finByIdAndCategory("1", "Databases")))
+                .expectNextCount(32)
+                .verifyComplete();
+
+        assertEquals(1, container.reads());
+    }
+
+    @Test
+    void writesRefreshTheCachedEntry() {
+        InMemoryCosmosContainer container = new InMemoryCosmosContainer().seed(book("1", "Databases", 47));
+        BookRepository repository = repository(container, new BookCache(true, 100, 60_000));
+
+        StepVerifier.create(repository.finByIdAndCategory("1", "Databases")).expectNextCount(1).verifyComplete();
+        StepVerifier.create(repository.upsertBook(book("1", "Databases", 55))).expectNextCount(1).verifyComplete();
+        StepVerifier.create(repository.finByIdAndCategory("1", "Databases"))
+                .expectNextMatches(book -> book.getPrice().intValue() == 55)
+                .verifyComplete();
+
+        assertEquals(1, container.reads());
+    }
+
+    @Test
+    void entriesAreEvictedBySizeAndTtl() {
+        InMemoryCosmosContainer container = new InMemoryCosmosContainer()
+                .seed(book("1", "Databases", 47))
+                .seed(book("2", "Databases", 47))
+                .seed(book("3", "Databases", 47));
+        BookCache bounded = new BookCache(true, 2, 60_000);
+        BookRepository repository = repository(container, bounded);
+
+        Flux.just("1", "2", "3").concatMap(id -> repository.finByIdAndCategory(id, "Databases")).blockLast();
+
+        assertEquals(2L, bounded.stats().get("size"));
+        assertEquals(1L, bounded.stats().get("evictions"));
+
+        BookCache expiring = new BookCache(true, 100, 0);
+        BookRepository uncached = repository(container, expiring);
+        uncached.finByIdAndCategory("1", "Databases").block();
+        uncached.finByIdAndCategory("1", "Databases").block();
+
+        assertEquals(0L, expiring.stats().get("hits"));
+        assertEquals(5, container.reads());
+    }
+
+    @Test
+    void conditionalReadsOfUnchangedBooksCarryNoBody() {
+        InMemoryCosmosContainer container = new InMemoryCosmosContainer().seed(book("1", "Databases", 47));
+        BookRepository repository = repository(container, new BookCache(false, 0, 0));
+        String etag = repository.finByIdAndCategory("1", "Databases").block().getEtag();
+
+        StepVerifier.create(repository.findIfChanged("1", "Databases", etag)).verifyComplete();
+        StepVerifier.create(repository.upsertBook(book("1", "Databases", 55))).expectNextCount(1).verifyComplete();
+        StepVerifier.create(repository.findIfChanged("1", "Databases", etag))
+                .expectNextMatches(book -> book.getPrice().intValue() == 55 && !etag.equals(book.getEtag()))
+                .verifyComplete();
+        assertEquals(3, container.reads());
+    }
+
+    @Test
+    void conditionalReadsOfCachedBooksStayOffCosmos() {
+        InMemoryCosmosContainer container = new InMemoryCosmosContainer().seed(book("1", "Databases", 47));
+        BookRepository repository = repository(container, new BookCache(true, 100, 60_000));
+        String etag = repository.finByIdAndCategory("1", "Databases").block().getEtag();
+
+        StepVerifier.create(repository.findIfChanged("1", "Databases", etag)).verifyComplete();
+        StepVerifier.create(repository.findIfChanged("1", "Databases", "\"stale\"")).expectNextCount(1).verifyComplete();
+
+        assertEquals(1, container.reads());
+    }
+
+    @Test
+    void aLoadReplacedByAWriteDoesNotEvictTheNewerLoad() {
+        BookCache cache = new BookCache(true, 100, 60_000);
+        BookKey key = new BookKey("1", "Databases");
+        Sinks.One<Book> stale = Sinks.one();
+        Sinks.One<Book> fresh = Sinks.one();
+        Queue<Sinks.One<Book>> loads = new ArrayDeque<>(List.of(stale, fresh));
+        Function<BookKey, Mono<Book>> loader = ignored -> loads.remove().asMono();
+
+        cache.get(key, loader).subscribe();
+        cache.invalidate(key);
+        cache.get(key, loader).subscribe();
+        stale.tryEmitValue(book("1", "Databases", 47));
+
+        assertEquals(1L, cache.stats().get("inFlight"));
+        fresh.tryEmitValue(book("1", "Databases", 55));
+        assertEquals(0L, cache.stats().get("inFlight"));
+    }
+
+    @Test
+    void onlyWritesToTheSameKeyKeepALoadOutOfTheCache() {
+        BookCache cache = new BookCache(true, 100, 60_000);
+        BookKey key = new BookKey("1", "Databases");
+        Sinks.One<Book> first = Sinks.one();
+        Sinks.One<Book> second = Sinks.one();
+        Queue<Sinks.One<Book>> loads = new ArrayDeque<>(List.of(first, second));
+        Function<BookKey, Mono<Book>> loader = ignored -> loads.remove().asMono();
+
+        cache.get(key, loader).subscribe();
+        cache.put(book("2", "Databases", 30));
+        cache.invalidate(new BookKey("3", "Databases"));
+        first.tryEmitValue(book("1", "Databases", 47));
+
+        assertNotNull(cache.getIfPresent(key));
+
+        cache.invalidate(key);
+        cache.get(key, loader).subscribe();
+        cache.invalidate(key);
+        second.tryEmitValue(book("1", "Databases", 47));
+
+        assertNull(cache.getIfPresent(key));
+    }
+}
@@ -0,0 +1,136 @@
+package com.webFlux.cosmos.resilience.cache;
+
+import com.webFlux.cosmos.resilience.index.IsbnIndex;
+import com.webFlux.cosmos.resilience.index.SearchIndex;
+import com.webFlux.cosmos.resilience.metrics.LatencyRecorder;
+import com.webFlux.cosmos.resilience.model.Book;
+import com.webFlux.cosmos.resilience.model.BookRepository;
+import com.webFlux.cosmos.resilience.model.BookStats;
+import com.webFlux.cosmos.resilience.model.CategoryStats;
+import com.webFlux.cosmos.resilience.store.BookStoreConfiguration;
+import com.webFlux.cosmos.resilience.store.InMemoryBookStore;
+import com.webFlux.cosmos.resilience.store.WriteBehindBuffer;
+import com.webFlux.cosmos.resilience.store.WriteBehindJournal;
+import com.webFlux.cosmos.resilience.util.AdmissionController;
+import com.webFlux.cosmos.resilience.util.ReadCoalescer;
+import com.webFlux.cosmos.resilience.view.InMemoryChangeFeedSource;
+import com.webFlux.cosmos.resilience.view.MaterializedBookView;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CategoryStatsCacheTest {
+
+    private final AtomicInteger aggregations = new AtomicInteger();
+    private final InMemoryBookStore backend = new InMemoryBookStore() {
+        @Override
+        public Mono<CategoryStats> categoryStats(String category) {
+            aggregations.incrementAndGet();
+            return super.categoryStats(category);
+        }
+    };
+
+    private static Book book(String id, String category, int price) {
+        return new Book(id, category, "99847", "Title " + id, "Author", "Description", new BigDecimal(price), new BigDecimal(price - 4), "image.jpg");
+    }
+
+    private BookRepository repository(CategoryStatsCache cache) {
+        return repository(cache, new WriteBehindBuffer(false, 0, 0, 1, new WriteBehindJournal(WriteBehindJournal.Mode.NONE, null)));
+    }
+
+    private BookRepository repository(CategoryStatsCache cache, WriteBehindBuffer writeBehindBuffer) {
+        LatencyRecorder latencyRecorder = new LatencyRecorder(new MockEnvironment());
+        IsbnIndex isbnIndex = new IsbnIndex();
+        SearchIndex searchIndex = new SearchIndex(true, 64);
+        return new BookRepository(BookStoreConfiguration.decorate(backend, latencyRecorder,
+                new AdmissionController(new MockEnvironment().withProperty("admission.enabled", "false"), latencyRecorder), new ReadCoalescer(false, 0, 1),
+                writeBehindBuffer, new BookCache(false, 0, 0), cache, isbnIndex, searchIndex),
+                isbnIndex, new MaterializedBookView(new InMemoryChangeFeedSource(), false, 0, 1_000), searchIndex);
+    }
+
+    @Test
+    void aggregatesArePerCategoryAndInTotal() {
+        BookRepository repository = repository(new CategoryStatsCache(true, 60_000));
+        repository.bulkUpsert(List.of(book("1", "Databases", 40), book("2", "Databases", 50), book("3", "Security", 30))).blockLast();
+
+        BookStats stats = repository.stats().block();
+
+        assertEquals(2, stats.getCategories().size());
+        CategoryStats databases = stats.getCategories().get(0);
+        assertEquals("Databases", databases.getCategory());
+        assertEquals(2, databases.getCount());
+        assertEquals(0, new BigDecimal(45).compareTo(databases.getAvgPrice()));
+        assertEquals(0, new BigDecimal(36).compareTo(databases.getMinDiscountedPrice()));
+        assertEquals(3, stats.getTotal().getCount());
+        assertEquals(0, new BigDecimal(30).compareTo(stats.getTotal().getMinPrice()));
+        assertEquals(0, new BigDecimal(50).compareTo(stats.getTotal().getMaxPrice()));
+    }
+
+    @Test
+    void writesInvalidateOnlyTheirCategory() {
+        CategoryStatsCache cache = new CategoryStatsCache(true, 60_000);
+        BookRepository repository = repository(cache);
+        repository.bulkUpsert(List.of(book("1", "Databases", 40), book("2", "Security", 30))).blockLast();
+
+        repository.stats().block();
+        repository.stats().block();
+        assertEquals(2, aggregations.get());
+
+        repository.upsertBook(book("3", "Databases", 60)).block();
+        BookStats stats = repository.stats().block();
+
+        assertEquals(3, aggregations.get());
+        assertEquals(3, stats.getTotal().getCount());
+
+        repository.upsertBook(book("4", "Containers", 20)).block();
+        assertEquals(3, repository.stats().block().getCategories().size());
+    }
+
+    @Test
+    void flushedWriteBehindUpsertsInvalidateTheirCategory() {
+        WriteBehindBuffer buffer = new WriteBehindBuffer(true, 60_000, 100, 100, new WriteBehindJournal(WriteBehindJournal.Mode.NONE, null));
+        BookRepository repository = repository(new CategoryStatsCache(true, 60_000), buffer);
+        repository.bulkUpsert(List.of(book("1", "Databases", 40))).blockLast();
+
+        repository.upsertBook(book("2", "Databases", 50)).block();
+        assertEquals(1, repository.stats().block().getTotal().getCount());
+
+        buffer.flush().block();
+
+        assertEquals(2, repository.stats().block().getTotal().getCount());
+    }
+
+    @Test
+    void onlyWritesToTheSameCategoryKeepALoadOutOfTheCache() {
+        CategoryStatsCache cache = new CategoryStatsCache(true, 60_000);
+        Sinks.One<CategoryStats> databases = Sinks.one();
+        cache.get("Databases", category -> databases.asMono()).subscribe();
+        cache.invalidate("Security");
+        databases.tryEmitValue(new CategoryStats());
+
+        cache.get("Databases", category -> Mono.error(new IllegalStateException("not cached"))).block();
+        assertEquals(1L, cache.stats().get("hits"));
+
+        Sinks.One<CategoryStats> raced = Sinks.one();
+        cache.invalidate("Databases");
+        cache.get("Databases", category -> raced.asMono()).subscribe();
+        cache.invalidate("Databases");
+        raced.tryEmitValue(new CategoryStats());
+        assertEquals(0L, cache.stats().get("categories"));
+
+        cache.categories(() -> Flux.just("Databases", "Security")).blockLast();
+        cache.invalidate("Databases");
+        assertEquals(List.of("Databases", "Security"),
+                cache.categories(() -> Flux.error(new IllegalStateException("not cached"))).collectList().block());
+        cache.invalidate("Containers");
+        assertEquals(List.of("Containers"), cache.categories(() -> Flux.just("Containers")).collectList().block());
+    }
+}
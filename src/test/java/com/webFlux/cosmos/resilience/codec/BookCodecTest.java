@@ -0,0 +1,51 @@
+package com.webFlux.cosmos.resilience.codec;
+
+import com.webFlux.cosmos.resilience.model.Book;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class BookCodecTest {
+
+    private static Book book(String id, BigDecimal price) {
+        Book book = new Book(id, "Databases", "99847", "Seven Databases in Seven Weeks", "Luc Perkins",
+                "A Guide to Modern Databases and the NoSQL Movement — 2nd édition", price, new BigDecimal("-3.50"), null);
+        book.setEtag("\"00000a01-0000\"");
+        return book;
+    }
+
+    @Test
+    void roundTripsEveryFieldIncludingScaleWidePricesAndAbsentFields() {
+        Book book = book("1", new BigDecimal("123456789012345678901234567890.25"));
+
+        Book decoded = BookCodec.decode(BookCodec.encode(book));
+
+        assertEquals(book.toString(), decoded.toString());
+        assertEquals("-3.50", decoded.getDiscountedPrice().toString());
+        assertEquals(book.getPrice(), decoded.getPrice());
+        assertEquals(book.getEtag(), decoded.getEtag());
+        assertNull(decoded.getImage());
+        assertSame(BookCodec.decode(BookCodec.encode(book)).getCategory(), decoded.getCategory());
+    }
+
+    @Test
+    void framedBooksStopAtATornFrame() {
+        byte[] first = BookCodec.frame(book("1", new BigDecimal("47.99")));
+        byte[] second = BookCodec.frame(book("2", new BigDecimal(52)));
+        ByteBuffer stream = ByteBuffer.allocate(first.length + second.length - 3);
+        stream.put(first).put(Arrays.copyOf(second, second.length - 3)).flip();
+
+        List<Book> books = BookCodec.unframe(stream);
+
+        assertEquals(1, books.size());
+        assertEquals("47.99", books.get(0).getPrice().toString());
+        assertEquals(first.length, stream.position());
+    }
+}
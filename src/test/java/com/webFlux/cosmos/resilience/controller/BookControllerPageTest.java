@@ -0,0 +1,114 @@
+package com.webFlux.cosmos.resilience.controller;
+
+import com.webFlux.cosmos.resilience.cache.BookCache;
+import com.webFlux.cosmos.resilience.cosmos.InMemoryCosmosContainer;
+import com.webFlux.cosmos.resilience.metrics.LatencyRecorder;
+import com.webFlux.cosmos.resilience.model.Book;
+import com.webFlux.cosmos.resilience.model.BookPage;
+import com.webFlux.cosmos.resilience.util.CircuitBreakers;
+import com.webFlux.cosmos.resilience.util.ContinuationTokens;
+import com.webFlux.cosmos.resilience.util.Deadlines;
+import com.webFlux.cosmos.resilience.util.RetryEngine;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class BookControllerPageTest {
+
+    private static final int MAX_PAGE_SIZE = 3;
+
+    private final InMemoryCosmosContainer container = new InMemoryCosmosContainer();
+    private final WebTestClient client;
+
+    BookControllerPageTest() {
+        for (int i = 0; i < 5; i++) {
+            container.seed(new Book(String.valueOf(i), "Databases", "isbn-" + i, "Title " + i, "Author", "Description", new BigDecimal(47),
+                    new BigDecimal(42), "image.jpg"));
+        }
+        MockEnvironment environment = new MockEnvironment();
+        BookController controller = new BookController(container.repository(new BookCache(false, 0, 0)), null,
+                new RetryEngine(3, 10, 1_000, 50, 5, 0.1), new CircuitBreakers(environment),
+                new Deadlines(environment, new LatencyRecorder(environment)), MAX_PAGE_SIZE);
+        client = WebTestClient
+                .bindToController(controller)
+                .build();
+    }
+
+    private BookPage page(String uri) {
+        return client
+                .get()
+                .uri(uri)
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(BookPage.class)
+                .returnResult()
+                .getResponseBody();
+    }
+
+    private static List<String> ids(BookPage page) {
+        return page
+                .getItems()
+                .stream()
+                .map(Book::getId)
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    void continuationTokensRoundTripAsOpaqueStrings() {
+        BookPage first = page("/books/category/Databases?pageSize=3");
+
+        assertNotNull(first);
+        assertEquals(List.of("0", "1", "2"), ids(first));
+        assertEquals(ContinuationTokens.encode("3"), first.getContinuationToken());
+
+        BookPage second = page("/books/category/Databases?pageSize=3&continuationToken=" + first.getContinuationToken());
+
+        assertNotNull(second);
+        assertEquals(List.of("3", "4"), ids(second));
+        assertNull(second.getContinuationToken());
+
+        BookPage scanned = page("/books?pageSize=2&continuationToken=" + ContinuationTokens.encode("2"));
+
+        assertNotNull(scanned);
+        assertEquals(List.of("2", "3"), ids(scanned));
+    }
+
+    @Test
+    void pageSizesOutsideOneToTheMaximumAreRejected() {
+        for (String uri : List.of("/books?pageSize=0", "/books?pageSize=" + (MAX_PAGE_SIZE + 1),
+                "/books/category/Databases?pageSize=" + (MAX_PAGE_SIZE + 1))) {
+            client
+                    .get()
+                    .uri(uri)
+                    .accept(MediaType.APPLICATION_JSON)
+                    .exchange()
+                    .expectStatus()
+                    .isBadRequest();
+        }
+        assertEquals(0, container.calls());
+        assertEquals(List.of("0", "1", "2"), ids(page("/books?pageSize=" + MAX_PAGE_SIZE)));
+    }
+
+    @Test
+    void malformedContinuationTokensAreRejected() {
+        client
+                .get()
+                .uri("/books?pageSize=2&continuationToken={token}", "not*base64")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+        assertEquals(0, container.calls());
+    }
+}
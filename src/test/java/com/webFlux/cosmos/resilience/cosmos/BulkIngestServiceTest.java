@@ -0,0 +1,165 @@
+package com.webFlux.cosmos.resilience.cosmos;
+
+import com.azure.cosmos.BridgeInternal;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.webFlux.cosmos.resilience.cache.BookCache;
+import com.webFlux.cosmos.resilience.controller.BookController;
+import com.webFlux.cosmos.resilience.metrics.LatencyRecorder;
+import com.webFlux.cosmos.resilience.model.Book;
+import com.webFlux.cosmos.resilience.model.BookRepository;
+import com.webFlux.cosmos.resilience.model.BulkItemResult;
+import com.webFlux.cosmos.resilience.util.CircuitBreakers;
+import com.webFlux.cosmos.resilience.util.Deadlines;
+import com.webFlux.cosmos.resilience.util.RetryEngine;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BulkIngestServiceTest {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private static Book book(String id, String category) {
+        return new Book(id, category, "isbn-" + id, "Title " + id, "Author", "Description", new BigDecimal(40), new BigDecimal(36), "image.jpg");
+    }
+
+    private static BookRepository repository(InMemoryCosmosContainer container) {
+        return container.repository(new BookCache(false, 0, 0));
+    }
+
+    @Test
+    void everyBookGetsItsOwnResultAcrossPartitionBatches() {
+        InMemoryCosmosContainer container = new InMemoryCosmosContainer();
+        BookRepository repository = repository(container);
+        BulkIngestService service = new BulkIngestService(repository, 2, 2);
+
+        List<BulkItemResult> results = service
+                .ingest(Flux.just(book("1", "Databases"), book("2", "Security"), book("3", "Databases"), book("4", "Databases"),
+                        book("5", "Security")))
+                .collectList()
+                .block();
+
+        assertNotNull(results);
+        assertEquals(Set.of("1", "2", "3", "4", "5"), results
+                .stream()
+                .map(BulkItemResult::getId)
+                .collect(Collectors.toSet()));
+        assertTrue(results
+                .stream()
+                .allMatch(BulkItemResult::isSuccess));
+        assertEquals(5, container.writes());
+        assertEquals("Security", repository
+                .finByIdAndCategory("5", "Security")
+                .map(Book::getCategory)
+                .block());
+    }
+
+    @Test
+    void aThrottledItemPushesTheNextBatchOutByItsRetryAfter() {
+        AtomicBoolean throttled = new AtomicBoolean();
+        List<Long> writesAtNanos = new CopyOnWriteArrayList<>();
+        InMemoryCosmosContainer container = new InMemoryCosmosContainer().withSimulation((call, partitionKey) -> {
+            if (call == InMemoryCosmosContainer.Call.WRITE) {
+                writesAtNanos.add(System.nanoTime());
+                if (throttled.compareAndSet(false, true)) {
+                    throw BridgeInternal.createCosmosException(null, 429, null, Collections.singletonMap("x-ms-retry-after-ms", "200"));
+                }
+            }
+            return Duration.ZERO;
+        });
+        BulkIngestService service = new BulkIngestService(repository(container), 1, 1);
+
+        List<BulkItemResult> results = service
+                .ingest(Flux.just(book("1", "Databases"), book("2", "Databases"), book("3", "Databases")))
+                .collectList()
+                .block();
+
+        assertNotNull(results);
+        assertEquals(3, results.size());
+        BulkItemResult first = results.get(0);
+        assertEquals("1", first.getId());
+        assertEquals(429, first.getStatusCode());
+        assertEquals(200, first.getRetryAfterMs());
+        assertTrue(first.isRetryable());
+        assertTrue(results
+                .subList(1, 3)
+                .stream()
+                .allMatch(BulkItemResult::isSuccess));
+        assertEquals(3, writesAtNanos.size());
+        assertTrue(writesAtNanos.get(1) - writesAtNanos.get(0) >= TimeUnit.MILLISECONDS.toNanos(200),
+                "the batch after the throttle was sent before its retry-after");
+        assertEquals(2, container.writes());
+    }
+
+    @Test
+    void batchEndpointParsesNdjsonAndStreamsOneResultPerLine() throws Exception {
+        InMemoryCosmosContainer container = new InMemoryCosmosContainer();
+        BookRepository repository = repository(container);
+        MockEnvironment environment = new MockEnvironment();
+        BookController controller = new BookController(repository, new BulkIngestService(repository, 100, 4),
+                new RetryEngine(3, 10, 1_000, 50, 5, 0.1), new CircuitBreakers(environment),
+                new Deadlines(environment, new LatencyRecorder(environment)), 100);
+        WebTestClient client = WebTestClient
+                .bindToController(controller)
+                .build();
+        StringBuilder body = new StringBuilder();
+        for (Book book : List.of(book("1", "Databases"), book("2", "Security"), book("3", "Databases"))) {
+            body
+                    .append(OBJECT_MAPPER.writeValueAsString(book))
+                    .append('\n');
+        }
+
+        String response = client
+                .post()
+                .uri("/books/batch")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .bodyValue(body.toString())
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(String.class)
+                .returnResult()
+                .getResponseBody();
+
+        assertNotNull(response);
+        List<JsonNode> results = new ArrayList<>();
+        for (String line : response.split("\n")) {
+            if (!line.isBlank()) {
+                results.add(OBJECT_MAPPER.readTree(line));
+            }
+        }
+        assertEquals(Set.of("1", "2", "3"), results
+                .stream()
+                .map(result -> result
+                        .get("id")
+                        .asText())
+                .collect(Collectors.toSet()));
+        assertTrue(results
+                .stream()
+                .allMatch(result -> result
+                        .get("statusCode")
+                        .asInt() == 200));
+        assertFalse(response.trim().startsWith("["), "the results were sent as one JSON array instead of NDJSON");
+        assertEquals(3, container.writes());
+    }
+}
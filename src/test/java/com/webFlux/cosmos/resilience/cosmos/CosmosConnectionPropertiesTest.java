@@ -0,0 +1,72 @@
+package com.webFlux.cosmos.resilience.cosmos;
+
+import com.azure.cosmos.ConsistencyLevel;
+import com.azure.cosmos.models.ThroughputProperties;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.MapConfigurationPropertySource;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CosmosConnectionPropertiesTest {
+
+    private static CosmosConnectionProperties bind(Map<String, String> properties) {
+        return new Binder(new MapConfigurationPropertySource(properties))
+                .bindOrCreate("cosmos", CosmosConnectionProperties.class);
+    }
+
+    @Test
+    void defaultsAreValidAndProvisionManualThroughput() {
+        CosmosConnectionProperties connection = bind(new HashMap<>());
+
+        assertTrue(connection.errors().isEmpty(), connection.errors().toString());
+        assertTrue(connection.warnings().isEmpty(), connection.warnings().toString());
+        assertEquals(CosmosConnectionProperties.ConnectionMode.DIRECT, connection.getConnectionMode());
+        assertEquals(ConsistencyLevel.SESSION, connection.getConsistencyLevel());
+        ThroughputProperties throughput = connection.throughputProperties();
+        assertEquals(400, throughput.getManualThroughput());
+    }
+
+    @Test
+    void settingsBindIntoTheSdkConfiguration() {
+        Map<String, String> properties = new HashMap<>();
+        properties.put("cosmos.connectionMode", "gateway");
+        properties.put("cosmos.consistencyLevel", "eventual");
+        properties.put("cosmos.direct.maxConnectionsPerEndpoint", "64");
+        properties.put("cosmos.direct.maxRequestsPerConnection", "10");
+        properties.put("cosmos.gateway.maxConnectionPoolSize", "200");
+        properties.put("cosmos.throttling.maxRetryAttempts", "1");
+        properties.put("cosmos.throttling.maxRetryWaitMs", "500");
+        properties.put("cosmos.throughput.mode", "autoscale");
+        properties.put("cosmos.throughput.ruPerSecond", "4000");
+        CosmosConnectionProperties connection = bind(properties);
+
+        assertTrue(connection.errors().isEmpty(), connection.errors().toString());
+        assertEquals(CosmosConnectionProperties.ConnectionMode.GATEWAY, connection.getConnectionMode());
+        assertEquals(ConsistencyLevel.EVENTUAL, connection.getConsistencyLevel());
+        assertEquals(64, connection.directConnectionConfig().getMaxConnectionsPerEndpoint());
+        assertEquals(10, connection.directConnectionConfig().getMaxRequestsPerConnection());
+        assertEquals(200, connection.gatewayConnectionConfig().getMaxConnectionPoolSize());
+        assertEquals(1, connection.throttlingRetryOptions().getMaxRetryAttemptsOnThrottledRequests());
+        assertEquals(500, connection.throttlingRetryOptions().getMaxRetryWaitTime().toMillis());
+        assertEquals(4000, connection.throughputProperties().getAutoscaleMaxThroughput());
+        assertEquals(1, connection.warnings().size(), connection.warnings().toString());
+    }
+
+    @Test
+    void settingsCosmosWouldRejectAreReported() {
+        Map<String, String> properties = new HashMap<>();
+        properties.put("cosmos.throughput.mode", "autoscale");
+        properties.put("cosmos.throughput.ruPerSecond", "400");
+        properties.put("cosmos.direct.maxRequestsPerConnection", "0");
+        properties.put("cosmos.consistencyLevel", "strong");
+        CosmosConnectionProperties connection = bind(properties);
+
+        assertEquals(2, connection.errors().size(), connection.errors().toString());
+        assertEquals(1, connection.warnings().size(), connection.warnings().toString());
+    }
+}
@@ -0,0 +1,123 @@
+package com.webFlux.cosmos.resilience.cosmos;
+
+import com.azure.cosmos.BridgeInternal;
+import com.azure.cosmos.CosmosAsyncClient;
+import com.azure.cosmos.CosmosAsyncContainer;
+import com.azure.cosmos.CosmosAsyncDatabase;
+import com.azure.cosmos.models.CosmosContainerProperties;
+import com.azure.cosmos.models.ThroughputProperties;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CosmosDBStartupTest {
+
+    private static final long CLIENT_BUILD_MS = 500;
+
+    private final CosmosAsyncClient client = mock(CosmosAsyncClient.class);
+    private final CosmosAsyncDatabase database = mock(CosmosAsyncDatabase.class);
+    private final CosmosAsyncContainer container = mock(CosmosAsyncContainer.class);
+    private final AtomicInteger clientsBuilt = new AtomicInteger();
+
+    CosmosDBStartupTest() {
+        when(client.createDatabaseIfNotExists(anyString())).thenReturn(Mono.empty());
+        when(client.getDatabase(anyString())).thenReturn(database);
+        when(database.createContainerIfNotExists(any(CosmosContainerProperties.class), any(ThroughputProperties.class))).thenReturn(Mono.empty());
+        when(database.getContainer(anyString())).thenReturn(container);
+        when(container.openConnectionsAndInitCaches()).thenReturn(Mono.delay(Duration.ofMillis(100)).then());
+    }
+
+    private CosmosDB cosmosDB() {
+        return cosmosDB(new CosmosConnectionProperties());
+    }
+
+    private CosmosDB cosmosDB(CosmosConnectionProperties connection) {
+        return new CosmosDB("https://localhost:8081", "key", "books", "book", Collections.singletonList("West Europe"), false, connection, regions -> {
+            clientsBuilt.incrementAndGet();
+            try {
+                // building a real client reads the database account over the network
+                Thread.sleep(CLIENT_BUILD_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return client;
+        });
+    }
+
+    @Test
+    void constructionDoesNotWaitForTheBackend() {
+        long start = System.nanoTime();
+        CosmosDB cosmosDB = cosmosDB();
+        long constructionMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue(constructionMs < CLIENT_BUILD_MS / 2, "construction took " + constructionMs + " ms");
+        assertFalse(cosmosDB.isWarm());
+
+        assertSame(container, cosmosDB.getContainer().block(Duration.ofSeconds(5)));
+        assertTrue(cosmosDB.isWarm());
+        assertTrue(cosmosDB.getWarmAfterMs() >= CLIENT_BUILD_MS, "warm after " + cosmosDB.getWarmAfterMs() + " ms");
+    }
+
+    @Test
+    void warmUpRunsOnceForAllCallers() {
+        CosmosDB cosmosDB = cosmosDB();
+
+        cosmosDB.getContainer().block(Duration.ofSeconds(5));
+        cosmosDB.getContainer().block(Duration.ofSeconds(5));
+        cosmosDB.getHedgeContainer().block(Duration.ofSeconds(5));
+
+        assertEquals(1, clientsBuilt.get());
+        verify(container, times(1)).openConnectionsAndInitCaches();
+    }
+
+    @Test
+    void containerIsCreatedWithTheConfiguredThroughput() {
+        CosmosConnectionProperties connection = new CosmosConnectionProperties();
+        connection.getThroughput().setMode(CosmosConnectionProperties.ThroughputMode.AUTOSCALE);
+        connection.getThroughput().setRuPerSecond(4000);
+
+        cosmosDB(connection).getContainer().block(Duration.ofSeconds(5));
+
+        ArgumentCaptor<ThroughputProperties> throughput = ArgumentCaptor.forClass(ThroughputProperties.class);
+        verify(database).createContainerIfNotExists(any(CosmosContainerProperties.class), throughput.capture());
+        assertEquals(4000, throughput.getValue().getAutoscaleMaxThroughput());
+    }
+
+    @Test
+    void invalidSettingsFailConstruction() {
+        CosmosConnectionProperties connection = new CosmosConnectionProperties();
+        connection.getThroughput().setRuPerSecond(50);
+
+        assertThrows(IllegalStateException.class, () -> cosmosDB(connection));
+        assertEquals(0, clientsBuilt.get());
+    }
+
+    @Test
+    void failedSetupIsRetriedInTheBackground() {
+        when(client.createDatabaseIfNotExists(anyString()))
+                .thenReturn(Mono.error(BridgeInternal.createCosmosException(503)))
+                .thenReturn(Mono.empty());
+        CosmosDB cosmosDB = cosmosDB();
+
+        assertSame(container, cosmosDB.getContainer().block(Duration.ofSeconds(10)));
+        assertTrue(cosmosDB.isWarm());
+        assertEquals(1, clientsBuilt.get());
+    }
+}
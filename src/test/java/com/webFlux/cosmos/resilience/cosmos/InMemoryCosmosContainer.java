@@ -0,0 +1,445 @@
+package com.webFlux.cosmos.resilience.cosmos;
+
+import com.azure.cosmos.BridgeInternal;
+import com.azure.cosmos.CosmosAsyncContainer;
+import com.azure.cosmos.CosmosDiagnostics;
+import com.azure.cosmos.implementation.patch.PatchOperation;
+import com.azure.cosmos.implementation.patch.PatchOperationCore;
+import com.azure.cosmos.models.CosmosBulkItemResponse;
+import com.azure.cosmos.models.CosmosBulkOperationResponse;
+import com.azure.cosmos.models.CosmosItemIdentity;
+import com.azure.cosmos.models.CosmosItemOperation;
+import com.azure.cosmos.models.CosmosItemOperationType;
+import com.azure.cosmos.models.CosmosItemRequestOptions;
+import com.azure.cosmos.models.CosmosItemResponse;
+import com.azure.cosmos.models.CosmosPatchItemRequestOptions;
+import com.azure.cosmos.models.CosmosPatchOperations;
+import com.azure.cosmos.models.CosmosQueryRequestOptions;
+import com.azure.cosmos.models.FeedResponse;
+import com.azure.cosmos.models.ModelBridgeInternal;
+import com.azure.cosmos.models.PartitionKey;
+import com.azure.cosmos.models.SqlParameter;
+import com.azure.cosmos.models.SqlQuerySpec;
+import com.azure.cosmos.util.CosmosPagedFlux;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.webFlux.cosmos.resilience.cache.BookCache;
+import com.webFlux.cosmos.resilience.cache.CategoryStatsCache;
+import com.webFlux.cosmos.resilience.index.IsbnIndex;
+import com.webFlux.cosmos.resilience.index.SearchIndex;
+import com.webFlux.cosmos.resilience.metrics.LatencyRecorder;
+import com.webFlux.cosmos.resilience.model.Book;
+import com.webFlux.cosmos.resilience.model.BookRepository;
+import com.webFlux.cosmos.resilience.store.BookStoreConfiguration;
+import com.webFlux.cosmos.resilience.store.CosmosBookStore;
+import com.webFlux.cosmos.resilience.store.WriteBehindBuffer;
+import com.webFlux.cosmos.resilience.store.WriteBehindJournal;
+import com.webFlux.cosmos.resilience.util.AdmissionController;
+import com.webFlux.cosmos.resilience.util.ReadCoalescer;
+import com.webFlux.cosmos.resilience.view.InMemoryChangeFeedSource;
+import com.webFlux.cosmos.resilience.view.MaterializedBookView;
+import org.springframework.mock.env.MockEnvironment;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.nullable;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Test stand-in for {@link CosmosAsyncContainer} that keeps the books in memory, keyed by id and partition key.
+ * Mocks are stub-only, so the stand-in can take load without recording every invocation.
+ */
+public class InMemoryCosmosContainer {
+
+    public enum Call {
+        READ, WRITE, QUERY_PAGE
+    }
+
+    /**
+     * Decides how each container call behaves: returns how long it takes, or throws the failure it ends with.
+     * The partition key comes as rendered by {@link PartitionKey#toString()}, and is null for cross-partition query pages.
+     */
+    public interface Simulation {
+        Duration admit(Call call, String partitionKey);
+    }
+
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final ConcurrentHashMap<String, Book> items = new ConcurrentHashMap<>();
+    private final AtomicInteger reads = new AtomicInteger();
+    private final AtomicInteger writes = new AtomicInteger();
+    private final AtomicInteger calls = new AtomicInteger();
+    private final AtomicLong versions = new AtomicLong();
+    private final CosmosAsyncContainer container = stub(CosmosAsyncContainer.class);
+    private volatile Duration latency = Duration.ZERO;
+    private volatile BiFunction<String, Integer, Flux<FeedResponse<Book>>> queryPages;
+    private volatile Supplier<RuntimeException> fault = () -> null;
+    private volatile Simulation simulation;
+
+    public InMemoryCosmosContainer() {
+        when(container.readItem(anyString(), any(PartitionKey.class), any(CosmosItemRequestOptions.class), eq(Book.class)))
+                .thenAnswer(invocation -> read(invocation.getArgument(0), invocation.getArgument(1),
+                        invocation.<CosmosItemRequestOptions>getArgument(2).getIfNoneMatchETag()));
+        when(container.upsertItem(any(Book.class), any(PartitionKey.class), any(CosmosItemRequestOptions.class)))
+                .thenAnswer(invocation -> write(invocation.getArgument(0), true));
+        when(container.replaceItem(any(Book.class), anyString(), any(PartitionKey.class), any(CosmosItemRequestOptions.class)))
+                .thenAnswer(invocation -> replace(invocation.getArgument(0), invocation.<CosmosItemRequestOptions>getArgument(3).getIfMatchETag()));
+        when(container.createItem(any(Book.class), any(PartitionKey.class), any(CosmosItemRequestOptions.class)))
+                .thenAnswer(invocation -> write(invocation.getArgument(0), false));
+        when(container.queryItems(anyString(), any(CosmosQueryRequestOptions.class), eq(Book.class)))
+                .thenAnswer(invocation -> query(book -> true, null));
+        when(container.queryItems(any(SqlQuerySpec.class), any(CosmosQueryRequestOptions.class), eq(Book.class)))
+                .thenAnswer(invocation -> query(filter(invocation.getArgument(0)), partitionKey(invocation.getArgument(0))));
+        when(container.readMany(anyList(), eq(Book.class)))
+                .thenAnswer(invocation -> readMany(invocation.getArgument(0), InMemoryCosmosContainer::unversioned));
+        when(container.readMany(anyList(), eq(JsonNode.class)))
+                .thenAnswer(invocation -> readMany(invocation.getArgument(0), InMemoryCosmosContainer::document));
+        when(container.patchItem(anyString(), any(PartitionKey.class), any(CosmosPatchOperations.class), any(CosmosPatchItemRequestOptions.class),
+                eq(Book.class)))
+                .thenAnswer(invocation -> patch(invocation.getArgument(0), invocation.getArgument(1), invocation.getArgument(2),
+                        invocation.<CosmosPatchItemRequestOptions>getArgument(3).getIfMatchETag()));
+        when(container.executeBulkOperations(any()))
+                .thenAnswer(invocation -> bulk(invocation.getArgument(0)));
+    }
+
+    public CosmosAsyncContainer getContainer() {
+        return container;
+    }
+
+    public CosmosDB cosmosDB() {
+        CosmosDB cosmosDB = stub(CosmosDB.class);
+        when(cosmosDB.getContainer()).thenReturn(Mono.just(container));
+        when(cosmosDB.getHedgeContainer()).thenReturn(Mono.just(container));
+        return cosmosDB;
+    }
+
+    public BookRepository repository(BookCache bookCache) {
+        return repository(bookCache, new MaterializedBookView(new InMemoryChangeFeedSource(), false, 0, 1_000));
+    }
+
+    public BookRepository repository(BookCache bookCache, MaterializedBookView bookView) {
+        LatencyRecorder latencyRecorder = new LatencyRecorder(new MockEnvironment());
+        IsbnIndex isbnIndex = new IsbnIndex();
+        SearchIndex searchIndex = new SearchIndex(true, 64);
+        return new BookRepository(BookStoreConfiguration.decorate(new CosmosBookStore(Mono.just(container), latencyRecorder), latencyRecorder,
+                new AdmissionController(new MockEnvironment().withProperty("admission.enabled", "false"), latencyRecorder),
+                new ReadCoalescer(false, 0, 1), new WriteBehindBuffer(false, 0, 0, 1, new WriteBehindJournal(WriteBehindJournal.Mode.NONE, null)),
+                bookCache, new CategoryStatsCache(false, 0), isbnIndex, searchIndex), isbnIndex, bookView, searchIndex);
+    }
+
+    public InMemoryCosmosContainer withLatency(Duration latency) {
+        this.latency = latency;
+        return this;
+    }
+
+    /**
+     * Replaces the fixed latency with a simulation of partitions, request charges or throttling.
+     */
+    public InMemoryCosmosContainer withSimulation(Simulation simulation) {
+        this.simulation = simulation;
+        return this;
+    }
+
+    /**
+     * Fails every point read, write and query page with whatever the given supplier returns, until it returns null.
+     */
+    public InMemoryCosmosContainer withFault(Supplier<RuntimeException> fault) {
+        this.fault = fault;
+        return this;
+    }
+
+    /**
+     * Serves every query from the given page source, called with the requested continuation token and page size.
+     */
+    public InMemoryCosmosContainer withQueryPages(BiFunction<String, Integer, Flux<FeedResponse<Book>>> queryPages) {
+        this.queryPages = queryPages;
+        return this;
+    }
+
+    public InMemoryCosmosContainer seed(Book book) {
+        items.put(key(book.getId(), new PartitionKey(book.getCategory())), versioned(book));
+        return this;
+    }
+
+    public int reads() {
+        return reads.get();
+    }
+
+    public int writes() {
+        return writes.get();
+    }
+
+    public int calls() {
+        return calls.get();
+    }
+
+    private Mono<CosmosItemResponse<Book>> read(String id, PartitionKey partitionKey, String ifNoneMatchEtag) {
+        return delayed(Call.READ, partitionKey.toString(), () -> {
+            reads.incrementAndGet();
+            Book book = items.get(key(id, partitionKey));
+            if (book == null) {
+                throw BridgeInternal.createCosmosException(404);
+            }
+            return book.getEtag().equals(ifNoneMatchEtag) ? notModified(book.getEtag()) : response(copy(book));
+        });
+    }
+
+    /**
+     * Like the SDK, a read-many into books drops the etags; only the documents carry their {@code _etag}.
+     */
+    private <T> Mono<FeedResponse<T>> readMany(List<CosmosItemIdentity> identities, Function<Book, T> item) {
+        String partitionKey = identities.isEmpty() ? null : identities
+                .get(0)
+                .getPartitionKey()
+                .toString();
+        return delayed(Call.READ, partitionKey, () -> {
+            reads.incrementAndGet();
+            List<T> results = identities
+                    .stream()
+                    .map(identity -> items.get(key(identity.getId(), identity.getPartitionKey())))
+                    .filter(Objects::nonNull)
+                    .map(item)
+                    .collect(Collectors.toList());
+            return feedResponse(results, null);
+        });
+    }
+
+    private Mono<CosmosItemResponse<Book>> write(Book book, boolean upsert) {
+        return delayed(Call.WRITE, new PartitionKey(book.getCategory()).toString(), () -> {
+            writes.incrementAndGet();
+            String key = key(book.getId(), new PartitionKey(book.getCategory()));
+            Book stored = versioned(book);
+            if (upsert) {
+                items.put(key, stored);
+            } else if (items.putIfAbsent(key, stored) != null) {
+                throw BridgeInternal.createCosmosException(409);
+            }
+            return response(copy(stored));
+        });
+    }
+
+    private Mono<CosmosItemResponse<Book>> replace(Book book, String ifMatchEtag) {
+        return delayed(Call.WRITE, new PartitionKey(book.getCategory()).toString(), () -> {
+            writes.incrementAndGet();
+            Book stored = items.computeIfPresent(key(book.getId(), new PartitionKey(book.getCategory())), (key, current) -> {
+                if (ifMatchEtag != null && !ifMatchEtag.equals(current.getEtag())) {
+                    throw BridgeInternal.createCosmosException(412);
+                }
+                return versioned(book);
+            });
+            if (stored == null) {
+                throw BridgeInternal.createCosmosException(404);
+            }
+            return response(copy(stored));
+        });
+    }
+
+    /**
+     * Applies the set operations of the patch, the only kind the book store sends.
+     */
+    private Mono<CosmosItemResponse<Book>> patch(String id, PartitionKey partitionKey, CosmosPatchOperations patchOperations, String ifMatchEtag) {
+        return delayed(Call.WRITE, partitionKey.toString(), () -> {
+            writes.incrementAndGet();
+            Book stored = items.computeIfPresent(key(id, partitionKey), (key, current) -> {
+                if (ifMatchEtag != null && !ifMatchEtag.equals(current.getEtag())) {
+                    throw BridgeInternal.createCosmosException(412);
+                }
+                ObjectNode document = OBJECT_MAPPER.valueToTree(current);
+                for (PatchOperation operation : ModelBridgeInternal.getPatchOperationsFromCosmosPatch(patchOperations)) {
+                    PatchOperationCore<?> set = (PatchOperationCore<?>) operation;
+                    document.set(set.getPath().substring(1), OBJECT_MAPPER.valueToTree(set.getResource()));
+                }
+                return versioned(OBJECT_MAPPER.convertValue(document, Book.class));
+            });
+            if (stored == null) {
+                throw BridgeInternal.createCosmosException(404);
+            }
+            return response(copy(stored));
+        });
+    }
+
+    private Book versioned(Book book) {
+        Book stored = copy(book);
+        stored.setEtag("\"" + versions.incrementAndGet() + "\"");
+        return stored;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Flux<CosmosBulkOperationResponse<Object>> bulk(Flux<CosmosItemOperation> operations) {
+        return operations.concatMap(operation -> {
+            CosmosBulkOperationResponse<Object> operationResponse = stub(CosmosBulkOperationResponse.class);
+            when(operationResponse.getOperation()).thenReturn(operation);
+            Mono<CosmosItemResponse<Book>> itemResult = operation.getOperationType() == CosmosItemOperationType.PATCH
+                    ? patch(operation.getId(), operation.getPartitionKeyValue(), operation.getItem(), null)
+                    : write(operation.getItem(), true);
+            return itemResult
+                    .map(itemResponse -> {
+                        CosmosBulkItemResponse response = stub(CosmosBulkItemResponse.class);
+                        when(response.getStatusCode()).thenReturn(200);
+                        when(response.isSuccessStatusCode()).thenReturn(true);
+                        when(response.getRequestCharge()).thenReturn(itemResponse.getRequestCharge());
+                        when(operationResponse.getResponse()).thenReturn(response);
+                        return operationResponse;
+                    })
+                    .onErrorResume(error -> {
+                        when(operationResponse.getException()).thenReturn((Exception) error);
+                        return Mono.just(operationResponse);
+                    });
+        });
+    }
+
+    private CosmosPagedFlux<Book> query(Predicate<Book> filter, String partitionKey) {
+        BiFunction<String, Integer, Flux<FeedResponse<Book>>> pages = queryPages;
+        return pagedFlux(pages != null ? pages : (continuationToken, pageSize) -> Flux.defer(() -> {
+            List<Book> matches = items
+                    .values()
+                    .stream()
+                    .filter(filter)
+                    .sorted(Comparator.comparing(Book::getId))
+                    .map(InMemoryCosmosContainer::copy)
+                    .collect(Collectors.toList());
+            int start = continuationToken == null ? 0 : Integer.parseInt(continuationToken);
+            return Flux
+                    .range(0, Math.max(1, (matches.size() - start + pageSize - 1) / pageSize))
+                    .concatMap(page -> delayed(Call.QUERY_PAGE, partitionKey, () -> {
+                        int from = Math.min(start + page * pageSize, matches.size());
+                        int to = Math.min(from + pageSize, matches.size());
+                        return feedResponse(matches.subList(from, to), to < matches.size() ? String.valueOf(to) : null);
+                    }));
+        }));
+    }
+
+    private static Predicate<Book> filter(SqlQuerySpec querySpec) {
+        Predicate<Book> filter = book -> true;
+        for (SqlParameter parameter : querySpec.getParameters()) {
+            String value = parameter.getValue(String.class);
+            if ("@category".equals(parameter.getName())) {
+                filter = filter.and(book -> value.equals(book.getCategory()));
+            } else if ("@isbn".equals(parameter.getName())) {
+                filter = filter.and(book -> value.equals(book.getIsbn()));
+            }
+        }
+        return filter;
+    }
+
+    private static String partitionKey(SqlQuerySpec querySpec) {
+        for (SqlParameter parameter : querySpec.getParameters()) {
+            if ("@category".equals(parameter.getName())) {
+                return new PartitionKey(parameter.getValue(String.class)).toString();
+            }
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static CosmosPagedFlux<Book> pagedFlux(BiFunction<String, Integer, Flux<FeedResponse<Book>>> pages) {
+        CosmosPagedFlux<Book> pagedFlux = stub(CosmosPagedFlux.class);
+        when(pagedFlux.byPage()).thenAnswer(invocation -> pages.apply(null, DEFAULT_PAGE_SIZE));
+        when(pagedFlux.byPage(anyInt())).thenAnswer(invocation -> pages.apply(null, invocation.getArgument(0)));
+        when(pagedFlux.byPage(nullable(String.class), anyInt()))
+                .thenAnswer(invocation -> pages.apply(invocation.getArgument(0), invocation.getArgument(1)));
+        return pagedFlux;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> FeedResponse<T> feedResponse(List<T> results, String continuationToken) {
+        FeedResponse<T> response = stub(FeedResponse.class);
+        when(response.getResults()).thenReturn(results);
+        when(response.getContinuationToken()).thenReturn(continuationToken);
+        when(response.getRequestCharge()).thenReturn((double) results.size());
+        when(response.getCosmosDiagnostics()).thenReturn(stub(CosmosDiagnostics.class));
+        return response;
+    }
+
+    private <T> Mono<T> delayed(Call call, String partitionKey, Supplier<T> supplier) {
+        return Mono.defer(() -> {
+            calls.incrementAndGet();
+            Simulation current = simulation;
+            Duration duration = current != null ? current.admit(call, partitionKey) : latency;
+            Mono<T> result = Mono.fromSupplier(() -> {
+                RuntimeException error = fault.get();
+                if (error != null) {
+                    throw error;
+                }
+                return supplier.get();
+            });
+            return duration.isZero() ? result : Mono.delay(duration).then(result);
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static CosmosItemResponse<Book> response(Book book) {
+        CosmosItemResponse<Book> response = stub(CosmosItemResponse.class);
+        when(response.getStatusCode()).thenReturn(200);
+        when(response.getItem()).thenReturn(book);
+        when(response.getETag()).thenReturn(book.getEtag());
+        when(response.getRequestCharge()).thenReturn(1.0);
+        when(response.getDiagnostics()).thenReturn(stub(CosmosDiagnostics.class));
+        return response;
+    }
+
+    /**
+     * A 304 carries no item, so reading one from it fails the test.
+     */
+    @SuppressWarnings("unchecked")
+    private static CosmosItemResponse<Book> notModified(String etag) {
+        CosmosItemResponse<Book> response = stub(CosmosItemResponse.class);
+        when(response.getStatusCode()).thenReturn(304);
+        when(response.getETag()).thenReturn(etag);
+        when(response.getItem()).thenThrow(new AssertionError("an unchanged book was deserialized"));
+        when(response.getRequestCharge()).thenReturn(1.0);
+        when(response.getDiagnostics()).thenReturn(stub(CosmosDiagnostics.class));
+        return response;
+    }
+
+    private static <T> T stub(Class<T> type) {
+        return mock(type, withSettings().stubOnly());
+    }
+
+    private static String key(String id, PartitionKey partitionKey) {
+        return id + "|" + partitionKey;
+    }
+
+    private static Book unversioned(Book book) {
+        Book copy = copy(book);
+        copy.setEtag(null);
+        return copy;
+    }
+
+    private static JsonNode document(Book book) {
+        ObjectNode document = OBJECT_MAPPER.valueToTree(book);
+        document.put("_rid", "rid-" + book.getId());
+        document.put("_etag", book.getEtag());
+        document.put("_ts", 0);
+        return document;
+    }
+
+    public static Book copy(Book book) {
+        Book copy = new Book(book.getId(), book.getCategory(), book.getIsbn(), book.getTitle(), book.getAuthor(),
+                book.getDescription(), book.getPrice(), book.getDiscountedPrice(), book.getImage());
+        copy.setEtag(book.getEtag());
+        return copy;
+    }
+}
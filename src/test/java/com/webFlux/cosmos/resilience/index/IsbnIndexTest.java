@@ -0,0 +1,70 @@
+package com.webFlux.cosmos.resilience.index;
+
+import com.webFlux.cosmos.resilience.model.Book;
+import com.webFlux.cosmos.resilience.model.BookKey;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class IsbnIndexTest {
+
+    private static Book book(String id, String isbn) {
+        return new Book(id, "Databases", isbn, "Title " + id, "Author", "Description", new BigDecimal(40), new BigDecimal(36), "image.jpg");
+    }
+
+    private static BookKey key(String id) {
+        return new BookKey(id, "Databases");
+    }
+
+    @Test
+    void lookupsAreOnlyAnsweredOnceARebuildHasSucceeded() {
+        IsbnIndex index = new IsbnIndex();
+        index.put(book("1", "99847"));
+
+        assertNull(index.lookup("99847"));
+
+        index.rebuilt(1);
+        assertEquals(Set.of(key("1")), index.lookup("99847"));
+
+        index.rebuilt(-1);
+        assertNull(index.lookup("99847"));
+        assertEquals(2L, index.stats().get("misses"));
+    }
+
+    @Test
+    void booksSharingAnIsbnAreFoundTogetherAndMoveWithTheirIsbn() {
+        IsbnIndex index = new IsbnIndex();
+        index.rebuilt(0);
+        index.put(book("1", "99847"));
+        index.put(book("2", "99847"));
+        index.put(book("2", "99847"));
+
+        assertEquals(Set.of(key("1"), key("2")), index.lookup("99847"));
+
+        index.put(book("2", "12345"));
+
+        assertEquals(Set.of(key("1")), index.lookup("99847"));
+        assertEquals(Set.of(key("2")), index.lookup("12345"));
+        assertEquals(2L, index.stats().get("books"));
+    }
+
+    @Test
+    void repairsFollowWhatTheStoreHolds() {
+        IsbnIndex index = new IsbnIndex();
+        index.rebuilt(0);
+        index.put(book("1", "99847"));
+        index.put(book("2", "99847"));
+
+        index.repair(key("1"), null);
+        index.repair(key("2"), book("2", "12345"));
+
+        assertNull(index.lookup("99847"));
+        assertEquals(Set.of(key("2")), index.lookup("12345"));
+        assertEquals(2L, index.stats().get("repairs"));
+        assertEquals(1L, index.stats().get("isbns"));
+    }
+}
@@ -0,0 +1,51 @@
+package com.webFlux.cosmos.resilience.index;
+
+import com.webFlux.cosmos.resilience.model.Book;
+import com.webFlux.cosmos.resilience.model.BookKey;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SearchIndexTest {
+
+    private static Book book(String id, String title, String author, String description) {
+        return new Book(id, "Databases", "isbn-" + id, title, author, description, new BigDecimal(40), new BigDecimal(36), "image.jpg");
+    }
+
+    private static BookKey key(String id) {
+        return new BookKey(id, "Databases");
+    }
+
+    @Test
+    void matchesPrefixesOfEveryWordAndRanksTitleMatchesFirst() {
+        SearchIndex index = new SearchIndex(true, 64);
+        index.putAll(List.of(
+                book("1", "Designing Data-Intensive Applications", "Martin Kleppmann", "Reliable, scalable and maintainable systems"),
+                book("2", "Database Internals", "Alex Petrov", "How distributed data systems work"),
+                book("3", "Streaming Systems", "Tyler Akidau", "Large-scale data processing")));
+
+        assertEquals(List.of(key("2")), index.search("database", 10));
+        assertEquals(List.of(key("3"), key("1"), key("2")), index.search("syst", 10));
+        assertEquals(List.of(key("2")), index.search("data inter", 10));
+        assertEquals(List.of(key("3")), index.search("syst", 1));
+        assertEquals(List.of(), index.search("data graphs", 10));
+    }
+
+    @Test
+    void updatesReplaceTheOldTermsAndRemovedBooksAreNotFound() {
+        SearchIndex index = new SearchIndex(true, 64);
+        index.put(book("1", "Database Internals", "Alex Petrov", "Storage engines"));
+        index.put(book("2", "Database Reliability Engineering", "Laine Campbell", "Operations"));
+
+        index.put(book("1", "Streaming Systems", "Tyler Akidau", "Large-scale data processing"));
+        index.remove(key("2"));
+
+        assertEquals(List.of(), index.search("internals", 10));
+        assertEquals(List.of(), index.search("reliability", 10));
+        assertEquals(List.of(key("1")), index.search("stream", 10));
+        assertEquals(1, index.stats().get("books"));
+    }
+}
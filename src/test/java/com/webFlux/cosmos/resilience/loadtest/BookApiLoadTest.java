@@ -0,0 +1,159 @@
+package com.webFlux.cosmos.resilience.loadtest;
+
+import com.webFlux.cosmos.resilience.cosmos.CosmosDB;
+import com.webFlux.cosmos.resilience.cosmos.InMemoryCosmosContainer;
+import com.webFlux.cosmos.resilience.model.Book;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+/**
+ * Boots the application against {@link PartitionedCosmosSimulation} and drives every {@code BookController}
+ * endpoint with open-model traffic. Excluded from the default build; run it with
+ * <pre>
+ * mvn -B test -Ploadtest -Dloadtest.rate=500 -Dloadtest.durationSeconds=60 -Dloadtest.run=baseline
+ * </pre>
+ * and diff {@code target/loadtest/<run>.tsv} between runs.
+ */
+@Tag("loadtest")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "dataloader.enabled=false", "isbn.index.rebuildOnStartup=false", "search.rebuildOnStartup=false", "view.enabled=false", "logging.level.com.webFlux=WARN",
+        "logging.level.com.webFlux.cosmos.resilience.loadtest=INFO"})
+class BookApiLoadTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(BookApiLoadTest.class);
+    private static final String[] CATEGORIES = {"Databases", "Programming Languages", "Software Design", "Software Architecture",
+            "Containers", "Messaging Systems", "Security", "Computer Networking"};
+
+    @MockBean
+    private CosmosDB cosmosDB;
+
+    @LocalServerPort
+    private int port;
+
+    private final AtomicLong nextId = new AtomicLong(1_000_000);
+
+    private static Book book(long id) {
+        return new Book(String.valueOf(id), CATEGORIES[(int) (id % CATEGORIES.length)], String.valueOf(10_000 + id % 500), "Title " + id,
+                "Author " + id % 100, "Description " + id, new BigDecimal(45), new BigDecimal(40), "image.jpg");
+    }
+
+    private static Book randomBook(int books) {
+        return book(ThreadLocalRandom.current().nextInt(books));
+    }
+
+    private static Mono<Integer> status(ClientResponse response) {
+        return response
+                .bodyToFlux(DataBuffer.class)
+                .doOnNext(DataBufferUtils::release)
+                .then(Mono.just(response.rawStatusCode()));
+    }
+
+    @Test
+    void bookApiUnderOpenModelLoad() throws Exception {
+        double rate = Double.parseDouble(System.getProperty("loadtest.rate", "200"));
+        Duration duration = Duration.ofSeconds(Long.getLong("loadtest.durationSeconds", 20));
+        int books = Integer.getInteger("loadtest.books", 2_000);
+        int partitions = Integer.getInteger("loadtest.partitions", 4);
+        double ruPerSecond = Double.parseDouble(System.getProperty("loadtest.ruPerSecond", "4000"));
+        long baseLatencyMicros = Long.getLong("loadtest.baseLatencyMicros", 2_000);
+        double tailMeanMicros = Double.parseDouble(System.getProperty("loadtest.tailMeanMicros", "1500"));
+        String run = System.getProperty("loadtest.run", "latest");
+
+        PartitionedCosmosSimulation simulation = new PartitionedCosmosSimulation(partitions, ruPerSecond, baseLatencyMicros, tailMeanMicros);
+        InMemoryCosmosContainer container = new InMemoryCosmosContainer();
+        for (int i = 0; i < books; i++) {
+            container.seed(book(i));
+        }
+        container.withSimulation(simulation);
+        when(cosmosDB.getContainer()).thenReturn(Mono.just(container.getContainer()));
+        when(cosmosDB.getHedgeContainer()).thenReturn(Mono.just(container.getContainer()));
+
+        WebClient client = WebClient
+                .builder()
+                .baseUrl("http://localhost:" + port)
+                .clientConnector(new ReactorClientHttpConnector(HttpClient.create(ConnectionProvider
+                        .builder("loadtest")
+                        .maxConnections(1_000)
+                        .pendingAcquireMaxCount(-1)
+                        .build())))
+                .build();
+
+        OpenModelLoad load = new OpenModelLoad(Arrays.asList(
+                new OpenModelLoad.Endpoint("GET /books/{id}/category/{category}", 40, () -> {
+                    Book book = randomBook(books);
+                    return client.get().uri("/books/{id}/category/{category}", book.getId(), book.getCategory()).exchangeToMono(BookApiLoadTest::status);
+                }),
+                new OpenModelLoad.Endpoint("GET /books/category/{category}", 8, () -> client
+                        .get().uri("/books/category/{category}", randomBook(books).getCategory())
+                        .accept(MediaType.APPLICATION_JSON).exchangeToMono(BookApiLoadTest::status)),
+                new OpenModelLoad.Endpoint("GET /books/category/{category}?pageSize", 8, () -> client
+                        .get().uri("/books/category/{category}?pageSize=20", randomBook(books).getCategory())
+                        .accept(MediaType.APPLICATION_JSON).exchangeToMono(BookApiLoadTest::status)),
+                new OpenModelLoad.Endpoint("GET /books/category/{category} ndjson", 3, () -> client
+                        .get().uri("/books/category/{category}?pageSize=50", randomBook(books).getCategory())
+                        .accept(MediaType.APPLICATION_NDJSON).exchangeToMono(BookApiLoadTest::status)),
+                new OpenModelLoad.Endpoint("GET /books/isbn/{isbn}", 15, () -> client
+                        .get().uri("/books/isbn/{isbn}", randomBook(books).getIsbn()).exchangeToMono(BookApiLoadTest::status)),
+                new OpenModelLoad.Endpoint("GET /books", 1, () -> client
+                        .get().uri("/books").accept(MediaType.APPLICATION_JSON).exchangeToMono(BookApiLoadTest::status)),
+                new OpenModelLoad.Endpoint("GET /books?pageSize", 5, () -> client
+                        .get().uri("/books?pageSize=50").accept(MediaType.APPLICATION_JSON).exchangeToMono(BookApiLoadTest::status)),
+                new OpenModelLoad.Endpoint("GET /books ndjson", 1, () -> client
+                        .get().uri("/books?pageSize=100").accept(MediaType.APPLICATION_NDJSON).exchangeToMono(BookApiLoadTest::status)),
+                new OpenModelLoad.Endpoint("POST /books", 15, () -> client
+                        .post().uri("/books").bodyValue(book(nextId.getAndIncrement())).exchangeToMono(BookApiLoadTest::status)),
+                new OpenModelLoad.Endpoint("POST /books/batch", 3, () -> client
+                        .post().uri("/books/batch").contentType(MediaType.APPLICATION_NDJSON).accept(MediaType.APPLICATION_NDJSON)
+                        .body(Flux.fromIterable(IntStream.range(0, 20).mapToObj(i -> book(nextId.getAndIncrement())).collect(Collectors.toList())), Book.class)
+                        .exchangeToMono(BookApiLoadTest::status)),
+                new OpenModelLoad.Endpoint("POST /books/isbn/index/rebuild", 1, () -> client
+                        .post().uri("/books/isbn/index/rebuild").exchangeToMono(BookApiLoadTest::status))),
+                Duration.ofSeconds(10));
+
+        Map<String, OpenModelLoad.EndpointResult> results = load.run(rate, duration);
+
+        Map<String, Object> settings = new LinkedHashMap<>();
+        settings.put("rate", rate);
+        settings.put("durationSeconds", duration.getSeconds());
+        settings.put("books", books);
+        settings.put("ruPerSecond", ruPerSecond);
+        settings.put("baseLatencyMicros", baseLatencyMicros);
+        settings.put("tailMeanMicros", tailMeanMicros);
+        settings.putAll(simulation.stats());
+        String report = LoadReport.render(settings, results, duration);
+        Path written = LoadReport.write(Paths.get("target", "loadtest"), run, report);
+        logger.info("Load report written to {}\n{}", written.toAbsolutePath(), report);
+
+        assertTrue(results.values().stream().mapToLong(OpenModelLoad.EndpointResult::requests).sum() > 0);
+    }
+}
@@ -0,0 +1,75 @@
+package com.webFlux.cosmos.resilience.loadtest;
+
+import com.webFlux.cosmos.resilience.metrics.LatencyHistogram;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Renders a load run as tab-separated text with a fixed layout and no timestamps, so two runs can be
+ * compared with a plain diff. Latencies are in milliseconds.
+ */
+public final class LoadReport {
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    private LoadReport() {
+    }
+
+    public static String render(Map<String, Object> settings, Map<String, OpenModelLoad.EndpointResult> results, Duration duration) {
+        StringBuilder report = new StringBuilder();
+        settings.forEach((name, value) -> report
+                .append("# ")
+                .append(name)
+                .append('=')
+                .append(value)
+                .append('\n'));
+        report.append("endpoint\trequests\tok\t4xx\t5xx\tfailed\trps");
+        for (double percentile : PERCENTILES) {
+            report.append("\tp").append(format(percentile));
+        }
+        report.append("\tmax\n");
+        LatencyHistogram all = new LatencyHistogram();
+        OpenModelLoad.EndpointResult total = new OpenModelLoad.EndpointResult();
+        results.forEach((name, result) -> {
+            row(report, name, result, result.latency, duration);
+            total.ok.add(result.ok.sum());
+            total.clientErrors.add(result.clientErrors.sum());
+            total.serverErrors.add(result.serverErrors.sum());
+            total.failures.add(result.failures.sum());
+            all.merge(result.latency);
+        });
+        row(report, "total", total, all, duration);
+        return report.toString();
+    }
+
+    public static Path write(Path directory, String runName, String report) throws IOException {
+        Files.createDirectories(directory);
+        return Files.write(directory.resolve(runName + ".tsv"), report.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void row(StringBuilder report, String name, OpenModelLoad.EndpointResult result, LatencyHistogram latency,
+                            Duration duration) {
+        report
+                .append(name)
+                .append('\t').append(result.requests())
+                .append('\t').append(result.ok.sum())
+                .append('\t').append(result.clientErrors.sum())
+                .append('\t').append(result.serverErrors.sum())
+                .append('\t').append(result.failures.sum())
+                .append('\t').append(format(result.requests() * 1_000.0 / duration.toMillis()));
+        for (double percentile : PERCENTILES) {
+            report.append('\t').append(format(latency.percentileMicros(percentile) / 1_000.0));
+        }
+        report.append('\t').append(format(latency.maxMicros() / 1_000.0)).append('\n');
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.1f", value);
+    }
+}
@@ -0,0 +1,126 @@
+package com.webFlux.cosmos.resilience.loadtest;
+
+import com.webFlux.cosmos.resilience.metrics.LatencyHistogram;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.stream.LongStream;
+
+/**
+ * Open-model traffic: requests are started on a fixed arrival schedule whether or not earlier ones have
+ * finished, and latency is measured from each request's scheduled start, so a stalled server shows up
+ * as latency instead of as a lower request rate.
+ */
+public class OpenModelLoad {
+
+    /**
+     * One endpoint of the mix; the request emits the HTTP status once the response body is consumed.
+     */
+    public static final class Endpoint {
+        private final String name;
+        private final int weight;
+        private final Supplier<Mono<Integer>> request;
+
+        public Endpoint(String name, int weight, Supplier<Mono<Integer>> request) {
+            this.name = name;
+            this.weight = weight;
+            this.request = request;
+        }
+    }
+
+    public static final class EndpointResult {
+        final LatencyHistogram latency = new LatencyHistogram();
+        final LongAdder ok = new LongAdder();
+        final LongAdder clientErrors = new LongAdder();
+        final LongAdder serverErrors = new LongAdder();
+        final LongAdder failures = new LongAdder();
+
+        long requests() {
+            return ok.sum() + clientErrors.sum() + serverErrors.sum() + failures.sum();
+        }
+    }
+
+    private static final Duration TICK = Duration.ofMillis(1);
+
+    private final List<Endpoint> endpoints;
+    private final int totalWeight;
+    private final Duration requestTimeout;
+
+    public OpenModelLoad(List<Endpoint> endpoints, Duration requestTimeout) {
+        this.endpoints = endpoints;
+        this.totalWeight = endpoints
+                .stream()
+                .mapToInt(endpoint -> endpoint.weight)
+                .sum();
+        this.requestTimeout = requestTimeout;
+    }
+
+    /**
+     * Runs the mix at {@code ratePerSecond} for {@code duration}, then waits for requests still in flight.
+     */
+    public Map<String, EndpointResult> run(double ratePerSecond, Duration duration) {
+        Map<String, EndpointResult> results = new TreeMap<>();
+        endpoints.forEach(endpoint -> results.put(endpoint.name, new EndpointResult()));
+        long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / ratePerSecond);
+        long total = duration.toNanos() / intervalNanos;
+        long start = System.nanoTime();
+        LongAdder issued = new LongAdder();
+        Flux
+                .interval(TICK)
+                .takeUntil(tick -> issued.sum() >= total)
+                .concatMapIterable(tick -> {
+                    // every tick releases the requests whose scheduled start has passed
+                    long due = Math.min(total, (System.nanoTime() - start) / intervalNanos + 1);
+                    long from = issued.sum();
+                    issued.add(Math.max(0, due - from));
+                    return () -> LongStream
+                            .range(from, Math.max(from, due))
+                            .iterator();
+                })
+                .flatMap(index -> send(start + index * intervalNanos, results), Integer.MAX_VALUE)
+                .blockLast(duration.plus(requestTimeout).plus(requestTimeout));
+        return results;
+    }
+
+    private Mono<Void> send(long scheduledNanos, Map<String, EndpointResult> results) {
+        Endpoint endpoint = pick();
+        EndpointResult result = results.get(endpoint.name);
+        return Mono
+                .defer(endpoint.request)
+                .timeout(requestTimeout)
+                .doOnNext(status -> {
+                    if (status >= 500) {
+                        result.serverErrors.increment();
+                    } else if (status >= 400) {
+                        result.clientErrors.increment();
+                    } else {
+                        result.ok.increment();
+                    }
+                })
+                .doOnError(error -> result.failures.increment())
+                .doFinally(signal -> result.latency.recordNanos(System.nanoTime() - scheduledNanos))
+                .onErrorResume(error -> Mono.empty())
+                .then();
+    }
+
+    private Endpoint pick() {
+        int ticket = ThreadLocalRandom
+                .current()
+                .nextInt(totalWeight);
+        for (Endpoint endpoint : endpoints) {
+            ticket -= endpoint.weight;
+            if (ticket < 0) {
+                return endpoint;
+            }
+        }
+        return endpoints.get(endpoints.size() - 1);
+    }
+}
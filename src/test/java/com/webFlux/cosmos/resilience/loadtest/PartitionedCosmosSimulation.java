@@ -0,0 +1,132 @@
+package com.webFlux.cosmos.resilience.loadtest;
+
+import com.azure.cosmos.BridgeInternal;
+import com.webFlux.cosmos.resilience.cosmos.InMemoryCosmosContainer;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Simulates a container with manual throughput split evenly over physical partitions. Partition keys hash
+ * onto partitions; every call charges its partition (cross-partition query pages charge all of them), and a
+ * partition out of request units answers 429 with the retry-after needed to earn the charge back. Latency
+ * is a fixed base plus an exponentially distributed tail.
+ */
+public class PartitionedCosmosSimulation implements InMemoryCosmosContainer.Simulation {
+
+    private static final long MICRO_RU = 1_000_000;
+
+    private final Partition[] partitions;
+    private final long baseLatencyMicros;
+    private final double tailMeanMicros;
+    private final double readCharge;
+    private final double writeCharge;
+    private final double queryPageCharge;
+    private final LongAdder throttled = new LongAdder();
+    private final LongAdder chargedMicroRu = new LongAdder();
+
+    public PartitionedCosmosSimulation(int partitionCount, double ruPerSecond, long baseLatencyMicros, double tailMeanMicros) {
+        this(partitionCount, ruPerSecond, baseLatencyMicros, tailMeanMicros, 1.0, 6.0, 3.0);
+    }
+
+    public PartitionedCosmosSimulation(int partitionCount, double ruPerSecond, long baseLatencyMicros, double tailMeanMicros,
+                                       double readCharge, double writeCharge, double queryPageCharge) {
+        this.partitions = new Partition[partitionCount];
+        for (int i = 0; i < partitionCount; i++) {
+            partitions[i] = new Partition((long) (ruPerSecond / partitionCount * MICRO_RU));
+        }
+        this.baseLatencyMicros = baseLatencyMicros;
+        this.tailMeanMicros = tailMeanMicros;
+        this.readCharge = readCharge;
+        this.writeCharge = writeCharge;
+        this.queryPageCharge = queryPageCharge;
+    }
+
+    @Override
+    public Duration admit(InMemoryCosmosContainer.Call call, String partitionKey) {
+        long charge = (long) (chargeOf(call) * MICRO_RU);
+        if (partitionKey != null) {
+            charge(partitions[Math.floorMod(partitionKey.hashCode(), partitions.length)], charge);
+        } else {
+            for (Partition partition : partitions) {
+                charge(partition, charge);
+            }
+        }
+        double tail = -Math.log(1 - ThreadLocalRandom.current().nextDouble()) * tailMeanMicros;
+        return Duration.ofNanos(TimeUnit.MICROSECONDS.toNanos(baseLatencyMicros + (long) tail));
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("partitions", partitions.length);
+        stats.put("throttled", throttled.sum());
+        stats.put("chargedRu", chargedMicroRu.sum() / MICRO_RU);
+        return stats;
+    }
+
+    private double chargeOf(InMemoryCosmosContainer.Call call) {
+        switch (call) {
+            case READ:
+                return readCharge;
+            case WRITE:
+                return writeCharge;
+            default:
+                return queryPageCharge;
+        }
+    }
+
+    private void charge(Partition partition, long microRu) {
+        long deficit = partition.tryCharge(microRu);
+        if (deficit > 0) {
+            throttled.increment();
+            long retryAfterMs = Math.max(1, deficit * 1_000 / partition.microRuPerSecond);
+            throw BridgeInternal.createCosmosException(null, 429, null,
+                    Collections.singletonMap("x-ms-retry-after-ms", String.valueOf(retryAfterMs)));
+        }
+        chargedMicroRu.add(microRu);
+    }
+
+    /**
+     * Token bucket holding at most one second of the partition's throughput.
+     */
+    private static final class Partition {
+        private final long microRuPerSecond;
+        private final AtomicLong balance;
+        private final AtomicLong lastRefillNanos = new AtomicLong(System.nanoTime());
+
+        private Partition(long microRuPerSecond) {
+            this.microRuPerSecond = microRuPerSecond;
+            this.balance = new AtomicLong(microRuPerSecond);
+        }
+
+        /**
+         * Returns 0 when the charge was taken, otherwise how many micro-RU are missing.
+         */
+        private long tryCharge(long microRu) {
+            refill();
+            long current;
+            do {
+                current = balance.get();
+                if (current < microRu) {
+                    return microRu - current;
+                }
+            } while (!balance.compareAndSet(current, current - microRu));
+            return 0;
+        }
+
+        private void refill() {
+            long now = System.nanoTime();
+            long last = lastRefillNanos.get();
+            long earned = Math.min(now - last, TimeUnit.SECONDS.toNanos(1)) * microRuPerSecond / TimeUnit.SECONDS.toNanos(1);
+            if (earned > 0 && lastRefillNanos.compareAndSet(last, now)) {
+                balance.accumulateAndGet(earned, (current, delta) -> Math.min(microRuPerSecond, current + delta));
+            }
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.webFlux.cosmos.resilience.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RollingLatencyHistogramTest {
+
+    @Test
+    void latenciesOlderThanTheWindowFallOut() {
+        AtomicLong now = new AtomicLong();
+        RollingLatencyHistogram histogram = new RollingLatencyHistogram(Duration.ofSeconds(60), 6, now::get);
+
+        for (int i = 0; i < 100; i++) {
+            histogram.recordNanos(TimeUnit.MILLISECONDS.toNanos(500));
+        }
+        now.addAndGet(TimeUnit.SECONDS.toNanos(30));
+        for (int i = 0; i < 100; i++) {
+            histogram.recordNanos(TimeUnit.MILLISECONDS.toNanos(5));
+        }
+        assertEquals(200, histogram.snapshot().count());
+        assertTrue(histogram.snapshot().percentileMicros(99) >= 500_000);
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(40));
+        LatencyHistogram recent = histogram.snapshot();
+        assertEquals(100, recent.count());
+        assertTrue(recent.percentileMicros(99) < 6_000, "p99 was " + recent.percentileMicros(99) + " us");
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(60));
+        assertEquals(0, histogram.snapshot().count());
+    }
+}
@@ -0,0 +1,96 @@
+package com.webFlux.cosmos.resilience.model;
+
+import com.azure.cosmos.models.FeedResponse;
+import com.webFlux.cosmos.resilience.cache.BookCache;
+import com.webFlux.cosmos.resilience.cosmos.InMemoryCosmosContainer;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscription;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BookStreamingTest {
+
+    private static final int PAGES = 1_000;
+    private static final int PAGE_SIZE = 100;
+    private static final String DESCRIPTION = new String(new char[2_048]).replace('\0', 'x');
+
+    @Test
+    void largeScanIsPulledOnePageAtATimeWithFlatHeap() {
+        AtomicLong pagesFetched = new AtomicLong();
+        InMemoryCosmosContainer container = new InMemoryCosmosContainer()
+                .withQueryPages((continuationToken, pageSize) -> Flux
+                        .range(0, PAGES)
+                        .map(page -> {
+                            pagesFetched.incrementAndGet();
+                            return page(page, pageSize);
+                        }));
+        BookRepository repository = container.repository(new BookCache(false, 0, 0));
+
+        SlowSubscriber subscriber = new SlowSubscriber(pagesFetched);
+        repository
+                .streamAll(PAGE_SIZE)
+                .subscribe(subscriber);
+
+        assertEquals((long) PAGES * PAGE_SIZE, subscriber.received);
+        assertTrue(subscriber.maxPagesAhead <= 2, "pages fetched ahead of the consumer: " + subscriber.maxPagesAhead);
+        long growth = subscriber.heapAtEnd - subscriber.heapAtStart;
+        assertTrue(growth < 32 * 1024 * 1024, "heap grew by " + growth + " bytes while streaming");
+    }
+
+    private static FeedResponse<Book> page(int page, int pageSize) {
+        List<Book> books = new ArrayList<>(pageSize);
+        for (int i = 0; i < pageSize; i++) {
+            String id = String.valueOf(page * pageSize + i);
+            books.add(new Book(id, "Databases", id, "Title " + id, "Author", DESCRIPTION,
+                    new BigDecimal(40), new BigDecimal(30), "image.jpg"));
+        }
+        return InMemoryCosmosContainer.feedResponse(books, page + 1 < PAGES ? String.valueOf(page + 1) : null);
+    }
+
+    private static long usedHeap() {
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Requests one book at a time, like a slow HTTP client draining an NDJSON response.
+     */
+    private static final class SlowSubscriber extends BaseSubscriber<Book> {
+        private final AtomicLong pagesFetched;
+        private long received;
+        private long maxPagesAhead;
+        private long heapAtStart;
+        private long heapAtEnd;
+
+        private SlowSubscriber(AtomicLong pagesFetched) {
+            this.pagesFetched = pagesFetched;
+        }
+
+        @Override
+        protected void hookOnSubscribe(Subscription subscription) {
+            request(1);
+        }
+
+        @Override
+        protected void hookOnNext(Book book) {
+            received++;
+            long pagesConsumed = (received + PAGE_SIZE - 1) / PAGE_SIZE;
+            maxPagesAhead = Math.max(maxPagesAhead, pagesFetched.get() - pagesConsumed);
+            if (received == (long) PAGES * PAGE_SIZE / 10) {
+                heapAtStart = usedHeap();
+            } else if (received == (long) PAGES * PAGE_SIZE * 9 / 10) {
+                heapAtEnd = usedHeap();
+            }
+            request(1);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.webFlux.cosmos.resilience.model;
+
+import com.azure.cosmos.CosmosException;
+import com.webFlux.cosmos.resilience.cache.BookCache;
+import com.webFlux.cosmos.resilience.cosmos.InMemoryCosmosContainer;
+import org.junit.jupiter.api.Test;
+import reactor.test.StepVerifier;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class PricePatchTest {
+
+    private static Book book(String id, String category, int price) {
+        return new Book(id, category, "99847", "Title " + id, "Author", "Description", new BigDecimal(price), new BigDecimal(price - 4), "image.jpg");
+    }
+
+    @Test
+    void patchChangesOnlyThePricesAndHonoursTheEtag() {
+        InMemoryCosmosContainer container = new InMemoryCosmosContainer().seed(book("1", "Databases", 47));
+        BookRepository repository = container.repository(new BookCache(true, 100, 60_000));
+        String etag = repository.finByIdAndCategory("1", "Databases").block().getEtag();
+
+        Book patched = repository.patchPrices("1", "Databases", new PricePatch(null, null, new BigDecimal(30)), etag).block();
+
+        assertEquals(0, new BigDecimal(47).compareTo(patched.getPrice()));
+        assertEquals(0, new BigDecimal(30).compareTo(patched.getDiscountedPrice()));
+        assertEquals("Title 1", patched.getTitle());
+        assertNotEquals(etag, patched.getEtag());
+        StepVerifier.create(repository.patchPrices("1", "Databases", new PricePatch(null, new BigDecimal(50), null), etag))
+                .verifyErrorMatches(error -> ((CosmosException) error).getStatusCode() == 412);
+
+        int reads = container.reads();
+        StepVerifier.create(repository.finByIdAndCategory("1", "Databases").map(Book::getDiscountedPrice))
+                .expectNextMatches(price -> price.compareTo(new BigDecimal(30)) == 0)
+                .verifyComplete();
+        assertEquals(reads, container.reads());
+    }
+
+    @Test
+    void bulkPatchRepricesACategoryAndReportsMissingBooks() {
+        InMemoryCosmosContainer container = new InMemoryCosmosContainer()
+                .seed(book("1", "Databases", 47))
+                .seed(book("2", "Databases", 52));
+        BookRepository repository = container.repository(new BookCache(false, 0, 0));
+
+        StepVerifier.create(repository
+                        .bulkPatchPrices("Databases", List.of(new PricePatch("1", new BigDecimal(40), null), new PricePatch("2", new BigDecimal(45), null),
+                                new PricePatch("3", new BigDecimal(10), null)))
+                        .map(BulkItemResult::getStatusCode))
+                .expectNext(200, 200, 404)
+                .verifyComplete();
+        StepVerifier.create(repository.finByIdAndCategory("2", "Databases").map(Book::getPrice))
+                .expectNextMatches(price -> price.compareTo(new BigDecimal(45)) == 0)
+                .verifyComplete();
+    }
+}
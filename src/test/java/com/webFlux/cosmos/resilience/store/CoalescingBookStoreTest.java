@@ -0,0 +1,56 @@
+package com.webFlux.cosmos.resilience.store;
+
+import com.webFlux.cosmos.resilience.cosmos.InMemoryCosmosContainer;
+import com.webFlux.cosmos.resilience.metrics.BookOperation;
+import com.webFlux.cosmos.resilience.metrics.LatencyRecorder;
+import com.webFlux.cosmos.resilience.model.Book;
+import com.webFlux.cosmos.resilience.model.BookKey;
+import com.webFlux.cosmos.resilience.util.ReadCoalescer;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CoalescingBookStoreTest {
+
+    private final InMemoryCosmosContainer cosmos = new InMemoryCosmosContainer();
+    private final LatencyRecorder latencyRecorder = new LatencyRecorder(new MockEnvironment());
+    private final BookStore store = new CoalescingBookStore(
+            new MetricsBookStore(new CosmosBookStore(Mono.just(cosmos.getContainer()), latencyRecorder), latencyRecorder),
+            new ReadCoalescer(true, 20, 100));
+
+    CoalescingBookStoreTest() {
+        cosmos.seed(book("1", "Databases")).seed(book("2", "Databases"));
+    }
+
+    private static Book book(String id, String category) {
+        return new Book(id, category, "isbn-" + id, "Title " + id, "Author", "Description", new BigDecimal(47), new BigDecimal(42), "image.jpg");
+    }
+
+    @Test
+    void loneReadStaysAPointReadWithItsEtag() {
+        StepVerifier.create(store.read(new BookKey("1", "Databases")))
+                .expectNextMatches(book -> book.getEtag() != null)
+                .verifyComplete();
+
+        assertEquals(1, latencyRecorder.histogram(BookOperation.POINT_READ).count());
+        assertEquals(0, latencyRecorder.histogram(BookOperation.READ_MANY).count());
+    }
+
+    @Test
+    void readsCoalescedIntoOneReadManyKeepTheirEtags() {
+        StepVerifier.create(Flux.merge(store.read(new BookKey("1", "Databases")), store.read(new BookKey("2", "Databases"))))
+                .expectNextMatches(book -> book.getEtag() != null)
+                .expectNextMatches(book -> book.getEtag() != null)
+                .verifyComplete();
+
+        assertEquals(1, cosmos.reads());
+        assertEquals(1, latencyRecorder.histogram(BookOperation.READ_MANY).count());
+        assertEquals(0, latencyRecorder.histogram(BookOperation.POINT_READ).count());
+    }
+}
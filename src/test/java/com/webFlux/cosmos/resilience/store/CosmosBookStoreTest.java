@@ -0,0 +1,94 @@
+package com.webFlux.cosmos.resilience.store;
+
+import com.webFlux.cosmos.resilience.cosmos.InMemoryCosmosContainer;
+import com.webFlux.cosmos.resilience.metrics.LatencyRecorder;
+import com.webFlux.cosmos.resilience.model.Book;
+import com.webFlux.cosmos.resilience.model.BookPage;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CosmosBookStoreTest {
+
+    private static Book book(String id, String category) {
+        return new Book(id, category, "isbn-" + id, "Title " + id, "Author", "Description", new BigDecimal(47), new BigDecimal(42), "image.jpg");
+    }
+
+    private static CosmosBookStore store(InMemoryCosmosContainer container) {
+        return new CosmosBookStore(Mono.just(container.getContainer()), new LatencyRecorder(new MockEnvironment()));
+    }
+
+    private static List<String> ids(BookPage page) {
+        return page
+                .getItems()
+                .stream()
+                .map(Book::getId)
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    void pagesResumeFromTheContinuationTokenTheyHandOut() {
+        InMemoryCosmosContainer container = new InMemoryCosmosContainer();
+        for (int i = 0; i < 5; i++) {
+            container.seed(book(String.valueOf(i), i == 4 ? "Security" : "Databases"));
+        }
+        CosmosBookStore store = store(container);
+
+        BookPage first = store.queryByCategoryPage("Databases", 3, null).block();
+        BookPage second = store.queryByCategoryPage("Databases", 3, first.getContinuationToken()).block();
+
+        assertEquals(List.of("0", "1", "2"), ids(first));
+        assertEquals(List.of("3"), ids(second));
+        assertNull(second.getContinuationToken());
+
+        List<String> seen = new ArrayList<>();
+        String token = null;
+        do {
+            BookPage page = store.scanPage(2, token).block();
+            seen.addAll(ids(page));
+            token = page.getContinuationToken();
+        } while (token != null);
+        assertEquals(List.of("0", "1", "2", "3", "4"), seen);
+    }
+
+    @Test
+    void emptyPagesThatCarryAContinuationAreSkipped() {
+        AtomicInteger served = new AtomicInteger();
+        InMemoryCosmosContainer container = new InMemoryCosmosContainer().withQueryPages((continuationToken, pageSize) -> Flux
+                .just(InMemoryCosmosContainer.feedResponse(Collections.<Book>emptyList(), "a"),
+                        InMemoryCosmosContainer.feedResponse(Collections.<Book>emptyList(), "b"),
+                        InMemoryCosmosContainer.feedResponse(List.of(book("1", "Databases"), book("2", "Databases")), "c"),
+                        InMemoryCosmosContainer.feedResponse(List.of(book("3", "Databases")), null))
+                .doOnNext(page -> served.incrementAndGet()));
+
+        BookPage page = store(container).queryByCategoryPage("Databases", 2, null).block();
+
+        assertEquals(List.of("1", "2"), ids(page));
+        assertEquals("c", page.getContinuationToken());
+        assertEquals(3, served.get(), "pages past the first non-empty one were fetched");
+    }
+
+    @Test
+    void aLastPageIsReturnedEvenWhenEmpty() {
+        InMemoryCosmosContainer container = new InMemoryCosmosContainer().withQueryPages((continuationToken, pageSize) -> Flux
+                .just(InMemoryCosmosContainer.feedResponse(Collections.<Book>emptyList(), "a"),
+                        InMemoryCosmosContainer.feedResponse(Collections.<Book>emptyList(), null)));
+
+        BookPage page = store(container).scanPage(10, null).block();
+
+        assertTrue(page.getItems().isEmpty());
+        assertNull(page.getContinuationToken());
+    }
+}
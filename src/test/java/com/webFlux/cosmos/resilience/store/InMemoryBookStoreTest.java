@@ -0,0 +1,112 @@
+package com.webFlux.cosmos.resilience.store;
+
+import com.webFlux.cosmos.resilience.model.Book;
+import com.webFlux.cosmos.resilience.model.BookField;
+import com.webFlux.cosmos.resilience.model.BookKey;
+import com.webFlux.cosmos.resilience.model.BookPage;
+import org.junit.jupiter.api.Test;
+import reactor.test.StepVerifier;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class InMemoryBookStoreTest {
+
+    private static Book book(String id, String category) {
+        return new Book(id, category, "isbn-" + id, "Title " + id, "Author", "Description", new BigDecimal(47), new BigDecimal(42), "image.jpg");
+    }
+
+    @Test
+    void pointReadsAndWritesBehaveLikeCosmos() {
+        InMemoryBookStore store = new InMemoryBookStore();
+
+        StepVerifier.create(store.create(book("1", "Databases"))).expectNextCount(1).verifyComplete();
+        StepVerifier.create(store.create(book("1", "Databases")))
+                .verifyErrorMatches(error -> BookStoreException.statusCode(error) == 409);
+        StepVerifier.create(store.read(new BookKey("1", "Programming Languages")))
+                .verifyErrorMatches(error -> BookStoreException.statusCode(error) == 404);
+
+        Book updated = book("1", "Databases");
+        updated.setTitle("Updated");
+        StepVerifier.create(store.upsert(updated)).expectNextCount(1).verifyComplete();
+        updated.setTitle("Changed after the write");
+        StepVerifier.create(store.read(new BookKey("1", "Databases")))
+                .expectNextMatches(book -> book.getTitle().equals("Updated"))
+                .verifyComplete();
+    }
+
+    @Test
+    void replacesOnlyApplyToTheExpectedVersion() {
+        InMemoryBookStore store = new InMemoryBookStore();
+        StepVerifier.create(store.replace(book("1", "Databases"), null))
+                .verifyErrorMatches(error -> BookStoreException.statusCode(error) == 404);
+        String etag = store.create(book("1", "Databases")).block().getEtag();
+
+        Book replaced = store.replace(book("1", "Databases"), etag).block();
+
+        StepVerifier.create(store.replace(book("1", "Databases"), etag))
+                .verifyErrorMatches(error -> BookStoreException.statusCode(error) == 412);
+        StepVerifier.create(store.readIfChanged(new BookKey("1", "Databases"), replaced.getEtag())).verifyComplete();
+        StepVerifier.create(store.readIfChanged(new BookKey("1", "Databases"), etag)).expectNextCount(1).verifyComplete();
+    }
+
+    @Test
+    void queriesStayWithinTheirPartition() {
+        InMemoryBookStore store = new InMemoryBookStore();
+        store.bulkUpsert(List.of(book("1", "Databases"), book("2", "Security"), book("3", "Databases"))).blockLast();
+
+        StepVerifier.create(store.queryByCategory("Databases", 0).map(Book::getId)).expectNext("1", "3").verifyComplete();
+        StepVerifier.create(store.queryByIsbn("isbn-2").map(Book::getCategory)).expectNext("Security").verifyComplete();
+        StepVerifier.create(store.scanIsbnLocations())
+                .expectNextMatches(book -> book.getTitle() == null && book.getIsbn().equals("isbn-1"))
+                .expectNextCount(2)
+                .verifyComplete();
+    }
+
+    @Test
+    void pagesResumeFromTheirContinuationToken() {
+        InMemoryBookStore store = new InMemoryBookStore();
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            books.add(book(String.valueOf(i), i % 2 == 0 ? "Databases" : "Security"));
+        }
+        store.bulkUpsert(books).blockLast();
+
+        List<String> seen = new ArrayList<>();
+        String token = null;
+        do {
+            BookPage page = store.scanPage(3, token).block();
+            page.getItems().forEach(book -> seen.add(book.getId()));
+            token = page.getContinuationToken();
+        } while (token != null);
+        assertEquals(7, seen.stream().distinct().count());
+
+        BookPage first = store.queryByCategoryPage("Databases", 2, null).block();
+        BookPage second = store.queryByCategoryPage("Databases", 2, first.getContinuationToken()).block();
+        assertEquals(List.of("0", "2"), first.getItems().stream().map(Book::getId).collect(Collectors.toList()));
+        assertEquals(List.of("4", "6"), second.getItems().stream().map(Book::getId).collect(Collectors.toList()));
+        assertNull(second.getContinuationToken());
+    }
+
+    @Test
+    void projectionsCarryOnlyTheSelectedFields() {
+        InMemoryBookStore store = new InMemoryBookStore();
+        store.bulkUpsert(List.of(book("1", "Databases"), book("2", "Security"))).blockLast();
+        Set<BookField> fields = BookField.parse("title, price");
+
+        StepVerifier.create(store.projectByCategory("Databases", fields))
+                .expectNextMatches(projection -> projection.getId().equals("1") && projection.getCategory().equals("Databases")
+                        && projection.getTitle().equals("Title 1") && projection.getPrice() != null && projection.getDescription() == null
+                        && projection.getImage() == null)
+                .verifyComplete();
+        StepVerifier.create(store.projectAll(fields)).expectNextCount(2).verifyComplete();
+        assertThrows(IllegalArgumentException.class, () -> BookField.parse("title,publisher"));
+    }
+}
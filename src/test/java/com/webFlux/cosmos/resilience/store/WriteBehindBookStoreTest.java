@@ -0,0 +1,177 @@
+package com.webFlux.cosmos.resilience.store;
+
+import com.webFlux.cosmos.resilience.cache.BookCache;
+import com.webFlux.cosmos.resilience.cache.CategoryStatsCache;
+import com.webFlux.cosmos.resilience.index.IsbnIndex;
+import com.webFlux.cosmos.resilience.index.SearchIndex;
+import com.webFlux.cosmos.resilience.metrics.LatencyRecorder;
+import com.webFlux.cosmos.resilience.model.Book;
+import com.webFlux.cosmos.resilience.model.BookKey;
+import com.webFlux.cosmos.resilience.model.BookRepository;
+import com.webFlux.cosmos.resilience.model.BulkItemResult;
+import com.webFlux.cosmos.resilience.util.AdmissionController;
+import com.webFlux.cosmos.resilience.util.ReadCoalescer;
+import com.webFlux.cosmos.resilience.view.InMemoryChangeFeedSource;
+import com.webFlux.cosmos.resilience.view.MaterializedBookView;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.env.MockEnvironment;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class WriteBehindBookStoreTest {
+
+    private final AtomicInteger upserts = new AtomicInteger();
+    private final AtomicInteger bulkWrites = new AtomicInteger();
+
+    private static Book book(String id, String category, int price) {
+        return new Book(id, category, "isbn-" + id, "Title " + id, "Author", "Description", new BigDecimal(price), new BigDecimal(price - 4), "image.jpg");
+    }
+
+    private InMemoryBookStore backend() {
+        return new InMemoryBookStore() {
+            @Override
+            public Mono<Book> upsert(Book book) {
+                upserts.incrementAndGet();
+                return super.upsert(book);
+            }
+
+            @Override
+            public Flux<BulkItemResult> bulkUpsert(List<Book> books) {
+                bulkWrites.incrementAndGet();
+                return super.bulkUpsert(books);
+            }
+        };
+    }
+
+    @Test
+    void lastUpsertWinsAndIsFlushedInOneBulkWritePerCategory() {
+        InMemoryBookStore backend = backend();
+        WriteBehindBuffer buffer = new WriteBehindBuffer(true, 60_000, 100, 100, new WriteBehindJournal(WriteBehindJournal.Mode.NONE, null));
+        WriteBehindBookStore store = new WriteBehindBookStore(backend, buffer);
+
+        store.upsert(book("1", "Databases", 40)).block();
+        store.upsert(book("1", "Databases", 45)).block();
+        store.upsert(book("2", "Databases", 50)).block();
+        store.upsert(book("3", "Security", 30)).block();
+
+        StepVerifier.create(store.read(new BookKey("1", "Databases")).map(Book::getPrice)).expectNext(new BigDecimal(45)).verifyComplete();
+        StepVerifier.create(backend.read(new BookKey("1", "Databases")))
+                .verifyErrorMatches(error -> BookStoreException.statusCode(error) == 404);
+        StepVerifier.create(store.create(book("2", "Databases", 50)))
+                .verifyErrorMatches(error -> BookStoreException.statusCode(error) == 409);
+
+        buffer.flush().block();
+
+        assertEquals(0, upserts.get());
+        assertEquals(2, bulkWrites.get());
+        assertEquals(0L, buffer.stats().get("pending"));
+        assertEquals(1L, buffer.stats().get("coalesced"));
+        StepVerifier.create(backend.read(new BookKey("1", "Databases")).map(Book::getPrice)).expectNext(new BigDecimal(45)).verifyComplete();
+    }
+
+    @Test
+    void fullBufferWritesThrough() {
+        InMemoryBookStore backend = backend();
+        WriteBehindBookStore store = new WriteBehindBookStore(backend,
+                new WriteBehindBuffer(true, 60_000, 1, 100, new WriteBehindJournal(WriteBehindJournal.Mode.NONE, null)));
+
+        store.upsert(book("1", "Databases", 40)).block();
+        store.upsert(book("1", "Databases", 41)).block();
+        store.upsert(book("2", "Databases", 50)).block();
+
+        assertEquals(1, upserts.get());
+        StepVerifier.create(backend.read(new BookKey("2", "Databases"))).expectNextCount(1).verifyComplete();
+    }
+
+    @Test
+    void terminalFailuresAreDroppedAndTransientOnesStayPending() {
+        InMemoryBookStore backend = new InMemoryBookStore() {
+            @Override
+            public Flux<BulkItemResult> bulkUpsert(List<Book> books) {
+                return Flux
+                        .fromIterable(books)
+                        .map(book -> new BulkItemResult(book.getId(), book.getCategory(), "1".equals(book.getId()) ? 400 : 429, 0, 0, "failed"));
+            }
+        };
+        WriteBehindBuffer buffer = new WriteBehindBuffer(true, 60_000, 100, 100, new WriteBehindJournal(WriteBehindJournal.Mode.NONE, null));
+        WriteBehindBookStore store = new WriteBehindBookStore(backend, buffer);
+
+        store.upsert(book("1", "Databases", 40)).block();
+        store.upsert(book("2", "Databases", 50)).block();
+        buffer.flush().block();
+
+        assertEquals(1L, buffer.stats().get("pending"));
+        assertEquals(1L, buffer.stats().get("dropped"));
+        assertEquals(1L, buffer.stats().get("failed"));
+        assertNull(buffer.pending(new BookKey("1", "Databases")));
+        assertNotNull(buffer.pending(new BookKey("2", "Databases")));
+    }
+
+    @Test
+    void aDroppedUpsertLeavesTheCacheAndTheIndexes() {
+        InMemoryBookStore backend = new InMemoryBookStore() {
+            @Override
+            public Flux<BulkItemResult> bulkUpsert(List<Book> books) {
+                return Flux
+                        .fromIterable(books)
+                        .map(book -> new BulkItemResult(book.getId(), book.getCategory(), 400, 0, 0, "invalid"));
+            }
+        };
+        WriteBehindBuffer buffer = new WriteBehindBuffer(true, 60_000, 100, 100, new WriteBehindJournal(WriteBehindJournal.Mode.NONE, null));
+        BookCache bookCache = new BookCache(true, 100, 60_000);
+        IsbnIndex isbnIndex = new IsbnIndex();
+        SearchIndex searchIndex = new SearchIndex(true, 64);
+        LatencyRecorder latencyRecorder = new LatencyRecorder(new MockEnvironment());
+        BookRepository repository = new BookRepository(BookStoreConfiguration.decorate(backend, latencyRecorder,
+                new AdmissionController(new MockEnvironment().withProperty("admission.enabled", "false"), latencyRecorder),
+                new ReadCoalescer(false, 0, 1), buffer, bookCache, new CategoryStatsCache(true, 60_000), isbnIndex, searchIndex),
+                isbnIndex, new MaterializedBookView(new InMemoryChangeFeedSource(), false, 0, 1_000), searchIndex);
+        BookKey key = new BookKey("1", "Databases");
+        isbnIndex.rebuilt(0);
+
+        repository.upsertBook(book("1", "Databases", 40)).block();
+        assertNotNull(bookCache.getIfPresent(key));
+        assertEquals(Set.of(key), isbnIndex.lookup("isbn-1"));
+        assertEquals(List.of(key), searchIndex.search("Title", 10));
+
+        buffer.flush().block();
+
+        assertNull(bookCache.getIfPresent(key));
+        assertNull(isbnIndex.lookup("isbn-1"));
+        assertEquals(List.of(), searchIndex.search("Title", 10));
+        StepVerifier.create(repository.finByIdAndCategory("1", "Databases"))
+                .verifyErrorMatches(error -> BookStoreException.statusCode(error) == 404);
+    }
+
+    @Test
+    void pendingUpsertsAreReplayedFromTheJournalAfterACrash(@TempDir Path directory) {
+        Path journal = directory.resolve("write-behind.journal");
+        WriteBehindBookStore crashed = new WriteBehindBookStore(backend(),
+                new WriteBehindBuffer(true, 60_000, 100, 100, new WriteBehindJournal(WriteBehindJournal.Mode.FSYNC, journal)));
+        crashed.upsert(book("1", "Databases", 40)).block();
+        crashed.upsert(book("1", "Databases", 45)).block();
+        crashed.upsert(book("2", "Security", 30)).block();
+
+        InMemoryBookStore backend = backend();
+        WriteBehindBuffer buffer = new WriteBehindBuffer(true, 60_000, 100, 100, new WriteBehindJournal(WriteBehindJournal.Mode.FSYNC, journal));
+        WriteBehindBookStore restarted = new WriteBehindBookStore(backend, buffer);
+
+        StepVerifier.create(restarted.read(new BookKey("1", "Databases")).map(Book::getPrice)).expectNext(new BigDecimal(45)).verifyComplete();
+        buffer.flush().block();
+
+        StepVerifier.create(backend.scan(0).map(Book::getId)).expectNext("1", "2").verifyComplete();
+        assertEquals(0, new WriteBehindJournal(WriteBehindJournal.Mode.FSYNC, journal).replay().size());
+    }
+}
@@ -0,0 +1,79 @@
+package com.webFlux.cosmos.resilience.util;
+
+import com.webFlux.cosmos.resilience.metrics.BookOperation;
+import com.webFlux.cosmos.resilience.metrics.LatencyRecorder;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdmissionControllerTest {
+
+    private static AdmissionController admission(LatencyRecorder latencyRecorder, double ruPerSecond, long maxQueueMs) {
+        return new AdmissionController(new MockEnvironment()
+                .withProperty("admission.ruPerSecond", String.valueOf(ruPerSecond))
+                .withProperty("admission.reservePercent.scan", "30")
+                .withProperty("admission.maxQueueMs.scan", String.valueOf(maxQueueMs)), latencyRecorder);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> lane(AdmissionController admission, String priority) {
+        return (Map<String, Object>) admission.stats().get(priority);
+    }
+
+    @Test
+    void interactiveReadsAreAdmittedWhileScansAreShedUnderPressure() {
+        LatencyRecorder latencyRecorder = new LatencyRecorder(new MockEnvironment());
+        AdmissionController admission = admission(latencyRecorder, 10, 50);
+        latencyRecorder.recordCharge(BookOperation.POINT_READ, 9);
+
+        StepVerifier.create(admission.admitMono(BookOperation.POINT_READ, Mono.just("book"))).expectNext("book").verifyComplete();
+        StepVerifier.create(admission.admitFlux(BookOperation.SCAN, Mono.just("book").flux())).verifyError(CallNotPermittedException.class);
+
+        assertEquals(1L, lane(admission, "interactive").get("admitted"));
+        assertEquals(1L, lane(admission, "scan").get("shed"));
+        assertEquals(0, lane(admission, "scan").get("queueDepth"));
+    }
+
+    @Test
+    void scansWaitForTheBucketToRefillAboveTheReserve() {
+        LatencyRecorder latencyRecorder = new LatencyRecorder(new MockEnvironment());
+        AdmissionController admission = admission(latencyRecorder, 1_000, 2_000);
+        latencyRecorder.recordCharge(BookOperation.UPSERT, 900);
+
+        Duration elapsed = StepVerifier
+                .create(admission.admitFlux(BookOperation.SCAN, Mono.just("book").flux()))
+                .expectNext("book")
+                .verifyComplete();
+
+        assertTrue(elapsed.toMillis() >= 100, "admitted after " + elapsed.toMillis() + " ms");
+        assertEquals(1L, lane(admission, "scan").get("queued"));
+        assertEquals(1L, lane(admission, "scan").get("admitted"));
+        assertEquals(0L, lane(admission, "scan").get("shed"));
+    }
+
+    @Test
+    void bulkWritesHoldTheChargeOfAllTheirItems() {
+        LatencyRecorder latencyRecorder = new LatencyRecorder(new MockEnvironment());
+        AdmissionController admission = new AdmissionController(new MockEnvironment()
+                .withProperty("admission.ruPerSecond", "1000")
+                .withProperty("admission.reservePercent.background", "50"), latencyRecorder);
+        latencyRecorder.recordCharge(BookOperation.BULK_UPSERT, 2);
+
+        StepVerifier.create(admission.admitFlux(BookOperation.BULK_UPSERT, 100, Flux.defer(() -> Flux.just(admission.stats().get("inFlightCharge")))))
+                .expectNext(200.0)
+                .verifyComplete();
+        // a batch the lane could never reserve whole holds all the bucket has above the reserve
+        StepVerifier.create(admission.admitFlux(BookOperation.BULK_UPSERT, 1_000, Flux.defer(() -> Flux.just(admission.stats().get("inFlightCharge")))))
+                .expectNext(500.0)
+                .verifyComplete();
+        assertEquals(0.0, admission.stats().get("inFlightCharge"));
+    }
+}
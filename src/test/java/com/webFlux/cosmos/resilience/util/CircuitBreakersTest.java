@@ -0,0 +1,108 @@
+package com.webFlux.cosmos.resilience.util;
+
+import com.azure.cosmos.BridgeInternal;
+import com.webFlux.cosmos.resilience.cache.BookCache;
+import com.webFlux.cosmos.resilience.cosmos.InMemoryCosmosContainer;
+import com.webFlux.cosmos.resilience.metrics.BookOperation;
+import com.webFlux.cosmos.resilience.model.Book;
+import com.webFlux.cosmos.resilience.model.BookRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CircuitBreakersTest {
+
+    private static Book book(String id) {
+        return new Book(id, "Databases", "99847", "Title " + id, "Author", "Description", new BigDecimal(47), new BigDecimal(42), "image.jpg");
+    }
+
+    private static CircuitBreakers breakers(long openMs, int maxConcurrent) {
+        return new CircuitBreakers(new MockEnvironment()
+                .withProperty("breaker.minimumCalls", "4")
+                .withProperty("breaker.failureRatePercent", "50")
+                .withProperty("breaker.openMs", String.valueOf(openMs))
+                .withProperty("breaker.halfOpenProbes", "2")
+                .withProperty("bulkhead.maxConcurrent", String.valueOf(maxConcurrent)));
+    }
+
+    private static Mono<Book> read(CircuitBreakers breakers, BookRepository repository) {
+        return repository
+                .finByIdAndCategory("1", "Databases")
+                .transform(breakers.mono(BookOperation.POINT_READ));
+    }
+
+    @Test
+    void openCircuitFailsFastWithoutCallingCosmos() {
+        AtomicBoolean failing = new AtomicBoolean(true);
+        InMemoryCosmosContainer container = new InMemoryCosmosContainer()
+                .seed(book("1"))
+                .withFault(() -> failing.get() ? BridgeInternal.createCosmosException(503) : null);
+        BookRepository repository = container.repository(new BookCache(false, 0, 0));
+        CircuitBreakers breakers = breakers(60_000, 64);
+
+        for (int i = 0; i < 4; i++) {
+            StepVerifier.create(read(breakers, repository)).verifyError();
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breakers.breaker(BookOperation.POINT_READ).getState());
+
+        failing.set(false);
+        StepVerifier.create(read(breakers, repository)).verifyError(CallNotPermittedException.class);
+        assertEquals(4, container.calls());
+    }
+
+    @Test
+    void notFoundDoesNotOpenTheCircuit() {
+        InMemoryCosmosContainer container = new InMemoryCosmosContainer();
+        BookRepository repository = container.repository(new BookCache(false, 0, 0));
+        CircuitBreakers breakers = breakers(60_000, 64);
+
+        for (int i = 0; i < 10; i++) {
+            StepVerifier.create(read(breakers, repository)).verifyError();
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, breakers.breaker(BookOperation.POINT_READ).getState());
+    }
+
+    @Test
+    void successfulHalfOpenProbesCloseTheCircuit() throws InterruptedException {
+        AtomicBoolean failing = new AtomicBoolean(true);
+        InMemoryCosmosContainer container = new InMemoryCosmosContainer()
+                .seed(book("1"))
+                .withFault(() -> failing.get() ? BridgeInternal.createCosmosException(503) : null);
+        BookRepository repository = container.repository(new BookCache(false, 0, 0));
+        CircuitBreakers breakers = breakers(20, 64);
+
+        for (int i = 0; i < 4; i++) {
+            StepVerifier.create(read(breakers, repository)).verifyError();
+        }
+        failing.set(false);
+        Thread.sleep(40);
+
+        StepVerifier.create(read(breakers, repository)).expectNextCount(1).verifyComplete();
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breakers.breaker(BookOperation.POINT_READ).getState());
+        StepVerifier.create(read(breakers, repository)).expectNextCount(1).verifyComplete();
+        assertEquals(CircuitBreaker.State.CLOSED, breakers.breaker(BookOperation.POINT_READ).getState());
+    }
+
+    @Test
+    void fullBulkheadRejectsInsteadOfQueueing() {
+        InMemoryCosmosContainer container = new InMemoryCosmosContainer()
+                .seed(book("1"))
+                .withLatency(Duration.ofMillis(200));
+        BookRepository repository = container.repository(new BookCache(false, 0, 0));
+        CircuitBreakers breakers = breakers(60_000, 1);
+
+        StepVerifier
+                .create(Mono.zip(read(breakers, repository), read(breakers, repository).onErrorResume(CallNotPermittedException.class,
+                        error -> Mono.just(book("rejected")))))
+                .expectNextMatches(pair -> pair.getT2().getId().equals("rejected"))
+                .verifyComplete();
+        assertEquals(1, container.calls());
+    }
+}
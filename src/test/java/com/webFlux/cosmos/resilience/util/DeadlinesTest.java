@@ -0,0 +1,120 @@
+package com.webFlux.cosmos.resilience.util;
+
+import com.webFlux.cosmos.resilience.metrics.BookOperation;
+import com.webFlux.cosmos.resilience.metrics.LatencyRecorder;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import reactor.util.context.Context;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DeadlinesTest {
+
+    private static Deadlines deadlines(LatencyRecorder latencyRecorder, long pointReadBudgetMs) {
+        return new Deadlines(new MockEnvironment()
+                .withProperty("deadline.budgetMs.pointRead", String.valueOf(pointReadBudgetMs))
+                .withProperty("deadline.minSamples", "100"), latencyRecorder);
+    }
+
+    @Test
+    void retriesStopOnceTheBackoffWouldOutlastTheDeadline() {
+        Deadlines deadlines = deadlines(new LatencyRecorder(new MockEnvironment()), 100);
+        RetryEngine engine = new RetryEngine(1_000, 20, 20, 1_000, 0, 1);
+        AtomicInteger attempts = new AtomicInteger();
+        Mono<String> failing = Mono.defer(() -> {
+            attempts.incrementAndGet();
+            return Mono.error(new TimeoutException());
+        });
+
+        Duration elapsed = StepVerifier
+                .create(failing
+                        .transform(deadlines.attemptMono(BookOperation.POINT_READ))
+                        .retryWhen(engine.retry(BookOperation.POINT_READ))
+                        .transform(deadlines.mono(BookOperation.POINT_READ)))
+                .verifyError(TimeoutException.class);
+
+        assertTrue(elapsed.toMillis() < 1_000);
+        assertTrue(attempts.get() > 1 && attempts.get() < 1_000);
+        assertEquals(1L, engine.stats().get("deadlineExhausted"));
+    }
+
+    @Test
+    void attemptTimeoutFollowsObservedLatencyButNeverOutlastsTheDeadline() {
+        LatencyRecorder latencyRecorder = new LatencyRecorder(new MockEnvironment());
+        Deadlines deadlines = deadlines(latencyRecorder, 500);
+        assertEquals(Duration.ofMillis(500), deadlines.attemptTimeout(BookOperation.POINT_READ, Optional.empty()));
+
+        for (int i = 0; i < 200; i++) {
+            latencyRecorder.recordAttempt(BookOperation.POINT_READ, TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        deadlines = deadlines(latencyRecorder, 500);
+
+        long attemptMs = deadlines.attemptTimeout(BookOperation.POINT_READ, Optional.empty()).toMillis();
+        assertTrue(attemptMs >= 20 && attemptMs <= 22, "attempt timeout was " + attemptMs + " ms");
+        assertTrue(deadlines.attemptTimeout(BookOperation.POINT_READ, Optional.of(Deadline.after(Duration.ofMillis(5)))).toMillis() <= 5);
+        StepVerifier
+                .create(Mono.just("book").transform(deadlines.attemptMono(BookOperation.POINT_READ))
+                        .contextWrite(Context.of(Deadline.class, Deadline.after(Duration.ZERO))))
+                .verifyError(TimeoutException.class);
+    }
+
+    @Test
+    void attemptTimeoutFollowsWholeAttemptsNotTheStoreCallsTheyMake() {
+        LatencyRecorder latencyRecorder = new LatencyRecorder(new MockEnvironment());
+        for (int i = 0; i < 200; i++) {
+            latencyRecorder.record(BookOperation.STATS, TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        Deadlines deadlines = deadlines(latencyRecorder, 500);
+        assertEquals(Duration.ofSeconds(5), deadlines.attemptTimeout(BookOperation.STATS, Optional.empty()));
+
+        StepVerifier.create(Mono.just("stats").transform(deadlines.attemptMono(BookOperation.STATS))).expectNextCount(1).verifyComplete();
+        StepVerifier.create(Flux.range(0, 3).transform(deadlines.attemptFlux(BookOperation.STATS))).expectNextCount(3).verifyComplete();
+        assertEquals(2, latencyRecorder.recentAttemptHistogram(BookOperation.STATS).count());
+
+        for (int i = 0; i < 200; i++) {
+            latencyRecorder.recordAttempt(BookOperation.STATS, TimeUnit.MILLISECONDS.toNanos(100));
+        }
+        deadlines = deadlines(latencyRecorder, 500);
+
+        long attemptMs = deadlines.attemptTimeout(BookOperation.STATS, Optional.empty()).toMillis();
+        assertTrue(attemptMs >= 200 && attemptMs <= 220, "attempt timeout was " + attemptMs + " ms");
+    }
+
+    @Test
+    void attemptTimeoutBoundsTheWholeQueryNotTheGapBetweenItems() {
+        Deadlines deadlines = deadlines(new LatencyRecorder(new MockEnvironment()), 100);
+
+        Duration elapsed = StepVerifier
+                .create(Flux.interval(Duration.ofMillis(30)).take(20)
+                        .transform(deadlines.attemptFlux(BookOperation.POINT_READ)))
+                .thenConsumeWhile(item -> true)
+                .verifyError(TimeoutException.class);
+
+        assertTrue(elapsed.toMillis() < 400, "timed out after " + elapsed.toMillis() + " ms");
+    }
+
+    @Test
+    void aClientBudgetShortensTheDeadline() {
+        Deadlines deadlines = deadlines(new LatencyRecorder(new MockEnvironment()), 5_000);
+
+        Duration elapsed = StepVerifier
+                .create(Mono.never()
+                        .transform(deadlines.mono(BookOperation.POINT_READ))
+                        .contextWrite(Context.of(Deadlines.CLIENT_BUDGET, deadlines.clientBudget("50"))))
+                .verifyError(TimeoutException.class);
+
+        assertTrue(elapsed.toMillis() < 1_000);
+        assertEquals(null, deadlines.clientBudget("soon"));
+        assertEquals(1L, deadlines.stats().get("expired"));
+    }
+}
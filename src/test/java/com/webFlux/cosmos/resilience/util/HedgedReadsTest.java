@@ -0,0 +1,29 @@
+package com.webFlux.cosmos.resilience.util;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HedgedReadsTest {
+
+    @Test
+    void primaryCancelledByAWinningHedgeIsNotTimed() {
+        HedgedReads hedgedReads = new HedgedReads(true, 95, 5, 20, 1, 60_000);
+
+        StepVerifier.create(hedgedReads.hedge(Mono.delay(Duration.ofMillis(500)).thenReturn("primary"), Mono.just("hedge")))
+                .expectNext("hedge")
+                .verifyComplete();
+        StepVerifier.create(hedgedReads.hedge(Mono.just("primary"), Mono.just("hedge")))
+                .expectNext("primary")
+                .verifyComplete();
+
+        assertEquals(1L, hedgedReads.stats().get("hedgesWon"));
+        // the cancelled primary ran for the 20 ms hedge delay, the one that answered for next to nothing
+        assertTrue((double) hedgedReads.stats().get("primaryP99Ms") < 10);
+    }
+}
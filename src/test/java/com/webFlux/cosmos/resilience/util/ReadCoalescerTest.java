@@ -0,0 +1,95 @@
+package com.webFlux.cosmos.resilience.util;
+
+import com.webFlux.cosmos.resilience.model.Book;
+import com.webFlux.cosmos.resilience.model.BookKey;
+import com.webFlux.cosmos.resilience.store.InMemoryBookStore;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReadCoalescerTest {
+
+    private final InMemoryBookStore store = new InMemoryBookStore();
+    private final List<BookKey> pointReads = new CopyOnWriteArrayList<>();
+    private final List<List<String>> readManyCalls = new CopyOnWriteArrayList<>();
+
+    ReadCoalescerTest() {
+        for (int i = 1; i <= 5; i++) {
+            store.upsert(book(String.valueOf(i), "Databases")).block();
+            store.upsert(book(String.valueOf(i), "Security")).block();
+        }
+    }
+
+    private static Book book(String id, String category) {
+        return new Book(id, category, "isbn-" + id, "Title " + id, "Author", "Description", new BigDecimal(47), new BigDecimal(42), "image.jpg");
+    }
+
+    private Mono<Book> read(ReadCoalescer coalescer, String id, String category) {
+        return coalescer.read(new BookKey(id, category), key -> {
+            pointReads.add(key);
+            return store.read(key);
+        }, (readCategory, ids) -> {
+            readManyCalls.add(ids);
+            return store.readMany(readCategory, ids);
+        });
+    }
+
+    @Test
+    void identicalReadsInFlightShareOneRead() {
+        ReadCoalescer coalescer = new ReadCoalescer(true, 20, 100);
+
+        StepVerifier.create(Flux.merge(read(coalescer, "1", "Databases"), read(coalescer, "1", "Databases"), read(coalescer, "1", "Databases")))
+                .expectNextCount(3)
+                .verifyComplete();
+
+        assertEquals(1, pointReads.size());
+        assertTrue(readManyCalls.isEmpty());
+        assertEquals(2L, coalescer.stats().get("deduplicated"));
+    }
+
+    @Test
+    void distinctIdsInOneCategoryAreReadTogether() {
+        ReadCoalescer coalescer = new ReadCoalescer(true, 20, 100);
+
+        StepVerifier.create(Flux.merge(read(coalescer, "1", "Databases"), read(coalescer, "2", "Databases"), read(coalescer, "3", "Security")))
+                .expectNextCount(3)
+                .verifyComplete();
+
+        // the lone read of its category is sent as a point read
+        assertEquals(List.of(List.of("1", "2")), readManyCalls);
+        assertEquals(List.of(new BookKey("3", "Security")), pointReads);
+    }
+
+    @Test
+    void missingIdCompletesEmptyAlone() {
+        ReadCoalescer coalescer = new ReadCoalescer(true, 20, 100);
+
+        StepVerifier.create(Flux.merge(read(coalescer, "1", "Databases"), read(coalescer, "404", "Databases")
+                        .defaultIfEmpty(book("missing", "Databases"))))
+                .expectNextCount(2)
+                .verifyComplete();
+
+        assertEquals(1, readManyCalls.size());
+    }
+
+    @Test
+    void fullBatchIsSentWithoutWaitingForTheWindow() {
+        ReadCoalescer coalescer = new ReadCoalescer(true, 60_000, 3);
+
+        StepVerifier.create(Flux.merge(read(coalescer, "1", "Databases"), read(coalescer, "2", "Databases"), read(coalescer, "3", "Databases")))
+                .expectNextCount(3)
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+
+        assertEquals(List.of(List.of("1", "2", "3")), readManyCalls);
+    }
+}
@@ -0,0 +1,41 @@
+package com.webFlux.cosmos.resilience.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RetryBudgetTest {
+
+    @Test
+    void tokensComeBackAtTheRefillRate() {
+        AtomicLong clock = new AtomicLong();
+        RetryBudget budget = new RetryBudget(2, 5, 0, clock::get);
+
+        assertTrue(budget.tryAcquire());
+        assertTrue(budget.tryAcquire());
+        assertFalse(budget.tryAcquire());
+
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(200));
+        assertTrue(budget.tryAcquire());
+        assertFalse(budget.tryAcquire());
+    }
+
+    @Test
+    void aLongIdleRefillsToCapacityWithoutOverflowing() {
+        AtomicLong clock = new AtomicLong();
+        RetryBudget budget = new RetryBudget(50, 5, 0, clock::get);
+        for (int i = 0; i < 50; i++) {
+            budget.tryAcquire();
+        }
+
+        // 30 days idle: elapsed nanos times 5000 milli-tokens per second overflows a long
+        clock.addAndGet(TimeUnit.DAYS.toNanos(30));
+
+        assertEquals(50.0, budget.available());
+    }
+}
@@ -0,0 +1,74 @@
+package com.webFlux.cosmos.resilience.util;
+
+import com.azure.cosmos.BridgeInternal;
+import com.webFlux.cosmos.resilience.metrics.BookOperation;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RetryEngineTest {
+
+    private static Mono<String> failing(AtomicInteger attempts, int failures, Throwable error) {
+        return Mono.defer(() -> attempts.incrementAndGet() <= failures ? Mono.error(error) : Mono.just("book"));
+    }
+
+    @Test
+    void classifiesTransientFailuresOnly() {
+        assertTrue(RetryEngine.isRetryable(new TimeoutException()));
+        assertTrue(RetryEngine.isRetryable(BridgeInternal.createCosmosException(408)));
+        assertTrue(RetryEngine.isRetryable(BridgeInternal.createCosmosException(429)));
+        assertTrue(RetryEngine.isRetryable(BridgeInternal.createCosmosException(449)));
+        assertTrue(RetryEngine.isRetryable(BridgeInternal.createCosmosException(503)));
+        assertFalse(RetryEngine.isRetryable(BridgeInternal.createCosmosException(404)));
+        assertFalse(RetryEngine.isRetryable(BridgeInternal.createCosmosException(409)));
+        assertFalse(RetryEngine.isRetryable(new IllegalStateException()));
+    }
+
+    @Test
+    void retriesTransientFailuresUpToMaxAttempts() {
+        RetryEngine engine = new RetryEngine(3, 1, 5, 50, 0, 0);
+        AtomicInteger attempts = new AtomicInteger();
+
+        StepVerifier
+                .create(failing(attempts, 2, BridgeInternal.createCosmosException(503)).retryWhen(engine.retry(BookOperation.POINT_READ)))
+                .expectNext("book")
+                .verifyComplete();
+        assertEquals(3, attempts.get());
+
+        attempts.set(0);
+        StepVerifier
+                .create(failing(attempts, 10, new TimeoutException()).retryWhen(engine.retry(BookOperation.POINT_READ)))
+                .verifyError(TimeoutException.class);
+        assertEquals(4, attempts.get());
+    }
+
+    @Test
+    void doesNotRetryNotFound() {
+        RetryEngine engine = new RetryEngine(3, 1, 5, 50, 0, 0);
+        AtomicInteger attempts = new AtomicInteger();
+
+        StepVerifier
+                .create(failing(attempts, 1, BridgeInternal.createCosmosException(404)).retryWhen(engine.retry(BookOperation.POINT_READ)))
+                .verifyError();
+        assertEquals(1, attempts.get());
+    }
+
+    @Test
+    void exhaustedBudgetStopsRetries() {
+        RetryEngine engine = new RetryEngine(3, 1, 5, 2, 0, 0);
+        AtomicInteger attempts = new AtomicInteger();
+
+        StepVerifier
+                .create(failing(attempts, 10, new TimeoutException()).retryWhen(engine.retry(BookOperation.SCAN)))
+                .verifyError(TimeoutException.class);
+        assertEquals(3, attempts.get());
+        assertEquals(1L, engine.stats().get("budgetExhausted"));
+    }
+}
@@ -0,0 +1,80 @@
+package com.webFlux.cosmos.resilience.view;
+
+import com.webFlux.cosmos.resilience.cache.BookCache;
+import com.webFlux.cosmos.resilience.cosmos.InMemoryCosmosContainer;
+import com.webFlux.cosmos.resilience.model.Book;
+import com.webFlux.cosmos.resilience.model.BookRepository;
+import org.junit.jupiter.api.Test;
+import reactor.test.StepVerifier;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MaterializedBookViewTest {
+
+    private static Book book(String id, String category, String isbn, int price) {
+        return new Book(id, category, isbn, "Title " + id, "Author", "Description", new BigDecimal(price), new BigDecimal(price - 5), "image.jpg");
+    }
+
+    private static void awaitServing(MaterializedBookView view) throws InterruptedException {
+        for (int i = 0; i < 200 && !view.isServing(); i++) {
+            Thread.sleep(10);
+        }
+        assertTrue(view.isServing());
+    }
+
+    @Test
+    void readsAreServedFromTheViewOnceWarm() throws InterruptedException {
+        InMemoryChangeFeedSource feed = new InMemoryChangeFeedSource();
+        feed.publish(Arrays.asList(book("1", "Databases", "99847", 47), book("2", "Databases", "88297", 55)));
+        MaterializedBookView view = new MaterializedBookView(feed, true, 60_000, 10);
+        InMemoryCosmosContainer container = new InMemoryCosmosContainer();
+        BookRepository repository = container.repository(new BookCache(false, 0, 0), view);
+
+        view.start();
+        awaitServing(view);
+        feed.publish(Collections.singletonList(book("3", "Programming Languages", "99847", 40)));
+
+        StepVerifier.create(repository.finByIdAndCategory("1", "Databases")).expectNextCount(1).verifyComplete();
+        StepVerifier.create(repository.findByCategory("Databases")).expectNextCount(2).verifyComplete();
+        StepVerifier.create(repository.findByIsbn("99847")).expectNextCount(2).verifyComplete();
+        StepVerifier.create(repository.findAll()).expectNextCount(3).verifyComplete();
+        assertEquals(0, container.reads());
+        view.stop();
+    }
+
+    @Test
+    void updatesReplaceTheViewedBookAndItsIsbn() throws InterruptedException {
+        InMemoryChangeFeedSource feed = new InMemoryChangeFeedSource();
+        MaterializedBookView view = new MaterializedBookView(feed, true, 60_000, 10);
+        view.start();
+        awaitServing(view);
+
+        feed.publish(Collections.singletonList(book("1", "Databases", "99847", 47)));
+        feed.publish(Collections.singletonList(book("1", "Databases", "11111", 30)));
+
+        assertEquals(30, view.byCategory("Databases").iterator().next().getPrice().intValue());
+        assertTrue(view.byIsbn("99847").isEmpty());
+        assertEquals(1, view.byIsbn("11111").size());
+        view.stop();
+    }
+
+    @Test
+    void staleViewFallsBackToCosmos() {
+        InMemoryChangeFeedSource feed = new InMemoryChangeFeedSource();
+        feed.publish(Collections.singletonList(book("1", "Databases", "99847", 47)));
+        MaterializedBookView view = new MaterializedBookView(feed, true, 0, 60_000);
+        InMemoryCosmosContainer container = new InMemoryCosmosContainer().seed(book("1", "Databases", "99847", 47));
+        BookRepository repository = container.repository(new BookCache(false, 0, 0), view);
+
+        view.start();
+
+        StepVerifier.create(repository.finByIdAndCategory("1", "Databases")).expectNextCount(1).verifyComplete();
+        assertEquals(1, container.reads());
+        view.stop();
+    }
+}